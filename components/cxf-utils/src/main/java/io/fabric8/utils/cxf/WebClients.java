@@ -23,8 +23,12 @@ import io.fabric8.utils.Strings;
 import net.oauth.signature.pem.PEMReader;
 import net.oauth.signature.pem.PKCS1EncodedKeySpec;
 import org.apache.cxf.configuration.jsse.TLSClientParameters;
+import org.apache.cxf.jaxrs.client.ClientConfiguration;
 import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.transport.common.gzip.GZIPInInterceptor;
 import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transports.http.configuration.ConnectionType;
+import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
@@ -178,6 +182,31 @@ public class WebClients {
         }
     }
 
+    /**
+     * Configures the HTTP transport of the given client. Keep alive connections are pooled by the JDK
+     * per host and shared by all the clients talking to that host; with compression enabled gzip encoded
+     * responses are requested and decoded as they are read.
+     *
+     * @param connectTimeout the connect timeout in milliseconds or 0 for no timeout
+     * @param receiveTimeout the read timeout in milliseconds or 0 for no timeout
+     */
+    public static void configureTransport(WebClient webClient, boolean keepAlive, long connectTimeout, long receiveTimeout, boolean compression) {
+        ClientConfiguration config = WebClient.getConfig(webClient);
+        HTTPConduit conduit = config.getHttpConduit();
+        HTTPClientPolicy policy = conduit.getClient();
+        if (policy == null) {
+            policy = new HTTPClientPolicy();
+            conduit.setClient(policy);
+        }
+        policy.setConnection(keepAlive ? ConnectionType.KEEP_ALIVE : ConnectionType.CLOSE);
+        policy.setConnectionTimeout(connectTimeout);
+        policy.setReceiveTimeout(receiveTimeout);
+        if (compression) {
+            policy.setAcceptEncoding("gzip");
+            config.getInInterceptors().add(new GZIPInInterceptor());
+        }
+    }
+
     public static List<Object> createProviders() {
         List<Object> providers = new ArrayList<Object>();
         Annotations[] annotationsToUse = JacksonJaxbJsonProvider.DEFAULT_ANNOTATIONS;
@@ -97,6 +97,21 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         }
     }
 
+    /**
+     * Called by instrumented methods with the id assigned when the method was instrumented
+     */
+    public static void enterMethod(int methodId) {
+        if (INSTANCE.started.get()) {
+            INSTANCE.apmAgentContext.enterMethod(methodId);
+        }
+    }
+
+    public static void exitMethod(int methodId) {
+        if (INSTANCE.started.get()) {
+            INSTANCE.apmAgentContext.exitMethod(methodId);
+        }
+    }
+
     public List<String> getTransformedMethods() {
         if (isInitialized()) {
             return apmAgentContext.getTransformedMethods();
@@ -118,6 +133,32 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         return Collections.EMPTY_LIST;
     }
 
+    @Override
+    public String getCollapsedStacks() {
+        Strategy s = this.strategy;
+        return s instanceof SamplingStrategy ? ((SamplingStrategy) s).getCallTree().toCollapsedStacks() : "";
+    }
+
+    @Override
+    public double getSamplingOverhead() {
+        Strategy s = this.strategy;
+        return s instanceof SamplingStrategy ? ((SamplingStrategy) s).getSamplingOverhead() : 0;
+    }
+
+    @Override
+    public long getSampleCount() {
+        Strategy s = this.strategy;
+        return s instanceof SamplingStrategy ? ((SamplingStrategy) s).getCallTree().getSampleCount() : 0;
+    }
+
+    @Override
+    public void resetProfile() {
+        Strategy s = this.strategy;
+        if (s instanceof SamplingStrategy) {
+            ((SamplingStrategy) s).reset();
+        }
+    }
+
     public boolean isInitialized() {
         return initialized.get();
     }
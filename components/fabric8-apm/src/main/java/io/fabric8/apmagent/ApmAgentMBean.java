@@ -36,4 +36,18 @@ public interface ApmAgentMBean {
      * @return List of all <className>@<methodName>
      */
     List<String> getAllMethods();
+
+    /**
+     * @return the call paths sampled by the sampling strategy in the collapsed stack format used by flame graphs
+     */
+    String getCollapsedStacks();
+
+    /**
+     * @return the percentage of the elapsed time the sampling strategy spent taking samples
+     */
+    double getSamplingOverhead();
+
+    long getSampleCount();
+
+    void resetProfile();
 }
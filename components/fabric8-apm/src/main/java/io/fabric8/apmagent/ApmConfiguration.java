@@ -58,6 +58,9 @@ public class ApmConfiguration implements ApmConfigurationMBean {
     private boolean threadMetricDepthChanged = false;
     private boolean strategyChanged = false;
     private int samplingInterval = 1;
+    private String samplingThreadGroups = "";
+    private int samplingStackDepth = 64;
+    private int samplingMaxNodes = 20000;
     private List<FilterItem> whiteFilterList = new ArrayList<>();
     private List<FilterItem> blackFilterList = new ArrayList<>();
     private List<ApmConfigurationChangeListener> changeListeners = new CopyOnWriteArrayList<>();
@@ -251,6 +254,37 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         this.samplingInterval = samplingInterval;
     }
 
+    public String getSamplingThreadGroups() {
+        return samplingThreadGroups;
+    }
+
+    /**
+     * Sets the comma separated prefixes of the thread group or thread names sampled by the
+     * sampling strategy, all threads are sampled if empty
+     */
+    public void setSamplingThreadGroups(String samplingThreadGroups) {
+        this.samplingThreadGroups = samplingThreadGroups != null ? samplingThreadGroups : "";
+        fireConfigurationChanged();
+    }
+
+    public int getSamplingStackDepth() {
+        return samplingStackDepth;
+    }
+
+    public void setSamplingStackDepth(int samplingStackDepth) {
+        this.samplingStackDepth = samplingStackDepth;
+        fireConfigurationChanged();
+    }
+
+    public int getSamplingMaxNodes() {
+        return samplingMaxNodes;
+    }
+
+    public void setSamplingMaxNodes(int samplingMaxNodes) {
+        this.samplingMaxNodes = samplingMaxNodes;
+        fireConfigurationChanged();
+    }
+
     public String getStrategy() {
         return strategy.name();
     }
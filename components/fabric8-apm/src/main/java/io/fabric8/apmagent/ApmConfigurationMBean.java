@@ -49,6 +49,18 @@ public interface ApmConfigurationMBean {
 
     void setMethodMetricDepth(int methodMetricDepth);
 
+    int getSamplingInterval();
+
+    void setSamplingInterval(int samplingInterval);
+
+    String getSamplingThreadGroups();
+
+    void setSamplingThreadGroups(String samplingThreadGroups);
+
+    int getSamplingStackDepth();
+
+    void setSamplingStackDepth(int samplingStackDepth);
+
     String getStrategy();
 
     void setStrategy(String strategy);
@@ -17,6 +17,7 @@ package io.fabric8.apmagent.metrics;
 
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -26,6 +27,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
@@ -51,6 +53,10 @@ public class ApmAgentContext {
     private AtomicBoolean started = new AtomicBoolean();
     private ConcurrentMap<Thread, ThreadMetrics> threadMetricsMap = new ConcurrentHashMap<>();
     private ConcurrentMap<String, MethodMetrics> methodMetricsMap = new ConcurrentHashMap<>();
+    private final MethodRegistry methodRegistry = new MethodRegistry();
+    private volatile MethodMetrics[] methodMetricsById = new MethodMetrics[64];
+    private final ThreadLocal<ThreadMetrics> currentThreadMetrics = new ThreadLocal<>();
+    private final AtomicInteger generation = new AtomicInteger();
     private ConcurrentMap<Object, ObjectName> objectNameMap = new ConcurrentHashMap<>();
     private MBeanServer mBeanServer;
     private JolokiaServer jolokiaServer;
@@ -70,21 +76,43 @@ public class ApmAgentContext {
         this.monitoredMethodMetrics.setMonitorSize(configuration.getMethodMetricDepth());
     }
 
-    public void enterMethod(Thread currentThread, String fullMethodName, boolean alwaysActive) {
+    /**
+     * Returns the id the instrumented code passes to {@link #enterMethod(int)} and {@link #exitMethod(int)}
+     */
+    public int getMethodId(String fullMethodName) {
+        return methodRegistry.getId(fullMethodName);
+    }
+
+    public String getMethodName(int methodId) {
+        return methodRegistry.getName(methodId);
+    }
+
+    /**
+     * Called by instrumented code on the current thread, so the thread metrics are
+     * found with a thread local instead of a map lookup
+     */
+    public void enterMethod(int methodId) {
         if (isInitialized()) {
-            ThreadMetrics threadMetrics = threadMetricsMap.get(currentThread);
-            if (threadMetrics == null) {
-                threadMetrics = new ThreadMetrics(this, currentThread);
-                threadMetricsMap.put(currentThread, threadMetrics);
-            }
-            threadMetrics.enter(fullMethodName, alwaysActive);
+            getCurrentThreadMetrics().enter(methodId, false);
+            getOrCreateMethodMetrics(methodId);
+        }
+    }
 
-            MethodMetrics methodMetrics = methodMetricsMap.get(fullMethodName);
-            if (methodMetrics == null) {
-                methodMetrics = new MethodMetrics(fullMethodName);
-                methodMetrics.setActive(isMonitorByDefault());
-                methodMetricsMap.putIfAbsent(fullMethodName, methodMetrics);
+    public void exitMethod(int methodId) {
+        if (isInitialized()) {
+            long elapsed = getCurrentThreadMetrics().exit(methodId, false);
+            if (elapsed >= 0) {
+                updateMethodMetrics(methodId, elapsed);
             }
+            doHouseKeeping();
+        }
+    }
+
+    public void enterMethod(Thread currentThread, String fullMethodName, boolean alwaysActive) {
+        if (isInitialized()) {
+            int methodId = methodRegistry.getId(fullMethodName);
+            getThreadMetrics(currentThread).enter(methodId, alwaysActive);
+            getOrCreateMethodMetrics(methodId);
         }
 
     }
@@ -92,22 +120,72 @@ public class ApmAgentContext {
     public void exitMethod(Thread currentThread, String methodName, boolean alwaysActive) {
         if (isInitialized()) {
             ThreadMetrics threadMetrics = threadMetricsMap.get(currentThread);
+            int methodId = methodRegistry.findId(methodName);
 
             long elapsed = -1;
-            if (threadMetrics != null) {
-                elapsed = threadMetrics.exit(methodName, alwaysActive);
+            if (threadMetrics != null && methodId >= 0) {
+                elapsed = threadMetrics.exit(methodId, alwaysActive);
             }
 
             if (elapsed >= 0) {
-                MethodMetrics methodMetrics = methodMetricsMap.get(methodName);
-                if (methodMetrics != null) {
-                    methodMetrics.update(elapsed);
-                }
+                updateMethodMetrics(methodId, elapsed);
             }
             doHouseKeeping();
         }
     }
 
+    private ThreadMetrics getCurrentThreadMetrics() {
+        ThreadMetrics threadMetrics = currentThreadMetrics.get();
+        if (threadMetrics == null || threadMetrics.getGeneration() != generation.get()) {
+            threadMetrics = getThreadMetrics(Thread.currentThread());
+            currentThreadMetrics.set(threadMetrics);
+        }
+        return threadMetrics;
+    }
+
+    private ThreadMetrics getThreadMetrics(Thread thread) {
+        ThreadMetrics threadMetrics = threadMetricsMap.get(thread);
+        if (threadMetrics == null) {
+            threadMetrics = new ThreadMetrics(this, thread, generation.get());
+            ThreadMetrics existing = threadMetricsMap.putIfAbsent(thread, threadMetrics);
+            if (existing != null) {
+                threadMetrics = existing;
+            }
+        }
+        return threadMetrics;
+    }
+
+    private void updateMethodMetrics(int methodId, long elapsed) {
+        MethodMetrics[] array = methodMetricsById;
+        MethodMetrics methodMetrics = methodId < array.length ? array[methodId] : null;
+        if (methodMetrics != null) {
+            methodMetrics.update(elapsed);
+        }
+    }
+
+    private MethodMetrics getOrCreateMethodMetrics(int methodId) {
+        MethodMetrics[] array = methodMetricsById;
+        MethodMetrics methodMetrics = methodId < array.length ? array[methodId] : null;
+        return methodMetrics != null ? methodMetrics : createMethodMetrics(methodId);
+    }
+
+    private synchronized MethodMetrics createMethodMetrics(int methodId) {
+        MethodMetrics[] array = methodMetricsById;
+        if (methodId >= array.length) {
+            array = Arrays.copyOf(array, Math.max(array.length * 2, methodId + 1));
+        }
+        MethodMetrics methodMetrics = array[methodId];
+        if (methodMetrics == null) {
+            String fullMethodName = methodRegistry.getName(methodId);
+            methodMetrics = new MethodMetrics(fullMethodName);
+            methodMetrics.setActive(isMonitorByDefault());
+            methodMetricsMap.put(fullMethodName, methodMetrics);
+            array[methodId] = methodMetrics;
+        }
+        methodMetricsById = array;
+        return methodMetrics;
+    }
+
     public void initialize() {
         if (initialized.compareAndSet(false, true)) {
             try {
@@ -145,7 +223,7 @@ public class ApmAgentContext {
     void doHouseKeeping() {
         //the time is going to be the elapsed time from the latest method call
         //its not going to be terribly accurate - but then it doesn't really need to be
-        if (doHouseKeeping.compareAndSet(true, false)) {
+        if (doHouseKeeping.get() && doHouseKeeping.compareAndSet(true, false)) {
             try {
                 List<ThreadMetrics> threadMetricsList = getThreadMetrics();
                 for (ThreadMetrics tm : threadMetricsList) {
@@ -170,8 +248,13 @@ public class ApmAgentContext {
                 unregisterMBean(objectName);
             }
             objectNameMap.clear();
-            methodMetricsMap.clear();
+            synchronized (this) {
+                methodMetricsMap.clear();
+                methodMetricsById = new MethodMetrics[methodMetricsById.length];
+            }
             threadMetricsMap.clear();
+            // threads drop their cached thread metrics when they see the new generation
+            generation.incrementAndGet();
         }
     }
 
@@ -340,7 +423,13 @@ public class ApmAgentContext {
     }
 
     private void remove(MethodDescription methodDescription) {
-        methodMetricsMap.remove(methodDescription.getFullMethodName());
+        synchronized (this) {
+            methodMetricsMap.remove(methodDescription.getFullMethodName());
+            int methodId = methodRegistry.findId(methodDescription.getFullMethodName());
+            if (methodId >= 0 && methodId < methodMetricsById.length) {
+                methodMetricsById[methodId] = null;
+            }
+        }
         for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
             threadMetrics.remove(methodDescription.getFullMethodName());
         }
@@ -0,0 +1,267 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A histogram of durations in nanoseconds which records into log-linear buckets (16 buckets per power
+ * of two, so values are kept to within about 6%) without allocating or locking.
+ * <p/>
+ * The buckets are striped by thread so that threads recording the same method concurrently rarely
+ * update the same counters; the stripes are merged when the histogram is read.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicReferenceArray<Stripe> stripes;
+    private final int mask;
+
+    /**
+     * @param stripes the number of stripes which is rounded up to a power of two
+     */
+    public LatencyHistogram(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        if (stripes <= 1) {
+            size = 1;
+        }
+        this.stripes = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            return;
+        }
+        int index = (int) Thread.currentThread().getId() & mask;
+        Stripe stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new Stripe());
+            stripe = stripes.get(index);
+        }
+        stripe.record(value);
+    }
+
+    public long getCount() {
+        long answer = 0;
+        for (int i = 0; i <= mask; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe != null) {
+                answer += stripe.count.get();
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the sum of all the recorded values
+     */
+    public long getTotal() {
+        long answer = 0;
+        for (int i = 0; i <= mask; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe != null) {
+                answer += stripe.total.get();
+            }
+        }
+        return answer;
+    }
+
+    public long getMin() {
+        long answer = Long.MAX_VALUE;
+        for (int i = 0; i <= mask; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe != null) {
+                answer = Math.min(answer, stripe.min.get());
+            }
+        }
+        return answer == Long.MAX_VALUE ? 0 : answer;
+    }
+
+    public long getMax() {
+        long answer = 0;
+        for (int i = 0; i <= mask; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe != null) {
+                answer = Math.max(answer, stripe.max.get());
+            }
+        }
+        return answer;
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count > 0 ? (double) getTotal() / count : 0;
+    }
+
+    /**
+     * Merges the stripes into a snapshot of the bucket counts
+     */
+    public Snapshot getSnapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i <= mask; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe != null) {
+                for (int j = 0; j < BUCKETS; j++) {
+                    long value = stripe.counts.get(j);
+                    counts[j] += value;
+                    count += value;
+                }
+            }
+        }
+        return new Snapshot(counts, count, getMin(), getMax());
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the value in the middle of the range of values of the given bucket
+     */
+    static long bucketValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + subBucket) << shift) + ((1L << shift) >> 1);
+    }
+
+    private static final class Stripe {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            counts.incrementAndGet(bucketIndex(value));
+            count.incrementAndGet();
+            total.addAndGet(value);
+            long current;
+            while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+            }
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            }
+        }
+    }
+
+    /**
+     * The merged bucket counts of a histogram at a point in time
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long min;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long min, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.min = min;
+            this.max = max;
+        }
+
+        public long size() {
+            return count;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            if (count == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    sum += (double) bucketValue(i) * counts[i];
+                }
+            }
+            return sum / count;
+        }
+
+        public double getStdDev() {
+            if (count <= 1) {
+                return 0;
+            }
+            double mean = getMean();
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    double diff = bucketValue(i) - mean;
+                    sum += diff * diff * counts[i];
+                }
+            }
+            return Math.sqrt(sum / (count - 1));
+        }
+
+        /**
+         * Returns the value at the given quantile (between 0 and 1) clamped to the recorded min and max
+         */
+        public double getValue(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            if (rank < 1) {
+                rank = 1;
+            }
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.max(min, Math.min(max, bucketValue(i)));
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Returns up to the given number of values spread evenly over the recorded distribution
+         */
+        public long[] getValues(int limit) {
+            int size = (int) Math.min(count, limit);
+            long[] answer = new long[size];
+            for (int i = 0; i < size; i++) {
+                answer[i] = (long) getValue((i + 0.5) / size);
+            }
+            return answer;
+        }
+    }
+}
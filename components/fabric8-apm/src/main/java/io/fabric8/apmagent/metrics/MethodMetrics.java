@@ -15,7 +15,7 @@
  */
 package io.fabric8.apmagent.metrics;
 
-import com.codahale.metrics.Timer;
+import com.codahale.metrics.Meter;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -25,7 +25,10 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class MethodMetrics {
-    protected final Timer timer;
+    private static final int VALUES_LIMIT = 1028;
+
+    protected final Meter meter;
+    protected final LatencyHistogram histogram;
     private final String name;
     private final double rateFactor;
     private final double durationFactor;
@@ -38,8 +41,19 @@ public class MethodMetrics {
      * @param name - the fully qualified method name
      */
     public MethodMetrics(String name) {
+        this(name, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name    - the fully qualified method name
+     * @param stripes - the number of threads expected to update these metrics concurrently
+     */
+    public MethodMetrics(String name, int stripes) {
         this.name = name;
-        this.timer = new Timer();
+        this.meter = new Meter();
+        this.histogram = new LatencyHistogram(Math.min(stripes, 8));
 
         this.rateFactor = TimeUnit.SECONDS.toSeconds(1);
         this.durationFactor = 1.0 / TimeUnit.MILLISECONDS.toNanos(1);
@@ -58,72 +72,72 @@ public class MethodMetrics {
     }
 
     public long getCount() {
-        return timer.getCount();
+        return histogram.getCount();
     }
 
     public double getMeanRate() {
-        return timer.getMeanRate() * rateFactor;
+        return meter.getMeanRate() * rateFactor;
     }
 
     public double getOneMinuteRate() {
-        return timer.getOneMinuteRate() * rateFactor;
+        return meter.getOneMinuteRate() * rateFactor;
     }
 
     public double getFiveMinuteRate() {
-        return timer.getFiveMinuteRate() * rateFactor;
+        return meter.getFiveMinuteRate() * rateFactor;
     }
 
     public double getFifteenMinuteRate() {
-        return timer.getFifteenMinuteRate() * rateFactor;
+        return meter.getFifteenMinuteRate() * rateFactor;
     }
 
     public double getMin() {
-        return timer.getSnapshot().getMin() * durationFactor;
+        return histogram.getMin() * durationFactor;
     }
 
     public double getMax() {
-        return timer.getSnapshot().getMax() * durationFactor;
+        return histogram.getMax() * durationFactor;
     }
 
     public double getMean() {
-        return timer.getSnapshot().getMean() * durationFactor;
+        return histogram.getMean() * durationFactor;
     }
 
     public double getStdDev() {
-        return timer.getSnapshot().getStdDev() * durationFactor;
+        return histogram.getSnapshot().getStdDev() * durationFactor;
     }
 
     public double get50thPercentile() {
-        return timer.getSnapshot().getMedian() * durationFactor;
+        return histogram.getSnapshot().getValue(0.5) * durationFactor;
     }
 
     public double get75thPercentile() {
-        return timer.getSnapshot().get75thPercentile() * durationFactor;
+        return histogram.getSnapshot().getValue(0.75) * durationFactor;
     }
 
     public double get95thPercentile() {
-        return timer.getSnapshot().get95thPercentile() * durationFactor;
+        return histogram.getSnapshot().getValue(0.95) * durationFactor;
     }
 
     public double get98thPercentile() {
-        return timer.getSnapshot().get98thPercentile() * durationFactor;
+        return histogram.getSnapshot().getValue(0.98) * durationFactor;
     }
 
     public double get99thPercentile() {
-        return timer.getSnapshot().get99thPercentile() * durationFactor;
+        return histogram.getSnapshot().getValue(0.99) * durationFactor;
     }
 
     public double get999thPercentile() {
-        return timer.getSnapshot().get999thPercentile() * durationFactor;
+        return histogram.getSnapshot().getValue(0.999) * durationFactor;
     }
 
     /**
-     * average amount of time for a method multiplied by the number of times called
+     * the total amount of time spent in a method (the average time multiplied by the number of times called)
      *
      * @return estimated load
      */
     public double getLoad() {
-        return timer.getSnapshot().size() * getMean();
+        return histogram.getTotal() * durationFactor;
     }
 
     public int getPercentage() {
@@ -135,12 +149,16 @@ public class MethodMetrics {
     }
 
     public long[] values() {
-        return timer.getSnapshot().getValues();
+        return histogram.getSnapshot().getValues(VALUES_LIMIT);
     }
 
+    /**
+     * Records a call of the method which took the given number of nanoseconds
+     */
     public void update(long elapsed) {
         if (elapsed >= 0) {
-            timer.update(elapsed, TimeUnit.NANOSECONDS);
+            meter.mark();
+            histogram.record(elapsed);
         }
     }
 
@@ -0,0 +1,71 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns a stable integer id to every full method name, so instrumented methods can pass
+ * the id instead of the name and their metrics can be found by an array lookup.
+ * Ids are never reused, so code instrumented with an id stays valid for the lifetime of the agent.
+ */
+public class MethodRegistry {
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private int size;
+
+    /**
+     * Returns the id of the method, assigning a new one if the method has not been seen before
+     */
+    public int getId(String fullMethodName) {
+        Integer id = ids.get(fullMethodName);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(fullMethodName);
+            if (id == null) {
+                String[] array = names;
+                if (size == array.length) {
+                    array = Arrays.copyOf(array, array.length * 2);
+                }
+                array[size] = fullMethodName;
+                names = array;
+                id = size++;
+                ids.put(fullMethodName, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Returns the id of the method or -1 if the method has no id
+     */
+    public int findId(String fullMethodName) {
+        Integer id = ids.get(fullMethodName);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the full method name of the id or null if the id is unknown
+     */
+    public String getName(int id) {
+        String[] array = names;
+        return id >= 0 && id < array.length ? array[id] : null;
+    }
+}
@@ -20,23 +20,36 @@ import io.fabric8.apmagent.ApmConfiguration;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * The method metrics of a single thread. The metrics are indexed by method id and the
+ * calls in progress are kept on a stack of primitive method ids and start times, so that
+ * entering and exiting a method does not allocate once the thread has seen the method.
+ */
 public class ThreadMetrics {
-    private final AtomicReference<ThreadContextMethodMetricsStack> methodStackRef;
     private final ApmAgentContext apmAgentContext;
+    private final int generation;
     private final ThreadInfo threadInfo;
     private final Thread thread;
     private final ThreadMXBean threadMXBean;
     private final ConcurrentMap<String, ThreadContextMethodMetrics> methods = new ConcurrentHashMap<>();
     private final MonitoredThreadMethodMetrics monitoredThreadMethodMetrics;
+    private volatile ThreadContextMethodMetrics[] methodsById = new ThreadContextMethodMetrics[64];
+    private int[] stackIds = new int[16];
+    private long[] stackStartTimes = new long[16];
+    private int stackDepth;
 
     public ThreadMetrics(ApmAgentContext apmAgentContext, Thread thread) {
-        this.methodStackRef = new AtomicReference<>(new ThreadContextMethodMetricsStack());
+        this(apmAgentContext, thread, 0);
+    }
+
+    ThreadMetrics(ApmAgentContext apmAgentContext, Thread thread, int generation) {
         this.apmAgentContext = apmAgentContext;
+        this.generation = generation;
         this.threadMXBean = ManagementFactory.getThreadMXBean();
         this.threadInfo = threadMXBean.getThreadInfo(thread.getId());
         this.thread = thread;
@@ -53,6 +66,10 @@ public class ThreadMetrics {
         return thread;
     }
 
+    int getGeneration() {
+        return generation;
+    }
+
     public boolean isDead() {
         return !thread.isAlive();
     }
@@ -73,29 +90,78 @@ public class ThreadMetrics {
         monitoredThreadMethodMetrics.setMonitorSize(monitorSize);
     }
 
-    public void enter(String methodName, boolean alwaysActive) {
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
+    /**
+     * Called by the thread (or the sampler of the thread) when it enters the method with the given id
+     */
+    public void enter(int methodId, boolean alwaysActive) {
+        ThreadContextMethodMetrics threadContextMethodMetrics = getMethodMetrics(methodId);
+        if (alwaysActive || threadContextMethodMetrics.isActive()) {
+            int depth = stackDepth;
+            if (depth == stackIds.length) {
+                stackIds = Arrays.copyOf(stackIds, depth * 2);
+                stackStartTimes = Arrays.copyOf(stackStartTimes, depth * 2);
+            }
+            stackIds[depth] = methodId;
+            stackStartTimes[depth] = System.nanoTime();
+            stackDepth = depth + 1;
+        }
+    }
+
+    /**
+     * Called by the thread (or the sampler of the thread) when it exits the method with the given id
+     *
+     * @return the elapsed time of the call in nanoseconds or -1 if the call was not timed
+     */
+    public long exit(int methodId, boolean alwaysActive) {
+        ThreadContextMethodMetrics[] array = methodsById;
+        ThreadContextMethodMetrics threadContextMethodMetrics = methodId < array.length ? array[methodId] : null;
         if (threadContextMethodMetrics == null) {
-            threadContextMethodMetrics = new ThreadContextMethodMetrics(thread, this.methodStackRef, methodName);
-            threadContextMethodMetrics.setActive(apmAgentContext.isMonitorByDefault());
-            methods.putIfAbsent(methodName, threadContextMethodMetrics);
+            //something weird happened reset the stack
+            stackDepth = 0;
+            return -1;
         }
         if (alwaysActive || threadContextMethodMetrics.isActive()) {
-            threadContextMethodMetrics.onEnter();
+            long now = System.nanoTime();
+            for (int i = stackDepth - 1; i >= 0; i--) {
+                if (stackIds[i] == methodId) {
+                    //the exit could have jumped a few methods if its
+                    //caused by an exception
+                    for (int j = stackDepth - 1; j > i; j--) {
+                        ThreadContextMethodMetrics skipped = stackIds[j] < array.length ? array[stackIds[j]] : null;
+                        if (skipped != null) {
+                            skipped.update(now - stackStartTimes[j]);
+                        }
+                    }
+                    stackDepth = i;
+                    long elapsed = now - stackStartTimes[i];
+                    threadContextMethodMetrics.update(elapsed);
+                    return elapsed;
+                }
+            }
         }
+        return -1;
     }
 
-    public long exit(String methodName, boolean alwaysActive) {
-        long result = -1;
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
-        if (threadContextMethodMetrics != null) {
-            if (alwaysActive || threadContextMethodMetrics.isActive()) {
-                result = threadContextMethodMetrics.onExit();
-            }
-        } else {
-            //something weird happended reset the stack
-            methodStackRef.set(new ThreadContextMethodMetricsStack());
+    private ThreadContextMethodMetrics getMethodMetrics(int methodId) {
+        ThreadContextMethodMetrics[] array = methodsById;
+        ThreadContextMethodMetrics result = methodId < array.length ? array[methodId] : null;
+        return result != null ? result : createMethodMetrics(methodId);
+    }
+
+    private synchronized ThreadContextMethodMetrics createMethodMetrics(int methodId) {
+        ThreadContextMethodMetrics[] array = methodsById;
+        if (methodId >= array.length) {
+            array = Arrays.copyOf(array, Math.max(array.length * 2, methodId + 1));
         }
+        ThreadContextMethodMetrics result = array[methodId];
+        if (result == null) {
+            String methodName = apmAgentContext.getMethodName(methodId);
+            result = new ThreadContextMethodMetrics(thread, methodName);
+            result.setActive(apmAgentContext.isMonitorByDefault());
+            methods.put(methodName, result);
+            array[methodId] = result;
+        }
+        methodsById = array;
         return result;
     }
 
@@ -107,8 +173,17 @@ public class ThreadMetrics {
         monitoredThreadMethodMetrics.destroy();
     }
 
-    public ThreadContextMethodMetrics remove(String fullMethodName) {
+    public synchronized ThreadContextMethodMetrics remove(String fullMethodName) {
         ThreadContextMethodMetrics result = methods.remove(fullMethodName);
+        if (result != null) {
+            ThreadContextMethodMetrics[] array = methodsById;
+            for (int i = 0; i < array.length; i++) {
+                if (array[i] == result) {
+                    array[i] = null;
+                }
+            }
+            methodsById = array;
+        }
         return result;
     }
 
@@ -124,6 +199,10 @@ public class ThreadMetrics {
         }
     }
 
+    ThreadContextMethodMetrics getThreadContextMethodMetrics(String methodName) {
+        return methods.get(methodName);
+    }
+
     public boolean isActive(String methodName) {
         ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
         return threadContextMethodMetrics != null ? threadContextMethodMetrics.isActive() : false;
@@ -0,0 +1,212 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.strategy.sampling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact call tree aggregating the sampled stacks of threads, which can be exported
+ * in the collapsed stack format used to render flame graphs.
+ * <p/>
+ * Nodes are kept in parallel primitive arrays and frames are interned, so the tree only
+ * grows with the number of distinct call paths. Once the tree holds the maximum number
+ * of nodes, samples are attributed to the deepest existing node of their path instead.
+ * Stacks which were cut at the maximum sampling depth are rooted under a synthetic
+ * {@link #TRUNCATED_FRAME} so that their partial paths are not merged with complete ones.
+ */
+public class CallTree {
+    public static final String TRUNCATED_FRAME = "[truncated]";
+    private static final int ROOT = 0;
+
+    private final int maxNodes;
+    private final Map<String, Integer> frameIds = new HashMap<>();
+    private final List<String> frames = new ArrayList<>();
+    private int[] nodeFrames;
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private long[] selfCounts;
+    private int size;
+    private int truncatedFrameId;
+    private long sampleCount;
+    private long truncatedCount;
+
+    public CallTree(int maxNodes) {
+        this.maxNodes = Math.max(maxNodes, 1);
+        reset();
+    }
+
+    /**
+     * Adds a sampled stack, ordered from the top of the stack (as returned by {@link Thread#getStackTrace()})
+     */
+    public void addSample(StackTraceElement[] stackTrace) {
+        addSample(stackTrace, false);
+    }
+
+    /**
+     * Adds a sampled stack, ordered from the top of the stack (as returned by {@link Thread#getStackTrace()})
+     *
+     * @param truncated true if the bottom of the stack is missing because it was deeper than the sampling depth
+     */
+    public synchronized void addSample(StackTraceElement[] stackTrace, boolean truncated) {
+        sampleCount++;
+        int node = ROOT;
+        if (truncated) {
+            node = findChild(ROOT, truncatedFrameId);
+            if (node < 0) {
+                if (size == maxNodes) {
+                    truncatedCount++;
+                    selfCounts[ROOT]++;
+                    return;
+                }
+                node = addChild(ROOT, truncatedFrameId);
+            }
+        }
+        for (int i = stackTrace.length - 1; i >= 0; i--) {
+            StackTraceElement element = stackTrace[i];
+            int child = findChild(node, element);
+            if (child < 0) {
+                if (size == maxNodes) {
+                    truncatedCount++;
+                    break;
+                }
+                child = addChild(node, frameId(element.getClassName() + "." + element.getMethodName()));
+            }
+            node = child;
+        }
+        selfCounts[node]++;
+    }
+
+    public synchronized long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Returns the number of samples which were cut short because the tree was full
+     */
+    public synchronized long getTruncatedCount() {
+        return truncatedCount;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    public synchronized int getNodeCount() {
+        return size;
+    }
+
+    public synchronized void reset() {
+        int capacity = Math.min(maxNodes, 1024);
+        nodeFrames = new int[capacity];
+        parents = new int[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        selfCounts = new long[capacity];
+        frameIds.clear();
+        frames.clear();
+        truncatedFrameId = frameId(TRUNCATED_FRAME);
+        nodeFrames[ROOT] = -1;
+        parents[ROOT] = -1;
+        firstChildren[ROOT] = -1;
+        nextSiblings[ROOT] = -1;
+        size = 1;
+        sampleCount = 0;
+        truncatedCount = 0;
+    }
+
+    /**
+     * Returns one line per sampled call path, with the frames from the bottom of the stack
+     * separated by semicolons followed by the number of samples, e.g. <code>Thread.run;Foo.bar 42</code>
+     */
+    public synchronized String toCollapsedStacks() {
+        StringBuilder builder = new StringBuilder();
+        int[] path = new int[16];
+        for (int node = 1; node < size; node++) {
+            if (selfCounts[node] == 0) {
+                continue;
+            }
+            int depth = 0;
+            for (int n = node; n != ROOT; n = parents[n]) {
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                }
+                path[depth++] = nodeFrames[n];
+            }
+            for (int i = depth - 1; i >= 0; i--) {
+                builder.append(frames.get(path[i]));
+                builder.append(i > 0 ? ';' : ' ');
+            }
+            builder.append(selfCounts[node]).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private int findChild(int node, StackTraceElement element) {
+        String className = element.getClassName();
+        String methodName = element.getMethodName();
+        for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+            String frame = frames.get(nodeFrames[child]);
+            if (frame.length() == className.length() + methodName.length() + 1
+                    && frame.startsWith(className) && frame.endsWith(methodName)
+                    && frame.charAt(className.length()) == '.') {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    private int findChild(int node, int frameId) {
+        for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+            if (nodeFrames[child] == frameId) {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    private int addChild(int node, int frameId) {
+        if (size == nodeFrames.length) {
+            int capacity = Math.min(maxNodes, size * 2);
+            nodeFrames = Arrays.copyOf(nodeFrames, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            selfCounts = Arrays.copyOf(selfCounts, capacity);
+        }
+        int child = size++;
+        nodeFrames[child] = frameId;
+        parents[child] = node;
+        firstChildren[child] = -1;
+        nextSiblings[child] = firstChildren[node];
+        firstChildren[node] = child;
+        return child;
+    }
+
+    private int frameId(String frame) {
+        Integer id = frameIds.get(frame);
+        if (id == null) {
+            id = frames.size();
+            frames.add(frame);
+            frameIds.put(frame, id);
+        }
+        return id;
+    }
+}
@@ -22,48 +22,71 @@ import io.fabric8.apmagent.metrics.ApmAgentContext;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Samples the stacks of the selected threads every sampling interval. Only the threads whose
+ * thread group or name matches the configured sampling thread groups are sampled, and only the
+ * top frames of their stacks are taken, instead of dumping every stack of every thread with
+ * {@link Thread#getAllStackTraces()}, which keeps the time the JVM spends at safepoints for
+ * sampling short. The samples are aggregated into a bounded {@link CallTree}.
+ */
 public class SamplingStrategy implements Strategy, Runnable {
     private static final long CLEANUP_INTERVAL = 1000;
     private ApmAgentContext context;
     private ApmConfiguration configuration;
     private AtomicBoolean initialized = new AtomicBoolean();
     private AtomicBoolean started = new AtomicBoolean();
-    private Thread samplingThread;
-    private final Map<Long, String> currentMethods = new HashMap<>();
+    private volatile Thread samplingThread;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final ConcurrentMap<Long, String> currentMethods = new ConcurrentHashMap<>();
+    private final Map<Long, Thread> sampledThreads = new HashMap<>();
+    private long[] sampledThreadIds = new long[0];
+    private volatile boolean threadsChanged;
+    private volatile CallTree callTree;
+    private volatile long samplingTime;
+    private volatile long samplingStartTime;
 
     public SamplingStrategy(ApmAgentContext context) {
         this.context = context;
         this.configuration = context.getConfiguration();
+        this.callTree = new CallTree(configuration.getSamplingMaxNodes());
     }
 
     @Override
     public void initialize() throws Exception {
         if (initialized.compareAndSet(false, true)) {
-            samplingThread = new Thread(this, "Fabric8-ApmAgent-SamplingStrategy");
-            samplingThread.setDaemon(true);
             configuration.addChangeListener(this);
         }
     }
 
     @Override
-    public void start() throws Exception {
+    public synchronized void start() throws Exception {
         if (started.compareAndSet(false, true)) {
             initialize();
+            samplingThread = new Thread(this, "Fabric8-ApmAgent-SamplingStrategy");
+            samplingThread.setDaemon(true);
             samplingThread.start();
         }
 
     }
 
     @Override
-    public void stop() throws Exception {
+    public synchronized void stop() throws Exception {
         if (started.compareAndSet(true, false)) {
-
+            Thread thread = samplingThread;
+            samplingThread = null;
+            // wait for the sampling thread to exit so that a restart never runs two of them
+            if (thread != null && thread != Thread.currentThread()) {
+                thread.interrupt();
+                thread.join();
+            }
         }
     }
 
@@ -71,31 +94,68 @@ public class SamplingStrategy implements Strategy, Runnable {
     public void shutDown() throws Exception {
         if (initialized.compareAndSet(true, false)) {
             configuration.removeChangeListener(this);
-            samplingThread = null;
         }
     }
 
     @Override
     public void configurationChanged() {
+        threadsChanged = true;
+        // the tree is bounded when it is created, so it has to be replaced to change its size
+        if (Math.max(configuration.getSamplingMaxNodes(), 1) != callTree.getMaxNodes()) {
+            reset();
+        }
+    }
 
+    public CallTree getCallTree() {
+        return callTree;
+    }
+
+    /**
+     * Returns the percentage of the elapsed time since the last reset spent taking samples
+     */
+    public double getSamplingOverhead() {
+        long elapsed = System.nanoTime() - samplingStartTime;
+        return elapsed > 0 ? (samplingTime * 100.0) / elapsed : 0;
+    }
+
+    /**
+     * Discards the samples taken so far
+     */
+    public void reset() {
+        callTree = new CallTree(configuration.getSamplingMaxNodes());
+        samplingTime = 0;
+        samplingStartTime = System.nanoTime();
     }
 
     @Override
     public void run() {
         long lastTime = 0;
+        samplingStartTime = System.nanoTime();
         while (started.get()) {
             try {
-                for (Map.Entry<Thread, StackTraceElement[]> threadEntry : Thread.getAllStackTraces().entrySet()) {
-                    if (threadEntry.getKey() != Thread.currentThread()) {
-                        addMeasurement(threadEntry.getKey(), threadEntry.getValue());
-                    }
-                }
                 long currentTime = System.currentTimeMillis();
-
-                if ((currentTime - lastTime) > CLEANUP_INTERVAL) {
+                if (threadsChanged || (currentTime - lastTime) > CLEANUP_INTERVAL) {
+                    threadsChanged = false;
+                    selectThreads();
                     cleanup();
                     lastTime = currentTime;
                 }
+
+                long start = System.nanoTime();
+                int depth = configuration.getSamplingStackDepth();
+                ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(sampledThreadIds, depth);
+                CallTree tree = callTree;
+                for (ThreadInfo threadInfo : threadInfos) {
+                    if (threadInfo != null) {
+                        StackTraceElement[] stackTrace = threadInfo.getStackTrace();
+                        if (stackTrace.length > 0) {
+                            tree.addSample(stackTrace, stackTrace.length >= depth);
+                            addMeasurement(sampledThreads.get(threadInfo.getThreadId()), stackTrace);
+                        }
+                    }
+                }
+                samplingTime += System.nanoTime() - start;
+
                 Thread.sleep(configuration.getSamplingInterval());
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -103,23 +163,54 @@ public class SamplingStrategy implements Strategy, Runnable {
         }
     }
 
-    private void cleanup() {
-        List<ThreadInfo> removeList = null;
-        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
-        for (Long id : currentMethods.keySet()) {
-            ThreadInfo threadInfo = threadMXBean.getThreadInfo(id);
-            if (threadInfo != null) {
-                if (threadInfo.getThreadState() == Thread.State.TERMINATED) {
-                    if (removeList == null) {
-                        removeList = new ArrayList<>();
-                    }
-                    removeList.add(threadInfo);
-                }
+    /**
+     * Finds the live threads to sample by walking the thread groups, which unlike dumping
+     * the threads does not need to stop them
+     */
+    private void selectThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        Thread[] threads = new Thread[root.activeCount() + 16];
+        int count = root.enumerate(threads, true);
+        String[] prefixes = getThreadGroupPrefixes();
+
+        sampledThreads.clear();
+        long[] ids = new long[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            Thread thread = threads[i];
+            if (thread != Thread.currentThread() && thread.isAlive() && isSampled(thread, prefixes)) {
+                sampledThreads.put(thread.getId(), thread);
+                ids[size++] = thread.getId();
             }
         }
-        if (removeList != null) {
-            for (ThreadInfo threadInfo : removeList) {
-                currentMethods.remove(threadInfo.getThreadId());
+        sampledThreadIds = Arrays.copyOf(ids, size);
+    }
+
+    private String[] getThreadGroupPrefixes() {
+        String threadGroups = configuration.getSamplingThreadGroups().trim();
+        return threadGroups.isEmpty() ? new String[0] : threadGroups.split("\\s*,\\s*");
+    }
+
+    private boolean isSampled(Thread thread, String[] prefixes) {
+        if (prefixes.length == 0) {
+            return true;
+        }
+        ThreadGroup threadGroup = thread.getThreadGroup();
+        for (String prefix : prefixes) {
+            if (thread.getName().startsWith(prefix) || (threadGroup != null && threadGroup.getName().startsWith(prefix))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void cleanup() {
+        for (Iterator<Long> iterator = currentMethods.keySet().iterator(); iterator.hasNext(); ) {
+            if (!sampledThreads.containsKey(iterator.next())) {
+                iterator.remove();
             }
         }
     }
@@ -128,8 +219,8 @@ public class SamplingStrategy implements Strategy, Runnable {
         if (thread != null && thread.isAlive() &&
                 stackTraceElements != null && stackTraceElements.length > 0) {
             StackTraceElement topOfStack = stackTraceElements[0];
-            String currentMethod = getCurrentMethod(topOfStack);
             if (configuration.isAudit(topOfStack.getClassName(), topOfStack.getMethodName())) {
+                String currentMethod = getCurrentMethod(topOfStack);
                 String lastMethod = currentMethods.put(thread.getId(), currentMethod);
                 if (lastMethod == null) {
                     context.enterMethod(thread, currentMethod, true);
@@ -148,4 +239,3 @@ public class SamplingStrategy implements Strategy, Runnable {
         return stringBuilder.toString();
     }
 }
-
@@ -0,0 +1,143 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testSmallValuesAreExact() {
+        for (int value = 0; value < 16; value++) {
+            assertEquals(value, LatencyHistogram.bucketIndex(value));
+            assertEquals(value, LatencyHistogram.bucketValue(value));
+        }
+    }
+
+    @Test
+    public void testBucketsAreLogLinear() {
+        int previous = LatencyHistogram.bucketIndex(0);
+        for (long value = 1; value < 1 << 16; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue("bucket of " + value, index == previous || index == previous + 1);
+            previous = index;
+        }
+        // 16 buckets per power of two
+        assertEquals(16, LatencyHistogram.bucketIndex(2048) - LatencyHistogram.bucketIndex(1024));
+        assertEquals(16, LatencyHistogram.bucketIndex(1L << 30) - LatencyHistogram.bucketIndex(1L << 29));
+    }
+
+    @Test
+    public void testBucketValuesAreWithinRelativeError() {
+        for (long value = 16; value < 1L << 40; value = value * 5 / 4 + 3) {
+            long bucketValue = LatencyHistogram.bucketValue(LatencyHistogram.bucketIndex(value));
+            assertTrue(bucketValue + " should be within 1/16 of " + value, Math.abs(bucketValue - value) <= value / 16);
+            assertEquals("the value of a bucket maps back to the bucket",
+                    LatencyHistogram.bucketIndex(value), LatencyHistogram.bucketIndex(bucketValue));
+        }
+    }
+
+    @Test
+    public void testHugeValuesGoToTheLastBucket() {
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+        LatencyHistogram histogram = new LatencyHistogram(1);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(1, histogram.getCount());
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+    }
+
+    @Test
+    public void testStatisticsAndPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram(4);
+        long total = 0;
+        for (int i = 1; i <= 1000; i++) {
+            long value = TimeUnit.MICROSECONDS.toNanos(i);
+            histogram.record(value);
+            total += value;
+        }
+        histogram.record(-1);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(total, histogram.getTotal());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1), histogram.getMin());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getMax());
+        assertEquals(total / 1000.0, histogram.getMean(), 0.0);
+
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(1000, snapshot.size());
+        assertNear(TimeUnit.MICROSECONDS.toNanos(500), snapshot.getValue(0.5));
+        assertNear(TimeUnit.MICROSECONDS.toNanos(990), snapshot.getValue(0.99));
+        assertNear(histogram.getMax(), snapshot.getValue(1.0));
+        assertTrue("percentiles are clamped to the max", snapshot.getValue(1.0) <= histogram.getMax());
+        assertNear(histogram.getMin(), snapshot.getValue(0.0));
+        assertTrue("percentiles are clamped to the min", snapshot.getValue(0.0) >= histogram.getMin());
+        assertNear(histogram.getMean(), snapshot.getMean());
+        assertNear(Math.sqrt(1000.0 * 1001 / 12) * 1000, snapshot.getStdDev());
+
+        long[] values = snapshot.getValues(100);
+        assertEquals(100, values.length);
+        for (int i = 1; i < values.length; i++) {
+            assertTrue(values[i - 1] <= values[i]);
+        }
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram(2);
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+        assertEquals(0.0, histogram.getSnapshot().getValue(0.99), 0.0);
+        assertEquals(0, histogram.getSnapshot().getValues(10).length);
+    }
+
+    @Test
+    public void testStripesAreMerged() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram(8);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long value = TimeUnit.MILLISECONDS.toNanos(t + 1);
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        histogram.record(value);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, histogram.getCount());
+        assertEquals(4000, histogram.getSnapshot().size());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10) * 1000, histogram.getTotal());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), histogram.getMin());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(4), histogram.getMax());
+        assertNear(TimeUnit.MILLISECONDS.toNanos(2), histogram.getSnapshot().getValue(0.5));
+    }
+
+    private static void assertNear(double expected, double actual) {
+        assertTrue(actual + " should be within 1/16 of " + expected, Math.abs(actual - expected) <= expected / 16);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MethodRegistryTest {
+
+    @Test
+    public void testIdsAreAssignedInOrderAndStable() {
+        MethodRegistry registry = new MethodRegistry();
+        assertEquals(0, registry.getId("a.B@foo"));
+        assertEquals(1, registry.getId("a.B@bar"));
+        assertEquals(0, registry.getId("a.B@foo"));
+        assertEquals(0, registry.findId("a.B@foo"));
+        assertEquals(1, registry.findId("a.B@bar"));
+        assertEquals("a.B@foo", registry.getName(0));
+        assertEquals("a.B@bar", registry.getName(1));
+    }
+
+    @Test
+    public void testUnknownMethods() {
+        MethodRegistry registry = new MethodRegistry();
+        assertEquals(-1, registry.findId("a.B@foo"));
+        assertNull(registry.getName(-1));
+        assertNull(registry.getName(0));
+        assertNull(registry.getName(Integer.MAX_VALUE));
+        assertEquals("findId should not assign an id", 0, registry.getId("a.B@foo"));
+    }
+
+    @Test
+    public void testRegistryGrows() {
+        MethodRegistry registry = new MethodRegistry();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, registry.getId("a.B@method" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("a.B@method" + i, registry.getName(i));
+            assertEquals(i, registry.findId("a.B@method" + i));
+        }
+    }
+
+    @Test
+    public void testConcurrentRegistrationAssignsOneIdPerMethod() throws Exception {
+        final MethodRegistry registry = new MethodRegistry();
+        final int methods = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(new Callable<int[]>() {
+                    @Override
+                    public int[] call() throws Exception {
+                        int[] ids = new int[methods];
+                        for (int i = 0; i < methods; i++) {
+                            ids[i] = registry.getId("a.B@method" + i);
+                        }
+                        return ids;
+                    }
+                }));
+            }
+            int[] expected = futures.get(0).get();
+            for (Future<int[]> future : futures) {
+                int[] ids = future.get();
+                for (int i = 0; i < methods; i++) {
+                    assertEquals(expected[i], ids[i]);
+                    assertEquals("a.B@method" + i, registry.getName(ids[i]));
+                }
+            }
+            assertEquals(-1, registry.findId("a.B@method" + methods));
+            assertNull("ids should be dense", registry.getName(methods));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
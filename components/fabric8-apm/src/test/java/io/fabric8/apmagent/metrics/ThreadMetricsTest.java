@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import io.fabric8.apmagent.ApmAgent;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadMetricsTest {
+
+    private ApmAgentContext context;
+    private ThreadMetrics threadMetrics;
+    private int outer;
+    private int middle;
+    private int inner;
+
+    @Before
+    public void setUp() {
+        context = new ApmAgentContext(ApmAgent.INSTANCE);
+        threadMetrics = new ThreadMetrics(context, Thread.currentThread());
+        outer = context.getMethodId("test.Foo@outer");
+        middle = context.getMethodId("test.Foo@middle");
+        inner = context.getMethodId("test.Foo@inner");
+    }
+
+    @Test
+    public void testNestedCalls() {
+        threadMetrics.enter(outer, false);
+        threadMetrics.enter(inner, false);
+        long innerElapsed = threadMetrics.exit(inner, false);
+        long outerElapsed = threadMetrics.exit(outer, false);
+
+        assertTrue(innerElapsed >= 0);
+        assertTrue("the outer call includes the inner one", outerElapsed >= innerElapsed);
+        assertEquals(1, count("test.Foo@outer"));
+        assertEquals(1, count("test.Foo@inner"));
+    }
+
+    @Test
+    public void testExitUnwindsSkippedCalls() {
+        // an exception thrown by inner and caught by outer skips the exits of inner and middle
+        threadMetrics.enter(outer, false);
+        threadMetrics.enter(middle, false);
+        threadMetrics.enter(inner, false);
+        assertTrue(threadMetrics.exit(outer, false) >= 0);
+
+        assertEquals(1, count("test.Foo@outer"));
+        assertEquals(1, count("test.Foo@middle"));
+        assertEquals(1, count("test.Foo@inner"));
+        assertEquals("the stack should be empty", -1, threadMetrics.exit(inner, false));
+        assertEquals(1, count("test.Foo@inner"));
+    }
+
+    @Test
+    public void testRecursiveCallsGrowTheStack() {
+        for (int i = 0; i < 100; i++) {
+            threadMetrics.enter(middle, false);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue(threadMetrics.exit(middle, false) >= 0);
+        }
+        assertEquals(100, count("test.Foo@middle"));
+        assertEquals(-1, threadMetrics.exit(middle, false));
+    }
+
+    @Test
+    public void testExitOfUnknownMethodResetsTheStack() {
+        threadMetrics.enter(outer, false);
+        assertEquals(-1, threadMetrics.exit(context.getMethodId("test.Foo@unknown"), false));
+        assertEquals(-1, threadMetrics.exit(outer, false));
+        assertEquals(0, count("test.Foo@outer"));
+    }
+
+    @Test
+    public void testInactiveMethodsAreOnlyTimedWhenAlwaysActive() {
+        threadMetrics.enter(inner, false);
+        threadMetrics.exit(inner, false);
+        threadMetrics.setActive("test.Foo@inner", false);
+
+        threadMetrics.enter(outer, false);
+        threadMetrics.enter(inner, false);
+        assertEquals(-1, threadMetrics.exit(inner, false));
+        assertTrue(threadMetrics.exit(outer, false) >= 0);
+        assertEquals(1, count("test.Foo@inner"));
+
+        threadMetrics.enter(inner, true);
+        assertTrue(threadMetrics.exit(inner, true) >= 0);
+        assertEquals(2, count("test.Foo@inner"));
+    }
+
+    private long count(String methodName) {
+        ThreadContextMethodMetrics methodMetrics = threadMetrics.getThreadContextMethodMetrics(methodName);
+        return methodMetrics != null ? methodMetrics.getCount() : 0;
+    }
+}
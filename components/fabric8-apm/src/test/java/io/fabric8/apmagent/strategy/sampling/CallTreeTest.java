@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.strategy.sampling;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class CallTreeTest {
+
+    @Test
+    public void testAggregatesSamples() throws Exception {
+        CallTree tree = new CallTree(100);
+        tree.addSample(stack("Foo.bar", "Foo.run", "Thread.run"));
+        tree.addSample(stack("Foo.bar", "Foo.run", "Thread.run"));
+        tree.addSample(stack("Foo.baz", "Foo.run", "Thread.run"));
+        tree.addSample(stack("Foo.run", "Thread.run"));
+
+        assertEquals(4, tree.getSampleCount());
+        assertEquals(5, tree.getNodeCount());
+        assertCollapsedStacks(tree,
+                "Thread.run;Foo.run;Foo.bar 2",
+                "Thread.run;Foo.run;Foo.baz 1",
+                "Thread.run;Foo.run 1");
+    }
+
+    @Test
+    public void testTruncatedStacksHaveSyntheticRoot() throws Exception {
+        CallTree tree = new CallTree(100);
+        tree.addSample(stack("Foo.bar", "Foo.run", "Thread.run"));
+        // the same top frames cut at the sampling depth are not merged with the complete stack
+        tree.addSample(stack("Foo.bar", "Foo.run"), true);
+        tree.addSample(stack("Foo.bar", "Foo.run"), true);
+        tree.addSample(stack("Foo.run"), true);
+
+        assertEquals(4, tree.getSampleCount());
+        assertEquals(0, tree.getTruncatedCount());
+        assertCollapsedStacks(tree,
+                "Thread.run;Foo.run;Foo.bar 1",
+                "[truncated];Foo.run;Foo.bar 2",
+                "[truncated];Foo.run 1");
+    }
+
+    @Test
+    public void testStopsGrowingAtMaxNodes() throws Exception {
+        // the root and three frames
+        CallTree tree = new CallTree(4);
+        tree.addSample(stack("Foo.bar", "Foo.run", "Thread.run"));
+        tree.addSample(stack("Foo.baz", "Foo.run", "Thread.run"));
+        tree.addSample(stack("Foo.bar", "Foo.run", "Thread.run"));
+        tree.addSample(stack("Foo.bar", "Foo.run"), true);
+
+        assertEquals(4, tree.getNodeCount());
+        assertEquals(4, tree.getSampleCount());
+        assertEquals(2, tree.getTruncatedCount());
+        assertCollapsedStacks(tree,
+                "Thread.run;Foo.run;Foo.bar 2",
+                "Thread.run;Foo.run 1");
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        CallTree tree = new CallTree(4);
+        tree.addSample(stack("Foo.bar", "Foo.run", "Thread.run"));
+        tree.addSample(stack("Foo.baz", "Foo.run", "Thread.run"));
+        tree.reset();
+
+        assertEquals(0, tree.getSampleCount());
+        assertEquals(0, tree.getTruncatedCount());
+        assertEquals(1, tree.getNodeCount());
+        assertEquals("", tree.toCollapsedStacks());
+
+        tree.addSample(stack("Foo.baz", "Foo.run", "Thread.run"));
+        assertCollapsedStacks(tree, "Thread.run;Foo.run;Foo.baz 1");
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() throws Exception {
+        CallTree tree = new CallTree(5000);
+        for (int i = 0; i < 3000; i++) {
+            tree.addSample(stack("Foo.method" + i, "Thread.run"));
+        }
+        assertEquals(3002, tree.getNodeCount());
+        assertEquals(3000, tree.toCollapsedStacks().split("\n").length);
+    }
+
+    private static StackTraceElement[] stack(String... frames) {
+        StackTraceElement[] answer = new StackTraceElement[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            int dot = frames[i].lastIndexOf('.');
+            answer[i] = new StackTraceElement(frames[i].substring(0, dot), frames[i].substring(dot + 1), null, -1);
+        }
+        return answer;
+    }
+
+    private static void assertCollapsedStacks(CallTree tree, String... lines) {
+        Set<String> expected = new HashSet<>(Arrays.asList(lines));
+        Set<String> actual = new HashSet<>(Arrays.asList(tree.toCollapsedStacks().split("\n")));
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.strategy.sampling;
+
+import io.fabric8.apmagent.ApmAgent;
+import io.fabric8.apmagent.ApmConfiguration;
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SamplingStrategyTest {
+
+    private static final String SAMPLING_THREAD_NAME = "Fabric8-ApmAgent-SamplingStrategy";
+
+    private ApmConfiguration configuration;
+    private SamplingStrategy strategy;
+    private String threadGroups;
+    private int stackDepth;
+    private int maxNodes;
+
+    @Before
+    public void setUp() throws Exception {
+        ApmAgentContext context = new ApmAgentContext(ApmAgent.INSTANCE);
+        configuration = context.getConfiguration();
+        threadGroups = configuration.getSamplingThreadGroups();
+        stackDepth = configuration.getSamplingStackDepth();
+        maxNodes = configuration.getSamplingMaxNodes();
+        strategy = new SamplingStrategy(context);
+        strategy.initialize();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        strategy.stop();
+        strategy.shutDown();
+        configuration.setSamplingThreadGroups(threadGroups);
+        configuration.setSamplingStackDepth(stackDepth);
+        configuration.setSamplingMaxNodes(maxNodes);
+    }
+
+    @Test
+    public void testRestartRunsOneSamplingThread() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            strategy.start();
+            strategy.stop();
+        }
+        assertEquals(0, countSamplingThreads());
+
+        strategy.start();
+        assertEquals(1, countSamplingThreads());
+        strategy.stop();
+        assertEquals(0, countSamplingThreads());
+    }
+
+    @Test
+    public void testMaxNodesChangeReplacesCallTree() throws Exception {
+        configuration.setSamplingMaxNodes(10);
+        assertEquals(10, strategy.getCallTree().getMaxNodes());
+
+        CallTree tree = strategy.getCallTree();
+        configuration.setSamplingStackDepth(stackDepth + 1);
+        assertTrue("the tree is kept when its size does not change", tree == strategy.getCallTree());
+    }
+
+    @Test
+    public void testDeepStacksAreRootedUnderTruncatedFrame() throws Exception {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread thread = new Thread("SamplingStrategyTest-deep") {
+            @Override
+            public void run() {
+                recurse(32);
+            }
+
+            private void recurse(int depth) {
+                if (depth > 0) {
+                    recurse(depth - 1);
+                } else {
+                    running.countDown();
+                    try {
+                        done.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        running.await();
+        try {
+            configuration.setSamplingThreadGroups("SamplingStrategyTest-deep");
+            configuration.setSamplingStackDepth(8);
+            strategy.start();
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (strategy.getCallTree().getSampleCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            strategy.stop();
+
+            String stacks = strategy.getCallTree().toCollapsedStacks();
+            assertTrue(stacks, stacks.length() > 0);
+            for (String line : stacks.split("\n")) {
+                assertTrue(line, line.startsWith(CallTree.TRUNCATED_FRAME + ";"));
+                assertEquals(line, 9, line.split(";").length);
+            }
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private static int countSamplingThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(SAMPLING_THREAD_NAME) && thread.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.groups;
+
+import java.io.IOException;
+
+/**
+ * Encodes the state of the members of a group into the data of their znodes.
+ * <p/>
+ * Implementations must be able to decode the data written by the other codecs of the
+ * groups, so that members using different codecs can still see each other.
+ */
+public interface NodeStateCodec {
+
+    byte[] encode(Object state) throws IOException;
+
+    <T> T decode(byte[] data, Class<T> clazz) throws IOException;
+
+}
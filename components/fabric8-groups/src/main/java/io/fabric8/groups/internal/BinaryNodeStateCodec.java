@@ -0,0 +1,265 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.groups.internal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.groups.NodeStateCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary codec for the state of the members of a group.
+ * <p/>
+ * The state is mapped with the Jackson annotations of its class, like the JSON codec, and then
+ * written as tagged values with length prefixed strings and variable length integers. The field
+ * names of the state are written once and then referenced by index, which keeps the repeated
+ * objects of a state (such as lists of endpoints) small. Decoding does not need to tokenize text,
+ * and data which is not binary is decoded as JSON, so members using either codec can be read.
+ */
+public class BinaryNodeStateCodec implements NodeStateCodec {
+
+    private static final byte[] MAGIC = {(byte) 0xFA, (byte) 0xB8, 1};
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int INTEGER = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+    private static final int ARRAY = 6;
+    private static final int OBJECT = 7;
+    private static final int DECIMAL = 8;
+
+    private final ObjectMapper mapper;
+
+    public BinaryNodeStateCodec(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Returns true if the data was encoded by this codec
+     */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= MAGIC.length
+                && data[0] == MAGIC[0] && data[1] == MAGIC[1] && data[2] == MAGIC[2];
+    }
+
+    @Override
+    public byte[] encode(Object state) throws IOException {
+        Writer writer = new Writer();
+        writer.out.write(MAGIC);
+        writer.write(mapper.valueToTree(state));
+        return writer.out.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] data, Class<T> clazz) throws IOException {
+        if (!isBinary(data)) {
+            return mapper.readValue(data, clazz);
+        }
+        Reader reader = new Reader(data, MAGIC.length);
+        JsonNode node = reader.read();
+        return mapper.treeToValue(node, clazz);
+    }
+
+    private static final class Writer {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        private final Map<String, Integer> names = new HashMap<String, Integer>();
+
+        void write(JsonNode node) throws IOException {
+            if (node == null || node.isNull() || node.isMissingNode()) {
+                out.write(NULL);
+            } else if (node.isBoolean()) {
+                out.write(node.booleanValue() ? TRUE : FALSE);
+            } else if (node.isIntegralNumber() && node.canConvertToLong()) {
+                out.write(INTEGER);
+                writeVarLong((node.longValue() << 1) ^ (node.longValue() >> 63));
+            } else if (node.isBigDecimal() || node.isBigInteger()) {
+                out.write(DECIMAL);
+                writeString(node.asText());
+            } else if (node.isNumber()) {
+                out.write(DOUBLE);
+                long bits = Double.doubleToLongBits(node.doubleValue());
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) (bits >>> shift));
+                }
+            } else if (node.isArray()) {
+                out.write(ARRAY);
+                writeVarLong(node.size());
+                for (JsonNode element : node) {
+                    write(element);
+                }
+            } else if (node.isObject()) {
+                out.write(OBJECT);
+                writeVarLong(node.size());
+                for (Iterator<Map.Entry<String, JsonNode>> iterator = node.fields(); iterator.hasNext(); ) {
+                    Map.Entry<String, JsonNode> field = iterator.next();
+                    writeName(field.getKey());
+                    write(field.getValue());
+                }
+            } else {
+                out.write(STRING);
+                writeString(node.asText());
+            }
+        }
+
+        /**
+         * Writes the index of a name seen before plus one, or zero followed by the name
+         */
+        private void writeName(String name) throws IOException {
+            Integer index = names.get(name);
+            if (index != null) {
+                writeVarLong(index + 1);
+            } else {
+                names.put(name, names.size());
+                writeVarLong(0);
+                writeString(name);
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarLong(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+
+    private static final class Reader {
+        private final JsonNodeFactory factory = JsonNodeFactory.instance;
+        private final List<String> names = new ArrayList<String>();
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        JsonNode read() throws IOException {
+            int tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return factory.nullNode();
+                case FALSE:
+                    return factory.booleanNode(false);
+                case TRUE:
+                    return factory.booleanNode(true);
+                case INTEGER:
+                    long zigzag = readVarLong();
+                    long value = (zigzag >>> 1) ^ -(zigzag & 1);
+                    return value == (int) value ? factory.numberNode((int) value) : factory.numberNode(value);
+                case DOUBLE:
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits = (bits << 8) | readByte();
+                    }
+                    return factory.numberNode(Double.longBitsToDouble(bits));
+                case STRING:
+                    return factory.textNode(readString());
+                case DECIMAL:
+                    return factory.numberNode(new BigDecimal(readString()));
+                case ARRAY:
+                    int size = readLength();
+                    ArrayNode array = factory.arrayNode();
+                    for (int i = 0; i < size; i++) {
+                        array.add(read());
+                    }
+                    return array;
+                case OBJECT:
+                    int fields = readLength();
+                    ObjectNode object = factory.objectNode();
+                    for (int i = 0; i < fields; i++) {
+                        String name = readName();
+                        object.set(name, read());
+                    }
+                    return object;
+                default:
+                    throw new IOException("Invalid tag " + tag + " at " + (position - 1));
+            }
+        }
+
+        private String readName() throws IOException {
+            int index = readLength();
+            if (index == 0) {
+                String name = readString();
+                names.add(name);
+                return name;
+            }
+            if (index > names.size()) {
+                throw new IOException("Invalid field name reference " + index + " at " + position);
+            }
+            return names.get(index - 1);
+        }
+
+        private String readString() throws IOException {
+            int length = readLength();
+            if (position + length > data.length) {
+                throw new IOException("Truncated string at " + position);
+            }
+            String answer = new String(data, position, length, UTF_8);
+            position += length;
+            return answer;
+        }
+
+        private int readLength() throws IOException {
+            long length = readVarLong();
+            if (length < 0 || length > data.length) {
+                throw new IOException("Invalid length " + length + " at " + position);
+            }
+            return (int) length;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid variable length integer at " + position);
+        }
+
+        private int readByte() throws IOException {
+            if (position >= data.length) {
+                throw new IOException("Unexpected end of data");
+            }
+            return data[position++] & 0xFF;
+        }
+    }
+}
@@ -34,6 +34,11 @@ class EventOperation implements Operation
         cache.callListeners(event);
     }
 
+    GroupListener.GroupEvent getEvent()
+    {
+        return event;
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,46 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.groups.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.groups.NodeStateCodec;
+
+import java.io.IOException;
+
+/**
+ * The default codec which encodes the state as JSON.
+ */
+public class JsonNodeStateCodec implements NodeStateCodec {
+
+    private final ObjectMapper mapper;
+
+    public JsonNodeStateCodec(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public byte[] encode(Object state) throws IOException {
+        return mapper.writeValueAsBytes(state);
+    }
+
+    @Override
+    public <T> T decode(byte[] data, Class<T> clazz) throws IOException {
+        if (BinaryNodeStateCodec.isBinary(data)) {
+            return new BinaryNodeStateCodec(mapper).decode(data, clazz);
+        }
+        return mapper.readValue(data, clazz);
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.groups.internal;
+
+import io.fabric8.groups.GroupListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A FIFO queue of the operations of a {@link ZooKeeperGroup} which coalesces equal operations.
+ * <p/>
+ * An operation equal to one which is still pending replaces it in place: the pending operation
+ * has not run yet so it will still observe the state the new operation was offered for. This
+ * collapses storms of refreshes and data reloads into a single operation each, in constant time,
+ * without moving the pending operation behind newer ones.
+ * <p/>
+ * Events are delivered in the order they were offered. A CHANGED event is only coalesced with a
+ * pending CHANGED event when no other event was queued after it, so it can never be delivered
+ * ahead of a DISCONNECTED or CONNECTED event that was offered before it.
+ */
+class OperationQueue
+{
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final LinkedHashMap<Operation, Operation> operations = new LinkedHashMap<Operation, Operation>();
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong taken = new AtomicLong();
+    private volatile int maxSize;
+    // the most recently offered event which is still pending
+    private EventOperation lastEvent;
+
+    /**
+     * Adds the operation to the queue
+     *
+     * @return false if the operation was coalesced with a pending one
+     */
+    boolean offer(Operation operation)
+    {
+        offered.incrementAndGet();
+        lock.lock();
+        try
+        {
+            if ( operation instanceof EventOperation )
+            {
+                EventOperation event = (EventOperation)operation;
+                if ( isChanged(event) && lastEvent != null && isChanged(lastEvent) )
+                {
+                    coalesced.incrementAndGet();
+                    return false;
+                }
+                lastEvent = event;
+            }
+            Operation previous = operations.put(operation, operation);
+            if ( previous != null )
+            {
+                coalesced.incrementAndGet();
+                return false;
+            }
+            if ( operations.size() > maxSize )
+            {
+                maxSize = operations.size();
+            }
+            notEmpty.signal();
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the oldest operation from the queue, waiting for one if the queue is empty
+     */
+    Operation take() throws InterruptedException
+    {
+        lock.lockInterruptibly();
+        try
+        {
+            while ( operations.isEmpty() )
+            {
+                notEmpty.await();
+            }
+            Iterator<Map.Entry<Operation, Operation>> iterator = operations.entrySet().iterator();
+            Operation operation = iterator.next().getValue();
+            iterator.remove();
+            if ( operation == lastEvent )
+            {
+                lastEvent = null;
+            }
+            taken.incrementAndGet();
+            return operation;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isChanged(EventOperation event)
+    {
+        return event.getEvent() == GroupListener.GroupEvent.CHANGED;
+    }
+
+    int size()
+    {
+        lock.lock();
+        try
+        {
+            return operations.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the largest number of operations which were pending at once
+     */
+    int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    long getOfferedCount()
+    {
+        return offered.get();
+    }
+
+    long getCoalescedCount()
+    {
+        return coalesced.get();
+    }
+
+    long getTakenCount()
+    {
+        return taken.get();
+    }
+}
@@ -20,9 +20,10 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.listen.ListenerContainer;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
@@ -37,21 +38,22 @@ import org.apache.zookeeper.data.Stat;
 import io.fabric8.groups.Group;
 import io.fabric8.groups.GroupListener;
 import io.fabric8.groups.NodeState;
+import io.fabric8.groups.NodeStateCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>A utility that attempts to keep all data from all children of a ZK path locally cached. This class
@@ -66,6 +68,13 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
 
     static public final ObjectMapper MAPPER = new ObjectMapper();
 
+    /**
+     * The system property which selects the default codec of the groups, either <code>json</code> or <code>binary</code>
+     */
+    static public final String CODEC_PROPERTY = "fabric8.groups.codec";
+
+    static private final int DECODE_CACHE_SIZE = 64;
+
     static private final Logger LOG = LoggerFactory.getLogger(ZooKeeperGroup.class);
 
     private final Class<T> clazz;
@@ -73,15 +82,27 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     private final String path;
     private final ExecutorService executorService;
     private final EnsurePath ensurePath;
-    private final BlockingQueue<Operation> operations = new LinkedBlockingQueue<Operation>();
+    private final OperationQueue operations = new OperationQueue();
+    private final AtomicLong eventCount = new AtomicLong();
+    private volatile long startTime;
     private final ListenerContainer<GroupListener<T>> listeners = new ListenerContainer<GroupListener<T>>();
-    protected final ConcurrentMap<String, ChildData<T>> currentData = Maps.newConcurrentMap();
+    // sorted by path, which is the sequence order of the members
+    protected final ConcurrentMap<String, ChildData<T>> currentData = new ConcurrentSkipListMap<String, ChildData<T>>();
+    private final AtomicLong currentDataVersion = new AtomicLong();
+    private volatile MembersSnapshot<T> membersSnapshot;
     private final AtomicBoolean started = new AtomicBoolean();
     private final AtomicBoolean connected = new AtomicBoolean();
     protected final SequenceComparator sequenceComparator = new SequenceComparator();
 
     private volatile String id;
     private volatile T state;
+    private volatile NodeStateCodec codec = createDefaultCodec();
+    private final Map<DataKey, T> decodeCache = new LinkedHashMap<DataKey, T>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<DataKey, T> eldest) {
+            return size() > DECODE_CACHE_SIZE;
+        }
+    };
 
     private final Watcher childrenWatcher = new Watcher() {
         @Override
@@ -148,6 +169,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
      */
     public void start() {
         if (started.compareAndSet(false, true)) {
+            startTime = System.currentTimeMillis();
             connected.set(client.getZookeeperClient().isConnected());
             client.getConnectionStateListenable().addListener(connectionStateListener);
             executorService.execute(new Runnable() {
@@ -190,6 +212,28 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
         }
     }
 
+    public NodeStateCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Sets the codec used to encode the state of this member, the data of the other members is
+     * decoded whichever of the built in codecs they use
+     */
+    public void setCodec(NodeStateCodec codec) {
+        this.codec = codec;
+        synchronized (decodeCache) {
+            decodeCache.clear();
+        }
+    }
+
+    static NodeStateCodec createDefaultCodec() {
+        if ("binary".equalsIgnoreCase(System.getProperty(CODEC_PROPERTY))) {
+            return new BinaryNodeStateCodec(MAPPER);
+        }
+        return new JsonNodeStateCodec(MAPPER);
+    }
+
     @Override
     public boolean isConnected() {
         return connected.get();
@@ -268,41 +312,48 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
 
     @Override
     public Map<String, T> members() {
-        List<ChildData<T>> children = new ArrayList<ChildData<T>>(currentData.values());
-        Collections.sort(children, sequenceComparator);
-        Map<String, T> members = new LinkedHashMap<String, T>();
-        for (ChildData<T> child : children) {
-            members.put(child.getPath(), child.getNode());
-        }
-        return members;
+        return getMembersSnapshot().members;
     }
 
     @Override
     public boolean isMaster() {
-        List<ChildData<T>> children = new ArrayList<ChildData<T>>(currentData.values());
-        Collections.sort(children, sequenceComparator);
-        return (!children.isEmpty() && children.get(0).getPath().equals(id));
+        ChildData<T> master = getMembersSnapshot().master;
+        return master != null && master.getPath().equals(id);
     }
 
     @Override
     public T master() {
-        List<ChildData<T>> children = new ArrayList<ChildData<T>>(currentData.values());
-        Collections.sort(children, sequenceComparator);
-        if (children.isEmpty()) {
-            return null;
-        }
-        return children.get(0).getNode();
+        ChildData<T> master = getMembersSnapshot().master;
+        return master != null ? master.getNode() : null;
     }
 
     @Override
     public List<T> slaves() {
-        List<ChildData<T>> children = new ArrayList<ChildData<T>>(currentData.values());
-        Collections.sort(children, sequenceComparator);
-        List<T> slaves = new ArrayList<T>();
-        for (int i = 1; i < children.size(); i++) {
-            slaves.add(children.get(i).getNode());
+        return getMembersSnapshot().slaves;
+    }
+
+    /**
+     * Returns the current children sorted by sequence
+     */
+    protected List<ChildData<T>> sortedChildren() {
+        return getMembersSnapshot().children;
+    }
+
+    /**
+     * Returns the snapshot of the members, which is only rebuilt after the current data has changed
+     */
+    private MembersSnapshot<T> getMembersSnapshot() {
+        long version = currentDataVersion.get();
+        MembersSnapshot<T> snapshot = membersSnapshot;
+        if (snapshot == null || snapshot.version != version) {
+            snapshot = new MembersSnapshot<T>(version, currentData.values());
+            membersSnapshot = snapshot;
         }
-        return slaves;
+        return snapshot;
+    }
+
+    private void currentDataChanged() {
+        currentDataVersion.incrementAndGet();
     }
 
     @Override
@@ -360,6 +411,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     public void clearAndRefresh(boolean force, boolean sync) throws Exception {
         RefreshMode mode = force ? RefreshMode.FORCE_GET_DATA_AND_STAT : RefreshMode.STANDARD;
         currentData.clear();
+        currentDataChanged();
         if (sync) {
             this.refresh(mode);
         } else {
@@ -373,6 +425,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
      */
     public void clear() {
         currentData.clear();
+        currentDataChanged();
     }
 
     enum RefreshMode {
@@ -393,6 +446,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     }
 
     void callListeners(final GroupListener.GroupEvent event) {
+        eventCount.incrementAndGet();
         listeners.forEach
                 (
                         new Function<GroupListener<T>, Void>() {
@@ -428,6 +482,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     protected void remove(String fullPath) {
         ChildData data = currentData.remove(fullPath);
         if (data != null) {
+            currentDataChanged();
             offerOperation(new EventOperation(this, GroupListener.GroupEvent.CHANGED));
         }
     }
@@ -441,6 +496,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
             // node no longer exists - remove it
             currentData.remove(fullPath);
         }
+        currentDataChanged();
     }
 
     private void handleStateChange(ConnectionState newState) {
@@ -482,22 +538,68 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
             remove(fullPath);
         }
 
-        for (String name : children) {
-            String fullPath = ZKPaths.makePath(path, name);
-
+        List<String> loadPaths = new ArrayList<String>();
+        for (String fullPath : fullPaths) {
             if ((mode == RefreshMode.FORCE_GET_DATA_AND_STAT) || !currentData.containsKey(fullPath)) {
+                loadPaths.add(fullPath);
+            }
+        }
+        if (loadPaths.size() == 1) {
+            try {
+                getDataAndStat(loadPaths.get(0));
+            } catch (KeeperException.NoNodeException ignore) {}
+        } else if (!loadPaths.isEmpty()) {
+            getDataAndStat(loadPaths);
+        }
+    }
+
+    /**
+     * Issues the getData calls of all the paths at once and applies the data as the replies
+     * arrive, instead of waiting for each reply before sending the next request. Returns once
+     * all the replies have been applied, so members() is up to date after a refresh.
+     */
+    private void getDataAndStat(List<String> fullPaths) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(fullPaths.size());
+        BackgroundCallback callback = new BackgroundCallback() {
+            @Override
+            public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
                 try {
-                    getDataAndStat(fullPath);
-                } catch (KeeperException.NoNodeException ignore) {}
+                    int resultCode = event.getResultCode();
+                    if (resultCode == KeeperException.Code.OK.intValue()) {
+                        applyNewData(event.getPath(), resultCode, event.getStat(), event.getData());
+                    } else if (resultCode != KeeperException.Code.NONODE.intValue()) {
+                        handleException(KeeperException.create(KeeperException.Code.get(resultCode), event.getPath()));
+                    }
+                } catch (Exception e) {
+                    handleException(e);
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+        int issued = 0;
+        try {
+            for (String fullPath : fullPaths) {
+                client.getData().usingWatcher(dataWatcher).inBackground(callback).forPath(fullPath);
+                issued++;
+            }
+        } finally {
+            for (int i = issued; i < fullPaths.size(); i++) {
+                latch.countDown();
             }
         }
+        latch.await();
     }
 
     private void applyNewData(String fullPath, int resultCode, Stat stat, byte[] bytes) {
         if (resultCode == KeeperException.Code.OK.intValue()) {
             // otherwise - node must have dropped or something - we should be getting another event
-            ChildData<T> data = new ChildData<T>(fullPath, stat, bytes, decode(bytes));
-            ChildData<T> previousData = currentData.put(fullPath, data);
+            ChildData<T> previousData = currentData.get(fullPath);
+            // skip decoding the data again if the znode has not been modified since it was decoded
+            T node = previousData != null && isSameData(previousData.getStat(), stat) ? previousData.getNode() : decode(bytes);
+            ChildData<T> data = new ChildData<T>(fullPath, stat, bytes, node);
+            previousData = currentData.put(fullPath, data);
+            currentDataChanged();
             if (previousData == null || previousData.getStat().getVersion() != stat.getVersion()) {
                 offerOperation(new EventOperation(this, GroupListener.GroupEvent.CHANGED));
             }
@@ -517,36 +619,96 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
         }
     }
 
+    private static boolean isSameData(Stat previous, Stat stat) {
+        return previous.getCzxid() == stat.getCzxid() && previous.getMzxid() == stat.getMzxid()
+                && previous.getVersion() == stat.getVersion();
+    }
+
     private byte[] encode(T state) {
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            MAPPER.writeValue(baos, state);
-            return baos.toByteArray();
+            return codec.encode(state);
         } catch (IOException e) {
-            throw new IllegalStateException("Unable to decode data", e);
+            throw new IllegalStateException("Unable to encode data", e);
         }
     }
 
     private T decode(byte[] data) {
+        DataKey key = new DataKey(data);
+        synchronized (decodeCache) {
+            T node = decodeCache.get(key);
+            if (node != null) {
+                return node;
+            }
+        }
         try {
-            return MAPPER.readValue(data, clazz);
+            T node = codec.decode(data, clazz);
+            if (node != null) {
+                synchronized (decodeCache) {
+                    decodeCache.put(key, node);
+                }
+            }
+            return node;
         } catch (IOException e) {
             throw new IllegalStateException("Unable to decode data", e);
         }
     }
 
     private void offerOperation(Operation operation) {
-        operations.remove(operation);   // avoids herding for refresh operations
+        // coalesces with an equal pending operation which avoids herding for refresh operations
         operations.offer(operation);
     }
 
+    /**
+     * Returns the number of operations waiting to be processed by the group thread
+     */
+    public int getPendingOperations() {
+        return operations.size();
+    }
+
+    /**
+     * Returns the largest number of operations which were waiting to be processed at once
+     */
+    public int getMaxPendingOperations() {
+        return operations.getMaxSize();
+    }
+
+    public long getOfferedOperations() {
+        return operations.getOfferedCount();
+    }
+
+    /**
+     * Returns the number of operations which were dropped because an equal operation was pending
+     */
+    public long getCoalescedOperations() {
+        return operations.getCoalescedCount();
+    }
+
+    public long getProcessedOperations() {
+        return operations.getTakenCount();
+    }
+
+    /**
+     * Returns the number of events delivered to the listeners
+     */
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    /**
+     * Returns the average number of events per second delivered to the listeners since the group was started
+     */
+    public double getEventRate() {
+        long elapsed = System.currentTimeMillis() - startTime;
+        return startTime > 0 && elapsed > 0 ? eventCount.get() * 1000.0 / elapsed : 0;
+    }
+
     public static <T> Map<String, T> members(CuratorFramework curator, String path, Class<T> clazz) throws Exception {
         Map<String, T> map = new TreeMap<String, T>();
         List<String> nodes = curator.getChildren().forPath(path);
-        ObjectMapper mapper = new ObjectMapper();
+        NodeStateCodec codec = new JsonNodeStateCodec(new ObjectMapper());
         for (String node : nodes) {
             byte[] data = curator.getData().forPath(path + "/" + node);
-            T val = mapper.readValue(data, clazz);
+            T val = codec.decode(data, clazz);
             map.put(node, val);
         }
         return map;
@@ -555,4 +717,56 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     public String getId() {
         return id;
     }
+
+    /**
+     * The data of a znode used as the key of the decode cache
+     */
+    private static final class DataKey {
+        private final byte[] data;
+        private final int hashCode;
+
+        DataKey(byte[] data) {
+            this.data = data;
+            this.hashCode = Arrays.hashCode(data);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof DataKey && hashCode == ((DataKey) o).hashCode && Arrays.equals(data, ((DataKey) o).data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * An immutable view of the members sorted by sequence, so that the master and slaves
+     * queries don't need to copy and sort the current data on every call
+     */
+    private static final class MembersSnapshot<T> {
+        private final long version;
+        private final List<ChildData<T>> children;
+        private final ChildData<T> master;
+        private final Map<String, T> members;
+        private final List<T> slaves;
+
+        MembersSnapshot(long version, Collection<ChildData<T>> sortedChildren) {
+            this.version = version;
+            this.children = Collections.unmodifiableList(new ArrayList<ChildData<T>>(sortedChildren));
+            Map<String, T> members = new LinkedHashMap<String, T>();
+            List<T> slaves = new ArrayList<T>();
+            for (int i = 0; i < children.size(); i++) {
+                ChildData<T> child = children.get(i);
+                members.put(child.getPath(), child.getNode());
+                if (i > 0) {
+                    slaves.add(child.getNode());
+                }
+            }
+            this.master = children.isEmpty() ? null : children.get(0);
+            this.members = Collections.unmodifiableMap(members);
+            this.slaves = Collections.unmodifiableList(slaves);
+        }
+    }
 }
@@ -19,24 +19,44 @@ import org.apache.curator.framework.CuratorFramework;
 import io.fabric8.groups.Group;
 import io.fabric8.groups.GroupFactory;
 import io.fabric8.groups.NodeState;
+import io.fabric8.groups.NodeStateCodec;
 
 /**
  */
 public class ZooKeeperGroupFactory implements GroupFactory {
 
     private CuratorFramework curator;
+    private NodeStateCodec codec;
 
     public ZooKeeperGroupFactory(CuratorFramework curator) {
         this.curator = curator;
     }
 
+    public NodeStateCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Sets the codec of the groups created by this factory, if not set the groups use the default codec
+     */
+    public void setCodec(NodeStateCodec codec) {
+        this.codec = codec;
+    }
+
     @Override
     public <T extends NodeState> Group<T> createGroup(String path, Class<T> clazz) {
-        return new ZooKeeperGroup<T>(curator, path, clazz);
+        return configure(new ZooKeeperGroup<T>(curator, path, clazz));
     }
 
     @Override
     public <T extends NodeState> Group<T> createMultiGroup(String path, Class<T> clazz) {
-        return new ZooKeeperMultiGroup<T>(curator, path, clazz);
+        return configure(new ZooKeeperMultiGroup<T>(curator, path, clazz));
+    }
+
+    private <T extends NodeState> ZooKeeperGroup<T> configure(ZooKeeperGroup<T> group) {
+        if (codec != null) {
+            group.setCodec(codec);
+        }
+        return group;
     }
 }
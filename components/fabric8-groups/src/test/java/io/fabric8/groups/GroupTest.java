@@ -18,6 +18,7 @@ package io.fabric8.groups;
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -26,6 +27,7 @@ import io.fabric8.utils.AvailablePortFinder;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.retry.RetryNTimes;
+import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.server.NIOServerCnxnFactory;
 import org.apache.zookeeper.server.ServerConfig;
 import org.apache.zookeeper.server.ZooKeeperServer;
@@ -34,6 +36,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -221,6 +224,45 @@ public class GroupTest {
         cnxnFactory.join();
     }
 
+    @Test
+    public void testLoadManyMembers() throws Exception {
+        int port = AvailablePortFinder.getNextAvailable(3040);
+
+        NIOServerCnxnFactory cnxnFactory = startZooKeeper(port);
+
+        CuratorFramework curator = CuratorFrameworkFactory.builder()
+                .connectString("localhost:" + port)
+                .retryPolicy(new RetryNTimes(10, 100))
+                .build();
+        curator.start();
+        curator.getZookeeperClient().blockUntilConnectedOrTimedOut();
+        String groupNode =  "/singletons/test" + System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            curator.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL_SEQUENTIAL)
+                    .forPath(groupNode + "/0", ZooKeeperGroup.MAPPER.writeValueAsBytes(new NodeState("node" + i)));
+        }
+
+        ZooKeeperGroup<NodeState> group = new ZooKeeperGroup<NodeState>(curator, groupNode, NodeState.class);
+        group.add(listener);
+        group.start();
+        group.clearAndRefresh(true, true);
+
+        Map<String, NodeState> members = group.members();
+        assertEquals(100, members.size());
+        assertEquals("node0", group.master().id);
+        List<NodeState> slaves = group.slaves();
+        assertEquals(99, slaves.size());
+        for (int i = 0; i < slaves.size(); i++) {
+            assertEquals("node" + (i + 1), slaves.get(i).id);
+        }
+        assertFalse(group.isMaster());
+
+        group.close();
+        curator.close();
+        cnxnFactory.shutdown();
+        cnxnFactory.join();
+    }
+
     private class GroupCondition implements GroupListener<NodeState> {
         private CountDownLatch connected = new CountDownLatch(1);
         private CountDownLatch master = new CountDownLatch(1);
@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.groups.internal;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.fabric8.groups.NodeState;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryNodeStateCodecTest {
+
+    private final BinaryNodeStateCodec binaryCodec = new BinaryNodeStateCodec(ZooKeeperGroup.MAPPER);
+    private final JsonNodeStateCodec jsonCodec = new JsonNodeStateCodec(ZooKeeperGroup.MAPPER);
+
+    public static class ServiceNodeState extends NodeState {
+        @JsonProperty
+        public String[] services;
+        @JsonProperty
+        public ServiceNodeState[] children;
+        @JsonProperty
+        public long weight;
+        @JsonProperty
+        public double load;
+        @JsonProperty
+        public boolean enabled;
+        @JsonProperty
+        public String comment;
+
+        public ServiceNodeState() {
+        }
+
+        public ServiceNodeState(String id, String container) {
+            super(id, container);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ServiceNodeState state = createState();
+
+        byte[] data = binaryCodec.encode(state);
+        assertTrue(BinaryNodeStateCodec.isBinary(data));
+        assertTrue(data.length < jsonCodec.encode(state).length);
+
+        ServiceNodeState decoded = binaryCodec.decode(data, ServiceNodeState.class);
+        assertEquals("broker", decoded.id);
+        assertEquals("container1", decoded.container);
+        assertArrayEquals(state.services, decoded.services);
+        assertEquals(-1234567890123L, decoded.weight);
+        assertEquals(0.75, decoded.load, 0);
+        assertTrue(decoded.enabled);
+        assertNull(decoded.comment);
+        assertEquals(2, decoded.children.length);
+        assertEquals("childé1", decoded.children[1].id);
+    }
+
+    @Test
+    public void testDecodesEitherFormat() throws Exception {
+        ServiceNodeState state = createState();
+
+        byte[] json = jsonCodec.encode(state);
+        assertFalse(BinaryNodeStateCodec.isBinary(json));
+        assertEquals("broker", binaryCodec.decode(json, ServiceNodeState.class).id);
+        assertEquals("broker", jsonCodec.decode(binaryCodec.encode(state), ServiceNodeState.class).id);
+    }
+
+    private ServiceNodeState createState() {
+        ServiceNodeState state = new ServiceNodeState("broker", "container1");
+        state.services = new String[]{"tcp://10.0.0.1:61616", "tcp://10.0.0.2:61616"};
+        state.children = new ServiceNodeState[]{new ServiceNodeState("child0", "container2"), new ServiceNodeState("childé1", "container3")};
+        state.weight = -1234567890123L;
+        state.load = 0.75;
+        state.enabled = true;
+        return state;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.groups.internal;
+
+import io.fabric8.groups.GroupListener.GroupEvent;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OperationQueueTest {
+
+    private final OperationQueue queue = new OperationQueue();
+
+    @Test
+    public void testEqualOperationsAreCoalescedInPlace() throws Exception {
+        RefreshOperation refresh = new RefreshOperation(null, ZooKeeperGroup.RefreshMode.STANDARD);
+        GetDataOperation getData = new GetDataOperation(null, "/group/0001");
+
+        assertTrue(queue.offer(refresh));
+        assertTrue(queue.offer(getData));
+        RefreshOperation newer = new RefreshOperation(null, ZooKeeperGroup.RefreshMode.STANDARD);
+        assertFalse(queue.offer(newer));
+        assertTrue(queue.offer(new RefreshOperation(null, ZooKeeperGroup.RefreshMode.FORCE_GET_DATA_AND_STAT)));
+
+        assertEquals(3, queue.size());
+        assertEquals(1, queue.getCoalescedCount());
+        assertEquals(4, queue.getOfferedCount());
+        // the newer operation takes the slot of the pending one
+        assertSame(newer, queue.take());
+        assertSame(getData, queue.take());
+    }
+
+    @Test
+    public void testConsecutiveChangedEventsAreCoalesced() throws Exception {
+        assertTrue(queue.offer(event(GroupEvent.CHANGED)));
+        assertFalse(queue.offer(event(GroupEvent.CHANGED)));
+        assertFalse(queue.offer(event(GroupEvent.CHANGED)));
+
+        assertEquals(Arrays.asList(GroupEvent.CHANGED), takeEvents());
+        assertEquals(2, queue.getCoalescedCount());
+    }
+
+    @Test
+    public void testChangedIsNotMergedAheadOfConnectionEvents() throws Exception {
+        queue.offer(event(GroupEvent.CHANGED));
+        queue.offer(event(GroupEvent.DISCONNECTED));
+        queue.offer(new RefreshOperation(null, ZooKeeperGroup.RefreshMode.FORCE_GET_DATA_AND_STAT));
+        queue.offer(event(GroupEvent.CONNECTED));
+        queue.offer(event(GroupEvent.CHANGED));
+
+        assertEquals(Arrays.asList(GroupEvent.CHANGED, GroupEvent.DISCONNECTED, GroupEvent.CONNECTED, GroupEvent.CHANGED), takeEvents());
+        assertEquals(0, queue.getCoalescedCount());
+    }
+
+    @Test
+    public void testConnectionEventsAreNeverCoalesced() throws Exception {
+        queue.offer(event(GroupEvent.DISCONNECTED));
+        queue.offer(event(GroupEvent.CONNECTED));
+        queue.offer(event(GroupEvent.DISCONNECTED));
+        queue.offer(event(GroupEvent.CONNECTED));
+
+        assertEquals(Arrays.asList(GroupEvent.DISCONNECTED, GroupEvent.CONNECTED, GroupEvent.DISCONNECTED, GroupEvent.CONNECTED), takeEvents());
+    }
+
+    @Test
+    public void testChangedIsQueuedAgainOnceThePendingOneWasTaken() throws Exception {
+        queue.offer(event(GroupEvent.CHANGED));
+        assertEquals(GroupEvent.CHANGED, ((EventOperation) queue.take()).getEvent());
+
+        assertTrue(queue.offer(event(GroupEvent.CHANGED)));
+        assertEquals(1, queue.size());
+        assertEquals(2, queue.getTakenCount() + queue.size());
+    }
+
+    @Test
+    public void testChangedIsMergedAcrossOtherOperations() throws Exception {
+        queue.offer(event(GroupEvent.CONNECTED));
+        queue.offer(event(GroupEvent.CHANGED));
+        queue.offer(new GetDataOperation(null, "/group/0001"));
+        assertFalse(queue.offer(event(GroupEvent.CHANGED)));
+
+        assertEquals(Arrays.asList(GroupEvent.CONNECTED, GroupEvent.CHANGED), takeEvents());
+    }
+
+    private EventOperation event(GroupEvent event) {
+        return new EventOperation(null, event);
+    }
+
+    private List<GroupEvent> takeEvents() throws InterruptedException {
+        List<GroupEvent> events = new ArrayList<GroupEvent>();
+        while (queue.size() > 0) {
+            Operation operation = queue.take();
+            if (operation instanceof EventOperation) {
+                events.add(((EventOperation) operation).getEvent());
+            }
+        }
+        return events;
+    }
+}
@@ -23,18 +23,57 @@ import java.util.Date;
 public class CallDetailRecord {
 
 	private final long callTimeNanos;
+	private final long serviceTimeNanos;
+	private final String route;
+	private final String serviceUrl;
 	private final String error;
 	private final Date callDate;
 	public CallDetailRecord(long callTimeNanos, String error) {
+		this(callTimeNanos, -1, null, null, error);
+	}
+
+	/**
+	 * @param callTimeNanos the time from the arrival of the request to the last byte of the response
+	 * @param serviceTimeNanos the time the back end service took to reply, or -1 if unknown
+	 * @param route the URI prefix of the mapping rule which matched the request
+	 * @param serviceUrl the URL of the back end service the request was proxied to
+	 * @param error the error of the call or null if it succeeded
+	 */
+	public CallDetailRecord(long callTimeNanos, long serviceTimeNanos, String route, String serviceUrl, String error) {
 		super();
 		this.callDate = new Date();
 		this.callTimeNanos = callTimeNanos;
+		this.serviceTimeNanos = serviceTimeNanos;
+		this.route = route;
+		this.serviceUrl = serviceUrl;
 		this.error = error;
 	}
 
 	public long getCallTimeNanos() {
 		return callTimeNanos;
 	}
+
+	/**
+	 * Returns the time from sending the request to the back end service to receiving the last byte
+	 * of its response, or -1 if unknown
+	 */
+	public long getServiceTimeNanos() {
+		return serviceTimeNanos;
+	}
+
+	/**
+	 * Returns the URI prefix of the mapping rule which matched the request, or null if unknown
+	 */
+	public String getRoute() {
+		return route;
+	}
+
+	/**
+	 * Returns the URL of the back end service the request was proxied to, or null if unknown
+	 */
+	public String getServiceUrl() {
+		return serviceUrl;
+	}
 	
 	public String getError() {
 		return error;
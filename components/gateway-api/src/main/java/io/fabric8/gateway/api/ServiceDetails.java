@@ -15,6 +15,7 @@
  */
 package io.fabric8.gateway.api;
 
+import java.net.URI;
 import java.util.List;
 
 /**
@@ -29,6 +30,11 @@ public interface ServiceDetails {
 
     List<String> getServices();
 
+    /**
+     * Returns the parsed URIs of the non empty and valid {@link #getServices()} URLs
+     */
+    List<URI> getServiceURIs();
+
     String getBundleName();
 
     String getBundleVersion();
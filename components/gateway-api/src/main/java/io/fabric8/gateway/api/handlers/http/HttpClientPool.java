@@ -0,0 +1,333 @@
+/*
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.api.handlers.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.VoidHandler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.http.HttpClient;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A registry of Vert.x {@link HttpClient}s, one per back-end <code>host:port</code>,
+ * so that proxied requests reuse keep-alive connections to the back-end service
+ * instead of paying for a new TCP connection on every call.
+ * <p/>
+ * A client is in use from the time it is returned by {@link #getClient(String, int)} until
+ * the request has completed and {@link #release(String, int)} has been called. Clients which
+ * have no request in flight and which have not been used for longer than the idle timeout
+ * are closed (releasing their pooled connections) by a periodic eviction task, on the
+ * event loop context the client was created on.
+ */
+public class HttpClientPool implements HttpClientPoolMBean {
+    private static final transient Logger LOG = LoggerFactory.getLogger(HttpClientPool.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+    public static final long DEFAULT_IDLE_TIMEOUT = 60 * 1000;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 60 * 1000;
+
+    private final Vertx vertx;
+    private final ConcurrentMap<String, PooledClient> clients = new ConcurrentHashMap<String, PooledClient>();
+    private final AtomicLong clientsCreated = new AtomicLong();
+    private final AtomicLong clientsEvicted = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private boolean keepAlive = true;
+    private boolean pipelining = false;
+    private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private long evictionTimerId = -1;
+
+    public HttpClientPool(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    /**
+     * Starts the periodic eviction of idle clients. The eviction task may run on any context
+     * as the evicted clients are closed on their own context.
+     */
+    public synchronized void start() {
+        if (evictionTimerId == -1 && idleTimeout > 0) {
+            evictionTimerId = vertx.setPeriodic(Math.max(idleTimeout / 2, 1000), new Handler<Long>() {
+                @Override
+                public void handle(Long timerId) {
+                    evictIdleClients();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops the eviction task and closes all the pooled clients
+     */
+    public synchronized void stop() {
+        if (evictionTimerId != -1) {
+            vertx.cancelTimer(evictionTimerId);
+            evictionTimerId = -1;
+        }
+        for (PooledClient pooledClient : clients.values()) {
+            if (clients.remove(pooledClient.key, pooledClient)) {
+                pooledClient.evicted();
+                close(pooledClient);
+            }
+        }
+    }
+
+    /**
+     * Returns the pooled client for the host and port of the given URL, creating it
+     * if it does not exist yet.
+     */
+    public HttpClient getClient(URL url) {
+        int port = url.getPort();
+        if (port < 0) {
+            port = url.getDefaultPort();
+        }
+        return getClient(url.getHost(), port);
+    }
+
+    /**
+     * Returns the pooled client for the given host and port, creating it
+     * if it does not exist yet. The client is in use until {@link #release(String, int)}
+     * is called once the request has completed.
+     */
+    public HttpClient getClient(String host, int port) {
+        String key = host + ":" + port;
+        requestCount.incrementAndGet();
+        while (true) {
+            PooledClient pooledClient = clients.get(key);
+            if (pooledClient == null) {
+                PooledClient newClient = new PooledClient(key, createClient(host, port), vertx.currentContext());
+                pooledClient = clients.putIfAbsent(key, newClient);
+                if (pooledClient == null) {
+                    clientsCreated.incrementAndGet();
+                    LOG.debug("Created pooled HTTP client for " + key);
+                    pooledClient = newClient;
+                } else {
+                    newClient.client.close();
+                }
+            }
+            if (pooledClient.use()) {
+                return pooledClient.client;
+            }
+            // lost a race with the eviction task so lets retry with a fresh client
+            clients.remove(key, pooledClient);
+        }
+    }
+
+    /**
+     * Releases the pooled client for the host and port of the given URL once a request has completed
+     */
+    public void release(URL url) {
+        int port = url.getPort();
+        if (port < 0) {
+            port = url.getDefaultPort();
+        }
+        release(url.getHost(), port);
+    }
+
+    /**
+     * Releases the pooled client for the given host and port once a request has completed,
+     * the client becomes idle when it has no more requests in flight.
+     */
+    public void release(String host, int port) {
+        // a client with requests in flight is never evicted so it is still the pooled one
+        PooledClient pooledClient = clients.get(host + ":" + port);
+        if (pooledClient != null) {
+            pooledClient.release();
+        }
+    }
+
+    protected HttpClient createClient(String host, int port) {
+        HttpClient client = vertx.createHttpClient();
+        client.setHost(host);
+        client.setPort(port);
+        client.setKeepAlive(keepAlive);
+        client.setPipelining(pipelining);
+        client.setMaxPoolSize(maxConnectionsPerHost);
+        client.setConnectTimeout(connectTimeout);
+        client.setTCPNoDelay(true);
+        return client;
+    }
+
+    @Override
+    public void evictIdleClients() {
+        long timeout = idleTimeout;
+        if (timeout <= 0) {
+            return;
+        }
+        for (PooledClient pooledClient : clients.values()) {
+            if (pooledClient.evict(timeout)) {
+                clients.remove(pooledClient.key, pooledClient);
+                clientsEvicted.incrementAndGet();
+                LOG.debug("Closing idle pooled HTTP client for " + pooledClient.key);
+                close(pooledClient);
+            }
+        }
+    }
+
+    /**
+     * Closes the client on the context it was created on, as Vert.x clients are not thread safe
+     */
+    private void close(final PooledClient pooledClient) {
+        Context context = pooledClient.context;
+        if (context == null || context == vertx.currentContext()) {
+            pooledClient.client.close();
+        } else {
+            context.runOnContext(new VoidHandler() {
+                @Override
+                protected void handle() {
+                    pooledClient.client.close();
+                }
+            });
+        }
+    }
+
+    @Override
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    @Override
+    public long getClientsCreated() {
+        return clientsCreated.get();
+    }
+
+    @Override
+    public long getClientsEvicted() {
+        return clientsEvicted.get();
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public String[] getBackends() {
+        long now = System.currentTimeMillis();
+        ArrayList<String> rc = new ArrayList<String>();
+        for (PooledClient pooledClient : clients.values()) {
+            rc.add(pooledClient.key + " requests: " + pooledClient.requests + ", in flight: " + pooledClient.inFlight + ", idle: " + (now - pooledClient.lastUsed) + " ms");
+        }
+        return rc.toArray(new String[rc.size()]);
+    }
+
+    @Override
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    @Override
+    public boolean isPipelining() {
+        return pipelining;
+    }
+
+    public void setPipelining(boolean pipelining) {
+        this.pipelining = pipelining;
+    }
+
+    @Override
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    @Override
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    @Override
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * A pooled client with its usage details, once evicted it must not be handed out again.
+     */
+    private static final class PooledClient {
+        private final String key;
+        private final HttpClient client;
+        private final Context context;
+        private long lastUsed = System.currentTimeMillis();
+        private long requests;
+        private int inFlight;
+        private boolean evicted;
+
+        private PooledClient(String key, HttpClient client, Context context) {
+            this.key = key;
+            this.client = client;
+            this.context = context;
+        }
+
+        synchronized boolean use() {
+            if (evicted) {
+                return false;
+            }
+            lastUsed = System.currentTimeMillis();
+            requests++;
+            inFlight++;
+            return true;
+        }
+
+        synchronized void release() {
+            if (inFlight > 0) {
+                inFlight--;
+            }
+            lastUsed = System.currentTimeMillis();
+        }
+
+        /**
+         * Evicts the client if it has no request in flight and has been idle since its last release
+         * for at least the given timeout
+         */
+        synchronized boolean evict(long idleTimeout) {
+            if (!evicted && inFlight == 0 && System.currentTimeMillis() - lastUsed >= idleTimeout) {
+                evicted = true;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void evicted() {
+            evicted = true;
+        }
+    }
+}
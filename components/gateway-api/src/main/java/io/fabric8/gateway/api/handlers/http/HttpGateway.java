@@ -46,6 +46,12 @@ public interface HttpGateway {
      */
     Map<String, IMappedServices> getMappedServices();
 
+    /**
+     * Returns the current immutable snapshot of the mapped services which is used to
+     * resolve the services of a request URI
+     */
+    HttpMappingTrie getMappingTrie();
+
     /**
      * Returns the base URL the gateway address
      */
@@ -71,4 +77,14 @@ public interface HttpGateway {
      */
     public void addCallDetailRecord(CallDetailRecord cdr);
 
+    /**
+     * Returns the pool of HTTP clients used to proxy requests to the back-end services.
+     */
+    public HttpClientPool getHttpClientPool();
+
+    /**
+     * Returns the latency metrics of the requests proxied by the gateway.
+     */
+    public HttpGatewayMetrics getMetrics();
+
 }
@@ -15,7 +15,6 @@
  */
 package io.fabric8.gateway.api.handlers.http;
 
-import io.fabric8.gateway.api.CallDetailRecord;
 import io.fabric8.gateway.api.handlers.http.HttpGatewayServiceClient;
 
 import org.slf4j.Logger;
@@ -23,45 +22,68 @@ import org.slf4j.LoggerFactory;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.VoidHandler;
-import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.HttpClientRequest;
 import org.vertx.java.core.http.HttpServerRequest;
 
 /**
+ * Proxies the requests of the clients to the mapped back end services. Request and response bodies are
+ * pumped so that reading from one side is paused while the other side has too much data queued, including
+ * while the request to the back end service is still connecting; large uploads and downloads then stream
+ * through the gateway using a bounded amount of memory.
  */
 public class HttpGatewayHandler implements Handler<HttpServerRequest> {
     
 	private static final transient Logger LOG = LoggerFactory.getLogger(HttpGatewayHandler.class);
 	
 	private HttpGatewayServiceClient httpGatewayClient;
+	private final Vertx vertx;
 	private final HttpGateway httpGateway;
     
     public HttpGatewayHandler(final Vertx vertx, final HttpGateway httpGateway) {
+        this.vertx = vertx;
         this.httpGateway = httpGateway;
         httpGatewayClient = new HttpGatewayServiceClient(vertx, httpGateway);
     }
 
+    public int getRequestWriteQueueMaxSize() {
+        return httpGatewayClient.getRequestWriteQueueMaxSize();
+    }
+
+    public void setRequestWriteQueueMaxSize(int requestWriteQueueMaxSize) {
+        httpGatewayClient.setRequestWriteQueueMaxSize(requestWriteQueueMaxSize);
+    }
+
+    public int getResponseWriteQueueMaxSize() {
+        return httpGatewayClient.getResponseWriteQueueMaxSize();
+    }
+
+    public void setResponseWriteQueueMaxSize(int responseWriteQueueMaxSize) {
+        httpGatewayClient.setResponseWriteQueueMaxSize(responseWriteQueueMaxSize);
+    }
+
     @Override
     public void handle(final HttpServerRequest request) {
+    	final long callStart = System.nanoTime();
     	
     	//If this is a request is show the mapping then repond right away
     	if (HttpMapping.isMappingIndexRequest(request, httpGateway)) {
     		HttpMapping.respond(request, httpGateway);
     		return;
     	}
+    	if (HttpGatewayMetrics.isMetricsRequest(request, httpGateway)) {
+    		HttpGatewayMetrics.respond(request, httpGateway);
+    		return;
+    	}
     	
-    	final long callStart = System.nanoTime();
-    	final HttpClientRequest serviceRequest = httpGatewayClient.execute(request, null);
+    	//the call detail record is added once the last byte of the response has been written
+    	final HttpClientRequest serviceRequest = httpGatewayClient.execute(request, null, callStart);
+    	if (serviceRequest == null) {
+    		// the client has already been sent an error response
+    		return;
+    	}
     	
-    	//Sending the request to the service
-		request.dataHandler(new Handler<Buffer>() {
-            public void handle(Buffer data) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Proxying request body:" + data);
-                }
-                serviceRequest.write(data);
-            }
-        });
+    	//Sending the request to the service, which buffers what is written until it is connected
+    	new ServiceRequestPump(vertx, request, serviceRequest, httpGatewayClient.getRequestWriteQueueMaxSize()).start();
         request.endHandler(new VoidHandler() {
             public void handle() {
                 if (LOG.isDebugEnabled()) {
@@ -70,8 +92,5 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                 serviceRequest.end();
             }
         });
-		CallDetailRecord cdr = new CallDetailRecord(System.nanoTime() - callStart, request.response().getStatusMessage());
-        httpGateway.addCallDetailRecord(cdr);
-    	
     }
 }
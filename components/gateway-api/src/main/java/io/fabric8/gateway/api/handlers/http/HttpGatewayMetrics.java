@@ -0,0 +1,336 @@
+/*
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.api.handlers.http;
+
+import io.fabric8.gateway.api.CallDetailRecord;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.http.HttpServerRequest;
+import org.vertx.java.core.http.HttpServerResponse;
+
+/**
+ * Collects {@link LatencyHistogram}s of the {@link CallDetailRecord}s of a {@link HttpGateway}, both of the
+ * end to end time (from the arrival of a request to the last byte of its response) and of the time spent
+ * waiting for the back end service, per mapping rule and per back end service URL.
+ * <p/>
+ * At most {@link #MAX_TRACKED_KEYS} mapping rules and back end services are tracked each, any others are
+ * recorded under {@link #OTHER_KEY}, and the ones which are no longer mapped are dropped by
+ * {@link #retainMappedServices(Map)}.
+ * <p/>
+ * The percentiles are exposed over JMX and, in the Prometheus text format, on the scrape path of the
+ * gateway if one has been set.
+ */
+public class HttpGatewayMetrics implements HttpGatewayMetricsMBean {
+    private static final transient Logger LOG = LoggerFactory.getLogger(HttpGatewayMetrics.class);
+
+    public static final int MAX_TRACKED_KEYS = 1000;
+    public static final String OTHER_KEY = "other";
+
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final Latencies requests = new Latencies();
+    private final ConcurrentMap<String, Latencies> routes = new ConcurrentHashMap<String, Latencies>();
+    private final ConcurrentMap<String, Latencies> backends = new ConcurrentHashMap<String, Latencies>();
+    private volatile String scrapePath;
+
+    /**
+     * Records the latencies of the given call
+     */
+    public void record(CallDetailRecord cdr) {
+        requests.record(cdr);
+        if (cdr.getRoute() != null) {
+            latencies(routes, cdr.getRoute()).record(cdr);
+        }
+        if (cdr.getServiceUrl() != null) {
+            latencies(backends, cdr.getServiceUrl()).record(cdr);
+        }
+    }
+
+    private static Latencies latencies(ConcurrentMap<String, Latencies> map, String key) {
+        Latencies answer = map.get(key);
+        if (answer == null) {
+            if (map.size() >= MAX_TRACKED_KEYS) {
+                key = OTHER_KEY;
+                answer = map.get(key);
+                if (answer != null) {
+                    return answer;
+                }
+            }
+            Latencies latencies = new Latencies();
+            answer = map.putIfAbsent(key, latencies);
+            if (answer == null) {
+                answer = latencies;
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Drops the latencies of the mapping rules and back end services which are no longer mapped
+     *
+     * @param mappedServices the current mapped services keyed by their mapping rule
+     */
+    public void retainMappedServices(Map<String, IMappedServices> mappedServices) {
+        Set<String> serviceUrls = new HashSet<String>();
+        for (IMappedServices services : mappedServices.values()) {
+            serviceUrls.addAll(services.getServiceUrls());
+        }
+        retainKeys(routes, mappedServices.keySet());
+        retainKeys(backends, serviceUrls);
+    }
+
+    private static void retainKeys(Map<String, Latencies> map, Set<String> keys) {
+        for (Iterator<String> iterator = map.keySet().iterator(); iterator.hasNext(); ) {
+            String key = iterator.next();
+            if (!keys.contains(key) && !OTHER_KEY.equals(key)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requests.callTime.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return requests.errors.get();
+    }
+
+    @Override
+    public long getMeanRequestTimeNanos() {
+        return requests.callTime.getMeanNanos();
+    }
+
+    @Override
+    public String getRequestLatencies() {
+        return requests.toString();
+    }
+
+    @Override
+    public String[] getRouteLatencies() {
+        return toStrings(routes);
+    }
+
+    @Override
+    public String[] getBackendLatencies() {
+        return toStrings(backends);
+    }
+
+    private static String[] toStrings(Map<String, Latencies> map) {
+        ArrayList<String> rc = new ArrayList<String>();
+        for (Map.Entry<String, Latencies> entry : new TreeMap<String, Latencies>(map).entrySet()) {
+            rc.add(entry.getKey() + " " + entry.getValue());
+        }
+        return rc.toArray(new String[rc.size()]);
+    }
+
+    @Override
+    public String getScrapePath() {
+        return scrapePath;
+    }
+
+    /**
+     * Sets the path on which the metrics are served, such as <code>/_metrics</code>; the scrape endpoint
+     * is disabled by default or if the path is null or empty
+     */
+    @Override
+    public void setScrapePath(String scrapePath) {
+        this.scrapePath = scrapePath;
+    }
+
+    @Override
+    public void resetStatistics() {
+        requests.reset();
+        routes.clear();
+        backends.clear();
+    }
+
+    /**
+     * Returns the metrics in the Prometheus text exposition format
+     */
+    public String scrape() {
+        StringBuilder builder = new StringBuilder();
+        appendSummary(builder, "gateway_request_duration_seconds",
+                "Time from the arrival of a request to the last byte of its response", null, null, requests.callTime);
+        appendCounter(builder, "gateway_request_errors_total", "Requests which failed", null, null, requests.errors);
+        appendSummaries(builder, "gateway_route", "route", routes);
+        appendSummaries(builder, "gateway_backend", "backend", backends);
+        return builder.toString();
+    }
+
+    private static void appendSummaries(StringBuilder builder, String prefix, String label, Map<String, Latencies> map) {
+        Map<String, Latencies> sorted = new TreeMap<String, Latencies>(map);
+        String name = prefix + "_duration_seconds";
+        appendHeader(builder, name, "summary", "Time from the arrival of a request to the last byte of its response by " + label);
+        for (Map.Entry<String, Latencies> entry : sorted.entrySet()) {
+            appendSummaryValues(builder, name, label, entry.getKey(), entry.getValue().callTime);
+        }
+        name = prefix + "_service_duration_seconds";
+        appendHeader(builder, name, "summary", "Time from sending a request to the back end service to the last byte of its response by " + label);
+        for (Map.Entry<String, Latencies> entry : sorted.entrySet()) {
+            appendSummaryValues(builder, name, label, entry.getKey(), entry.getValue().serviceTime);
+        }
+        name = prefix + "_errors_total";
+        appendHeader(builder, name, "counter", "Requests which failed by " + label);
+        for (Map.Entry<String, Latencies> entry : sorted.entrySet()) {
+            appendValue(builder, name, label, entry.getKey(), null, Long.toString(entry.getValue().errors.get()));
+        }
+    }
+
+    private static void appendSummary(StringBuilder builder, String name, String help, String label, String labelValue, LatencyHistogram histogram) {
+        appendHeader(builder, name, "summary", help);
+        appendSummaryValues(builder, name, label, labelValue, histogram);
+    }
+
+    private static void appendCounter(StringBuilder builder, String name, String help, String label, String labelValue, AtomicLong counter) {
+        appendHeader(builder, name, "counter", help);
+        appendValue(builder, name, label, labelValue, null, Long.toString(counter.get()));
+    }
+
+    private static void appendHeader(StringBuilder builder, String name, String type, String help) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void appendSummaryValues(StringBuilder builder, String name, String label, String labelValue, LatencyHistogram histogram) {
+        long[] values = histogram.getValuesAtPercentiles(PERCENTILES);
+        for (int i = 0; i < values.length; i++) {
+            appendValue(builder, name, label, labelValue, QUANTILES[i], seconds(values[i]));
+        }
+        appendValue(builder, name + "_sum", label, labelValue, null, seconds(histogram.getTotalNanos()));
+        appendValue(builder, name + "_count", label, labelValue, null, Long.toString(histogram.getCount()));
+    }
+
+    private static void appendValue(StringBuilder builder, String name, String label, String labelValue, String quantile, String value) {
+        builder.append(name);
+        if (label != null || quantile != null) {
+            builder.append('{');
+            if (label != null) {
+                builder.append(label).append("=\"");
+                escapeLabelValue(builder, labelValue);
+                builder.append('"');
+                if (quantile != null) {
+                    builder.append(',');
+                }
+            }
+            if (quantile != null) {
+                builder.append("quantile=\"").append(quantile).append('"');
+            }
+            builder.append('}');
+        }
+        builder.append(' ').append(value).append('\n');
+    }
+
+    private static void escapeLabelValue(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                builder.append('\\').append(c);
+            } else if (c == '\n') {
+                builder.append("\\n");
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * Returns true if the request is for the scrape path of the metrics of the gateway
+     */
+    public static boolean isMetricsRequest(HttpServerRequest request, HttpGateway httpGateway) {
+        if (httpGateway == null || httpGateway.getMetrics() == null) {
+            return false;
+        }
+        String path = httpGateway.getMetrics().getScrapePath();
+        return path != null && path.length() > 0 && path.equals(request.path());
+    }
+
+    public static void respond(HttpServerRequest request, HttpGateway httpGateway) {
+        HttpServerResponse response = request.response();
+        try {
+            String text = httpGateway.getMetrics().scrape();
+            response.headers().set("Content-Type", "text/plain; version=0.0.4");
+            response.setStatusCode(200);
+            response.end(text);
+        } catch (Throwable e) {
+            LOG.error("Caught: " + e, e);
+            response.setStatusCode(500);
+            response.setStatusMessage("Error: " + e);
+            response.end();
+        }
+    }
+
+    /**
+     * The latencies and errors of a route, a back end service or the whole gateway
+     */
+    private static final class Latencies {
+        private final LatencyHistogram callTime = new LatencyHistogram();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+
+        void record(CallDetailRecord cdr) {
+            callTime.recordNanos(cdr.getCallTimeNanos());
+            serviceTime.recordNanos(cdr.getServiceTimeNanos());
+            if (cdr.getError() != null) {
+                errors.incrementAndGet();
+            }
+        }
+
+        void reset() {
+            callTime.reset();
+            serviceTime.reset();
+            errors.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return "requests: " + callTime.getCount() + ", errors: " + errors.get()
+                    + ", total p50/p90/p99/p99.9/max: " + percentiles(callTime)
+                    + ", service p50/p90/p99/p99.9/max: " + percentiles(serviceTime);
+        }
+
+        private static String percentiles(LatencyHistogram histogram) {
+            StringBuilder builder = new StringBuilder();
+            for (long value : histogram.getValuesAtPercentiles(PERCENTILES)) {
+                builder.append(millis(value)).append('/');
+            }
+            return builder.append(millis(histogram.getMaxNanos())).append(" ms").toString();
+        }
+    }
+}
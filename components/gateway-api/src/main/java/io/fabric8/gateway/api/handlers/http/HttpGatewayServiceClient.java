@@ -18,6 +18,7 @@ package io.fabric8.gateway.api.handlers.http;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.Handler;
+import org.vertx.java.core.VoidHandler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.http.HttpClient;
 import org.vertx.java.core.http.HttpClientRequest;
@@ -31,8 +32,8 @@ import java.net.MalformedURLException;
 import java.net.URL;
 
 /**
- * The HttpGatewayServiceClient used Vert.x to create a Vert.x client to relay the client
- * request to the actual back-end service. The request and the response handling are
+ * The HttpGatewayServiceClient uses a pooled Vert.x client from the {@link HttpClientPool}
+ * to relay the client request to the actual back-end service. The request and the response handling are
  * non-blocking. Note that the handling of the response is 
  * different in case APIManagement is used as the APIManager may need need to execute
  * some policies that depend on result of the service call. APIMan runs policies *before* and
@@ -41,8 +42,12 @@ import java.net.URL;
 public class HttpGatewayServiceClient {
     private static final transient Logger LOG = LoggerFactory.getLogger(HttpGatewayServiceClient.class);
 
+    public static final int DEFAULT_WRITE_QUEUE_MAX_SIZE = 64 * 1024;
+
     private final Vertx vertx;
     private final HttpGateway httpGateway;
+    private int requestWriteQueueMaxSize = DEFAULT_WRITE_QUEUE_MAX_SIZE;
+    private int responseWriteQueueMaxSize = DEFAULT_WRITE_QUEUE_MAX_SIZE;
    
     public HttpGatewayServiceClient(Vertx vertx, HttpGateway httpGateway) {
         this.vertx = vertx;
@@ -50,34 +55,73 @@ public class HttpGatewayServiceClient {
     }
 
 	public HttpClientRequest execute(final HttpServerRequest request, final Object apiManagerResponseHandler) {
+		return execute(request, apiManagerResponseHandler, System.nanoTime());
+	}
+
+	/**
+	 * Proxies the request to the back end service, the call start is the time in nanoseconds the request arrived
+	 * at the gateway which is used to measure the end to end latency of the call.
+	 */
+	public HttpClientRequest execute(final HttpServerRequest request, final Object apiManagerResponseHandler, final long callStart) {
 
         try {
-        	IMappedServices mappedServices = HttpMapping.getMapping(request, httpGateway.getMappedServices());
+        	IMappedServices mappedServices = HttpMapping.getMapping(request, httpGateway.getMappingTrie());
         	ProxyMappingDetails proxyMappingDetails = mappedServices.getProxyMappingDetails();
         	HttpClient client = null;
+        	URL url = null;
         	if (proxyMappingDetails!=null && proxyMappingDetails.getProxyServiceUrl()!=null) {
-        		client = createClient(new URL(proxyMappingDetails.getProxyServiceUrl()));
+        		url = new URL(proxyMappingDetails.getProxyServiceUrl());
+        		client = getClient(url);
         	}
             if (client != null) {
                 
                 LOG.info("Proxying request " + request.uri() + " to service path: " + proxyMappingDetails.getServicePath() + " on service: " + proxyMappingDetails.getProxyServiceUrl() + " reverseServiceUrl: " + proxyMappingDetails.getReverseServiceUrl());
                 final HttpClient finalClient = client;
+                final Handler<Void> releaseHandler = createReleaseHandler(url);
                 
                 Handler<HttpClientResponse> serviceResponseHandler = null;
                 
                 if (httpGateway.getApiManager().isApiManagerEnabled()) {
                 	serviceResponseHandler = httpGateway.getApiManager().getService().createServiceResponseHandler(finalClient, apiManagerResponseHandler);
         		} else {
-        			serviceResponseHandler = new HttpServiceResponseHandler(finalClient, request);
+        			HttpServiceResponseHandler httpServiceResponseHandler = new HttpServiceResponseHandler(finalClient, request, httpGateway, proxyMappingDetails, callStart);
+        			httpServiceResponseHandler.setWriteQueueMaxSize(responseWriteQueueMaxSize);
+        			serviceResponseHandler = httpServiceResponseHandler;
         		}
+                if (serviceResponseHandler instanceof ServiceCompletionAware) {
+                    ((ServiceCompletionAware) serviceResponseHandler).setCompletionHandler(releaseHandler);
+                } else {
+                    // we cannot tell when the response has been read so lets release the client once it arrives
+                    final Handler<HttpClientResponse> responseHandler = serviceResponseHandler;
+                    serviceResponseHandler = new Handler<HttpClientResponse>() {
+                        @Override
+                        public void handle(HttpClientResponse clientResponse) {
+                            releaseHandler.handle(null);
+                            responseHandler.handle(clientResponse);
+                        }
+                    };
+                }
                 
                 if (mappedServices != null) {
                     serviceResponseHandler = mappedServices.wrapResponseHandlerInPolicies(request, serviceResponseHandler, proxyMappingDetails);
                 }
                 
                 final HttpClientRequest serviceRequest = client.request(request.method(), proxyMappingDetails.getServicePath(), serviceResponseHandler);
+                final Handler<HttpClientResponse> finalResponseHandler = serviceResponseHandler;
+                final String serviceUrl = proxyMappingDetails.getProxyServiceUrl();
+                serviceRequest.exceptionHandler(new Handler<Throwable>() {
+                    @Override
+                    public void handle(Throwable e) {
+                        LOG.warn("Failed to proxy request " + request.uri() + " to service: " + serviceUrl + ". " + e);
+                        releaseHandler.handle(null);
+                        if (finalResponseHandler instanceof ServiceFailureHandler) {
+                            ((ServiceFailureHandler) finalResponseHandler).handleServiceFailure(e);
+                        }
+                    }
+                });
                 serviceRequest.headers().set(request.headers());
                 serviceRequest.setChunked(true);
+                serviceRequest.setWriteQueueMaxSize(requestWriteQueueMaxSize);
                 
                 return serviceRequest;
 
@@ -100,6 +144,30 @@ public class HttpGatewayServiceClient {
         return null;
     }
 
+    public int getRequestWriteQueueMaxSize() {
+        return requestWriteQueueMaxSize;
+    }
+
+    /**
+     * Sets the number of bytes of a request body which may be queued for the back end service
+     * before reading from the client is paused
+     */
+    public void setRequestWriteQueueMaxSize(int requestWriteQueueMaxSize) {
+        this.requestWriteQueueMaxSize = requestWriteQueueMaxSize;
+    }
+
+    public int getResponseWriteQueueMaxSize() {
+        return responseWriteQueueMaxSize;
+    }
+
+    /**
+     * Sets the number of bytes of a response body which may be queued for the client
+     * before reading from the back end service is paused
+     */
+    public void setResponseWriteQueueMaxSize(int responseWriteQueueMaxSize) {
+        this.responseWriteQueueMaxSize = responseWriteQueueMaxSize;
+    }
+
     protected boolean isApimanagerRestRequest(HttpServerRequest request) {
         if (httpGateway == null || !httpGateway.isEnableIndex()) {
             return false;
@@ -108,13 +176,30 @@ public class HttpGatewayServiceClient {
         return uri == null || uri.length() == 0 || request.path().startsWith("/rest/apimanager/");
     }
 
-    protected HttpClient createClient(URL url) throws MalformedURLException {
-        // lets create a client
-        HttpClient client = vertx.createHttpClient();
-        client.setHost(url.getHost());
-        client.setPort(url.getPort());
-        return client;
+    protected HttpClient getClient(URL url) throws MalformedURLException {
+        // lets reuse the pooled keep-alive client of the back-end service
+        return httpGateway.getHttpClientPool().getClient(url);
+    }
+
+    protected void releaseClient(URL url) {
+        httpGateway.getHttpClientPool().release(url);
+    }
+
+    /**
+     * Returns a handler releasing the pooled client of the service the first time it is called
+     */
+    private Handler<Void> createReleaseHandler(final URL url) {
+        return new VoidHandler() {
+            private boolean released;
 
+            @Override
+            protected void handle() {
+                if (!released) {
+                    released = true;
+                    releaseClient(url);
+                }
+            }
+        };
     }
 
 }
@@ -39,7 +39,7 @@ public class HttpMapping {
 
 	public static void respond(HttpServerRequest request, HttpGateway httpGateway) {
 		try {
-			String json = mappingRulesToJson(httpGateway.getMappedServices());
+			String json = mappingRulesToJson(httpGateway.getMappingTrie().getMappedServices());
 	        HttpServerResponse httpServerResponse = request.response();
 	        httpServerResponse.headers().set("ContentType", "application/json");
 	        httpServerResponse.setStatusCode(200);
@@ -77,64 +77,47 @@ public class HttpMapping {
     }
     
     public static IMappedServices getMapping(final HttpServerRequest request, Map<String, IMappedServices> mappingRules) {
-    	 
-    	String uri = request.uri();
-        String uri2 = null;
-        if (!uri.endsWith("/")) {
-            uri2 = uri + "/";
-        }
+        return getMapping(request, new HttpMappingTrie(0, mappingRules));
+    }
+
+    public static IMappedServices getMapping(final HttpServerRequest request, HttpMappingTrie mappingTrie) {
+        String uri = request.uri();
         if (LOG.isDebugEnabled()) {
             LOG.debug("Proxying request: " + uri);
         }
-        
-    	String remaining = null;
-        String prefix = null;
-        String proxyServiceUrl = null;
-        String reverseServiceUrl = null;
-        
-    	IMappedServices mappedServices = null;
-         URL clientURL = null;
-         Set<Map.Entry<String, IMappedServices>> entries = mappingRules.entrySet();
-         for (Map.Entry<String, IMappedServices> entry : entries) {
-             String path = entry.getKey();
-             String pathPrefix = path;
-             if (uri.startsWith(pathPrefix) || (uri2 != null && uri2.startsWith(pathPrefix))) {
-            	 mappedServices = entry.getValue();
-                 int pathPrefixLength = pathPrefix.length();
-                 if (pathPrefixLength < uri.length()) {
-                     remaining = uri.substring(pathPrefixLength+1);
-                 } else {
-                     remaining = null;
-                 }
+        // lets try the longest matching URI prefix first
+        for (HttpMappingTrie.Match match : mappingTrie.findMatches(uri)) {
+            IMappedServices mappedServices = match.getMappedServices();
+            String pathPrefix = match.getPrefix();
+            String remaining = match.getRemaining(uri);
+
+            // now lets pick a service for this path
+            String proxyServiceUrl = mappedServices.chooseService(request);
+            if (proxyServiceUrl != null) {
+                // lets create a client for this request...
+                try {
+                    URL clientURL = new URL(proxyServiceUrl);
+                    String prefix = clientURL.getPath();
+                    String reverseServiceUrl = request.absoluteURI().resolve(pathPrefix).toString();
+                    if (reverseServiceUrl.endsWith("/")) {
+                        reverseServiceUrl = reverseServiceUrl.substring(0, reverseServiceUrl.length() - 1);
+                    }
 
-                 // now lets pick a service for this path
-                 proxyServiceUrl = mappedServices.chooseService(request);
-                 if (proxyServiceUrl != null) {
-                     // lets create a client for this request...
-                     try {
-                         clientURL = new URL(proxyServiceUrl);
-                         prefix = clientURL.getPath();
-                         reverseServiceUrl = request.absoluteURI().resolve(pathPrefix).toString();
-                         if (reverseServiceUrl.endsWith("/")) {
-                             reverseServiceUrl = reverseServiceUrl.substring(0, reverseServiceUrl.length() - 1);
-                         }
-                         
-                         String servicePath = prefix != null ? prefix : "";
-                         // we should usually end the prefix path with a slash for web apps at least
-                         if (servicePath.length() > 0 && !servicePath.endsWith("/")) {
-                             servicePath += "/";
-                         }
-                         if (remaining != null) {
-                             servicePath += remaining;
-                         }
-                         mappedServices.setProxyMappingDetails(new ProxyMappingDetails(proxyServiceUrl, reverseServiceUrl, servicePath));
-                         break;
-                     } catch (MalformedURLException e) {
-                         LOG.warn("Failed to parse URL: " + proxyServiceUrl + ". " + e, e);
-                     }
-                 }
-             }
-         }
-         return mappedServices;
+                    String servicePath = prefix != null ? prefix : "";
+                    // we should usually end the prefix path with a slash for web apps at least
+                    if (servicePath.length() > 0 && !servicePath.endsWith("/")) {
+                        servicePath += "/";
+                    }
+                    if (remaining != null) {
+                        servicePath += remaining;
+                    }
+                    mappedServices.setProxyMappingDetails(new ProxyMappingDetails(proxyServiceUrl, reverseServiceUrl, servicePath, pathPrefix));
+                    return mappedServices;
+                } catch (MalformedURLException e) {
+                    LOG.warn("Failed to parse URL: " + proxyServiceUrl + ". " + e, e);
+                }
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,243 @@
+/*
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.api.handlers.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable, versioned snapshot of the mapped services of a {@link HttpGateway} compiled into a
+ * tree of URI path segments, so that the longest matching URI prefix of a request can be found by
+ * walking the segments of the request URI once, instead of comparing the URI against every prefix.
+ * <p/>
+ * A new snapshot is created whenever the mapping rules change, so lookups never need to lock.
+ */
+public class HttpMappingTrie {
+
+    public static final HttpMappingTrie EMPTY = new HttpMappingTrie(0, Collections.<String, IMappedServices>emptyMap());
+
+    private final long version;
+    private final Map<String, IMappedServices> mappedServices;
+    private final Node root;
+    private final int depth;
+
+    public HttpMappingTrie(long version, Map<String, IMappedServices> mappedServices) {
+        this.version = version;
+        this.mappedServices = Collections.unmodifiableMap(new HashMap<String, IMappedServices>(mappedServices));
+        Builder builder = new Builder();
+        for (Map.Entry<String, IMappedServices> entry : this.mappedServices.entrySet()) {
+            builder.add(entry.getKey(), entry.getValue());
+        }
+        this.root = builder.build();
+        this.depth = builder.depth;
+    }
+
+    /**
+     * Returns the version of the mapping rules this snapshot was created from
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the mapped services indexed by URI prefix
+     */
+    public Map<String, IMappedServices> getMappedServices() {
+        return mappedServices;
+    }
+
+    /**
+     * Returns the matches for the given request URI ordered from the longest to the shortest URI prefix
+     */
+    public List<Match> findMatches(String uri) {
+        if (uri == null) {
+            return Collections.emptyList();
+        }
+        Match[] matches = new Match[depth + 1];
+        int count = 0;
+        Node node = root;
+        int length = uri.indexOf('?');
+        if (length < 0) {
+            length = uri.length();
+        }
+        int position = 0;
+        if (node.value != null) {
+            matches[count++] = new Match(node.prefix, node.value, 0);
+        }
+        while (node.children.length > 0) {
+            while (position < length && uri.charAt(position) == '/') {
+                position++;
+            }
+            if (position >= length) {
+                break;
+            }
+            int end = uri.indexOf('/', position);
+            if (end < 0 || end > length) {
+                end = length;
+            }
+            node = node.child(uri, position, end);
+            if (node == null) {
+                break;
+            }
+            position = end;
+            if (node.value != null) {
+                matches[count++] = new Match(node.prefix, node.value, end);
+            }
+        }
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        List<Match> answer = new ArrayList<Match>(count);
+        for (int i = count - 1; i >= 0; i--) {
+            answer.add(matches[i]);
+        }
+        return answer;
+    }
+
+    /**
+     * A URI prefix of a request which matched some mapped services
+     */
+    public static final class Match {
+        private final String prefix;
+        private final IMappedServices mappedServices;
+        private final int end;
+
+        Match(String prefix, IMappedServices mappedServices, int end) {
+            this.prefix = prefix;
+            this.mappedServices = mappedServices;
+            this.end = end;
+        }
+
+        /**
+         * Returns the URI prefix of the mapped services
+         */
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public IMappedServices getMappedServices() {
+            return mappedServices;
+        }
+
+        /**
+         * Returns the remaining part of the request URI after the matched prefix (without the leading slash)
+         * or null if the prefix matched the whole URI
+         */
+        public String getRemaining(String uri) {
+            if (end >= uri.length()) {
+                return null;
+            }
+            return uri.charAt(end) == '/' ? uri.substring(end + 1) : uri.substring(end);
+        }
+    }
+
+    private static final class Node {
+        private final String[] segments;
+        private final Node[] children;
+        private final String prefix;
+        private final IMappedServices value;
+
+        Node(String[] segments, Node[] children, String prefix, IMappedServices value) {
+            this.segments = segments;
+            this.children = children;
+            this.prefix = prefix;
+            this.value = value;
+        }
+
+        /**
+         * Binary searches the sorted segments for the region of the uri without creating a substring
+         */
+        Node child(String uri, int start, int end) {
+            int low = 0;
+            int high = segments.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(segments[mid], uri, start, end);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+
+        private static int compare(String segment, String uri, int start, int end) {
+            int length = end - start;
+            int limit = Math.min(segment.length(), length);
+            for (int i = 0; i < limit; i++) {
+                char c1 = segment.charAt(i);
+                char c2 = uri.charAt(start + i);
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+            return segment.length() - length;
+        }
+    }
+
+    /**
+     * A mutable tree used to build the immutable nodes
+     */
+    private static final class Builder {
+        private final TreeMap<String, Builder> children = new TreeMap<String, Builder>();
+        private String prefix;
+        private IMappedServices value;
+        private int depth;
+
+        void add(String prefix, IMappedServices mappedServices) {
+            Builder builder = this;
+            int segments = 0;
+            for (String segment : prefix.split("/")) {
+                if (segment.length() > 0) {
+                    Builder child = builder.children.get(segment);
+                    if (child == null) {
+                        child = new Builder();
+                        builder.children.put(segment, child);
+                    }
+                    builder = child;
+                    segments++;
+                }
+            }
+            // if two prefixes only differ by slashes the shortest one wins
+            if (builder.value == null || prefix.length() < builder.prefix.length()) {
+                builder.prefix = prefix;
+                builder.value = mappedServices;
+            }
+            depth = Math.max(depth, segments);
+        }
+
+        Node build() {
+            String[] segments = children.keySet().toArray(new String[children.size()]);
+            Node[] nodes = new Node[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                nodes[i] = children.get(segments[i]).build();
+            }
+            return new Node(segments, nodes, prefix, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HttpMappingTrie{version=" + version + ", prefixes=" + mappedServices.keySet() + "}";
+    }
+}
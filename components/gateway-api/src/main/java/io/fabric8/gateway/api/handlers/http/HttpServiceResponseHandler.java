@@ -15,47 +15,127 @@
  */
 package io.fabric8.gateway.api.handlers.http;
 
+import io.fabric8.gateway.api.CallDetailRecord;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.VoidHandler;
-import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.HttpClient;
 import org.vertx.java.core.http.HttpClientResponse;
 import org.vertx.java.core.http.HttpServerRequest;
+import org.vertx.java.core.streams.Pump;
 
-public class HttpServiceResponseHandler implements Handler<HttpClientResponse>{
+/**
+ * Relays the response of the back end service to the client and, once the last byte of the response
+ * has been written, adds a {@link CallDetailRecord} of the call to the {@link HttpGateway}.
+ * <p/>
+ * The response body is pumped, so reading from the back end service is paused whenever more than the
+ * write queue max size of the response is waiting to be written to a slow client.
+ */
+public class HttpServiceResponseHandler implements Handler<HttpClientResponse>, ServiceFailureHandler, ServiceCompletionAware {
 
 	private static final transient Logger LOG = LoggerFactory.getLogger(HttpServiceResponseHandler.class);
 
 	final HttpClient httpClient;
 	final HttpServerRequest request;
+	final HttpGateway httpGateway;
+	final ProxyMappingDetails proxyMappingDetails;
+	final long callStart;
+	final long serviceStart = System.nanoTime();
+	private int writeQueueMaxSize = HttpGatewayServiceClient.DEFAULT_WRITE_QUEUE_MAX_SIZE;
+	private boolean responded;
+	private boolean completed;
+	private Handler<Void> completionHandler;
 	
 	public HttpServiceResponseHandler(HttpClient httpClient,
 			HttpServerRequest request) {
+		this(httpClient, request, null, null, System.nanoTime());
+	}
+
+	public HttpServiceResponseHandler(HttpClient httpClient, HttpServerRequest request,
+			HttpGateway httpGateway, ProxyMappingDetails proxyMappingDetails, long callStart) {
 		super();
 		this.httpClient = httpClient;
 		this.request = request;
+		this.httpGateway = httpGateway;
+		this.proxyMappingDetails = proxyMappingDetails;
+		this.callStart = callStart;
+	}
+
+	public int getWriteQueueMaxSize() {
+		return writeQueueMaxSize;
+	}
+
+	/**
+	 * Sets the number of bytes of the response which may be queued for the client before reading
+	 * from the back end service is paused
+	 */
+	public void setWriteQueueMaxSize(int writeQueueMaxSize) {
+		this.writeQueueMaxSize = writeQueueMaxSize;
 	}
 	
 	@Override
-	public void handle(HttpClientResponse clientResponse) {
+	public void setCompletionHandler(Handler<Void> completionHandler) {
+		this.completionHandler = completionHandler;
+	}
+
+	@Override
+	public void handle(final HttpClientResponse clientResponse) {
+		responded = true;
 		request.response().setStatusCode(clientResponse.statusCode());
         request.response().headers().set(clientResponse.headers());
         request.response().setChunked(true);
-        clientResponse.dataHandler(new Handler<Buffer>() {
-            public void handle(Buffer data) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Proxying response body:" + data);
-                }
-                request.response().write(data);
-            }
-        });
+        Pump.createPump(clientResponse, request.response(), writeQueueMaxSize).start();
         clientResponse.endHandler(new VoidHandler() {
             public void handle() {
+                // the client is not closed as it is pooled for the next request to the service
                 request.response().end();
-                httpClient.close();
+                completed = true;
+                int statusCode = clientResponse.statusCode();
+                addCallDetailRecord(statusCode >= 500 ? statusCode + " " + clientResponse.statusMessage() : null);
+                complete();
+            }
+        });
+        clientResponse.exceptionHandler(new Handler<Throwable>() {
+            @Override
+            public void handle(Throwable cause) {
+                handleServiceFailure(cause);
             }
         });
 	}
+
+	@Override
+	public void handleServiceFailure(Throwable cause) {
+		if (completed) {
+			return;
+		}
+		completed = true;
+		if (responded) {
+			// the response has already started so all we can do is drop the connection
+			request.response().close();
+		} else {
+			responded = true;
+			request.response().setStatusCode(502);
+			request.response().setStatusMessage("Bad Gateway");
+			request.response().end();
+		}
+		addCallDetailRecord(String.valueOf(cause));
+		complete();
+	}
+
+	private void complete() {
+		if (completionHandler != null) {
+			completionHandler.handle(null);
+		}
+	}
+
+	private void addCallDetailRecord(String error) {
+		if (httpGateway != null) {
+			long now = System.nanoTime();
+			String route = proxyMappingDetails != null ? proxyMappingDetails.getPathPrefix() : null;
+			String serviceUrl = proxyMappingDetails != null ? proxyMappingDetails.getProxyServiceUrl() : null;
+			httpGateway.addCallDetailRecord(new CallDetailRecord(now - callStart, now - serviceStart, route, serviceUrl, error));
+		}
+	}
 }
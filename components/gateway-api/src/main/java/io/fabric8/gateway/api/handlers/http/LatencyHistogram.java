@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.api.handlers.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of latencies in the style of an HDR histogram: values are recorded in
+ * microseconds into buckets whose width grows with the power of two of the value, with 64 sub buckets
+ * per power of two, so that any percentile is reported to within 1.6% of the recorded value using a
+ * fixed amount of memory. Latencies of up to 2<sup>36</sup> microseconds (about 19 hours) are
+ * tracked; longer ones are recorded as the maximum.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_VALUE_BITS = 36;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records a latency in nanoseconds, negative values are ignored
+     */
+    public void recordNanos(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_VALUE);
+        counts.incrementAndGet(bucketIndex(micros));
+        totalCount.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getTotalNanos() {
+        return TimeUnit.MICROSECONDS.toNanos(totalMicros.get());
+    }
+
+    public long getMeanNanos() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : getTotalNanos() / count;
+    }
+
+    public long getMaxNanos() {
+        return TimeUnit.MICROSECONDS.toNanos(maxMicros.get());
+    }
+
+    /**
+     * Returns the latency in nanoseconds at the given percentile (between 0 and 100)
+     */
+    public long getValueAtPercentile(double percentile) {
+        return getValuesAtPercentiles(percentile)[0];
+    }
+
+    /**
+     * Returns the latencies in nanoseconds at the given ascending percentiles (between 0 and 100)
+     * walking the buckets only once
+     */
+    public long[] getValuesAtPercentiles(double... percentiles) {
+        long[] answer = new long[percentiles.length];
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return answer;
+        }
+        long max = maxMicros.get();
+        int bucket = 0;
+        long cumulative = snapshot[0];
+        for (int i = 0; i < percentiles.length; i++) {
+            double percentile = Math.min(Math.max(percentiles[i], 0.0), 100.0);
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            while (cumulative < rank && bucket < BUCKET_COUNT - 1) {
+                cumulative += snapshot[++bucket];
+            }
+            answer[i] = TimeUnit.MICROSECONDS.toNanos(Math.min(highestEquivalentValue(bucket), max));
+        }
+        return answer;
+    }
+
+    /**
+     * Clears the recorded latencies; values recorded concurrently may or may not be kept
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index - shift * SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
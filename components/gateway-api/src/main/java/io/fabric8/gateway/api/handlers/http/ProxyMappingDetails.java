@@ -23,11 +23,17 @@ public class ProxyMappingDetails {
     private final String proxyServiceUrl;
     private final String reverseServiceUrl;
     private final String servicePath;
+    private final String pathPrefix;
 
     public ProxyMappingDetails(String proxyServiceUrl, String reverseServiceUrl, String servicePath) {
+        this(proxyServiceUrl, reverseServiceUrl, servicePath, null);
+    }
+
+    public ProxyMappingDetails(String proxyServiceUrl, String reverseServiceUrl, String servicePath, String pathPrefix) {
         this.proxyServiceUrl = proxyServiceUrl;
         this.reverseServiceUrl = reverseServiceUrl;
         this.servicePath = servicePath;
+        this.pathPrefix = pathPrefix;
     }
 
     @Override
@@ -36,6 +42,7 @@ public class ProxyMappingDetails {
                 "proxyServiceUrl='" + proxyServiceUrl + '\'' +
                 ", reverseServiceUrl='" + reverseServiceUrl + '\'' +
                 ", servicePath='" + servicePath + '\'' +
+                ", pathPrefix='" + pathPrefix + '\'' +
                 '}';
     }
 
@@ -75,4 +82,11 @@ public class ProxyMappingDetails {
     public String getServicePath() {
         return servicePath;
     }
+
+    /**
+     * Returns the URI prefix of the mapping rule which matched the front end request
+     */
+    public String getPathPrefix() {
+        return pathPrefix;
+    }
 }
@@ -0,0 +1,29 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.api.handlers.http;
+
+import org.vertx.java.core.Handler;
+
+/**
+ * Implemented by the handlers of the back end service responses which know when the call
+ * to the service has completed, i.e. the whole response has been read or the call failed,
+ * so that the pooled client of the service can be released.
+ */
+public interface ServiceCompletionAware {
+
+    public void setCompletionHandler(Handler<Void> completionHandler);
+
+}
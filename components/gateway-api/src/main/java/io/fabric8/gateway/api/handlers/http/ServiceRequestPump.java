@@ -0,0 +1,189 @@
+/*
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.api.handlers.http;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VoidHandler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpClientRequest;
+import org.vertx.java.core.streams.ReadStream;
+
+/**
+ * Pumps the body of a client request to the request of the back end service, pausing the client while the
+ * service request has its write queue max size queued.
+ * <p/>
+ * Unlike a {@link org.vertx.java.core.streams.Pump} this also bounds what is queued before the service request
+ * is connected: a Vert.x client request buffers everything written before it is connected and only reports
+ * a full write queue once it is. So once the write queue max size has been written before the connection is
+ * known to be established the client is paused, and the connection is probed for by setting the drain handler
+ * again, which a connected client request calls right away if its write queue is not full.
+ */
+public class ServiceRequestPump {
+    public static final long DEFAULT_CONNECT_PROBE_INTERVAL = 10;
+    public static final long MAX_CONNECT_PROBE_INTERVAL = 1000;
+    public static final long DEFAULT_CONNECT_TIMEOUT = 60 * 1000;
+
+    private final Vertx vertx;
+    private final ReadStream<?> readStream;
+    private final HttpClientRequest serviceRequest;
+    private final int writeQueueMaxSize;
+    private long connectProbeInterval = DEFAULT_CONNECT_PROBE_INTERVAL;
+    private long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private boolean connected;
+    private boolean paused;
+    private int bytesPending;
+    private long bytesPumped;
+    private long connectProbeDelay;
+    private long connectProbeTime;
+
+    private final Handler<Buffer> dataHandler = new Handler<Buffer>() {
+        @Override
+        public void handle(Buffer buffer) {
+            serviceRequest.write(buffer);
+            bytesPumped += buffer.length();
+            if (!connected) {
+                bytesPending += buffer.length();
+                if (bytesPending >= writeQueueMaxSize) {
+                    pause();
+                    probeConnection();
+                }
+            } else if (serviceRequest.writeQueueFull()) {
+                pause();
+            }
+        }
+    };
+
+    private final Handler<Void> drainHandler = new VoidHandler() {
+        @Override
+        protected void handle() {
+            // the service request only calls the drain handler once it is connected
+            connected = true;
+            bytesPending = 0;
+            if (paused) {
+                paused = false;
+                readStream.resume();
+            }
+        }
+    };
+
+    public ServiceRequestPump(Vertx vertx, ReadStream<?> readStream, HttpClientRequest serviceRequest, int writeQueueMaxSize) {
+        this.vertx = vertx;
+        this.readStream = readStream;
+        this.serviceRequest = serviceRequest;
+        this.writeQueueMaxSize = writeQueueMaxSize;
+    }
+
+    public ServiceRequestPump start() {
+        readStream.dataHandler(dataHandler);
+        serviceRequest.drainHandler(drainHandler);
+        return this;
+    }
+
+    public ServiceRequestPump stop() {
+        readStream.dataHandler(null);
+        serviceRequest.drainHandler(null);
+        return this;
+    }
+
+    /**
+     * Returns the number of bytes pumped to the service request
+     */
+    public long getBytesPumped() {
+        return bytesPumped;
+    }
+
+    /**
+     * Returns the number of bytes written since the service request was last known to be connected and writable
+     */
+    public int getBytesPending() {
+        return bytesPending;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public long getConnectProbeInterval() {
+        return connectProbeInterval;
+    }
+
+    /**
+     * Sets the number of milliseconds before the first probe for the connection of a paused service request,
+     * the interval is doubled after each probe
+     */
+    public void setConnectProbeInterval(long connectProbeInterval) {
+        this.connectProbeInterval = connectProbeInterval;
+    }
+
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the number of milliseconds after which the connection is no longer probed for, as the service
+     * request has failed to connect by then
+     */
+    public void setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    private void pause() {
+        if (!paused) {
+            paused = true;
+            readStream.pause();
+        }
+    }
+
+    private void scheduleConnectProbe() {
+        connectProbeDelay = connectProbeDelay == 0 ? connectProbeInterval : Math.min(2 * connectProbeDelay, MAX_CONNECT_PROBE_INTERVAL);
+        if (connectProbeTime < connectTimeout) {
+            connectProbeTime += connectProbeDelay;
+            schedule(connectProbeDelay, new Handler<Long>() {
+                @Override
+                public void handle(Long timerId) {
+                    probeConnection();
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the handler after the given number of milliseconds
+     */
+    protected void schedule(long delay, Handler<Long> handler) {
+        vertx.setTimer(delay, handler);
+    }
+
+    private void probeConnection() {
+        if (connected || !paused) {
+            return;
+        }
+        try {
+            serviceRequest.drainHandler(drainHandler);
+        } catch (IllegalStateException e) {
+            // the service request has already completed
+            return;
+        }
+        if (!connected) {
+            scheduleConnectProbe();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.api.handlers.http;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.http.HttpClient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HttpClientPoolTest {
+    private static final long IDLE_TIMEOUT = 1;
+
+    private final List<StubHttpClient> createdClients = new ArrayList<StubHttpClient>();
+    private final ThreadLocal<Context> currentContext = new ThreadLocal<Context>();
+    private HttpClientPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new HttpClientPool(createVertx());
+        pool.setIdleTimeout(IDLE_TIMEOUT);
+    }
+
+    @Test
+    public void testClientIsReusedPerHostAndPort() throws Exception {
+        HttpClient client = pool.getClient("localhost", 8080);
+        pool.release("localhost", 8080);
+        assertSame(client, pool.getClient("localhost", 8080));
+        assertSame("Should share the client of the host and port of the URL", client, pool.getClient(new URL("http://localhost:8080/foo")));
+        assertNotSame(client, pool.getClient("localhost", 8081));
+        assertNotSame(client, pool.getClient("127.0.0.1", 8080));
+
+        HttpClient defaultPort = pool.getClient(new URL("http://localhost/bar"));
+        assertSame("Should use the default port of the URL", defaultPort, pool.getClient("localhost", 80));
+
+        assertEquals(4, pool.getClientCount());
+        assertEquals(4, pool.getClientsCreated());
+        assertEquals(7, pool.getRequestCount());
+        assertEquals("localhost", stub(client).host);
+        assertEquals(8080, stub(client).port);
+    }
+
+    @Test
+    public void testClientWithRequestsInFlightIsNotEvicted() throws Exception {
+        HttpClient client = pool.getClient("localhost", 8080);
+        pool.getClient("localhost", 8080);
+        pool.release("localhost", 8080);
+        idle();
+
+        pool.evictIdleClients();
+        assertEquals("Should not evict a client with a request in flight", 1, pool.getClientCount());
+        assertEquals(0, pool.getClientsEvicted());
+        assertFalse(stub(client).closed);
+
+        pool.release("localhost", 8080);
+        idle();
+        pool.evictIdleClients();
+        assertEquals(0, pool.getClientCount());
+        assertEquals(1, pool.getClientsEvicted());
+        assertTrue(stub(client).closed);
+
+        HttpClient newClient = pool.getClient("localhost", 8080);
+        assertNotSame("Should not hand out an evicted client", client, newClient);
+        assertFalse(stub(newClient).closed);
+        assertEquals(2, pool.getClientsCreated());
+    }
+
+    @Test
+    public void testClientIsNotEvictedBeforeIdleTimeout() throws Exception {
+        pool.setIdleTimeout(60 * 1000);
+        HttpClient client = pool.getClient("localhost", 8080);
+        pool.release("localhost", 8080);
+
+        pool.evictIdleClients();
+        assertEquals(1, pool.getClientCount());
+        assertFalse(stub(client).closed);
+    }
+
+    @Test
+    public void testClientIsClosedOnItsOwnContext() throws Exception {
+        StubContext context = new StubContext();
+        currentContext.set(context);
+        HttpClient client = pool.getClient("localhost", 8080);
+        pool.release("localhost", 8080);
+        idle();
+
+        // the eviction task runs on another context
+        currentContext.set(new StubContext());
+        pool.evictIdleClients();
+        assertEquals(0, pool.getClientCount());
+        assertFalse("Should not close the client off its context", stub(client).closed);
+        assertEquals(1, context.tasks.size());
+
+        context.run();
+        assertTrue(stub(client).closed);
+    }
+
+    @Test
+    public void testClientIsClosedDirectlyOnItsContext() throws Exception {
+        StubContext context = new StubContext();
+        currentContext.set(context);
+        HttpClient client = pool.getClient("localhost", 8080);
+        pool.release("localhost", 8080);
+        idle();
+
+        pool.evictIdleClients();
+        assertTrue(stub(client).closed);
+        assertTrue(context.tasks.isEmpty());
+    }
+
+    @Test
+    public void testStopClosesAllClients() throws Exception {
+        StubContext context = new StubContext();
+        currentContext.set(context);
+        HttpClient client = pool.getClient("localhost", 8080);
+        currentContext.set(null);
+        HttpClient otherClient = pool.getClient("localhost", 8081);
+
+        pool.stop();
+        assertEquals(0, pool.getClientCount());
+        assertTrue(stub(otherClient).closed);
+        assertFalse(stub(client).closed);
+        context.run();
+        assertTrue(stub(client).closed);
+        assertNotSame(client, pool.getClient("localhost", 8080));
+    }
+
+    @Test
+    public void testClientBeingEvictedIsReplaced() throws Exception {
+        HttpClient client = pool.getClient("localhost", 8080);
+        pool.release("localhost", 8080);
+
+        // the eviction task has marked the client as evicted but not removed it from the pool yet
+        Map<?, ?> clients = (Map<?, ?>) field(HttpClientPool.class, "clients").get(pool);
+        Object pooledClient = clients.get("localhost:8080");
+        Method evicted = pooledClient.getClass().getDeclaredMethod("evicted");
+        evicted.setAccessible(true);
+        evicted.invoke(pooledClient);
+
+        HttpClient newClient = pool.getClient("localhost", 8080);
+        assertNotSame("Should retry with a fresh client", client, newClient);
+        assertEquals(1, pool.getClientCount());
+        assertEquals(2, pool.getClientsCreated());
+        assertNotSame(pooledClient, clients.get("localhost:8080"));
+        assertSame(newClient, pool.getClient("localhost", 8080));
+    }
+
+    @Test
+    public void testEvictedClientIsNeverHandedOut() throws Exception {
+        // races the requests against the eviction task
+        final int threads = 4;
+        final int requests = 2000;
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread("request-" + i) {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < requests && failure.get() == null; j++) {
+                            HttpClient client = pool.getClient("localhost", 8080);
+                            if (stub(client).closed) {
+                                failure.set("Handed out a closed client");
+                            }
+                            Thread.yield();
+                            if (stub(client).closed) {
+                                failure.set("Closed a client with a request in flight");
+                            }
+                            pool.release("localhost", 8080);
+                            if (j % 10 == 0) {
+                                idle();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        failure.set(e.toString());
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        while (!done.await(0, TimeUnit.MILLISECONDS)) {
+            pool.evictIdleClients();
+            Thread.yield();
+        }
+        assertNull(failure.get(), failure.get());
+        assertTrue("Should have evicted clients", pool.getClientsEvicted() > 0);
+        assertEquals(pool.getClientsCreated(), pool.getClientsEvicted() + pool.getClientCount());
+        assertEquals(threads * requests, pool.getRequestCount());
+        synchronized (createdClients) {
+            int open = 0;
+            for (StubHttpClient client : createdClients) {
+                if (!client.closed) {
+                    open++;
+                }
+            }
+            assertEquals("Should close every client which is not pooled", pool.getClientCount(), open);
+        }
+    }
+
+    private static void idle() throws InterruptedException {
+        Thread.sleep(IDLE_TIMEOUT + 1);
+    }
+
+    private static Field field(Class<?> type, String name) throws NoSuchFieldException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    private static StubHttpClient stub(HttpClient client) {
+        return (StubHttpClient) Proxy.getInvocationHandler(client);
+    }
+
+    private Vertx createVertx() {
+        return (Vertx) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Vertx.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("currentContext")) {
+                    return currentContext.get();
+                } else if (method.getName().equals("createHttpClient")) {
+                    StubHttpClient client = new StubHttpClient();
+                    synchronized (createdClients) {
+                        createdClients.add(client);
+                    }
+                    return client.proxy;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static class StubHttpClient implements InvocationHandler {
+        final HttpClient proxy = (HttpClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpClient.class}, this);
+        volatile boolean closed;
+        String host;
+        int port;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                closed = true;
+                return null;
+            } else if (name.equals("setHost")) {
+                host = (String) args[0];
+            } else if (name.equals("setPort")) {
+                port = (Integer) args[0];
+            } else if (!name.startsWith("set")) {
+                throw new UnsupportedOperationException(name);
+            }
+            return proxy;
+        }
+    }
+
+    private static class StubContext implements Context {
+        final List<Handler<Void>> tasks = new ArrayList<Handler<Void>>();
+
+        @Override
+        public void runOnContext(Handler<Void> action) {
+            tasks.add(action);
+        }
+
+        void run() {
+            for (Handler<Void> task : tasks) {
+                task.handle(null);
+            }
+            tasks.clear();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.api.handlers.http;
+
+import io.fabric8.gateway.api.CallDetailRecord;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
+import org.vertx.java.core.http.HttpServerRequest;
+import org.vertx.java.core.http.HttpServerResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpGatewayMetricsTest {
+    private final HttpGatewayMetrics metrics = new HttpGatewayMetrics();
+
+    @Test
+    public void testScrape() {
+        metrics.record(new CallDetailRecord(TimeUnit.MILLISECONDS.toNanos(20), TimeUnit.MILLISECONDS.toNanos(15),
+                "/api/\"quoted\"", "http://localhost:8181/api/", null));
+        metrics.record(new CallDetailRecord(TimeUnit.MILLISECONDS.toNanos(40), TimeUnit.MILLISECONDS.toNanos(30),
+                "/api/\"quoted\"", "http://localhost:8181/api/", "timeout"));
+        metrics.record(new CallDetailRecord(TimeUnit.MILLISECONDS.toNanos(1), "not found"));
+
+        assertEquals(3, metrics.getRequestCount());
+        assertEquals(2, metrics.getErrorCount());
+
+        String text = metrics.scrape();
+        assertTrue(text, text.contains("# TYPE gateway_request_duration_seconds summary\n"));
+        assertTrue(text, text.contains("gateway_request_duration_seconds_count 3\n"));
+        assertTrue(text, text.contains("gateway_request_errors_total 2\n"));
+        assertTrue(text, text.contains("gateway_route_duration_seconds{route=\"/api/\\\"quoted\\\"\",quantile=\"0.5\"} 0.020"));
+        assertTrue(text, text.contains("gateway_route_duration_seconds{route=\"/api/\\\"quoted\\\"\",quantile=\"0.99\"} 0.04\n"));
+        assertTrue(text, text.contains("gateway_route_errors_total{route=\"/api/\\\"quoted\\\"\"} 1\n"));
+        assertTrue(text, text.contains("gateway_backend_service_duration_seconds_count{backend=\"http://localhost:8181/api/\"} 2\n"));
+        assertTrue(text, text.contains("gateway_backend_service_duration_seconds_sum{backend=\"http://localhost:8181/api/\"} 0.045\n"));
+    }
+
+    @Test
+    public void testTrackedKeysAreCapped() {
+        for (int i = 0; i < HttpGatewayMetrics.MAX_TRACKED_KEYS + 10; i++) {
+            metrics.record(new CallDetailRecord(1000, 1000, "/route" + i, "http://localhost:" + i + "/", null));
+        }
+        assertEquals(HttpGatewayMetrics.MAX_TRACKED_KEYS + 1, metrics.getRouteLatencies().length);
+        assertEquals(HttpGatewayMetrics.MAX_TRACKED_KEYS + 1, metrics.getBackendLatencies().length);
+        assertTrue(metrics.scrape().contains("gateway_route_duration_seconds_count{route=\"" + HttpGatewayMetrics.OTHER_KEY + "\"} 10\n"));
+        assertTrue(metrics.scrape().contains("gateway_route_duration_seconds_count{route=\"/route0\"} 1\n"));
+    }
+
+    @Test
+    public void testRetainMappedServices() {
+        metrics.record(new CallDetailRecord(1000, 1000, "/foo", "http://host1/foo", null));
+        metrics.record(new CallDetailRecord(1000, 1000, "/foo", "http://host2/foo", null));
+        metrics.record(new CallDetailRecord(1000, 1000, "/bar", "http://host1/bar", null));
+
+        Map<String, IMappedServices> mappedServices = new HashMap<String, IMappedServices>();
+        mappedServices.put("/foo", mappedServices("http://host2/foo", "http://host3/foo"));
+        metrics.retainMappedServices(mappedServices);
+
+        assertEquals(Arrays.asList("/foo"), keys(metrics.getRouteLatencies()));
+        assertEquals(Arrays.asList("http://host2/foo"), keys(metrics.getBackendLatencies()));
+        assertEquals("the gateway totals are kept", 3, metrics.getRequestCount());
+    }
+
+    @Test
+    public void testScrapePathIsOptIn() {
+        StubResponse response = new StubResponse();
+        HttpServerRequest request = request("/_metrics", response);
+        HttpGateway httpGateway = httpGateway(metrics);
+
+        assertFalse(HttpGatewayMetrics.isMetricsRequest(request, httpGateway));
+        assertFalse(HttpGatewayMetrics.isMetricsRequest(request, null));
+        metrics.setScrapePath("");
+        assertFalse(HttpGatewayMetrics.isMetricsRequest(request, httpGateway));
+
+        metrics.setScrapePath("/_metrics");
+        assertTrue(HttpGatewayMetrics.isMetricsRequest(request, httpGateway));
+        assertFalse(HttpGatewayMetrics.isMetricsRequest(request("/_metrics/foo", response), httpGateway));
+
+        metrics.record(new CallDetailRecord(1000, null));
+        HttpGatewayMetrics.respond(request, httpGateway);
+        assertEquals(200, response.statusCode);
+        assertEquals("text/plain; version=0.0.4", response.headers.get("Content-Type"));
+        assertTrue(response.body, response.body.contains("gateway_request_duration_seconds_count 1\n"));
+    }
+
+    private static List<String> keys(String[] latencies) {
+        List<String> answer = new ArrayList<String>();
+        for (String line : latencies) {
+            answer.add(line.substring(0, line.indexOf(' ')));
+        }
+        return answer;
+    }
+
+    private static IMappedServices mappedServices(final String... serviceUrls) {
+        return stub(IMappedServices.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getServiceUrls")) {
+                    return new HashSet<String>(Arrays.asList(serviceUrls));
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static HttpGateway httpGateway(final HttpGatewayMetrics metrics) {
+        return stub(HttpGateway.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getMetrics")) {
+                    return metrics;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static HttpServerRequest request(final String path, final StubResponse response) {
+        return stub(HttpServerRequest.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("path")) {
+                    return path;
+                }
+                if (method.getName().equals("response")) {
+                    return response.proxy;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static class StubResponse implements InvocationHandler {
+        private final MultiMap headers = new CaseInsensitiveMultiMap();
+        private final HttpServerResponse proxy = stub(HttpServerResponse.class, this);
+        private int statusCode;
+        private String body;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("headers")) {
+                return headers;
+            }
+            if (method.getName().equals("setStatusCode")) {
+                statusCode = (Integer) args[0];
+                return proxy;
+            }
+            if (method.getName().equals("end") && args != null && args.length == 1) {
+                body = (String) args[0];
+                return null;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
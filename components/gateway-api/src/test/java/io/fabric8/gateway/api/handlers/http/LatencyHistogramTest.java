@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.api.handlers.http;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testSmallValuesAreExact() {
+        for (int micros = 1; micros < 128; micros++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.recordNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+            assertEquals(TimeUnit.MICROSECONDS.toNanos(micros), histogram.getValueAtPercentile(50.0));
+        }
+    }
+
+    @Test
+    public void testBucketsAreWithinRelativeError() {
+        for (long micros = 128; micros < TimeUnit.HOURS.toMicros(1); micros = micros * 3 / 2 + 7) {
+            // record the value plus a larger one so the reported value is not clamped to the maximum
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.recordNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+            histogram.recordNanos(TimeUnit.MICROSECONDS.toNanos(micros * 4));
+            long reported = TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(50.0));
+            assertTrue(reported + " should not be below " + micros, reported >= micros);
+            assertTrue(reported + " should be within 1.6% of " + micros, reported - micros <= micros * 0.016);
+        }
+    }
+
+    @Test
+    public void testBucketIndexIsMonotonic() {
+        int previous = LatencyHistogram.bucketIndex(0);
+        for (long micros = 1; micros < 1 << 20; micros++) {
+            int index = LatencyHistogram.bucketIndex(micros);
+            assertTrue("bucket of " + micros, index == previous || index == previous + 1);
+            previous = index;
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), histogram.getMaxNanos());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(500500), histogram.getMeanNanos());
+
+        long[] values = histogram.getValuesAtPercentiles(0.0, 50.0, 90.0, 99.0, 100.0);
+        assertNear(TimeUnit.MILLISECONDS.toNanos(1), values[0]);
+        assertNear(TimeUnit.MILLISECONDS.toNanos(500), values[1]);
+        assertNear(TimeUnit.MILLISECONDS.toNanos(900), values[2]);
+        assertNear(TimeUnit.MILLISECONDS.toNanos(990), values[3]);
+        assertEquals("the highest percentile is clamped to the maximum", histogram.getMaxNanos(), values[4]);
+        assertEquals(values[2], histogram.getValueAtPercentile(90.0));
+    }
+
+    @Test
+    public void testNegativeValuesAreIgnored() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(-1);
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99.0));
+        assertEquals(0, histogram.getMeanNanos());
+    }
+
+    @Test
+    public void testHugeValuesAreRecordedAsTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(Long.MAX_VALUE);
+        assertEquals(1, histogram.getCount());
+        assertEquals(histogram.getMaxNanos(), histogram.getValueAtPercentile(100.0));
+        assertTrue(histogram.getMaxNanos() >= TimeUnit.HOURS.toNanos(19));
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getTotalNanos());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getValueAtPercentile(50.0));
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue(actual + " should not be below " + expected, actual >= expected);
+        assertTrue(actual + " should be within 1.6% of " + expected, actual - expected <= expected * 0.016);
+    }
+}
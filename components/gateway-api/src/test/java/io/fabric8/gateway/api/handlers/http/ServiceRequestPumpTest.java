@@ -0,0 +1,319 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.api.handlers.http;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpClientRequest;
+import org.vertx.java.core.streams.ReadStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ServiceRequestPumpTest {
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final int WRITE_QUEUE_MAX_SIZE = 64 * 1024;
+
+    private StubClientRequest clientRequest;
+    private StubServiceRequest serviceRequest;
+    private List<Handler<Long>> timers;
+    private ServiceRequestPump pump;
+
+    @Before
+    public void setUp() {
+        clientRequest = new StubClientRequest();
+        serviceRequest = new StubServiceRequest();
+        timers = new ArrayList<Handler<Long>>();
+        pump = new ServiceRequestPump(null, clientRequest, serviceRequest, WRITE_QUEUE_MAX_SIZE) {
+            @Override
+            protected void schedule(long delay, Handler<Long> handler) {
+                timers.add(handler);
+            }
+        }.start();
+    }
+
+    @Test
+    public void testUploadIsBoundedWhileConnecting() {
+        // a client uploading 100MB as fast as it can while the service request connects
+        int maxQueued = 0;
+        for (int i = 0; i < 100 * 1024 * 1024 / CHUNK_SIZE && !clientRequest.paused; i++) {
+            clientRequest.send(CHUNK_SIZE);
+            maxQueued = Math.max(maxQueued, serviceRequest.queued);
+        }
+        assertTrue("Should pause the client", clientRequest.paused);
+        assertEquals(WRITE_QUEUE_MAX_SIZE, maxQueued);
+        assertFalse(pump.isConnected());
+
+        // probing before the connection is established keeps the client paused
+        runTimers();
+        assertTrue(clientRequest.paused);
+        assertEquals(1, timers.size());
+
+        serviceRequest.connect();
+        runTimers();
+        assertFalse("Should resume the client once connected", clientRequest.paused);
+        assertTrue(pump.isConnected());
+        assertEquals(0, pump.getBytesPending());
+        assertTrue(timers.isEmpty());
+    }
+
+    @Test
+    public void testUploadIsBoundedOnceConnected() {
+        serviceRequest.connect();
+        long total = 0;
+        int maxQueued = 0;
+        while (total < 100 * 1024 * 1024) {
+            if (clientRequest.paused) {
+                // the service reads what is queued
+                serviceRequest.drain();
+            }
+            clientRequest.send(CHUNK_SIZE);
+            total += CHUNK_SIZE;
+            maxQueued = Math.max(maxQueued, serviceRequest.queued);
+        }
+        assertEquals(total, pump.getBytesPumped());
+        assertTrue("Queued " + maxQueued + " bytes", maxQueued <= WRITE_QUEUE_MAX_SIZE);
+        // the connection was noticed the first time the write queue max size was written
+        assertTrue(timers.isEmpty());
+    }
+
+    @Test
+    public void testSmallRequestIsNotPaused() {
+        clientRequest.send(CHUNK_SIZE);
+        clientRequest.send(CHUNK_SIZE);
+        assertFalse(clientRequest.paused);
+        assertTrue(timers.isEmpty());
+        assertEquals(2 * CHUNK_SIZE, pump.getBytesPumped());
+    }
+
+    @Test
+    public void testStopsProbingAfterConnectTimeout() {
+        pump.setConnectTimeout(10 * 1000);
+        for (int i = 0; i < WRITE_QUEUE_MAX_SIZE / CHUNK_SIZE; i++) {
+            clientRequest.send(CHUNK_SIZE);
+        }
+        assertTrue(clientRequest.paused);
+        int probes = 0;
+        while (!timers.isEmpty()) {
+            runTimers();
+            probes++;
+        }
+        // 10ms doubling up to 1s gives 7 probes in the first 1270ms and then 9 more up to 10 seconds
+        assertEquals(16, probes);
+        assertFalse(pump.isConnected());
+    }
+
+    @Test
+    public void testStopsProbingWhenServiceRequestCompleted() {
+        for (int i = 0; i < WRITE_QUEUE_MAX_SIZE / CHUNK_SIZE; i++) {
+            clientRequest.send(CHUNK_SIZE);
+        }
+        serviceRequest.completed = true;
+        runTimers();
+        assertTrue(timers.isEmpty());
+    }
+
+    private void runTimers() {
+        List<Handler<Long>> due = new ArrayList<Handler<Long>>(timers);
+        timers.clear();
+        for (Handler<Long> timer : due) {
+            timer.handle(0L);
+        }
+    }
+
+    static class StubClientRequest implements ReadStream<StubClientRequest> {
+        Handler<Buffer> dataHandler;
+        boolean paused;
+
+        void send(int size) {
+            assertFalse("Should not send to a paused stream", paused);
+            dataHandler.handle(new Buffer(new byte[size]));
+        }
+
+        @Override
+        public StubClientRequest dataHandler(Handler<Buffer> handler) {
+            this.dataHandler = handler;
+            return this;
+        }
+
+        @Override
+        public StubClientRequest pause() {
+            paused = true;
+            return this;
+        }
+
+        @Override
+        public StubClientRequest resume() {
+            paused = false;
+            return this;
+        }
+
+        @Override
+        public StubClientRequest endHandler(Handler<Void> handler) {
+            return this;
+        }
+
+        @Override
+        public StubClientRequest exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+    }
+
+    /**
+     * Behaves like the Vert.x client request, which only reports a full write queue and calls the drain handler
+     * once it is connected
+     */
+    static class StubServiceRequest implements HttpClientRequest {
+        Handler<Void> drainHandler;
+        int writeQueueMaxSize = WRITE_QUEUE_MAX_SIZE;
+        int queued;
+        boolean connected;
+        boolean completed;
+
+        void connect() {
+            connected = true;
+            drain();
+        }
+
+        void drain() {
+            queued = 0;
+            if (drainHandler != null) {
+                drainHandler.handle(null);
+            }
+        }
+
+        @Override
+        public HttpClientRequest write(Buffer data) {
+            queued += data.length();
+            return this;
+        }
+
+        @Override
+        public boolean writeQueueFull() {
+            return connected && queued >= writeQueueMaxSize;
+        }
+
+        @Override
+        public HttpClientRequest drainHandler(Handler<Void> handler) {
+            if (completed) {
+                throw new IllegalStateException("Request already complete");
+            }
+            drainHandler = handler;
+            if (connected && handler != null && !writeQueueFull()) {
+                handler.handle(null);
+            }
+            return this;
+        }
+
+        @Override
+        public HttpClientRequest setWriteQueueMaxSize(int maxSize) {
+            writeQueueMaxSize = maxSize;
+            return this;
+        }
+
+        @Override
+        public HttpClientRequest exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public HttpClientRequest setChunked(boolean chunked) {
+            return this;
+        }
+
+        @Override
+        public boolean isChunked() {
+            return true;
+        }
+
+        @Override
+        public MultiMap headers() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public HttpClientRequest putHeader(String name, String value) {
+            return this;
+        }
+
+        @Override
+        public HttpClientRequest putHeader(CharSequence name, CharSequence value) {
+            return this;
+        }
+
+        @Override
+        public HttpClientRequest putHeader(String name, Iterable<String> values) {
+            return this;
+        }
+
+        @Override
+        public HttpClientRequest putHeader(CharSequence name, Iterable<CharSequence> values) {
+            return this;
+        }
+
+        @Override
+        public HttpClientRequest write(String chunk) {
+            return write(new Buffer(chunk));
+        }
+
+        @Override
+        public HttpClientRequest write(String chunk, String enc) {
+            return write(new Buffer(chunk, enc));
+        }
+
+        @Override
+        public HttpClientRequest continueHandler(Handler<Void> handler) {
+            return this;
+        }
+
+        @Override
+        public HttpClientRequest sendHead() {
+            return this;
+        }
+
+        @Override
+        public void end(String chunk) {
+            end();
+        }
+
+        @Override
+        public void end(String chunk, String enc) {
+            end();
+        }
+
+        @Override
+        public void end(Buffer chunk) {
+            end();
+        }
+
+        @Override
+        public void end() {
+            completed = true;
+        }
+
+        @Override
+        public HttpClientRequest setTimeout(long timeoutMs) {
+            return this;
+        }
+    }
+}
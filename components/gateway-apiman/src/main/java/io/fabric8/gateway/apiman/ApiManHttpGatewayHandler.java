@@ -32,6 +32,7 @@ import io.fabric8.gateway.api.CallDetailRecord;
 import io.fabric8.gateway.api.apimanager.ApiManagerService;
 import io.fabric8.gateway.api.apimanager.ServiceMapping;
 import io.fabric8.gateway.api.handlers.http.HttpGateway;
+import io.fabric8.gateway.api.handlers.http.HttpGatewayMetrics;
 import io.fabric8.gateway.api.handlers.http.HttpMapping;
 import io.fabric8.gateway.api.handlers.http.IMappedServices;
 import io.fabric8.gateway.api.handlers.http.ProxyMappingDetails;
@@ -44,7 +45,7 @@ import org.slf4j.LoggerFactory;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.buffer.Buffer;
-import org.vertx.java.core.http.HttpClient;
+import org.vertx.java.core.http.HttpClientResponse;
 import org.vertx.java.core.http.HttpServerRequest;
 import org.vertx.java.core.http.HttpServerResponse;
 
@@ -80,6 +81,10 @@ public class ApiManHttpGatewayHandler implements Handler<HttpServerRequest> {
 	    		HttpMapping.respond(request, httpGateway);
 	    		return;
 	    	}
+	    	if (HttpGatewayMetrics.isMetricsRequest(request, httpGateway)) {
+	    		HttpGatewayMetrics.respond(request, httpGateway);
+	    		return;
+	    	}
 
 			//1. Create APIMan ServiceRequest
 			ServiceRequest srequest = new ServiceRequest();
@@ -95,9 +100,10 @@ public class ApiManHttpGatewayHandler implements Handler<HttpServerRequest> {
 			}
 	        srequest.setHeaders(headerMap);
 
-	        IMappedServices mappedServices = HttpMapping.getMapping(request, httpGateway.getMappedServices());
+	        IMappedServices mappedServices = HttpMapping.getMapping(request, httpGateway.getMappingTrie());
+	        final ProxyMappingDetails proxyMappingDetails;
 	        if (mappedServices!=null) {
-		    	ProxyMappingDetails proxyMappingDetails = mappedServices.getProxyMappingDetails();
+		    	proxyMappingDetails = mappedServices.getProxyMappingDetails();
 		        ServiceMapping apiManagerServiceInfo = apiManager.getApiManagerServiceMapping(proxyMappingDetails.getServicePath());
 		        if (apiManagerServiceInfo==null) throw new Exception("Service Not Found in API Manager.");
 		        srequest.setServiceOrgId(apiManagerServiceInfo.getOrganizationId());
@@ -129,8 +135,11 @@ public class ApiManHttpGatewayHandler implements Handler<HttpServerRequest> {
 							//will mark the engineResult as failed.
 							ServiceResponse serviceResponse = engineResult.getServiceResponse();
 							if (serviceResponse!=null) {
-								final HttpClient finalClient = (HttpClient) serviceResponse.getAttribute("finalClient");
-								finalClient.close();
+								//drain the paused service response so its pooled connection can be reused
+								final HttpClientResponse clientResponse = (HttpClientResponse) serviceResponse.getAttribute(ApiManService.ATTR_CLIENT_RESPONSE);
+								if (clientResponse!=null) {
+									clientResponse.resume();
+								}
 							}
 							PolicyFailure policyFailure = engineResult.getPolicyFailure();
 							response.putHeader("X-Policy-Failure-Type", String.valueOf(policyFailure.getType()));
@@ -170,9 +179,12 @@ public class ApiManHttpGatewayHandler implements Handler<HttpServerRequest> {
 					            @Override
 					            public void handle(Void flag) {
 					            	LOG.debug("ResponseCode from downstream " + response.getStatusCode());
-									CallDetailRecord cdr = new CallDetailRecord(System.nanoTime() - callStart, response.getStatusMessage());
-									httpGateway.addCallDetailRecord(cdr);
 									response.end();
+									int statusCode = response.getStatusCode();
+									CallDetailRecord cdr = new CallDetailRecord(System.nanoTime() - callStart, -1,
+											proxyMappingDetails.getPathPrefix(), proxyMappingDetails.getProxyServiceUrl(),
+											statusCode >= 500 ? statusCode + " " + response.getStatusMessage() : null);
+									httpGateway.addCallDetailRecord(cdr);
 					            	//response.close();
 					            	LOG.debug("Complete success, and response end.");
 					            }
@@ -22,6 +22,7 @@ import io.apiman.gateway.engine.async.IAsyncResult;
 import io.apiman.gateway.engine.beans.ServiceResponse;
 import io.apiman.gateway.engine.io.IApimanBuffer;
 import io.apiman.gateway.vertx.io.VertxApimanBuffer;
+import io.fabric8.gateway.api.handlers.http.ServiceCompletionAware;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -35,10 +36,11 @@ import org.vertx.java.core.http.HttpClientResponse;
  * Response Handler when a call to Overlord APIMan returns. This handler is called
  * by Vert.x and invokes the APIMan org.overlord.apiman.rt.engine.async.IAsyncHandler.
  */
-public class ApiManHttpServiceResponseHandler implements Handler<HttpClientResponse>{
+public class ApiManHttpServiceResponseHandler implements Handler<HttpClientResponse>, ServiceCompletionAware {
 
 	final HttpClient httpClient;
 	final IAsyncHandler<IAsyncResult<IServiceConnectionResponse>> apiManServiceResponseHandler;
+	private Handler<Void> completionHandler;
 
 	/**
 	 * Constructor which requires passing in references to
@@ -52,6 +54,11 @@ public class ApiManHttpServiceResponseHandler implements Handler<HttpClientRespo
 		this.httpClient = httpClient;
 		this.apiManServiceResponseHandler = responseHandler;
 	}
+	@Override
+	public void setCompletionHandler(Handler<Void> completionHandler) {
+		this.completionHandler = completionHandler;
+	}
+
 	/**
 	 * The handler creates an org.overlord.apiman.rt.engine.beans.ServiceResponse and
 	 * invokes the APIMan ServiceResponseHandler.
@@ -90,7 +97,7 @@ public class ApiManHttpServiceResponseHandler implements Handler<HttpClientRespo
 
             @Override
             public void abort() {
-                // <SNIP>
+                complete();
             }
 
 			@Override
@@ -110,7 +117,7 @@ public class ApiManHttpServiceResponseHandler implements Handler<HttpClientRespo
 					@Override
 					protected void handle() {
 						streamFinished = true;
-						// TODO Auto-generated method stub
+						complete();
 						endHandler.handle(null);
 					}
 		        });
@@ -128,4 +135,10 @@ public class ApiManHttpServiceResponseHandler implements Handler<HttpClientRespo
         	    <IServiceConnectionResponse> create(streamToClient);
     	apiManServiceResponseHandler.handle(result);
 	}
+
+	private void complete() {
+		if (completionHandler != null) {
+			completionHandler.handle(null);
+		}
+	}
 }
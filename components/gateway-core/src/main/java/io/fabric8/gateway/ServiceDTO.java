@@ -15,16 +15,25 @@
  */
 package io.fabric8.gateway;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import io.fabric8.gateway.api.ServiceDetails;
+import io.fabric8.utils.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 /**
  */
 public class ServiceDTO implements ServiceDetails {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ServiceDTO.class);
+
     @JsonProperty
     private String id;
 
@@ -43,6 +52,8 @@ public class ServiceDTO implements ServiceDetails {
     @JsonProperty
     private List<String> services = Collections.EMPTY_LIST;
 
+    private transient volatile List<URI> serviceURIs;
+
     @Override
     public String toString() {
         return "ServiceDTO{" +
@@ -87,6 +98,38 @@ public class ServiceDTO implements ServiceDetails {
 
     public void setServices(List<String> services) {
         this.services = services;
+        this.serviceURIs = null;
+    }
+
+    /**
+     * Returns the service URIs which are parsed once and then cached until the services are changed
+     */
+    @Override
+    @JsonIgnore
+    public List<URI> getServiceURIs() {
+        List<URI> answer = serviceURIs;
+        if (answer == null) {
+            answer = parseURIs(services);
+            serviceURIs = answer;
+        }
+        return answer;
+    }
+
+    protected static List<URI> parseURIs(List<String> urlStrings) {
+        if (urlStrings == null || urlStrings.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<URI> answer = new ArrayList<URI>(urlStrings.size());
+        for (String urlString : urlStrings) {
+            if (Strings.notEmpty(urlString)) {
+                try {
+                    answer.add(new URI(urlString));
+                } catch (URISyntaxException e) {
+                    LOG.warn("Failed to parse URI: " + urlString + ". " + e, e);
+                }
+            }
+        }
+        return Collections.unmodifiableList(answer);
     }
 
     @Override
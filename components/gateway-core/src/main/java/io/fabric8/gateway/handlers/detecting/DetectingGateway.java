@@ -16,23 +16,26 @@
 package io.fabric8.gateway.handlers.detecting;
 
 import io.fabric8.utils.ShutdownTracker;
-import io.fabric8.utils.Strings;
 import io.fabric8.gateway.ServiceMap;
 import io.fabric8.gateway.SocketWrapper;
 import io.fabric8.gateway.api.ServiceDetails;
 import io.fabric8.gateway.handlers.detecting.protocol.ssl.SslConfig;
+import io.fabric8.gateway.handlers.detecting.protocol.ssl.SslHandshakeMetrics;
 import io.fabric8.gateway.handlers.detecting.protocol.ssl.SslSocketWrapper;
 import io.fabric8.gateway.handlers.loadbalancer.ClientRequestFacadeFactory;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import io.fabric8.gateway.loadbalancer.ClientRequestFacade;
+import io.fabric8.gateway.loadbalancer.LoadAwareLoadBalancer;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Context;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.impl.VertxInternal;
 import org.vertx.java.core.net.NetClient;
 import org.vertx.java.core.net.NetServer;
 import org.vertx.java.core.net.NetSocket;
@@ -45,6 +48,9 @@ import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -52,6 +58,11 @@ import java.util.concurrent.atomic.AtomicReference;
  * A gateway which listens on a port and snoops the initial request bytes from a client
  * to detect the protocol and protocol specific connection parameters such a requested
  * virtual host to handle proxying the connection to an appropriate service.
+ * <p/>
+ * The gateway starts one {@link NetServer} instance per event loop (see {@link #setServerInstances(int)})
+ * which all share the listening port, so accepted connections are spread over the event loops.
+ * Connections to the services are made using a {@link NetClient} which is reused by all the
+ * connections handled on the same event loop.
  */
 public class DetectingGateway implements DetectingGatewayMBean {
 
@@ -62,7 +73,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
     LoadBalancer serviceLoadBalancer;
     String defaultVirtualHost;
     ArrayList<Protocol> protocols;
-    int maxProtocolIdentificationLength;
+    Protocol[] protocolArray = new Protocol[0];
     ClientRequestFacadeFactory clientRequestFacadeFactory = new ClientRequestFacadeFactory("PROTOCOL_SESSION_ID, PROTOCOL_CLIENT_ID, REMOTE_ADDRESS");
     final AtomicReference<InetSocketAddress> httpGateway = new AtomicReference<InetSocketAddress>();
     SslConfig sslConfig;
@@ -71,19 +82,31 @@ public class DetectingGateway implements DetectingGatewayMBean {
     final AtomicLong receivedConnectionAttempts = new AtomicLong();
     final AtomicLong successfulConnectionAttempts = new AtomicLong();
     final AtomicLong failedConnectionAttempts = new AtomicLong();
-    HashSet<SocketWrapper> socketsConnecting = new HashSet<SocketWrapper>();
-    HashSet<ConnectedSocketInfo> socketsConnected = new HashSet<ConnectedSocketInfo>();
+    final Set<SocketWrapper> socketsConnecting = Collections.newSetFromMap(new ConcurrentHashMap<SocketWrapper, Boolean>());
+    final Set<ConnectedSocketInfo> socketsConnected = Collections.newSetFromMap(new ConcurrentHashMap<ConnectedSocketInfo, Boolean>());
     private ShutdownTracker shutdownTacker = new ShutdownTracker();
 
     private int port;
     private String host;
     private NetServer server;
+    private int serverInstances = Runtime.getRuntime().availableProcessors();
+    private boolean tcpNoDelay = true;
+    private int sendBufferSize = -1;
+    private int receiveBufferSize = -1;
+    private int acceptBacklog = -1;
+
+    private final ArrayList<NetServer> servers = new ArrayList<NetServer>();
+    private final AtomicInteger listeningServerInstances = new AtomicInteger();
+    private final ConcurrentMap<Context, NetClient> clients = new ConcurrentHashMap<Context, NetClient>();
+    private NetClient defaultClient;
+    private boolean destroyed;
 
     private FutureHandler<AsyncResult<NetServer>> listenFuture = new FutureHandler<AsyncResult<NetServer>>() {
         @Override
         public void handle(AsyncResult<NetServer> event) {
             if( event.succeeded() ) {
                 LOG.info(String.format("Gateway listening on %s:%d for protocols: %s", server.host(), server.port(), getProtocolNames()));
+                startServerInstances(event.result().port());
             }
             super.handle(event);
         }
@@ -100,16 +123,31 @@ public class DetectingGateway implements DetectingGatewayMBean {
 
 
     public void init() {
-        server = vertx.createNetServer().connectHandler(new DetectingGatewayNetSocketHandler(this));
-        if (host != null) {
-            server = server.listen(port, host, listenFuture);
-        } else {
-            server = server.listen(port, listenFuture);
+        synchronized (servers) {
+            destroyed = false;
+            server = createServer();
+            servers.add(server);
         }
+        listen(server, port, listenFuture);
     }
 
     public void destroy() {
-        server.close();
+        synchronized (servers) {
+            destroyed = true;
+            for (NetServer instance : servers) {
+                instance.close();
+            }
+            servers.clear();
+            listeningServerInstances.set(0);
+            for (NetClient client : clients.values()) {
+                client.close();
+            }
+            clients.clear();
+            if (defaultClient != null) {
+                defaultClient.close();
+                defaultClient = null;
+            }
+        }
         for (SocketWrapper socket : new ArrayList<>(socketsConnecting)) {
             handleConnectFailure(socket, null);
         }
@@ -118,6 +156,114 @@ public class DetectingGateway implements DetectingGatewayMBean {
         }
     }
 
+    /**
+     * Starts the additional server instances on their own event loops once the first
+     * instance is bound, so that they share the actual port even when an ephemeral port was requested.
+     */
+    private void startServerInstances(final int boundPort) {
+        if (serverInstances <= 1) {
+            return;
+        }
+        if (!(vertx instanceof VertxInternal)) {
+            LOG.warn("Cannot start " + serverInstances + " server instances on " + vertx + " so only one event loop will be used");
+            return;
+        }
+        for (int i = 1; i < serverInstances; i++) {
+            ((VertxInternal) vertx).startOnEventLoop(new Runnable() {
+                @Override
+                public void run() {
+                    NetServer instance;
+                    synchronized (servers) {
+                        if (destroyed) {
+                            return;
+                        }
+                        instance = createServer();
+                        servers.add(instance);
+                    }
+                    listen(instance, boundPort, new Handler<AsyncResult<NetServer>>() {
+                        @Override
+                        public void handle(AsyncResult<NetServer> event) {
+                            if (event.failed()) {
+                                LOG.warn(String.format("Gateway server instance failed to listen on port %d: %s", boundPort, event.cause()), event.cause());
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    private NetServer createServer() {
+        NetServer answer = vertx.createNetServer();
+        answer.setTCPNoDelay(tcpNoDelay);
+        if (sendBufferSize > 0) {
+            answer.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            answer.setReceiveBufferSize(receiveBufferSize);
+        }
+        if (acceptBacklog > 0) {
+            answer.setAcceptBacklog(acceptBacklog);
+        }
+        return answer.connectHandler(new DetectingGatewayNetSocketHandler(this));
+    }
+
+    private void listen(NetServer instance, int port, final Handler<AsyncResult<NetServer>> handler) {
+        Handler<AsyncResult<NetServer>> listenHandler = new Handler<AsyncResult<NetServer>>() {
+            @Override
+            public void handle(AsyncResult<NetServer> event) {
+                if (event.succeeded()) {
+                    listeningServerInstances.incrementAndGet();
+                }
+                handler.handle(event);
+            }
+        };
+        if (host != null) {
+            instance.listen(port, host, listenHandler);
+        } else {
+            instance.listen(port, listenHandler);
+        }
+    }
+
+    /**
+     * Returns the client used to connect to the services from the current event loop,
+     * creating it the first time it is needed.
+     */
+    private NetClient getNetClient() {
+        Context context = vertx.currentContext();
+        if (context == null) {
+            synchronized (servers) {
+                if (defaultClient == null) {
+                    defaultClient = createNetClient();
+                }
+                return defaultClient;
+            }
+        }
+        NetClient answer = clients.get(context);
+        if (answer == null) {
+            NetClient client = createNetClient();
+            answer = clients.putIfAbsent(context, client);
+            if (answer == null) {
+                answer = client;
+            } else {
+                client.close();
+            }
+        }
+        return answer;
+    }
+
+    private NetClient createNetClient() {
+        NetClient answer = vertx.createNetClient();
+        answer.setTCPNoDelay(tcpNoDelay);
+        if (sendBufferSize > 0) {
+            answer.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            answer.setReceiveBufferSize(receiveBufferSize);
+        }
+        return answer;
+    }
+
     public String getHost() {
         return host;
     }
@@ -164,13 +310,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
 
     public void setProtocols(ArrayList<Protocol> protocols) {
         this.protocols = new ArrayList<Protocol>(protocols);
-        int max = 0;
-        for (Protocol protocol : protocols) {
-            if( protocol.getMaxIdentificationLength() > max ) {
-                max = protocol.getMaxIdentificationLength();
-            }
-        }
-        maxProtocolIdentificationLength = max;
+        this.protocolArray = protocols.toArray(new Protocol[protocols.size()]);
     }
 
     public Collection<String> getProtocolNames() {
@@ -183,6 +323,22 @@ public class DetectingGateway implements DetectingGatewayMBean {
 
     SSLContext sslContext;
     SslSocketWrapper.ClientAuth clientAuth = SslSocketWrapper.ClientAuth.WANT;
+    final SslHandshakeMetrics sslHandshakeMetrics = new SslHandshakeMetrics();
+
+    /**
+     * Lazily creates the SSL context which is shared by all the event loops, so that they share
+     * its session cache
+     */
+    synchronized SSLContext getSslContext() throws Exception {
+        if (sslContext == null) {
+            if (sslConfig != null) {
+                sslContext = sslConfig.createSSLContext();
+            } else {
+                sslContext = SSLContext.getDefault();
+            }
+        }
+        return sslContext;
+    }
 
     public void setShutdownTacker(ShutdownTracker shutdownTacker) {
 
@@ -195,12 +351,16 @@ public class DetectingGateway implements DetectingGatewayMBean {
         private final URI url;
         private final SocketWrapper from;
         private final NetSocket to;
+        private final ServiceDetails service;
+        private final long connectTime;
 
-        public ConnectedSocketInfo(ConnectionParameters params, URI url, SocketWrapper from, NetSocket to) {
+        public ConnectedSocketInfo(ConnectionParameters params, URI url, SocketWrapper from, NetSocket to, ServiceDetails service, long connectTime) {
             this.params = params;
             this.url = url;
             this.from = from;
             this.to = to;
+            this.service = service;
+            this.connectTime = connectTime;
         }
     }
 
@@ -233,13 +393,33 @@ public class DetectingGateway implements DetectingGatewayMBean {
             }
         });
         readStream.dataHandler(new Handler<Buffer>() {
-            Buffer received = new Buffer();
+            Buffer received;
+            // the number of received bytes the candidates have already been checked against.
+            int inspected;
+            // the protocols which may still match, a protocol is dropped as soon as the received
+            // bytes rule it out or once its identification length has been received without a match.
+            Protocol[] candidates = protocolArray;
+            int candidateCount = candidates.length;
+            // set once a protocol matched, later chunks are forwarded with the received bytes.
+            boolean detected;
 
             @Override
             public void handle(Buffer event) {
-                received.appendBuffer(event);
-                for (final Protocol protocol : protocols) {
+                // take over the first chunk instead of copying it like the ProtocolDecoder does
+                if (received == null) {
+                    received = event;
+                } else {
+                    received.appendBuffer(event);
+                }
+                int length = received.length();
+                if (detected || length == inspected) {
+                    return;
+                }
+                inspected = length;
+                for (int i = 0; i < candidateCount; ) {
+                    final Protocol protocol = candidates[i];
                     if (protocol.matches(received)) {
+                        detected = true;
                         if ("ssl".equals(protocol.getProtocolName())) {
 
                             LOG.info(String.format("SSL Connection from '%s'", socket.remoteAddress()));
@@ -249,22 +429,17 @@ public class DetectingGateway implements DetectingGatewayMBean {
                                 disabledCypherSuites = sslConfig.getDisabledCypherSuites();
                                 enabledCipherSuites = sslConfig.getEnabledCipherSuites();
                             }
-                            if (sslContext == null) {
-                                try {
-                                    if (sslConfig != null) {
-                                        sslContext = SSLContext.getInstance(sslConfig.getProtocol());
-                                        sslContext.init(sslConfig.getKeyManagers(), sslConfig.getTrustManagers(), null);
-                                    } else {
-                                        sslContext = SSLContext.getDefault();
-                                    }
-                                } catch (Exception e) {
-                                    handleConnectFailure(socket, "Could initialize SSL: " + e);
-                                    return;
-                                }
+                            SSLContext sslContext;
+                            try {
+                                sslContext = getSslContext();
+                            } catch (Exception e) {
+                                handleConnectFailure(socket, "Could initialize SSL: " + e);
+                                return;
                             }
 
                             // lets wrap it up in a SslSocketWrapper.
                             SslSocketWrapper sslSocketWrapper = new SslSocketWrapper(socket);
+                            sslSocketWrapper.setHandshakeMetrics(sslHandshakeMetrics);
                             sslSocketWrapper.putBackHeader(received);
                             sslSocketWrapper.initServer(sslContext, clientAuth, disabledCypherSuites, enabledCipherSuites);
                             DetectingGateway.this.handle(sslSocketWrapper);
@@ -279,7 +454,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
                                             socket.remoteAddress(), url.getHost(), url.getPort()));
                                     ConnectionParameters params = new ConnectionParameters();
                                     params.protocol = "http";
-                                    createClient(params, socket, url, received);
+                                    createClient(params, socket, url, received, null);
                                     return;
                                 } catch (URISyntaxException e) {
                                     handleConnectFailure(socket, "Could not build valid connect URI: "+e);
@@ -304,8 +479,17 @@ public class DetectingGateway implements DetectingGatewayMBean {
                             return;
                         }
                     }
+                    if (length >= protocol.getMaxIdentificationLength() || !protocol.canMatch(received)) {
+                        if (candidates == protocolArray) {
+                            candidates = candidates.clone();
+                        }
+                        System.arraycopy(candidates, i + 1, candidates, i, candidateCount - i - 1);
+                        candidateCount--;
+                    } else {
+                        i++;
+                    }
                 }
-                if (received.length() >= maxProtocolIdentificationLength) {
+                if (candidateCount == 0) {
                     handleConnectFailure(socket, "Connection did not use one of the enabled protocols " + getProtocolNames());
                 }
             }
@@ -329,7 +513,6 @@ public class DetectingGateway implements DetectingGatewayMBean {
         if( params.protocolVirtualHost==null ) {
             params.protocolVirtualHost = defaultVirtualHost;
         }
-        HashSet<String> schemes = new HashSet<String>(Arrays.asList(params.protocolSchemes));
         if(params.protocolVirtualHost!=null) {
             List<ServiceDetails> services = serviceMap.getServices(params.protocolVirtualHost);
 
@@ -341,38 +524,41 @@ public class DetectingGateway implements DetectingGatewayMBean {
 
             LOG.debug(String.format("%d services match the virtual host", services.size()));
             if (!services.isEmpty()) {
-                ClientRequestFacade clientRequestFacade = clientRequestFacadeFactory.create(socket, params);
-                ServiceDetails serviceDetails = serviceLoadBalancer.choose(services, clientRequestFacade);
-                if (serviceDetails != null) {
-                    List<String> urlStrings = serviceDetails.getServices();
-                    LOG.debug("Selected service exposes the following URLS: {}", urlStrings);
-                    for (String urlString : urlStrings) {
-                        if (Strings.notEmpty(urlString)) {
-                            // lets create a client for this request...
-                            try {
-                                URI uri = new URI(urlString);
-                                //URL url = new URL(urlString);
-                                String urlProtocol = uri.getScheme();
-                                if (schemes.contains(urlProtocol)) {
-                                    if( !socket.remoteAddress().toString().equals(clientRequestFacade.getClientRequestKey())  ) {
-                                        LOG.info(String.format("Connecting client from '%s' (with key '%s') requesting virtual host '%s' to '%s:%d' using the %s protocol",
-                                            socket.remoteAddress(), clientRequestFacade.getClientRequestKey(), params.protocolVirtualHost, uri.getHost(), uri.getPort(), params.protocol
-                                          ));
-                                    } else {
-                                        LOG.info(String.format("Connecting client from '%s' requesting virtual host '%s' to '%s:%d' using the %s protocol",
-                                            socket.remoteAddress(), params.protocolVirtualHost, uri.getHost(), uri.getPort(), params.protocol
-                                          ));
-                                    }
-
-                                    client = createClient(params, socket, uri, received);
-                                    break;
-                                }
-                            } catch (URISyntaxException e) {
-                                LOG.warn("Failed to parse URI: " + urlString + ". " + e, e);
+                // lets balance over the URLs of the services which support the protocol, as the
+                // load aware load balancers track the load of TCP and HTTP services by their URL
+                Map<String, URI> serviceUris = new LinkedHashMap<String, URI>();
+                Map<String, ServiceDetails> serviceDetailsByUrl = new HashMap<String, ServiceDetails>();
+                for (ServiceDetails serviceDetails : services) {
+                    // the service URIs are parsed once by the service details rather than on every connection
+                    for (URI uri : serviceDetails.getServiceURIs()) {
+                        if (containsScheme(params.protocolSchemes, uri.getScheme())) {
+                            String serviceUrl = uri.toString();
+                            if (!serviceUris.containsKey(serviceUrl)) {
+                                serviceUris.put(serviceUrl, uri);
+                                serviceDetailsByUrl.put(serviceUrl, serviceDetails);
                             }
+                            break;
                         }
                     }
                 }
+                LOG.debug("Services expose the following URIs for the protocol: {}", serviceUris.keySet());
+                ClientRequestFacade clientRequestFacade = clientRequestFacadeFactory.create(socket, params);
+                String serviceUrl = serviceLoadBalancer.choose(new ArrayList<String>(serviceUris.keySet()), clientRequestFacade);
+                if (serviceUrl != null) {
+                    URI uri = serviceUris.get(serviceUrl);
+                    if( !socket.remoteAddress().toString().equals(clientRequestFacade.getClientRequestKey())  ) {
+                        LOG.info(String.format("Connecting client from '%s' (with key '%s') requesting virtual host '%s' to '%s:%d' using the %s protocol",
+                            socket.remoteAddress(), clientRequestFacade.getClientRequestKey(), params.protocolVirtualHost, uri.getHost(), uri.getPort(), params.protocol
+                          ));
+                    } else {
+                        LOG.info(String.format("Connecting client from '%s' requesting virtual host '%s' to '%s:%d' using the %s protocol",
+                            socket.remoteAddress(), params.protocolVirtualHost, uri.getHost(), uri.getPort(), params.protocol
+                          ));
+                    }
+
+                    // lets create a client for this request...
+                    client = createClient(params, socket, uri, received, serviceDetailsByUrl.get(serviceUrl));
+                }
             }
         }
 
@@ -382,22 +568,42 @@ public class DetectingGateway implements DetectingGatewayMBean {
         }
     }
 
+    private static boolean containsScheme(String[] schemes, String scheme) {
+        if (schemes != null) {
+            for (String value : schemes) {
+                if (value.equals(scheme)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
-     * Creates a new client for the given URL and handler
+     * Connects to the given URL using the client of the current event loop
      */
-    private NetClient createClient(final ConnectionParameters params, final SocketWrapper socketFromClient, final URI url, final Buffer received) {
-        NetClient netClient = vertx.createNetClient();
+    private NetClient createClient(final ConnectionParameters params, final SocketWrapper socketFromClient, final URI url, final Buffer received, final ServiceDetails service) {
+        NetClient netClient = getNetClient();
+        final LoadAwareLoadBalancer loadAwareLoadBalancer = getLoadAwareLoadBalancer(service);
+        final String serviceUrl = url.toString();
+        if (loadAwareLoadBalancer != null) {
+            loadAwareLoadBalancer.requestStarted(serviceUrl);
+        }
+        final long connectStart = System.nanoTime();
         return netClient.connect(url.getPort(), url.getHost(), new Handler<AsyncResult<NetSocket>>() {
             public void handle(final AsyncResult<NetSocket> asyncSocket) {
 
                 if( !asyncSocket.succeeded() ) {
+                    if (loadAwareLoadBalancer != null) {
+                        loadAwareLoadBalancer.requestFailed(serviceUrl);
+                    }
                     handleConnectFailure(socketFromClient, String.format("Could not connect to '%s'", url));
                 } else {
                     final NetSocket socketToServer = asyncSocket.result();
 
                     successfulConnectionAttempts.incrementAndGet();
                     socketsConnecting.remove(socketFromClient);
-                    final ConnectedSocketInfo connectedInfo = new ConnectedSocketInfo(params, url, socketFromClient, socketToServer);
+                    final ConnectedSocketInfo connectedInfo = new ConnectedSocketInfo(params, url, socketFromClient, socketToServer, service, System.nanoTime() - connectStart);
                     socketsConnected.add(connectedInfo);
 
                     Handler<Void> endHandler = new Handler<Void>() {
@@ -425,8 +631,23 @@ public class DetectingGateway implements DetectingGatewayMBean {
         });
     }
 
+    /**
+     * Returns the load balancer to notify of the connections to the service if it is load aware
+     */
+    private LoadAwareLoadBalancer getLoadAwareLoadBalancer(ServiceDetails service) {
+        if (service != null && serviceLoadBalancer instanceof LoadAwareLoadBalancer) {
+            return (LoadAwareLoadBalancer) serviceLoadBalancer;
+        }
+        return null;
+    }
+
     private void handleShutdown(ConnectedSocketInfo connectedInfo) {
         if( socketsConnected.remove(connectedInfo) ) {
+            LoadAwareLoadBalancer loadAwareLoadBalancer = getLoadAwareLoadBalancer(connectedInfo.service);
+            if (loadAwareLoadBalancer != null) {
+                // the connection time is the best measure of the service's responsiveness we have for TCP
+                loadAwareLoadBalancer.requestCompleted(connectedInfo.url.toString(), connectedInfo.connectTime);
+            }
             connectedInfo.from.close();
             connectedInfo.to.close();
             shutdownTacker.release();
@@ -494,4 +715,86 @@ public class DetectingGateway implements DetectingGatewayMBean {
     public void setPort(int port) {
         this.port = port;
     }
+
+    public int getServerInstances() {
+        return serverInstances;
+    }
+
+    /**
+     * Returns the number of server instances which are currently listening on the port
+     */
+    public int getListeningServerInstances() {
+        return listeningServerInstances.get();
+    }
+
+    public long getSslHandshakes() {
+        return sslHandshakeMetrics.getCompleted();
+    }
+
+    public long getResumedSslHandshakes() {
+        return sslHandshakeMetrics.getResumed();
+    }
+
+    public long getFailedSslHandshakes() {
+        return sslHandshakeMetrics.getFailed();
+    }
+
+    public double getSslHandshakeRate() {
+        return sslHandshakeMetrics.getRate();
+    }
+
+    public String getSslHandshakeLatencies() {
+        return sslHandshakeMetrics.getLatencies();
+    }
+
+    /**
+     * Sets the number of server instances (each on its own event loop) which share the port,
+     * defaults to the number of available processors.
+     */
+    public void setServerInstances(int serverInstances) {
+        this.serverInstances = serverInstances;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * Sets TCP_NODELAY on both the client and the service side connections
+     */
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    /**
+     * Sets the socket send buffer size of both the client and the service side connections,
+     * the operating system default is used if not positive.
+     */
+    public void setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * Sets the socket receive buffer size of both the client and the service side connections,
+     * the operating system default is used if not positive.
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public int getAcceptBacklog() {
+        return acceptBacklog;
+    }
+
+    public void setAcceptBacklog(int acceptBacklog) {
+        this.acceptBacklog = acceptBacklog;
+    }
 }
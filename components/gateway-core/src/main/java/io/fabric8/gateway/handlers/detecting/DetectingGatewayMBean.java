@@ -34,5 +34,16 @@ public interface DetectingGatewayMBean {
     public String[] getConnectedClients();
     public long getConnectionTimeout();
     public void setConnectionTimeout(long connectionTimeout);
+    public int getServerInstances();
+    public int getListeningServerInstances();
+    public boolean isTcpNoDelay();
+    public int getSendBufferSize();
+    public int getReceiveBufferSize();
+    public int getAcceptBacklog();
+    public long getSslHandshakes();
+    public long getResumedSslHandshakes();
+    public long getFailedSslHandshakes();
+    public double getSslHandshakeRate();
+    public String getSslHandshakeLatencies();
 
 }
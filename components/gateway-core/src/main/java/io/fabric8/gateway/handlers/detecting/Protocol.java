@@ -29,6 +29,12 @@ public interface Protocol {
     public String getProtocolName();
     public int getMaxIdentificationLength();
     public boolean matches(Buffer buffer);
+
+    /**
+     * Returns false once the bytes received so far rule the protocol out, so the
+     * gateway can stop inspecting it before its identification length has arrived.
+     */
+    public boolean canMatch(Buffer buffer);
     public void snoopConnectionParameters(final SocketWrapper socket, Buffer received, Handler<ConnectionParameters> handler);
 
 }
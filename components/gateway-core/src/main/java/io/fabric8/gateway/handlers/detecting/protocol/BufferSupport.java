@@ -73,11 +73,29 @@ public class BufferSupport {
     }
 
     static public boolean startsWith(Buffer self, Buffer needle) {
-        return indexOf(self, 0, needle.length(), needle) == 0;
+        return startsWith(self, 0, needle);
     }
 
     static public boolean startsWith(Buffer self, int start, Buffer needle) {
-        return indexOf(self, start, start+needle.length(), needle) == 0;
+        return start + needle.length() <= self.length() && matches(self, start, needle);
+    }
+
+    /**
+     * Returns true if the bytes of self from start agree with the needle for as far
+     * as self reaches, so that self may still start with the needle once more bytes arrive.
+     */
+    static public boolean couldStartWith(Buffer self, Buffer needle) {
+        return couldStartWith(self, 0, needle);
+    }
+
+    static public boolean couldStartWith(Buffer self, int start, Buffer needle) {
+        int length = Math.min(self.length() - start, needle.length());
+        for (int i = 0; i < length; i++) {
+            if( self.getByte(start+i) != needle.getByte(i) ) {
+                return false;
+            }
+        }
+        return true;
     }
 
     static public int indexOf(Buffer self, int start, Buffer needle) {
@@ -69,6 +69,11 @@ public class MqttProtocol implements Protocol {
         }
     }
 
+    @Override
+    public boolean canMatch(Buffer header) {
+        return BufferSupport.couldStartWith(header, HEAD_MAGIC);
+    }
+
     static void append(Buffer self, MQTTFrame value) {
         MQTTFrame frame = (MQTTFrame) value;
         self.appendByte(frame.header());
@@ -0,0 +1,92 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.openwire;
+
+import io.fabric8.gateway.handlers.detecting.protocol.ProtocolDecoder;
+import io.netty.buffer.ByteBuf;
+import org.fusesource.hawtbuf.Buffer;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+
+/**
+ * Splits the received data into size prefixed Openwire frames, which are handed to
+ * {@link #decode(Buffer)} as views that share the received data whenever it is heap backed.
+ */
+abstract class OpenwireFrameDecoder<T> extends ProtocolDecoder<T> {
+
+    protected final OpenwireProtocol protocol;
+    private int frameLength;
+
+    protected OpenwireFrameDecoder(OpenwireProtocol protocol) {
+        this.protocol = protocol;
+    }
+
+    /**
+     * Decodes a frame, including its size prefix
+     */
+    protected abstract T decode(Buffer frame) throws IOException;
+
+    @Override
+    protected Action<T> initialDecodeAction() {
+        return read_header;
+    }
+
+    /**
+     * Marks all the received data as examined so decoding resumes as soon as more data arrives
+     */
+    private T needMoreData() {
+        readEnd = buff.length();
+        return null;
+    }
+
+    final Action<T> read_header = new Action<T>() {
+        public T apply() throws IOException {
+            if( buff.length() < readStart + 4 ) {
+                return needMoreData();
+            }
+            frameLength = buff.getInt(readStart);
+            if( frameLength < 0 || frameLength > protocol.maxFrameSize ) {
+                throw new ProtocolException("Max frame size exceeded.");
+            }
+            nextDecodeAction = read_frame;
+            return read_frame.apply();
+        }
+    };
+
+    final Action<T> read_frame = new Action<T>() {
+        public T apply() throws IOException {
+            readEnd = readStart + 4 + frameLength;
+            if( buff.length() < readEnd ) {
+                return needMoreData();
+            }
+            int offset = readStart;
+            bytesDecoded += readEnd - readStart;
+            readStart = readEnd;
+            nextDecodeAction = read_header;
+
+            Buffer frame;
+            ByteBuf buf = buff.getByteBuf();
+            if( buf.hasArray() ) {
+                frame = new Buffer(buf.array(), buf.arrayOffset() + offset, 4 + frameLength);
+            } else {
+                frame = new Buffer(buff.getBytes(offset, readEnd));
+            }
+            return decode(frame);
+        }
+    };
+
+}
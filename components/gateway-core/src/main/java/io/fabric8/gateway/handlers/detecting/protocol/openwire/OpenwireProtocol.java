@@ -16,8 +16,6 @@
 package io.fabric8.gateway.handlers.detecting.protocol.openwire;
 
 import io.fabric8.gateway.handlers.detecting.Protocol;
-import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.Command;
-import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.WireFormatInfo;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import io.fabric8.gateway.SocketWrapper;
 import org.slf4j.Logger;
@@ -25,8 +23,6 @@ import org.slf4j.LoggerFactory;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 
-import java.io.IOException;
-
 import static io.fabric8.gateway.handlers.detecting.protocol.BufferSupport.indexOf;
 
 /**
@@ -60,10 +56,16 @@ public class OpenwireProtocol implements Protocol {
         return buffer.length() >= 4 + MAGIC.length() && indexOf(buffer, 5, MAGIC) >= 0;
     }
 
+    @Override
+    public boolean canMatch(Buffer buffer) {
+        // the magic follows a variable length prefix, so only the full window can rule it out.
+        return buffer.length() < getMaxIdentificationLength() || matches(buffer);
+    }
+
     @Override
     public void snoopConnectionParameters(final SocketWrapper socket, Buffer received, final Handler<ConnectionParameters> handler) {
 
-        OpenwireProtocolDecoder h = new OpenwireProtocolDecoder(this);
+        WireFormatInfoDecoder h = new WireFormatInfoDecoder(this);
         h.errorHandler(new Handler<String>() {
             @Override
             public void handle(String error) {
@@ -71,22 +73,10 @@ public class OpenwireProtocol implements Protocol {
                 socket.close();
             }
         });
-        h.codecHandler(new Handler<Command>() {
+        h.codecHandler(new Handler<ConnectionParameters>() {
             @Override
-            public void handle(Command event) {
-                if( event instanceof WireFormatInfo){
-                    WireFormatInfo info = (WireFormatInfo) event;
-                    ConnectionParameters parameters = new ConnectionParameters();
-                    try {
-                        parameters.protocolVirtualHost = info.getHost();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                    handler.handle(parameters);
-                } else {
-                    LOG.info("Expected a WireFormatInfo frame");
-                    socket.close();
-                }
+            public void handle(ConnectionParameters parameters) {
+                handler.handle(parameters);
             }
         });
         socket.readStream().dataHandler(h);
@@ -0,0 +1,107 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.openwire;
+
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.WireFormatInfo;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.support.MarshallingSupport;
+import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
+import org.fusesource.hawtbuf.Buffer;
+import org.fusesource.hawtbuf.DataByteArrayInputStream;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+
+import static io.fabric8.gateway.handlers.detecting.protocol.openwire.support.MarshallingSupport.BIG_STRING_TYPE;
+import static io.fabric8.gateway.handlers.detecting.protocol.openwire.support.MarshallingSupport.NULL;
+import static io.fabric8.gateway.handlers.detecting.protocol.openwire.support.MarshallingSupport.STRING_TYPE;
+
+/**
+ * Decodes the connection parameters used for routing from the <code>WireFormatInfo</code>
+ * frame an Openwire client opens the connection with.
+ * <p/>
+ * Only the fields the gateway needs are read, straight from the received frame, instead of
+ * unmarshalling the whole command and its property map. The frame is always loosely encoded
+ * since the client has not negotiated the wire format with the broker yet.
+ */
+class WireFormatInfoDecoder extends OpenwireFrameDecoder<ConnectionParameters> {
+
+    private static final int MAX_PROPERTIES = 1024 * 4;
+    private static final byte[] HOST = new byte[]{'H', 'o', 's', 't'};
+
+    public WireFormatInfoDecoder(OpenwireProtocol protocol) {
+        super(protocol);
+    }
+
+    @Override
+    protected ConnectionParameters decode(Buffer frame) throws IOException {
+        DataByteArrayInputStream in = new DataByteArrayInputStream(frame);
+        in.skipBytes(4); // the size prefix
+        if( in.readByte() != WireFormatInfo.DATA_STRUCTURE_TYPE ) {
+            throw new ProtocolException("Expected a WireFormatInfo frame");
+        }
+        // the magic was already checked when the protocol was detected
+        in.skipBytes(OpenwireProtocol.MAGIC.length() + 4); // the magic and the version
+
+        ConnectionParameters parameters = new ConnectionParameters();
+        if( in.readBoolean() ) {
+            in.readInt(); // the length of the marshalled properties
+            int size = in.readInt();
+            if( size > MAX_PROPERTIES ) {
+                throw new ProtocolException("Primitive map is larger than the allowed size: " + size);
+            }
+            for( int i = 0; i < size; i++ ) {
+                int nameLength = in.readUnsignedShort();
+                boolean host = isHost(in, nameLength);
+                in.skipBytes(nameLength);
+                if( host ) {
+                    parameters.protocolVirtualHost = readString(in);
+                } else {
+                    MarshallingSupport.skipPrimitive(in);
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static boolean isHost(DataByteArrayInputStream in, int nameLength) {
+        if( nameLength != HOST.length || in.available() < nameLength ) {
+            return false;
+        }
+        byte[] data = in.getRawData();
+        int pos = in.getPos();
+        for( int i = 0; i < HOST.length; i++ ) {
+            if( data[pos + i] != HOST[i] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readString(DataByteArrayInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch( type ) {
+            case STRING_TYPE:
+                return in.readUTF();
+            case BIG_STRING_TYPE:
+                return MarshallingSupport.readUTF8(in);
+            case NULL:
+                return null;
+            default:
+                throw new ProtocolException("Expected a string Host property");
+        }
+    }
+
+}
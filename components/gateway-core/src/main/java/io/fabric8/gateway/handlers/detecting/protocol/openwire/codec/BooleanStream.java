@@ -19,6 +19,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public final class BooleanStream {
 
@@ -103,6 +104,16 @@ public final class BooleanStream {
         clear();
     }
 
+    /**
+     * Empties the stream so that it can be reused to write a new set of booleans
+     */
+    public void reset() {
+        // an unmarshalled stream may have left bytes beyond its limit so the whole array is cleared
+        Arrays.fill(data, (byte) 0);
+        arrayLimit = 0;
+        clear();
+    }
+
     public void clear() {
         arrayPos = 0;
         bytePos = 0;
@@ -31,10 +31,13 @@ import java.nio.channels.ReadableByteChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * 
+ * Marshals and unmarshals OpenWire commands.
+ * <p/>
+ * Instances hold per connection state (the negotiated options, the value caches and
+ * the reused marshalling buffers) so they are not thread safe: each connection must
+ * use its own instance and only access it from the thread handling that connection.
  */
 public final class OpenWireFormat {
 
@@ -63,8 +66,7 @@ public final class OpenWireFormat {
     private DataStructure unmarshallCache[] = new DataStructure[MARSHAL_CACHE_SIZE];
     private DataByteArrayOutputStream bytesOut = new DataByteArrayOutputStream();
     private DataByteArrayInputStream bytesIn = new DataByteArrayInputStream();
-
-    private AtomicBoolean receivingMessage = new AtomicBoolean(false);
+    private final BooleanStream booleanStream = new BooleanStream();
 
     public OpenWireFormat() {
         this(DEFAULT_VERSION);
@@ -114,7 +116,7 @@ public final class OpenWireFormat {
         return WIREFORMAT_NAME;
     }
 
-    public synchronized Buffer marshal(Object command) throws IOException {
+    public Buffer marshal(Object command) throws IOException {
 
         if (cacheEnabled) {
             runMarshallCacheEvictionSweep();
@@ -145,7 +147,8 @@ public final class OpenWireFormat {
                 }
                 if (tightEncodingEnabled) {
 
-                    BooleanStream bs = new BooleanStream();
+                    BooleanStream bs = booleanStream;
+                    bs.reset();
                     size += dsm.tightMarshal1(this, c, bs);
                     size += bs.marshalledSize();
 
@@ -192,7 +195,7 @@ public final class OpenWireFormat {
         return sequence;
     }
 
-    public synchronized Object unmarshal(Buffer sequence) throws IOException {
+    public Object unmarshal(Buffer sequence) throws IOException {
         bytesIn.restart(sequence);
         // DataByteArrayInputStreamStream dis = new DataByteArrayInputStreamStream(new
         // ByteArrayInputStream(sequence));
@@ -219,7 +222,7 @@ public final class OpenWireFormat {
         return command;
     }
 
-    public synchronized void marshal(Object o, DataByteArrayOutputStream dataOut) throws IOException {
+    public void marshal(Object o, DataByteArrayOutputStream dataOut) throws IOException {
 
         if (cacheEnabled) {
             runMarshallCacheEvictionSweep();
@@ -235,7 +238,8 @@ public final class OpenWireFormat {
                 throw new IOException("Unknown data type: " + type);
             }
             if (tightEncodingEnabled) {
-                BooleanStream bs = new BooleanStream();
+                BooleanStream bs = booleanStream;
+                bs.reset();
                 size += dsm.tightMarshal1(this, c, bs);
                 size += bs.marshalledSize();
 
@@ -366,7 +370,6 @@ public final class OpenWireFormat {
 
     public Object doUnmarshal(DataByteArrayInputStream dis) throws IOException {
         byte dataType = dis.readByte();
-        receivingMessage.set(true);
         if (dataType != NULL_TYPE) {
             DataStreamMarshaller dsm = (DataStreamMarshaller) dataMarshallers[dataType & 0xFF];
             if (dsm == null) {
@@ -374,16 +377,14 @@ public final class OpenWireFormat {
             }
             Object data = dsm.createObject();
             if (this.tightEncodingEnabled) {
-                BooleanStream bs = new BooleanStream();
+                BooleanStream bs = booleanStream;
                 bs.unmarshal(dis);
                 dsm.tightUnmarshal(this, data, dis, bs);
             } else {
                 dsm.looseUnmarshal(this, data, dis);
             }
-            receivingMessage.set(false);
             return data;
         } else {
-            receivingMessage.set(false);
             return null;
         }
     }
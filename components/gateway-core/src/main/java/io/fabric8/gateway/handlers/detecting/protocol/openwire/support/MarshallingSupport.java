@@ -19,6 +19,7 @@ import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.UTFDataFormatException;
 import java.util.ArrayList;
@@ -202,6 +203,62 @@ public final class MarshallingSupport {
         return value;
     }
 
+    /**
+     * Skips over a primitive value written by {@link #marshalPrimitive(DataOutputStream, Object)}
+     * without creating it.
+     */
+    public static void skipPrimitive(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case NULL:
+            break;
+        case BYTE_TYPE:
+        case BOOLEAN_TYPE:
+            skipFully(in, 1);
+            break;
+        case CHAR_TYPE:
+        case SHORT_TYPE:
+            skipFully(in, 2);
+            break;
+        case INTEGER_TYPE:
+        case FLOAT_TYPE:
+            skipFully(in, 4);
+            break;
+        case LONG_TYPE:
+        case DOUBLE_TYPE:
+            skipFully(in, 8);
+            break;
+        case BYTE_ARRAY_TYPE:
+            skipFully(in, in.readInt());
+            break;
+        case STRING_TYPE:
+            skipFully(in, in.readUnsignedShort());
+            break;
+        case BIG_STRING_TYPE:
+            skipFully(in, Math.max(in.readInt(), 0));
+            break;
+        case MAP_TYPE:
+            for (int size = in.readInt(); size > 0; size--) {
+                skipFully(in, in.readUnsignedShort());
+                skipPrimitive(in);
+            }
+            break;
+        case LIST_TYPE:
+            for (int size = in.readInt(); size > 0; size--) {
+                skipPrimitive(in);
+            }
+            break;
+        default:
+            throw new IOException("Unknown primitive type: " + type);
+        }
+    }
+
+    private static void skipFully(DataInput in, int length) throws IOException {
+        if (length < 0 || in.skipBytes(length) != length) {
+            throw new EOFException();
+        }
+    }
+
     public static void marshalNull(DataOutputStream out) throws IOException {
         out.writeByte(NULL);
     }
@@ -0,0 +1,63 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.ssl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Per thread pools of direct {@link ByteBuffer}s which the {@link SslSocketWrapper} uses as the output of
+ * the <code>SSLEngine</code> wraps and unwraps, so that a TLS connection does not allocate a scratch
+ * buffer on every read and write. Buffers are only ever used by the event loop thread which acquired them.
+ */
+final class SslBufferPool {
+
+    private static final int MAX_POOLED_BUFFERS = 4;
+
+    private static final ThreadLocal<ArrayDeque<ByteBuffer>> POOL = new ThreadLocal<ArrayDeque<ByteBuffer>>() {
+        @Override
+        protected ArrayDeque<ByteBuffer> initialValue() {
+            return new ArrayDeque<ByteBuffer>(MAX_POOLED_BUFFERS);
+        }
+    };
+
+    private SslBufferPool() {
+    }
+
+    /**
+     * Returns a cleared buffer with at least the given capacity
+     */
+    static ByteBuffer acquire(int size) {
+        ArrayDeque<ByteBuffer> pool = POOL.get();
+        ByteBuffer buffer = pool.pollFirst();
+        // buffers which are too small for the negotiated session are dropped
+        while (buffer != null && buffer.capacity() < size) {
+            buffer = pool.pollFirst();
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(size);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    static void release(ByteBuffer buffer) {
+        ArrayDeque<ByteBuffer> pool = POOL.get();
+        if (pool.size() < MAX_POOLED_BUFFERS) {
+            pool.addFirst(buffer);
+        }
+    }
+}
@@ -53,6 +53,15 @@ public class SslConfig {
     String disabledCypherSuites;
     String enabledCipherSuites;
 
+    /**
+     * The system property which enables the stateless TLS session tickets (RFC 5077) of the JDK
+     */
+    public static final String SESSION_TICKETS_PROPERTY = "jdk.tls.server.enableSessionTicketExtension";
+
+    private int sessionCacheSize = -1;
+    private int sessionTimeout = -1;
+    private Boolean sessionTicketsEnabled;
+
     public SslConfig() {
     }
 
@@ -167,6 +176,29 @@ public class SslConfig {
       return keyManagers;
     }
 
+    /**
+     * Creates the SSL context of the key and trust managers with the configured server session cache
+     * so that reconnecting clients can resume their sessions with an abbreviated handshake.
+     */
+    public SSLContext createSSLContext() throws Exception {
+        if (sessionTicketsEnabled != null && System.getProperty(SESSION_TICKETS_PROPERTY) == null) {
+            // only honoured by JDKs which support session tickets and before their TLS implementation is initialized
+            System.setProperty(SESSION_TICKETS_PROPERTY, sessionTicketsEnabled.toString());
+        }
+        SSLContext context = SSLContext.getInstance(getProtocol());
+        context.init(getKeyManagers(), getTrustManagers(), null);
+        SSLSessionContext sessionContext = context.getServerSessionContext();
+        if (sessionContext != null) {
+            if (sessionCacheSize >= 0) {
+                sessionContext.setSessionCacheSize(sessionCacheSize);
+            }
+            if (sessionTimeout >= 0) {
+                sessionContext.setSessionTimeout(sessionTimeout);
+            }
+        }
+        return context;
+    }
+
     public String getProtocol() {
         return protocol;
     }
@@ -301,6 +333,40 @@ public class SslConfig {
         return enabledCipherSuites;
     }
 
+    public int getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of cached server sessions, 0 means unlimited and a negative value keeps the JDK default
+     */
+    public void setSessionCacheSize(int sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+    }
+
+    public int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * Sets the number of seconds a cached server session can be resumed for, 0 means no limit and a negative
+     * value keeps the JDK default
+     */
+    public void setSessionTimeout(int sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+    }
+
+    public Boolean getSessionTicketsEnabled() {
+        return sessionTicketsEnabled;
+    }
+
+    /**
+     * Enables or disables the stateless session tickets of the JDK, null keeps the JDK default
+     */
+    public void setSessionTicketsEnabled(Boolean sessionTicketsEnabled) {
+        this.sessionTicketsEnabled = sessionTicketsEnabled;
+    }
+
     public void setEnabledCipherSuites(String enabledCipherSuites) {
         this.enabledCipherSuites = enabledCipherSuites;
     }
@@ -0,0 +1,133 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.ssl;
+
+import io.fabric8.gateway.api.handlers.http.LatencyHistogram;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the TLS handshakes of the {@link SslSocketWrapper}s and tracks their latency and their
+ * rate over the last minute. A handshake counts as resumed when it completes with the id of a session
+ * recently seen by an earlier handshake; TLS 1.3 resumes sessions with fresh ids so those are not counted.
+ */
+public class SslHandshakeMetrics {
+
+    private static final int RATE_SECONDS = 60;
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    private static final int MAX_SESSION_IDS = 1024;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong resumed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLongArray slotSeconds = new AtomicLongArray(RATE_SECONDS);
+    private final AtomicLongArray slotCounts = new AtomicLongArray(RATE_SECONDS);
+    private final Map<ByteBuffer, Boolean> sessionIds = new LinkedHashMap<ByteBuffer, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+            return size() > MAX_SESSION_IDS;
+        }
+    };
+
+    /**
+     * Records a completed handshake
+     *
+     * @param nanos the time from the start of the handshake to its completion
+     * @param sessionId the id of the negotiated session
+     */
+    public void handshakeCompleted(long nanos, byte[] sessionId) {
+        completed.incrementAndGet();
+        if (isSessionReused(sessionId)) {
+            resumed.incrementAndGet();
+        }
+        latency.recordNanos(nanos);
+        long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        int slot = (int) (second % RATE_SECONDS);
+        long slotSecond = slotSeconds.get(slot);
+        if (slotSecond != second && slotSeconds.compareAndSet(slot, slotSecond, second)) {
+            slotCounts.set(slot, 0);
+        }
+        slotCounts.incrementAndGet(slot);
+    }
+
+    private boolean isSessionReused(byte[] sessionId) {
+        if (sessionId == null || sessionId.length == 0) {
+            return false;
+        }
+        ByteBuffer key = ByteBuffer.wrap(sessionId.clone());
+        synchronized (sessionIds) {
+            return sessionIds.put(key, Boolean.TRUE) != null;
+        }
+    }
+
+    public void handshakeFailed() {
+        failed.incrementAndGet();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Returns the number of handshakes which completed with the id of a recently seen session
+     */
+    public long getResumed() {
+        return resumed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the average number of handshakes completed per second over the last minute
+     */
+    public double getRate() {
+        long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        long count = 0;
+        for (int i = 0; i < RATE_SECONDS; i++) {
+            if (second - slotSeconds.get(i) < RATE_SECONDS) {
+                count += slotCounts.get(i);
+            }
+        }
+        return count / (double) RATE_SECONDS;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the p50/p90/p99/p99.9/max handshake latencies in milliseconds
+     */
+    public String getLatencies() {
+        StringBuilder builder = new StringBuilder();
+        for (long value : latency.getValuesAtPercentiles(PERCENTILES)) {
+            builder.append(millis(value)).append('/');
+        }
+        return builder.append(millis(latency.getMaxNanos())).append(" ms").toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
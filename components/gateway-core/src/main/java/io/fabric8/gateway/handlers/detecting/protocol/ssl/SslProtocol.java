@@ -75,6 +75,18 @@ public class SslProtocol implements Protocol {
         }
     }
 
+    @Override
+    public boolean canMatch(Buffer buffer) {
+        if( buffer.length() == 0 ) {
+          return true;
+        }
+        if( buffer.getByte(0) == 0x16 ) { // content type
+          return buffer.length() < 2 || buffer.getByte(1) == 2 || buffer.getByte(1) == 3;
+        } else {
+          return (buffer.getByte(0) & 0xC0) == 0x80;
+        }
+    }
+
     private boolean isSSLVerions(byte ver) {
         switch (ver) {  // Minor version
             case 0: // SSLv3
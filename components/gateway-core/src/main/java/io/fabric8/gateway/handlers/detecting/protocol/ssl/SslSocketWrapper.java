@@ -16,6 +16,8 @@
 package io.fabric8.gateway.handlers.detecting.protocol.ssl;
 
 import io.fabric8.gateway.SocketWrapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.streams.ReadStream;
@@ -29,9 +31,13 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
+import static javax.net.ssl.SSLEngineResult.HandshakeStatus.FINISHED;
 import static javax.net.ssl.SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING;
 
 /**
+ * Wraps a socket with an <code>SSLEngine</code>. The engine reads the received data in place and writes
+ * into scratch buffers from the {@link SslBufferPool} sized from the negotiated session, so data is
+ * only copied once on its way through the engine.
  */
 public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSocketWrapper>, WriteStream<SslSocketWrapper> {
 
@@ -43,9 +49,14 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
 
     final private SocketWrapper next;
 
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
     private SSLEngine engine;
     private Handler<Throwable> plainExceptionHandler;
     private boolean failed = false;
+    private SslHandshakeMetrics handshakeMetrics;
+    private long handshakeStart;
+    private boolean handshakeCompleted;
 
     //////////////////////////////////////////////////////////////////////////
     //
@@ -55,7 +66,7 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
     private Buffer encryptedReadBuffer;
     private boolean encryptedReadBufferUnderflow;
     private boolean encryptedReadEOF = false;
-    private Buffer plainReadBuffer;
+    private ByteBuf plainReadBuffer;
     private Handler<Void> plainEndHandler;
     private Handler<Buffer> plainDataHandler;
     private int readPaused = 0;
@@ -81,8 +92,8 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
             }
 
             if( encryptedReadBuffer!=null && plainReadBuffer==null && !encryptedReadBufferUnderflow ) {
-                ByteBuffer input = ByteBuffer.wrap(encryptedReadBuffer.getBytes());
-                ByteBuffer output = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+                ByteBuffer input = encryptedReadBuffer.getByteBuf().nioBuffer();
+                ByteBuffer output = SslBufferPool.acquire(engine.getSession().getApplicationBufferSize());
 
                 try {
                     boolean done = false;
@@ -90,6 +101,9 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                         done = true;
 
                         SSLEngineResult result = engine.unwrap(input, output);
+                        if( result.getHandshakeStatus() == FINISHED ) {
+                            onHandshakeCompleted();
+                        }
                         switch( result.getStatus() ) {
                             case CLOSED:
                                 engine.closeInbound();
@@ -107,18 +121,26 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                                 }
                                 break;
                             case BUFFER_OVERFLOW:
-                                throw new SSLException("BUFFER_OVERFLOW");
+                                if( output.position()==0 ) {
+                                    // the negotiated session may need a bigger buffer than the initial one
+                                    int size = engine.getSession().getApplicationBufferSize();
+                                    if( output.capacity() >= size ) {
+                                        throw new SSLException("BUFFER_OVERFLOW");
+                                    }
+                                    SslBufferPool.release(output);
+                                    output = SslBufferPool.acquire(size);
+                                }
+                                done = false;
                         }
 
                         // Lets fill the plain buffer..
                         output.flip();
                         if( output.remaining() > 0 ) {
                             pump = true;
-                            int len = output.remaining();
                             if( plainReadBuffer == null ) {
-                                plainReadBuffer = new Buffer(len);
+                                plainReadBuffer = Unpooled.buffer(output.remaining());
                             }
-                            plainReadBuffer.appendBytes(output.array(), output.arrayOffset()+ output.position(), len);
+                            plainReadBuffer.writeBytes(output);
                         }
                         output.clear();
 
@@ -127,12 +149,12 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                     onFailure(e);
                     return;
                 } finally {
+                    SslBufferPool.release(output);
                     int len = input.remaining();
                     if( len > 0 ) {
                         // we need to compact the encryptedReadBuffer
                         if( input.position()!=0  ) {
-                            encryptedReadBuffer = new Buffer(len);
-                            encryptedReadBuffer.appendBytes(input.array(), input.arrayOffset()+ input.position(), len);
+                            encryptedReadBuffer = new Buffer(Unpooled.buffer(len).writeBytes(input));
                         }
                     } else {
                         // everything was consumed.
@@ -144,7 +166,7 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
             // Send the plain buffer to the the data handler...
             if( plainReadBuffer !=null && readPaused==0 ) {
                 pump = true;
-                Buffer data = plainReadBuffer;
+                Buffer data = new Buffer(plainReadBuffer);
                 plainReadBuffer = null;
                 Handler<Buffer> handler = plainDataHandler;
                 if( handler !=null ) {
@@ -220,8 +242,9 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
     //////////////////////////////////////////////////////////////////////////
 
     private boolean writeOverflow;
+    private boolean handshakeWrap;
     private Buffer plainWriteBuffer;
-    private Buffer encryptedWriteBuffer;
+    private ByteBuf encryptedWriteBuffer;
 
     @Override
     public SslSocketWrapper drainHandler(Handler<Void> voidHandler) {
@@ -271,15 +294,19 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                 return;
             }
 
-            if( plainWriteBuffer!=null ) {
-                ByteBuffer input = ByteBuffer.wrap(plainWriteBuffer.getBytes());
-                ByteBuffer output = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            if( plainWriteBuffer!=null || handshakeWrap ) {
+                ByteBuffer input = plainWriteBuffer!=null ? plainWriteBuffer.getByteBuf().nioBuffer() : EMPTY;
+                ByteBuffer output = SslBufferPool.acquire(engine.getSession().getPacketBufferSize());
+                handshakeWrap = false;
 
                 try {
                     boolean done = false;
                     while( !done ) {
                         done = true;
                         SSLEngineResult result = engine.wrap(input, output);
+                        if( result.getHandshakeStatus() == FINISHED ) {
+                            onHandshakeCompleted();
+                        }
                         switch( result.getStatus() ) {
                             case OK:
                                 switch(engine.getHandshakeStatus()) {
@@ -295,6 +322,15 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                             case BUFFER_UNDERFLOW:
                                 break;
                             case BUFFER_OVERFLOW:
+                                if( output.position()==0 ) {
+                                    // the negotiated session may need a bigger buffer than the initial one
+                                    int size = engine.getSession().getPacketBufferSize();
+                                    if( output.capacity() >= size ) {
+                                        throw new SSLException("BUFFER_OVERFLOW");
+                                    }
+                                    SslBufferPool.release(output);
+                                    output = SslBufferPool.acquire(size);
+                                }
                                 done = false;
                         }
 
@@ -304,9 +340,9 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                         if( len > 0 ) {
                             pump = true;
                             if( encryptedWriteBuffer == null ) {
-                                encryptedWriteBuffer = new Buffer(len);
+                                encryptedWriteBuffer = Unpooled.buffer(len);
                             }
-                            encryptedWriteBuffer.appendBytes(output.array(), output.arrayOffset()+ output.position(), len);
+                            encryptedWriteBuffer.writeBytes(output);
                         }
                         output.clear();
                     }
@@ -314,12 +350,12 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                    onFailure(e);
                    return;
                 } finally {
+                    SslBufferPool.release(output);
                     int len = input.remaining();
                     if( len > 0 ) {
                         // we need to compact the plainWriteBuffer
                         if( input.position()!=0  ) {
-                            plainWriteBuffer = new Buffer(len);
-                            plainWriteBuffer.appendBytes(input.array(), input.arrayOffset()+ input.position(), len);
+                            plainWriteBuffer = new Buffer(Unpooled.buffer(len).writeBytes(input));
                         }
                     } else {
                         // everything was consumed.
@@ -334,7 +370,7 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                     next.writeStream().drainHandler(drainHandler);
                 } else {
                     pump = true;
-                    Buffer data = encryptedWriteBuffer;
+                    Buffer data = new Buffer(encryptedWriteBuffer);
                     encryptedWriteBuffer = null;
                     next.writeStream().write(data);
                 }
@@ -442,7 +478,26 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
         }
     }
 
+    /**
+     * Sets the metrics the handshake of this socket is recorded in, must be called before the socket is initialized
+     */
+    public void setHandshakeMetrics(SslHandshakeMetrics handshakeMetrics) {
+        this.handshakeMetrics = handshakeMetrics;
+    }
+
+    private void onHandshakeCompleted() {
+        if( handshakeCompleted ) {
+            return;
+        }
+        handshakeCompleted = true;
+        SslHandshakeMetrics metrics = handshakeMetrics;
+        if( metrics!=null ) {
+            metrics.handshakeCompleted(System.nanoTime() - handshakeStart, engine.getSession().getId());
+        }
+    }
+
     private void init() {
+        handshakeStart = System.nanoTime();
         this.next.readStream().dataHandler(new Handler<Buffer>() {
             @Override
             public void handle(Buffer buffer) {
@@ -496,14 +551,13 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                         break;
 
                     case NEED_WRAP:
-                        if( plainWriteBuffer==null ) {
-                            plainWriteBuffer = new Buffer();
-                        }
+                        handshakeWrap = true;
                         pumpWrites(false);
                         break;
 
                     case NEED_UNWRAP:
-                        if( encryptedReadBuffer!=null ) {
+                        // wait for more data when the buffered record is incomplete
+                        if( encryptedReadBuffer!=null && !encryptedReadBufferUnderflow ) {
                             pumpReads(false);
                             break;
                         } else {
@@ -525,6 +579,9 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
     }
 
     private void onFailure(Throwable error) {
+        if( !failed && !handshakeCompleted && handshakeMetrics!=null ) {
+            handshakeMetrics.handshakeFailed();
+        }
         failed = true;
         Handler<Throwable> handler = plainExceptionHandler;
         if( handler!=null ) {
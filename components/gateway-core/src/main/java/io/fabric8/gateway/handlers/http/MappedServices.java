@@ -18,7 +18,9 @@ package io.fabric8.gateway.handlers.http;
 import io.fabric8.gateway.api.ServiceDetails;
 import io.fabric8.gateway.api.handlers.http.IMappedServices;
 import io.fabric8.gateway.api.handlers.http.ProxyMappingDetails;
+import io.fabric8.gateway.handlers.http.policy.LoadBalancerPolicy;
 import io.fabric8.gateway.handlers.http.policy.ReverseUriPolicy;
+import io.fabric8.gateway.loadbalancer.LoadAwareLoadBalancer;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
 
 import java.util.ArrayList;
@@ -73,6 +75,9 @@ public class MappedServices implements IMappedServices {
         if (reverseHeaders) {
             responseHandler = new ReverseUriPolicy(this, request, responseHandler, proxyMappingDetails);
         }
+        if (loadBalancer instanceof LoadAwareLoadBalancer) {
+            responseHandler = new LoadBalancerPolicy((LoadAwareLoadBalancer) loadBalancer, proxyMappingDetails.getProxyServiceUrl(), responseHandler);
+        }
         return responseHandler;
     }
 
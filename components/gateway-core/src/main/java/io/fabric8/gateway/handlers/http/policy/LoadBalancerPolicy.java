@@ -0,0 +1,197 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http.policy;
+
+import io.fabric8.gateway.api.handlers.http.ServiceFailureHandler;
+import io.fabric8.gateway.loadbalancer.LoadAwareLoadBalancer;
+
+import java.util.List;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.VoidHandler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpClientResponse;
+import org.vertx.java.core.net.NetSocket;
+
+/**
+ * Feeds the outstanding requests, response times and failures of the chosen service
+ * back to a {@link LoadAwareLoadBalancer}. Server errors which indicate the service is
+ * unavailable count as failures.
+ * <p/>
+ * A request is only completed once the whole response has been read, and is released exactly
+ * once if the request or response fails, is closed or times out before then, so that the
+ * outstanding requests of the service don't leak.
+ */
+public class LoadBalancerPolicy implements Handler<HttpClientResponse>, ServiceFailureHandler {
+    private final LoadAwareLoadBalancer loadBalancer;
+    private final String serviceUrl;
+    private final Handler<HttpClientResponse> delegate;
+    private final long start = System.nanoTime();
+    private boolean completed;
+
+    public LoadBalancerPolicy(LoadAwareLoadBalancer loadBalancer, String serviceUrl, Handler<HttpClientResponse> delegate) {
+        this.loadBalancer = loadBalancer;
+        this.serviceUrl = serviceUrl;
+        this.delegate = delegate;
+        loadBalancer.requestStarted(serviceUrl);
+    }
+
+    @Override
+    public void handle(HttpClientResponse clientResponse) {
+        int statusCode = clientResponse.statusCode();
+        boolean unavailable = statusCode == 502 || statusCode == 503 || statusCode == 504;
+        TrackedResponse trackedResponse = new TrackedResponse(clientResponse, unavailable);
+        // in case the delegate doesn't register its own handlers
+        trackedResponse.endHandler(null);
+        trackedResponse.exceptionHandler(null);
+        delegate.handle(trackedResponse);
+    }
+
+    @Override
+    public void handleServiceFailure(Throwable cause) {
+        failed();
+        if (delegate instanceof ServiceFailureHandler) {
+            ((ServiceFailureHandler) delegate).handleServiceFailure(cause);
+        }
+    }
+
+    private void ended(boolean unavailable) {
+        if (!completed) {
+            completed = true;
+            if (unavailable) {
+                loadBalancer.requestFailed(serviceUrl);
+            } else {
+                loadBalancer.requestCompleted(serviceUrl, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void failed() {
+        if (!completed) {
+            completed = true;
+            loadBalancer.requestFailed(serviceUrl);
+        }
+    }
+
+    /**
+     * Hands the response to the delegate, chaining the end and exception handlers it registers
+     * so that the load balancer is told when the response has been read or has failed
+     */
+    private class TrackedResponse implements HttpClientResponse {
+        private final HttpClientResponse response;
+        private final boolean unavailable;
+
+        TrackedResponse(HttpClientResponse response, boolean unavailable) {
+            this.response = response;
+            this.unavailable = unavailable;
+        }
+
+        @Override
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public String statusMessage() {
+            return response.statusMessage();
+        }
+
+        @Override
+        public MultiMap headers() {
+            return response.headers();
+        }
+
+        @Override
+        public MultiMap trailers() {
+            return response.trailers();
+        }
+
+        @Override
+        public List<String> cookies() {
+            return response.cookies();
+        }
+
+        @Override
+        public HttpClientResponse bodyHandler(final Handler<Buffer> bodyHandler) {
+            final Buffer body = new Buffer();
+            dataHandler(new Handler<Buffer>() {
+                @Override
+                public void handle(Buffer data) {
+                    body.appendBuffer(data);
+                }
+            });
+            endHandler(new VoidHandler() {
+                @Override
+                protected void handle() {
+                    bodyHandler.handle(body);
+                }
+            });
+            return this;
+        }
+
+        @Override
+        public NetSocket netSocket() {
+            return response.netSocket();
+        }
+
+        @Override
+        public HttpClientResponse endHandler(final Handler<Void> endHandler) {
+            response.endHandler(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    ended(unavailable);
+                    if (endHandler != null) {
+                        endHandler.handle(event);
+                    }
+                }
+            });
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse exceptionHandler(final Handler<Throwable> exceptionHandler) {
+            response.exceptionHandler(new Handler<Throwable>() {
+                @Override
+                public void handle(Throwable cause) {
+                    failed();
+                    if (exceptionHandler != null) {
+                        exceptionHandler.handle(cause);
+                    }
+                }
+            });
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse dataHandler(Handler<Buffer> dataHandler) {
+            response.dataHandler(dataHandler);
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse pause() {
+            response.pause();
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse resume() {
+            response.resume();
+            return this;
+        }
+    }
+}
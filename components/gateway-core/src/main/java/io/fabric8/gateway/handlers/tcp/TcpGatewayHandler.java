@@ -16,8 +16,8 @@
 package io.fabric8.gateway.handlers.tcp;
 
 import io.fabric8.utils.Objects;
-import io.fabric8.utils.Strings;
 import io.fabric8.gateway.api.ServiceDetails;
+import io.fabric8.gateway.loadbalancer.ClientRequestFacade;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
 import io.fabric8.gateway.ServiceMap;
 
@@ -32,8 +32,10 @@ import org.vertx.java.core.streams.Pump;
 
 import java.net.MalformedURLException;
 import java.net.URI;
-import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A TCP gateway implementation
@@ -64,32 +66,25 @@ public class TcpGatewayHandler implements Handler<NetSocket> {
         if (path != null) {
             List<ServiceDetails> services = serviceMap.getServices(path);
             if (!services.isEmpty()) {
-                ServiceDetails serviceDetails = serviceLoadBalancer.choose(services, requestFacade);
+                ServiceDetails serviceDetails = chooseService(services, requestFacade);
                 if (serviceDetails != null) {
-                    List<String> urlStrings = serviceDetails.getServices();
-                    for (String urlString : urlStrings) {
-                        if (Strings.notEmpty(urlString)) {
-                            // lets create a client for this request...
-                            try {
-                                URI uri = new URI(urlString);
-                                //URL url = new URL(urlString);
-                                String urlProtocol = uri.getScheme();
-                                if (Objects.equal(protocol, urlProtocol)) {
-                                    Handler<AsyncResult<NetSocket>> handler = new Handler<AsyncResult<NetSocket>>() {
-                                        public void handle(final AsyncResult<NetSocket> asyncSocket) {
-                                            NetSocket clientSocket = asyncSocket.result();
-                                            Pump.createPump(clientSocket, socket).start();
-                                            Pump.createPump(socket, clientSocket).start();
-                                        }
-                                    };
-                                    client = createClient(socket, uri, handler);
-                                    break;
-                                }
-                            } catch (MalformedURLException e) {
-                                LOG.warn("Failed to parse URL: " + urlString + ". " + e, e);
-                            } catch (URISyntaxException e) {
-                                LOG.warn("Failed to parse URI: " + urlString + ". " + e, e);
+                    for (URI uri : serviceDetails.getServiceURIs()) {
+                        // lets create a client for this request...
+                        try {
+                            String urlProtocol = uri.getScheme();
+                            if (Objects.equal(protocol, urlProtocol)) {
+                                Handler<AsyncResult<NetSocket>> handler = new Handler<AsyncResult<NetSocket>>() {
+                                    public void handle(final AsyncResult<NetSocket> asyncSocket) {
+                                        NetSocket clientSocket = asyncSocket.result();
+                                        Pump.createPump(clientSocket, socket).start();
+                                        Pump.createPump(socket, clientSocket).start();
+                                    }
+                                };
+                                client = createClient(socket, uri, handler);
+                                break;
                             }
+                        } catch (MalformedURLException e) {
+                            LOG.warn("Failed to parse URL: " + uri + ". " + e, e);
                         }
                     }
                 }
@@ -102,6 +97,31 @@ public class TcpGatewayHandler implements Handler<NetSocket> {
         }
     }
 
+    /**
+     * Chooses the service by its {@link #getServiceKey(ServiceDetails) key} rather than by the service
+     * details themselves, which are created again whenever the service is updated, so that a sticky
+     * load balancer keeps its clients on the same service across updates of the service map
+     */
+    protected ServiceDetails chooseService(List<ServiceDetails> services, ClientRequestFacade requestFacade) {
+        List<String> keys = new ArrayList<String>(services.size());
+        Map<String, ServiceDetails> servicesByKey = new HashMap<String, ServiceDetails>();
+        for (ServiceDetails service : services) {
+            String key = getServiceKey(service);
+            if (servicesByKey.put(key, service) == null) {
+                keys.add(key);
+            }
+        }
+        String key = serviceLoadBalancer.choose(keys, requestFacade);
+        return key != null ? servicesByKey.get(key) : null;
+    }
+
+    /**
+     * Returns the stable identity of a service: its id and the URLs it is exposed on
+     */
+    protected static String getServiceKey(ServiceDetails service) {
+        return service.getId() + " " + service.getServices();
+    }
+
     /**
      * Creates a new client for the given URL and handler
      */
@@ -18,9 +18,12 @@ package io.fabric8.gateway;
 import io.fabric8.gateway.api.CallDetailRecord;
 import io.fabric8.gateway.api.apimanager.ApiManager;
 import io.fabric8.gateway.api.apimanager.ApiManagerService;
+import io.fabric8.gateway.api.handlers.http.HttpClientPool;
 import io.fabric8.gateway.api.handlers.http.HttpGateway;
 import io.fabric8.gateway.api.handlers.http.HttpGatewayHandler;
+import io.fabric8.gateway.api.handlers.http.HttpGatewayMetrics;
 import io.fabric8.gateway.api.handlers.http.HttpMappingRule;
+import io.fabric8.gateway.api.handlers.http.HttpMappingTrie;
 import io.fabric8.gateway.api.handlers.http.IMappedServices;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
 import io.fabric8.gateway.handlers.detecting.DetectingGateway;
@@ -209,6 +212,8 @@ public class ExtendedBurnIn {
     final ApiManager apiManager = new ApiManager();
     
     HttpGatewayServer httpGatewayServer;
+    HttpClientPool httpClientPool;
+    HttpGatewayMetrics metrics = new HttpGatewayMetrics();
     public HttpGatewayServer startHttpGateway() {
 
 
@@ -223,6 +228,7 @@ public class ExtendedBurnIn {
         }
 
         DetectingGatewayWebSocketHandler websocketHandler = new DetectingGatewayWebSocketHandler();
+        httpClientPool = new HttpClientPool(vertx);
         	
         final HttpGateway httpGateway = new HttpGateway(){
         	
@@ -239,6 +245,11 @@ public class ExtendedBurnIn {
                 return mappedServices;
             }
 
+            @Override
+            public HttpMappingTrie getMappingTrie() {
+                return new HttpMappingTrie(0, mappedServices);
+            }
+
             @Override
             public boolean isEnableIndex() {
                 return true;
@@ -253,6 +264,16 @@ public class ExtendedBurnIn {
 			public void addCallDetailRecord(CallDetailRecord cdr) {
 			}
 
+			@Override
+			public HttpClientPool getHttpClientPool() {
+				return httpClientPool;
+			}
+
+			@Override
+			public HttpGatewayMetrics getMetrics() {
+				return metrics;
+			}
+
 			@Override
 			public ApiManager getApiManager() {
 //				ApiManagerService apiManagerService = new ApiManService();
@@ -291,6 +312,10 @@ public class ExtendedBurnIn {
             httpGatewayServer.destroy();
             httpGatewayServer = null;
         }
+        if( httpClientPool!=null ) {
+            httpClientPool.stop();
+            httpClientPool = null;
+        }
     }
 
     public DetectingGateway startDetectingGateway() {
@@ -17,6 +17,7 @@ package io.fabric8.gateway.apiman;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import io.apiman.gateway.engine.beans.Application;
 import io.apiman.gateway.engine.beans.Contract;
 import io.apiman.gateway.engine.beans.Policy;
@@ -26,9 +27,12 @@ import io.fabric8.gateway.ServiceDTO;
 import io.fabric8.gateway.api.CallDetailRecord;
 import io.fabric8.gateway.api.apimanager.ApiManager;
 import io.fabric8.gateway.api.apimanager.ApiManagerService;
+import io.fabric8.gateway.api.handlers.http.HttpClientPool;
 import io.fabric8.gateway.api.handlers.http.HttpGateway;
 import io.fabric8.gateway.api.handlers.http.HttpGatewayHandler;
+import io.fabric8.gateway.api.handlers.http.HttpGatewayMetrics;
 import io.fabric8.gateway.api.handlers.http.HttpMappingRule;
+import io.fabric8.gateway.api.handlers.http.HttpMappingTrie;
 import io.fabric8.gateway.api.handlers.http.IMappedServices;
 import io.fabric8.gateway.handlers.detecting.DetectingGatewayWebSocketHandler;
 import io.fabric8.gateway.handlers.detecting.FutureHandler;
@@ -75,6 +79,8 @@ public class HTTPGatewayApiManTest {
     protected static Vertx vertx;
     protected static HttpServer restApplication;
     protected static HttpGatewayServer httpGatewayServer;
+    protected static HttpClientPool httpClientPool;
+    protected static HttpGatewayMetrics metrics;
 
     private static String silverHelloServiceApiKey = "silver-key";
     private static String goldHelloServiceApiKey = "gold-key";
@@ -152,6 +158,9 @@ public class HTTPGatewayApiManTest {
         }
 
         final ApiManager apiManager = new ApiManager();
+        httpClientPool = new HttpClientPool(vertx);
+        metrics = new HttpGatewayMetrics();
+        metrics.setScrapePath("/_metrics");
 
         DetectingGatewayWebSocketHandler websocketHandler = new DetectingGatewayWebSocketHandler();
         final HttpGateway httpGateway = new HttpGateway(){
@@ -169,6 +178,11 @@ public class HTTPGatewayApiManTest {
                 return mappedServices;
             }
 
+            @Override
+            public HttpMappingTrie getMappingTrie() {
+                return new HttpMappingTrie(0, mappedServices);
+            }
+
             @Override
             public boolean isEnableIndex() {
                 return true;
@@ -181,6 +195,17 @@ public class HTTPGatewayApiManTest {
 
 			@Override
 			public void addCallDetailRecord(CallDetailRecord cdr) {
+				metrics.record(cdr);
+			}
+
+			@Override
+			public HttpClientPool getHttpClientPool() {
+				return httpClientPool;
+			}
+
+			@Override
+			public HttpGatewayMetrics getMetrics() {
+				return metrics;
 			}
 
 			@Override
@@ -229,6 +254,10 @@ public class HTTPGatewayApiManTest {
             httpGatewayServer.destroy();
             httpGatewayServer = null;
         }
+        if( httpClientPool!=null ) {
+            httpClientPool.stop();
+            httpClientPool = null;
+        }
     }
 
     /* Mapping requests bypass the ApiManager */
@@ -255,6 +284,29 @@ public class HTTPGatewayApiManTest {
         assertEquals("Hello World!",content);
     }
 
+    /* Testing the latencies of the proxied requests are exposed on the scrape path */
+    @Test
+    public void testMetricsRequest() throws Exception {
+        int httpPort = httpGatewayServer.getPort();
+        HttpClient httpClient = new HttpClient();
+        HttpMethod method = new GetMethod("http://127.0.0.1:" + httpPort + "/hello/world?apikey=gold-key");
+        assertEquals(200, httpClient.executeMethod(method));
+        String content = null;
+        for (int i = 0; i < 10; i++) {
+            // the call detail record is added just after the last byte of the response is written
+            method = new GetMethod("http://127.0.0.1:" + httpPort + "/_metrics");
+            assertEquals(200, httpClient.executeMethod(method));
+            content = method.getResponseBodyAsString();
+            if (content.contains("route=\"/hello/world\"")) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertTrue(content, content.contains("gateway_route_duration_seconds{route=\"/hello/world\",quantile=\"0.99\"}"));
+        assertTrue(content, content.contains("gateway_backend_duration_seconds_count{backend=\"http://localhost:18181/root/\"}"));
+        assertEquals(1, metrics.getRouteLatencies().length);
+    }
+
     /* Testing a good request, that trips a blacklist policy failure */
     @Test
     public void testSilverClientRequest() throws Exception {
@@ -0,0 +1,159 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import io.fabric8.gateway.ServiceMap;
+import io.fabric8.gateway.handlers.detecting.protocol.http.HttpProtocol;
+import io.fabric8.gateway.handlers.detecting.protocol.stomp.StompProtocol;
+import io.fabric8.gateway.loadbalancer.RoundRobinLoadBalancer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VertxFactory;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the protocol detection when the client sends its header in several small chunks.
+ */
+public class DetectingGatewayFragmentedInputTest {
+
+    protected Vertx vertx;
+    protected DetectingGateway gateway;
+    protected ServerSocket httpBackend;
+
+    @Before
+    public void start() throws Exception {
+        vertx = VertxFactory.newVertx();
+        httpBackend = new ServerSocket(0);
+        httpBackend.setSoTimeout(5000);
+
+        ArrayList<Protocol> protocols = new ArrayList<Protocol>();
+        protocols.add(new StompProtocol());
+        protocols.add(new HttpProtocol());
+        gateway = new DetectingGateway();
+        gateway.setPort(0);
+        gateway.setVertx(vertx);
+        gateway.setServiceMap(new ServiceMap());
+        gateway.setProtocols(protocols);
+        gateway.setServiceLoadBalancer(new RoundRobinLoadBalancer());
+        gateway.setHttpGateway(new InetSocketAddress("localhost", httpBackend.getLocalPort()));
+        gateway.setConnectionTimeout(30000);
+        gateway.init();
+        for (int i = 0; i < 50 && gateway.getListeningServerInstances() < 1; i++) {
+            Thread.sleep(100);
+        }
+    }
+
+    @After
+    public void stop() throws Exception {
+        gateway.destroy();
+        httpBackend.close();
+        vertx.stop();
+    }
+
+    @Test
+    public void testFragmentedHttpIsDetectedAndForwarded() throws Exception {
+        String request = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        Socket client = new Socket("localhost", gateway.getBoundPort());
+        try {
+            writeByteByByte(client, request);
+
+            Socket backend = httpBackend.accept();
+            backend.setSoTimeout(5000);
+            try {
+                assertEquals(request, read(backend.getInputStream(), request.length()));
+            } finally {
+                backend.close();
+            }
+            waitFor(gateway.successfulConnectionAttempts, 1);
+            assertEquals(0, gateway.getFailedConnectionAttempts());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testGarbageIsRejectedOnTheFirstByte() throws Exception {
+        Socket client = new Socket("localhost", gateway.getBoundPort());
+        try {
+            // a single byte is less than any identification length, it is rejected because nothing can match it.
+            writeByteByByte(client, "X");
+            waitFor(gateway.failedConnectionAttempts, 1);
+            assertEquals(-1, client.getInputStream().read());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testPossibleMatchWaitsForMoreBytes() throws Exception {
+        Socket client = new Socket("localhost", gateway.getBoundPort());
+        try {
+            writeByteByByte(client, "CONN");
+            waitFor(gateway.receivedConnectionAttempts, 1);
+            Thread.sleep(500);
+            assertEquals(0, gateway.getFailedConnectionAttempts());
+            assertEquals(1, gateway.getConnectingClients().length);
+
+            writeByteByByte(client, "X");
+            waitFor(gateway.failedConnectionAttempts, 1);
+            assertEquals(0, gateway.getConnectingClients().length);
+        } finally {
+            client.close();
+        }
+    }
+
+    protected void writeByteByByte(Socket socket, String data) throws Exception {
+        socket.setTcpNoDelay(true);
+        OutputStream outputStream = socket.getOutputStream();
+        for (byte b : data.getBytes()) {
+            outputStream.write(b);
+            outputStream.flush();
+            Thread.sleep(20);
+        }
+    }
+
+    protected String read(InputStream inputStream, int length) throws Exception {
+        byte[] data = new byte[length];
+        int pos = 0;
+        while (pos < length) {
+            int count = inputStream.read(data, pos, length - pos);
+            if (count < 0) {
+                break;
+            }
+            pos += count;
+        }
+        return new String(data, 0, pos);
+    }
+
+    protected void waitFor(AtomicLong counter, long expected) throws InterruptedException {
+        for (int i = 0; i < 50 && counter.get() < expected; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(expected, counter.get());
+    }
+}
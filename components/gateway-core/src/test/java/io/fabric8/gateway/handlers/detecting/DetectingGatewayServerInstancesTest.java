@@ -0,0 +1,150 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import io.fabric8.gateway.ServiceMap;
+import io.fabric8.gateway.SocketWrapper;
+import io.fabric8.gateway.handlers.detecting.protocol.stomp.StompProtocol;
+import io.fabric8.gateway.loadbalancer.RoundRobinLoadBalancer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VertxFactory;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the server instances of the gateway share the port and all accept connections
+ */
+public class DetectingGatewayServerInstancesTest {
+    private static final int SERVER_INSTANCES = 4;
+    private static final int CONNECTIONS = SERVER_INSTANCES * 4;
+
+    protected Vertx vertx;
+    protected DetectingGateway gateway;
+    protected final Set<String> acceptingThreads = Collections.synchronizedSet(new HashSet<String>());
+
+    @Before
+    public void startVertx() {
+        vertx = VertxFactory.newVertx();
+    }
+
+    @After
+    public void stop() {
+        if (gateway != null) {
+            gateway.destroy();
+            gateway = null;
+        }
+        vertx.stop();
+    }
+
+    @Test
+    public void serverInstancesShareAnEphemeralPort() throws Exception {
+        createGateway(0, SERVER_INSTANCES);
+        int port = gateway.getBoundPort();
+        assertTrue("Should bind an ephemeral port", port > 0);
+        waitForListeningServerInstances(SERVER_INSTANCES);
+
+        connect(port, CONNECTIONS);
+        waitForConnectionAttempts(CONNECTIONS);
+        assertTrue("Connections should be accepted on several event loops but were on " + acceptingThreads, acceptingThreads.size() > 1);
+    }
+
+    @Test
+    public void singleServerInstance() throws Exception {
+        createGateway(0, 1);
+        int port = gateway.getBoundPort();
+        waitForListeningServerInstances(1);
+
+        connect(port, CONNECTIONS);
+        waitForConnectionAttempts(CONNECTIONS);
+        assertEquals(1, acceptingThreads.size());
+    }
+
+    @Test
+    public void destroyClosesAllServerInstances() throws Exception {
+        createGateway(0, SERVER_INSTANCES);
+        gateway.getBoundPort();
+        waitForListeningServerInstances(SERVER_INSTANCES);
+
+        gateway.destroy();
+        assertEquals(0, gateway.getListeningServerInstances());
+        gateway = null;
+    }
+
+    protected void createGateway(int port, int serverInstances) {
+        ArrayList<Protocol> protocols = new ArrayList<Protocol>();
+        protocols.add(new StompProtocol());
+        gateway = new DetectingGateway() {
+            @Override
+            public void handle(SocketWrapper socket) {
+                acceptingThreads.add(Thread.currentThread().getName());
+                super.handle(socket);
+            }
+        };
+        gateway.setPort(port);
+        gateway.setVertx(vertx);
+        gateway.setServiceMap(new ServiceMap());
+        gateway.setProtocols(protocols);
+        gateway.setServiceLoadBalancer(new RoundRobinLoadBalancer());
+        gateway.setConnectionTimeout(5000);
+        gateway.setServerInstances(serverInstances);
+        gateway.init();
+    }
+
+    protected void connect(int port, int count) throws Exception {
+        List<Socket> sockets = new ArrayList<Socket>();
+        try {
+            for (int i = 0; i < count; i++) {
+                Socket socket = new Socket("localhost", port);
+                sockets.add(socket);
+                OutputStream outputStream = socket.getOutputStream();
+                outputStream.write("Hello World!\n".getBytes());
+                outputStream.flush();
+            }
+            waitForConnectionAttempts(count);
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    protected void waitForListeningServerInstances(int expected) throws InterruptedException {
+        for (int i = 0; i < 50 && gateway.getListeningServerInstances() < expected; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(expected, gateway.getListeningServerInstances());
+    }
+
+    protected void waitForConnectionAttempts(int expected) throws InterruptedException {
+        for (int i = 0; i < 50 && gateway.getReceivedConnectionAttempts() < expected; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(expected, gateway.getReceivedConnectionAttempts());
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import io.fabric8.gateway.handlers.detecting.protocol.amqp.AmqpProtocol;
+import io.fabric8.gateway.handlers.detecting.protocol.http.HttpProtocol;
+import io.fabric8.gateway.handlers.detecting.protocol.mqtt.MqttProtocol;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.OpenwireProtocol;
+import io.fabric8.gateway.handlers.detecting.protocol.ssl.SslProtocol;
+import io.fabric8.gateway.handlers.detecting.protocol.stomp.StompProtocol;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds the protocol headers a byte at a time, the way a fragmented connection delivers them.
+ */
+public class ProtocolDetectionTest {
+
+    static final byte[] GARBAGE = "Hello World!\n".getBytes();
+
+    @Test
+    public void testAmqp() throws Exception {
+        assertDetectedByteByByte(new AmqpProtocol(), new byte[]{'A', 'M', 'Q', 'P', 0, 1, 0, 0});
+        assertRejectedAfter(new AmqpProtocol(), "AMX".getBytes(), 3);
+    }
+
+    @Test
+    public void testHttp() throws Exception {
+        assertDetectedByteByByte(new HttpProtocol(), "GET / HTTP/1.1\r\n\r\n".getBytes());
+        assertDetectedByteByByte(new HttpProtocol(), "OPTIONS * HTTP/1.1\r\n\r\n".getBytes());
+        assertRejectedAfter(new HttpProtocol(), GARBAGE, 2);
+    }
+
+    @Test
+    public void testStomp() throws Exception {
+        assertDetectedByteByByte(new StompProtocol(), "CONNECT\naccept-version:1.2\n\n\0".getBytes());
+        assertDetectedByteByByte(new StompProtocol(), "STOMP\naccept-version:1.2\n\n\0".getBytes());
+        assertRejectedAfter(new StompProtocol(), GARBAGE, 1);
+    }
+
+    @Test
+    public void testMqtt() throws Exception {
+        assertDetectedByteByByte(new MqttProtocol(), new byte[]{0x10, 0x0c, 0x00, 0x04, 'M', 'Q', 'T', 'T', 0x04, 0x02, 0x00, 0x3c, 0x00, 0x00});
+        assertRejectedAfter(new MqttProtocol(), GARBAGE, 1);
+    }
+
+    @Test
+    public void testSsl() throws Exception {
+        assertDetectedByteByByte(new SslProtocol(), new byte[]{0x16, 0x03, 0x01, 0x00, 0x2f, 0x01, 0x00, 0x00, 0x2b, 0x03, 0x01});
+        assertRejectedAfter(new SslProtocol(), GARBAGE, 1);
+        assertRejectedAfter(new SslProtocol(), new byte[]{0x16, 0x07}, 2);
+    }
+
+    @Test
+    public void testOpenwire() throws Exception {
+        assertDetectedByteByByte(new OpenwireProtocol(), new byte[]{0, 0, 0, 0x20, 1, 'A', 'c', 't', 'i', 'v', 'e', 'M', 'Q', 0, 0, 0, 0x0a});
+        // the magic only shows up after a variable length prefix, so the whole window is needed.
+        assertRejectedAfter(new OpenwireProtocol(), GARBAGE, new OpenwireProtocol().getMaxIdentificationLength());
+    }
+
+    protected void assertDetectedByteByByte(Protocol protocol, byte[] header) {
+        Buffer received = new Buffer();
+        boolean matched = false;
+        for (int i = 0; i < header.length && !matched; i++) {
+            received.appendByte(header[i]);
+            assertTrue(protocol.getProtocolName() + " should still be possible after " + received.length() + " bytes", protocol.canMatch(received));
+            matched = protocol.matches(received);
+            if (!matched) {
+                assertTrue(protocol.getProtocolName() + " should match within its identification length",
+                        received.length() < protocol.getMaxIdentificationLength());
+            }
+        }
+        assertTrue(protocol.getProtocolName() + " should have matched", matched);
+    }
+
+    protected void assertRejectedAfter(Protocol protocol, byte[] data, int expectedLength) {
+        Buffer received = new Buffer();
+        for (int i = 0; i < expectedLength - 1; i++) {
+            received.appendByte(data[i]);
+            assertTrue(protocol.getProtocolName() + " should still be possible after " + received.length() + " bytes", protocol.canMatch(received));
+        }
+        received.appendByte(data[expectedLength - 1]);
+        assertFalse(protocol.getProtocolName() + " should be ruled out after " + expectedLength + " bytes", protocol.canMatch(received));
+        assertFalse(protocol.matches(received));
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol;
+
+import io.fabric8.gateway.handlers.detecting.protocol.stomp.StompFrame;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BufferSupportTest {
+
+    @Test
+    public void testStartsWithAtOffset() throws Exception {
+        Buffer buffer = new Buffer("a\\cb");
+        assertTrue(BufferSupport.startsWith(buffer, 1, new Buffer("\\c")));
+        assertTrue(BufferSupport.startsWith(buffer, 3, new Buffer("b")));
+        assertFalse(BufferSupport.startsWith(buffer, 2, new Buffer("\\c")));
+    }
+
+    @Test
+    public void testStartsWithDoesNotReadPastTheEnd() throws Exception {
+        Buffer buffer = new Buffer("ab\\");
+        assertFalse(BufferSupport.startsWith(buffer, 2, new Buffer("\\c")));
+        assertFalse(BufferSupport.startsWith(buffer, 3, new Buffer("\\")));
+        assertFalse(BufferSupport.startsWith(new Buffer("GE"), new Buffer("GET ")));
+    }
+
+    @Test
+    public void testCouldStartWith() throws Exception {
+        Buffer needle = new Buffer("GET ");
+        assertTrue(BufferSupport.couldStartWith(new Buffer(), needle));
+        assertTrue(BufferSupport.couldStartWith(new Buffer("G"), needle));
+        assertTrue(BufferSupport.couldStartWith(new Buffer("GE"), needle));
+        assertTrue(BufferSupport.couldStartWith(new Buffer("GET / HTTP/1.1"), needle));
+        assertFalse(BufferSupport.couldStartWith(new Buffer("GO"), needle));
+        assertTrue(BufferSupport.couldStartWith(new Buffer("x GE"), 2, needle));
+        assertFalse(BufferSupport.couldStartWith(new Buffer("x GO"), 2, needle));
+    }
+
+    @Test
+    public void testDecodeHeaderUnescapes() throws Exception {
+        assertEquals("a:b\nc\\d", StompFrame.decodeHeader(new Buffer("a\\cb\\nc\\\\d")));
+        assertEquals("plain", StompFrame.decodeHeader(new Buffer("plain")));
+    }
+
+    @Test
+    public void testDecodeHeaderKeepsTrailingBackslash() throws Exception {
+        assertEquals("abc\\", StompFrame.decodeHeader(new Buffer("abc\\")));
+        assertEquals(":\\", StompFrame.decodeHeader(new Buffer("\\c\\")));
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.openwire;
+
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.codec.OpenWireFormat;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.WireFormatInfo;
+import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
+import org.fusesource.hawtbuf.DataByteArrayOutputStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WireFormatInfoDecoderTest {
+
+    private final List<ConnectionParameters> decoded = new ArrayList<ConnectionParameters>();
+    private final List<String> errors = new ArrayList<String>();
+    private WireFormatInfoDecoder decoder;
+
+    @Before
+    public void setUp() throws Exception {
+        decoder = new WireFormatInfoDecoder(new OpenwireProtocol());
+        decoder.codecHandler(new Handler<ConnectionParameters>() {
+            @Override
+            public void handle(ConnectionParameters parameters) {
+                decoded.add(parameters);
+            }
+        });
+        decoder.errorHandler(new Handler<String>() {
+            @Override
+            public void handle(String error) {
+                errors.add(error);
+            }
+        });
+    }
+
+    @Test
+    public void testDecodesHost() throws Exception {
+        WireFormatInfo info = createWireFormatInfo();
+        info.setProperty("Host", "broker.example.com");
+
+        decoder.handle(marshal(info));
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(1, decoded.size());
+        assertEquals("broker.example.com", decoded.get(0).protocolVirtualHost);
+    }
+
+    @Test
+    public void testSkipsPropertiesAroundHost() throws Exception {
+        WireFormatInfo info = createWireFormatInfo();
+        Map<String, Object> nested = new HashMap<String, Object>();
+        nested.put("Host", "not.this.one");
+        info.setProperty("Nested", nested);
+        info.setProperty("List", Arrays.<Object>asList("a", 1, 2L, new byte[]{1, 2, 3}));
+        info.setProperty("Hos", "not.this.one.either");
+        info.setProperty("Host", "broker.example.com");
+        info.setProperty("Bytes", new byte[]{1, 2, 3});
+        info.setProperty("Char", 'c');
+        info.setProperty("Float", 1.0f);
+        info.setProperty("Double", 1.0d);
+
+        decoder.handle(marshal(info));
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(1, decoded.size());
+        assertEquals("broker.example.com", decoded.get(0).protocolVirtualHost);
+    }
+
+    @Test
+    public void testDecodesWithoutHost() throws Exception {
+        decoder.handle(marshal(createWireFormatInfo()));
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(1, decoded.size());
+        assertNull(decoded.get(0).protocolVirtualHost);
+    }
+
+    @Test
+    public void testDecodesFrameSplitAcrossReads() throws Exception {
+        WireFormatInfo info = createWireFormatInfo();
+        info.setProperty("Host", "broker.example.com");
+        byte[] frame = marshal(info).getBytes();
+
+        // split inside the size prefix and inside the properties
+        int[] splits = {2, 11, frame.length - 3, frame.length};
+        int start = 0;
+        for (int end : splits) {
+            decoder.handle(new Buffer(Arrays.copyOfRange(frame, start, end)));
+            if (end < frame.length) {
+                assertTrue(decoded.isEmpty());
+            }
+            start = end;
+        }
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(1, decoded.size());
+        assertEquals("broker.example.com", decoded.get(0).protocolVirtualHost);
+    }
+
+    @Test
+    public void testRejectsOtherCommands() throws Exception {
+        Buffer frame = marshal(createWireFormatInfo());
+        frame.setByte(4, (byte) (WireFormatInfo.DATA_STRUCTURE_TYPE + 1));
+
+        decoder.handle(frame);
+
+        assertTrue(decoded.isEmpty());
+        assertEquals(1, errors.size());
+    }
+
+    @Test
+    public void testRejectsOversizedFrames() throws Exception {
+        OpenwireProtocol protocol = new OpenwireProtocol();
+        Buffer frame = marshal(createWireFormatInfo());
+        frame.setInt(0, protocol.maxFrameSize + 1);
+
+        decoder.handle(frame);
+
+        assertTrue(decoded.isEmpty());
+        assertEquals(1, errors.size());
+        assertNotNull(errors.get(0));
+    }
+
+    private static WireFormatInfo createWireFormatInfo() throws Exception {
+        WireFormatInfo info = new WireFormatInfo();
+        info.setVersion(1);
+        info.setMagic(OpenwireProtocol.MAGIC.getBytes());
+        info.setCacheEnabled(true);
+        info.setTightEncodingEnabled(true);
+        info.setMaxInactivityDuration(30000);
+        return info;
+    }
+
+    private static Buffer marshal(WireFormatInfo info) throws Exception {
+        DataByteArrayOutputStream out = new DataByteArrayOutputStream();
+        new OpenWireFormat(1).marshal(info, out);
+        return new Buffer(out.toBuffer().toByteArray());
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.openwire.codec;
+
+import org.fusesource.hawtbuf.DataByteArrayInputStream;
+import org.fusesource.hawtbuf.DataByteArrayOutputStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class BooleanStreamTest {
+
+    @Test
+    public void testResetAfterUnmarshalClearsStaleBits() throws Exception {
+        BooleanStream stream = new BooleanStream();
+        for (int i = 0; i < 24; i++) {
+            stream.writeBoolean(true);
+        }
+        DataByteArrayOutputStream out = new DataByteArrayOutputStream();
+        stream.marshal(out);
+
+        // unmarshal a shorter stream over the longer one, which leaves its set bits beyond the limit
+        BooleanStream reused = new BooleanStream();
+        reused.unmarshal(new DataByteArrayInputStream(out.toBuffer()));
+        DataByteArrayOutputStream shortOut = new DataByteArrayOutputStream();
+        BooleanStream shortStream = new BooleanStream();
+        shortStream.writeBoolean(true);
+        shortStream.marshal(shortOut);
+        reused.unmarshal(new DataByteArrayInputStream(shortOut.toBuffer()));
+
+        reused.reset();
+        for (int i = 0; i < 24; i++) {
+            reused.writeBoolean(false);
+        }
+        assertEquals(4, reused.marshalledSize());
+        reused.clear();
+        for (int i = 0; i < 24; i++) {
+            assertFalse("bit " + i, reused.readBoolean());
+        }
+    }
+}
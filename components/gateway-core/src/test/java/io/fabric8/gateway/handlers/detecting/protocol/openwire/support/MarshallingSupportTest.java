@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.openwire.support;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MarshallingSupportTest {
+
+    private static final int SENTINEL = 0xCAFEBABE;
+
+    @Test
+    public void testSkipPrimitives() throws Exception {
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 9000; i++) {
+            big.append('x');
+        }
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("a", 1);
+        map.put("b", Arrays.<Object>asList("c", 'd'));
+        List<Object> values = new ArrayList<Object>();
+        values.addAll(Arrays.<Object>asList(null, true, (byte) 1, 'c', (short) 2, 3, 4L, 5.0f, 6.0d,
+                new byte[]{1, 2, 3}, "text", big.toString(), map, Arrays.<Object>asList(1, "two", null)));
+
+        for (Object value : values) {
+            DataInputStream in = marshal(value);
+            MarshallingSupport.skipPrimitive(in);
+            assertEquals("skipping " + describe(value), SENTINEL, in.readInt());
+            assertEquals(0, in.available());
+        }
+    }
+
+    @Test
+    public void testSkipPrimitiveMatchesUnmarshal() throws Exception {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("Host", "broker");
+        map.put("Nested", new HashMap<String, Object>(map));
+
+        DataInputStream skipped = marshal(map);
+        MarshallingSupport.skipPrimitive(skipped);
+
+        DataInputStream unmarshalled = marshal(map);
+        assertEquals(map, MarshallingSupport.unmarshalPrimitive(unmarshalled));
+        assertEquals(unmarshalled.available(), skipped.available());
+    }
+
+    @Test
+    public void testSkipTruncatedPrimitive() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MarshallingSupport.marshalString(new DataOutputStream(bytes), "some text");
+        byte[] data = bytes.toByteArray();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 1)));
+        try {
+            MarshallingSupport.skipPrimitive(in);
+            fail("Expected an EOFException");
+        } catch (EOFException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSkipUnknownPrimitive() throws Exception {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(new byte[]{127}));
+        try {
+            MarshallingSupport.skipPrimitive(in);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals("Unknown primitive type: 127", e.getMessage());
+        }
+    }
+
+    private static DataInputStream marshal(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        MarshallingSupport.marshalPrimitive(out, value);
+        out.writeInt(SENTINEL);
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static String describe(Object value) {
+        return value == null ? "null" : value.getClass().getSimpleName();
+    }
+}
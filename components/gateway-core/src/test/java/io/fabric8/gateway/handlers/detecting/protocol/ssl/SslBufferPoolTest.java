@@ -0,0 +1,97 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.ssl;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SslBufferPoolTest {
+
+    @Test
+    public void testReleasedBufferIsReused() throws Exception {
+        ByteBuffer buffer = SslBufferPool.acquire(1024);
+        assertTrue(buffer.isDirect());
+        assertTrue(buffer.capacity() >= 1024);
+        buffer.put(new byte[100]);
+        SslBufferPool.release(buffer);
+
+        ByteBuffer reused = SslBufferPool.acquire(1024);
+        assertSame(buffer, reused);
+        assertEquals("reused buffers are cleared", 0, reused.position());
+        assertEquals(reused.capacity(), reused.limit());
+        SslBufferPool.release(reused);
+    }
+
+    @Test
+    public void testTooSmallBuffersAreDropped() throws Exception {
+        ByteBuffer small = SslBufferPool.acquire(512);
+        SslBufferPool.release(small);
+
+        ByteBuffer large = SslBufferPool.acquire(small.capacity() + 1);
+        assertNotSame(small, large);
+        assertTrue(large.capacity() > small.capacity());
+        SslBufferPool.release(large);
+
+        // the small buffer was dropped while looking for a large enough one
+        assertSame(large, SslBufferPool.acquire(512));
+    }
+
+    @Test
+    public void testPoolIsBounded() throws Exception {
+        ByteBuffer[] buffers = new ByteBuffer[10];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = SslBufferPool.acquire(256);
+        }
+        for (ByteBuffer buffer : buffers) {
+            SslBufferPool.release(buffer);
+        }
+        int reused = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            ByteBuffer buffer = SslBufferPool.acquire(256);
+            for (ByteBuffer released : buffers) {
+                if (buffer == released) {
+                    reused++;
+                }
+            }
+        }
+        assertEquals(4, reused);
+    }
+
+    @Test
+    public void testPoolsArePerThread() throws Exception {
+        final ByteBuffer buffer = SslBufferPool.acquire(128);
+        SslBufferPool.release(buffer);
+
+        final ByteBuffer[] other = new ByteBuffer[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                other[0] = SslBufferPool.acquire(128);
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertNotSame(buffer, other[0]);
+        assertSame(buffer, SslBufferPool.acquire(128));
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.ssl;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SslHandshakeMetricsTest {
+
+    @Test
+    public void testCountsHandshakes() throws Exception {
+        SslHandshakeMetrics metrics = new SslHandshakeMetrics();
+        metrics.handshakeCompleted(TimeUnit.MILLISECONDS.toNanos(5), new byte[]{1});
+        metrics.handshakeCompleted(TimeUnit.MILLISECONDS.toNanos(5), new byte[]{2});
+        metrics.handshakeFailed();
+
+        assertEquals(2, metrics.getCompleted());
+        assertEquals(0, metrics.getResumed());
+        assertEquals(1, metrics.getFailed());
+        assertEquals(2, metrics.getLatency().getCount());
+        assertEquals(2 / 60.0, metrics.getRate(), 0.0001);
+    }
+
+    @Test
+    public void testResumedWhenSessionIdIsReused() throws Exception {
+        SslHandshakeMetrics metrics = new SslHandshakeMetrics();
+        byte[] sessionId = {1, 2, 3, 4};
+        metrics.handshakeCompleted(1000, sessionId);
+        metrics.handshakeCompleted(1000, new byte[]{1, 2, 3, 4});
+        metrics.handshakeCompleted(1000, new byte[]{5, 6, 7, 8});
+
+        assertEquals(3, metrics.getCompleted());
+        assertEquals(1, metrics.getResumed());
+    }
+
+    @Test
+    public void testEmptySessionIdsAreNeverResumed() throws Exception {
+        // TLS 1.3 and stateless resumption may not give the session an id
+        SslHandshakeMetrics metrics = new SslHandshakeMetrics();
+        metrics.handshakeCompleted(1000, new byte[0]);
+        metrics.handshakeCompleted(1000, new byte[0]);
+        metrics.handshakeCompleted(1000, null);
+
+        assertEquals(3, metrics.getCompleted());
+        assertEquals(0, metrics.getResumed());
+    }
+
+    @Test
+    public void testOnlyRecentSessionIdsAreRemembered() throws Exception {
+        SslHandshakeMetrics metrics = new SslHandshakeMetrics();
+        metrics.handshakeCompleted(1000, sessionId(0));
+        for (int i = 1; i <= 1024; i++) {
+            metrics.handshakeCompleted(1000, sessionId(i));
+        }
+        metrics.handshakeCompleted(1000, sessionId(0));
+        assertEquals(0, metrics.getResumed());
+
+        metrics.handshakeCompleted(1000, sessionId(1024));
+        assertEquals(1, metrics.getResumed());
+    }
+
+    @Test
+    public void testLatencies() throws Exception {
+        SslHandshakeMetrics metrics = new SslHandshakeMetrics();
+        for (int i = 1; i <= 1000; i++) {
+            metrics.handshakeCompleted(TimeUnit.MILLISECONDS.toNanos(i), sessionId(i));
+        }
+
+        assertPercentile(metrics, 50.0, 500);
+        assertPercentile(metrics, 99.0, 990);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), metrics.getLatency().getMaxNanos());
+
+        String latencies = metrics.getLatencies();
+        assertTrue(latencies, latencies.endsWith("/1000.000 ms"));
+        assertEquals(latencies, 5, latencies.split("/").length);
+    }
+
+    private static void assertPercentile(SslHandshakeMetrics metrics, double percentile, long expectedMillis) {
+        long actual = TimeUnit.NANOSECONDS.toMillis(metrics.getLatency().getValueAtPercentile(percentile));
+        // the histogram buckets are within 2% of the recorded values
+        assertEquals("p" + percentile, expectedMillis, actual, expectedMillis * 0.02);
+    }
+
+    private static byte[] sessionId(int i) {
+        return new byte[]{(byte) (i >> 8), (byte) i};
+    }
+}
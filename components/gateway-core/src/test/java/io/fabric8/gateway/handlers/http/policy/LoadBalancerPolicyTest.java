@@ -0,0 +1,264 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http.policy;
+
+import io.fabric8.gateway.api.handlers.http.ServiceFailureHandler;
+import io.fabric8.gateway.loadbalancer.LeastOutstandingLoadBalancer;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
+import org.vertx.java.core.http.HttpClientResponse;
+import org.vertx.java.core.net.NetSocket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class LoadBalancerPolicyTest {
+
+    protected String serviceUrl = "http://localhost:8182/foo";
+    protected CountingLoadBalancer loadBalancer = new CountingLoadBalancer();
+    protected StubServiceResponseHandler delegate = new StubServiceResponseHandler();
+
+    @Test
+    public void testRequestCompletesWhenResponseHasBeenRead() throws Exception {
+        LoadBalancerPolicy policy = new LoadBalancerPolicy(loadBalancer, serviceUrl, delegate);
+        assertEquals(1, getOutstanding());
+
+        StubHttpClientResponse response = new StubHttpClientResponse(200);
+        policy.handle(response);
+        assertNotNull("Should have passed the response on", delegate.response);
+        assertEquals("Should still be outstanding until the response has been read", 1, getOutstanding());
+        assertEquals(0, loadBalancer.completed);
+
+        response.end();
+        assertEquals(0, getOutstanding());
+        assertEquals(1, loadBalancer.completed);
+        assertEquals(0, loadBalancer.failed);
+        assertTrue("Should have called the end handler of the delegate", delegate.ended);
+    }
+
+    @Test
+    public void testUnavailableServiceFailsWhenResponseHasBeenRead() throws Exception {
+        LoadBalancerPolicy policy = new LoadBalancerPolicy(loadBalancer, serviceUrl, delegate);
+        StubHttpClientResponse response = new StubHttpClientResponse(503);
+        policy.handle(response);
+        assertEquals(1, getOutstanding());
+
+        response.end();
+        assertEquals(0, getOutstanding());
+        assertEquals(0, loadBalancer.completed);
+        assertEquals(1, loadBalancer.failed);
+    }
+
+    @Test
+    public void testRequestFailureBeforeResponseReleasesOnce() throws Exception {
+        LoadBalancerPolicy policy = new LoadBalancerPolicy(loadBalancer, serviceUrl, delegate);
+
+        // such as the connection being refused, closed or the request timing out
+        policy.handleServiceFailure(new Exception("Connection was closed"));
+        assertEquals(0, getOutstanding());
+        assertEquals(1, loadBalancer.failed);
+        assertEquals(1, delegate.failures);
+
+        policy.handleServiceFailure(new Exception("Timed out"));
+        assertEquals(0, getOutstanding());
+        assertEquals("Should only release the request once", 1, loadBalancer.failed);
+        assertEquals(0, loadBalancer.completed);
+    }
+
+    @Test
+    public void testResponseFailureReleasesOnce() throws Exception {
+        LoadBalancerPolicy policy = new LoadBalancerPolicy(loadBalancer, serviceUrl, delegate);
+        StubHttpClientResponse response = new StubHttpClientResponse(200);
+        policy.handle(response);
+
+        // the connection is closed while the body is being read
+        response.fail(new Exception("Connection was closed"));
+        assertEquals(0, getOutstanding());
+        assertEquals(1, loadBalancer.failed);
+        assertEquals("Should have called the exception handler of the delegate", 1, delegate.failures);
+
+        policy.handleServiceFailure(new Exception("Connection was closed"));
+        response.end();
+        assertEquals(0, getOutstanding());
+        assertEquals("Should only release the request once", 1, loadBalancer.failed);
+        assertEquals(0, loadBalancer.completed);
+    }
+
+    @Test
+    public void testRequestCompletesWhenDelegateDoesNotReadResponse() throws Exception {
+        final HttpClientResponse[] received = new HttpClientResponse[1];
+        LoadBalancerPolicy policy = new LoadBalancerPolicy(loadBalancer, serviceUrl, new Handler<HttpClientResponse>() {
+            @Override
+            public void handle(HttpClientResponse clientResponse) {
+                received[0] = clientResponse;
+            }
+        });
+        StubHttpClientResponse response = new StubHttpClientResponse(200);
+        policy.handle(response);
+        assertNotNull(received[0]);
+        assertEquals(1, getOutstanding());
+
+        response.end();
+        assertEquals(0, getOutstanding());
+        assertEquals(1, loadBalancer.completed);
+    }
+
+    protected int getOutstanding() {
+        return loadBalancer.getServiceLoad(serviceUrl).getOutstanding();
+    }
+
+    protected static class CountingLoadBalancer extends LeastOutstandingLoadBalancer {
+        int completed;
+        int failed;
+
+        @Override
+        public void requestCompleted(Object service, long responseTime) {
+            completed++;
+            super.requestCompleted(service, responseTime);
+        }
+
+        @Override
+        public void requestFailed(Object service) {
+            failed++;
+            super.requestFailed(service);
+        }
+    }
+
+    /**
+     * Reads the response like the handler relaying it to the client
+     */
+    protected static class StubServiceResponseHandler implements Handler<HttpClientResponse>, ServiceFailureHandler {
+        HttpClientResponse response;
+        boolean ended;
+        int failures;
+
+        @Override
+        public void handle(HttpClientResponse clientResponse) {
+            response = clientResponse;
+            clientResponse.endHandler(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    ended = true;
+                }
+            });
+            clientResponse.exceptionHandler(new Handler<Throwable>() {
+                @Override
+                public void handle(Throwable cause) {
+                    handleServiceFailure(cause);
+                }
+            });
+        }
+
+        @Override
+        public void handleServiceFailure(Throwable cause) {
+            failures++;
+        }
+    }
+
+    protected static class StubHttpClientResponse implements HttpClientResponse {
+        private final int statusCode;
+        private final MultiMap headers = new CaseInsensitiveMultiMap();
+        private Handler<Void> endHandler;
+        private Handler<Throwable> exceptionHandler;
+
+        public StubHttpClientResponse(int statusCode) {
+            this.statusCode = statusCode;
+        }
+
+        public void end() {
+            if (endHandler != null) {
+                endHandler.handle(null);
+            }
+        }
+
+        public void fail(Throwable cause) {
+            if (exceptionHandler != null) {
+                exceptionHandler.handle(cause);
+            }
+        }
+
+        @Override
+        public int statusCode() {
+            return statusCode;
+        }
+
+        @Override
+        public String statusMessage() {
+            return null;
+        }
+
+        @Override
+        public MultiMap headers() {
+            return headers;
+        }
+
+        @Override
+        public MultiMap trailers() {
+            return headers;
+        }
+
+        @Override
+        public List<String> cookies() {
+            return null;
+        }
+
+        @Override
+        public HttpClientResponse bodyHandler(Handler<Buffer> bodyHandler) {
+            return this;
+        }
+
+        @Override
+        public NetSocket netSocket() {
+            return null;
+        }
+
+        @Override
+        public HttpClientResponse endHandler(Handler<Void> endHandler) {
+            this.endHandler = endHandler;
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse dataHandler(Handler<Buffer> dataHandler) {
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse pause() {
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse resume() {
+            return this;
+        }
+
+        @Override
+        public HttpClientResponse exceptionHandler(Handler<Throwable> exceptionHandler) {
+            this.exceptionHandler = exceptionHandler;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.tcp;
+
+import io.fabric8.gateway.ServiceDTO;
+import io.fabric8.gateway.api.ServiceDetails;
+import io.fabric8.gateway.loadbalancer.ClientRequestFacade;
+import io.fabric8.gateway.loadbalancer.StickyLoadBalancer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TcpGatewayHandlerTest {
+
+    private final StickyLoadBalancer serviceLoadBalancer = new StickyLoadBalancer();
+    private final TcpGatewayHandler handler = new TcpGatewayHandler(null, null, "tcp", null, serviceLoadBalancer);
+    private String clientRequestKey = "client1";
+    private final ClientRequestFacade requestFacade = new ClientRequestFacade() {
+        @Override
+        public String getClientRequestKey() {
+            return clientRequestKey;
+        }
+    };
+
+    @Test
+    public void testStickyClientsSurviveServiceMapRefreshes() throws Exception {
+        ServiceDetails first = handler.chooseService(createServices(), requestFacade);
+        assertNotNull(first);
+        for (int i = 0; i < 5; i++) {
+            // the service map creates new service details whenever the services are refreshed
+            ServiceDetails chosen = handler.chooseService(createServices(), requestFacade);
+            assertEquals(first.getId(), chosen.getId());
+        }
+        assertEquals(5, serviceLoadBalancer.getHits());
+        assertEquals(1, serviceLoadBalancer.getMisses());
+        assertEquals(0, serviceLoadBalancer.getInvalidations());
+    }
+
+    @Test
+    public void testClientsAreRebalancedWhenTheirServiceMoves() throws Exception {
+        ServiceDetails first = handler.chooseService(createServices(), requestFacade);
+
+        List<ServiceDetails> services = createServices();
+        for (ServiceDetails service : services) {
+            if (service.getId().equals(first.getId())) {
+                ((ServiceDTO) service).setServices(Arrays.asList("tcp://otherhost:61616"));
+            }
+        }
+        ServiceDetails chosen = handler.chooseService(services, requestFacade);
+        assertEquals(1, serviceLoadBalancer.getInvalidations());
+        assertEquals(chosen.getId(), handler.chooseService(createServices(), requestFacade).getId());
+    }
+
+    @Test
+    public void testNoServices() throws Exception {
+        assertNull(handler.chooseService(new ArrayList<ServiceDetails>(), requestFacade));
+    }
+
+    private static List<ServiceDetails> createServices() {
+        List<ServiceDetails> answer = new ArrayList<ServiceDetails>();
+        for (int i = 0; i < 3; i++) {
+            ServiceDTO service = new ServiceDTO();
+            service.setId("broker" + i);
+            service.setContainer("root");
+            service.setVersion("1.0");
+            service.setServices(Arrays.asList("tcp://host" + i + ":61616"));
+            answer.add(service);
+        }
+        return answer;
+    }
+}
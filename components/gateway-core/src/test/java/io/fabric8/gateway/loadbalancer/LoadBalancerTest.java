@@ -27,8 +27,10 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -102,6 +104,171 @@ public class LoadBalancerTest {
 
     }
 
+    @Test
+    public void testStickyLoadBalancerRebindsWhenServiceRemoved() throws Exception {
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer();
+        String first = loadBalancer.choose(services, clientRequestFacade);
+        assertEquals("Should stick to the same service", first, loadBalancer.choose(services, clientRequestFacade));
+
+        List<String> remaining = new ArrayList<String>(services);
+        remaining.remove(first);
+        String second = loadBalancer.choose(remaining, clientRequestFacade);
+        assertNotNull(second);
+        assertTrue("Should not use the removed service " + first, !first.equals(second));
+        assertEquals("Should stick to the new service", second, loadBalancer.choose(services, clientRequestFacade));
+        assertEquals(1, loadBalancer.getInvalidations());
+        assertEquals(1, loadBalancer.getSize());
+    }
+
+    @Test
+    public void testStickyLoadBalancerCacheIsBounded() throws Exception {
+        int cacheSize = 100;
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer(cacheSize);
+        for (int i = 0; i < cacheSize * 10; i++) {
+            clientRequestKey = "client:" + i;
+            assertNotNull(loadBalancer.choose(services, clientRequestFacade));
+        }
+        assertTrue("Cache should be bounded but has " + loadBalancer.getSize() + " entries", loadBalancer.getSize() <= cacheSize);
+        assertEquals(cacheSize * 9, loadBalancer.getEvictions());
+        assertEquals(cacheSize * 10, loadBalancer.getMisses());
+        assertEquals(0, loadBalancer.getHits());
+    }
+
+    @Test
+    public void testStickyLoadBalancerExpiresIdleClients() throws Exception {
+        final AtomicLong now = new AtomicLong(1000);
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer(LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE, 50, new RoundRobinLoadBalancer()) {
+            @Override
+            protected long currentTimeMillis() {
+                return now.get();
+            }
+        };
+        loadBalancer.choose(services, clientRequestFacade);
+        now.addAndGet(50);
+        loadBalancer.choose(services, clientRequestFacade);
+        assertEquals(1, loadBalancer.getHits());
+
+        now.addAndGet(51);
+        loadBalancer.choose(services, clientRequestFacade);
+        assertEquals(1, loadBalancer.getExpirations());
+        assertEquals(2, loadBalancer.getMisses());
+        assertEquals(1, loadBalancer.getSize());
+    }
+
+    @Test
+    public void testLeastOutstandingLoadBalancer() throws Exception {
+        LeastOutstandingLoadBalancer loadBalancer = new LeastOutstandingLoadBalancer();
+        assertLoadBalancerWorksOnEmptyOrSingletonServices(loadBalancer);
+
+        for (int i = 0; i < services.size() - 1; i++) {
+            loadBalancer.requestStarted(services.get(i));
+        }
+        String idle = services.get(services.size() - 1);
+        assertEquals("Should choose the service without outstanding requests", idle, loadBalancer.choose(services, clientRequestFacade));
+
+        loadBalancer.requestStarted(idle);
+        loadBalancer.requestStarted(idle);
+        loadBalancer.requestCompleted(services.get(0), 1000);
+        assertEquals("Should choose the least loaded service", services.get(0), loadBalancer.choose(services, clientRequestFacade));
+    }
+
+    @Test
+    public void testPowerOfTwoChoicesLoadBalancerAvoidsSlowServices() throws Exception {
+        PowerOfTwoChoicesLoadBalancer loadBalancer = new PowerOfTwoChoicesLoadBalancer();
+        assertLoadBalancerWorksOnEmptyOrSingletonServices(loadBalancer);
+
+        String slow = services.get(0);
+        for (String service : services) {
+            loadBalancer.requestStarted(service);
+            loadBalancer.requestCompleted(service, service.equals(slow) ? 1000000000L : 1000000L);
+        }
+        Set<String> set = asSet(performRequests(loadBalancer));
+        assertTrue("Should never choose the slow service but got: " + set, !set.contains(slow));
+        assertTrue("Should use the other services but got: " + set, set.size() > 1);
+    }
+
+    @Test
+    public void testLoadAwareLoadBalancerEjectsFailingServices() throws Exception {
+        PowerOfTwoChoicesLoadBalancer loadBalancer = new PowerOfTwoChoicesLoadBalancer();
+        String failing = services.get(1);
+        for (int i = 0; i < loadBalancer.getFailureThreshold(); i++) {
+            loadBalancer.requestStarted(failing);
+            loadBalancer.requestFailed(failing);
+        }
+        assertTrue(loadBalancer.getServiceLoad(failing).isEjected(System.currentTimeMillis()));
+        Set<String> set = asSet(performRequests(loadBalancer));
+        assertTrue("Should not choose the ejected service but got: " + set, !set.contains(failing));
+
+        // when every service is ejected they should still be used
+        LeastOutstandingLoadBalancer leastOutstanding = new LeastOutstandingLoadBalancer();
+        leastOutstanding.setFailureThreshold(1);
+        for (String service : services) {
+            leastOutstanding.requestFailed(service);
+        }
+        performRequests(leastOutstanding);
+    }
+
+    @Test
+    public void testLoadAwareLoadBalancerDropsIdleServices() throws Exception {
+        final AtomicLong clock = new AtomicLong(1000000);
+        LeastOutstandingLoadBalancer loadBalancer = new LeastOutstandingLoadBalancer() {
+            @Override
+            protected long currentTimeMillis() {
+                return clock.get();
+            }
+        };
+        loadBalancer.setIdleTime(1000);
+        String removed = "http://removed:8080/";
+        String busy = "http://busy:8080/";
+        loadBalancer.requestStarted(removed);
+        loadBalancer.requestCompleted(removed, 1000);
+        loadBalancer.requestStarted(busy);
+        loadBalancer.choose(services, clientRequestFacade);
+        assertTrue(loadBalancer.getTrackedServices().contains(removed));
+
+        clock.addAndGet(1001);
+        loadBalancer.choose(services, clientRequestFacade);
+        assertFalse("Should drop the service which went away", loadBalancer.getTrackedServices().contains(removed));
+        assertTrue("Should keep the service with outstanding requests", loadBalancer.getTrackedServices().contains(busy));
+        assertTrue("Should keep the services in use", loadBalancer.getTrackedServices().containsAll(services));
+    }
+
+    @Test
+    public void testStickyLoadBalancerFollowsMovedService() throws Exception {
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer();
+        String first = loadBalancer.choose(services, clientRequestFacade);
+
+        List<String> reordered = new ArrayList<String>(services);
+        reordered.remove(first);
+        reordered.add(first);
+        assertEquals("Should stick to the moved service", first, loadBalancer.choose(reordered, clientRequestFacade));
+        assertEquals(first, loadBalancer.choose(services, clientRequestFacade));
+        assertEquals(2, loadBalancer.getHits());
+        assertEquals(0, loadBalancer.getInvalidations());
+    }
+
+    @Test
+    public void testStickyLoadBalancerMatchesServicesByKey() throws Exception {
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer() {
+            @Override
+            protected Object getServiceKey(Object service) {
+                // the same service with another query string
+                String url = service.toString();
+                int idx = url.indexOf('?');
+                return idx < 0 ? url : url.substring(0, idx);
+            }
+        };
+        String first = loadBalancer.choose(services, clientRequestFacade);
+
+        List<String> updated = new ArrayList<String>();
+        for (String service : services) {
+            updated.add(service + "?version=2");
+        }
+        assertEquals("Should stick to the updated service", first + "?version=2", loadBalancer.choose(updated, clientRequestFacade));
+        assertEquals(0, loadBalancer.getInvalidations());
+        assertEquals(1, loadBalancer.getSize());
+    }
+
     protected List<String> performRequests(LoadBalancer loadBalancer) {
         List<String> answer = new ArrayList<String>();
         for (int i = 0; i < requestCount; i++) {
@@ -30,5 +30,6 @@ public interface FabricGatewayInfoMBean {
     String getLastError();
     String getLastCallDate();
     long getAvarageCallTimeNanos();
+    String getCallTimePercentiles();
     void resetStatistics();
 }
@@ -19,9 +19,14 @@ package io.fabric8.gateway.fabric.http;
 import io.fabric8.gateway.api.CallDetailRecord;
 import io.fabric8.gateway.api.apimanager.ApiManager;
 import io.fabric8.gateway.api.apimanager.ApiManagerService;
+import io.fabric8.gateway.api.handlers.http.HttpClientPool;
+import io.fabric8.gateway.api.handlers.http.HttpClientPoolMBean;
 import io.fabric8.gateway.api.handlers.http.HttpGateway;
 import io.fabric8.gateway.api.handlers.http.HttpGatewayHandler;
+import io.fabric8.gateway.api.handlers.http.HttpGatewayMetrics;
+import io.fabric8.gateway.api.handlers.http.HttpGatewayMetricsMBean;
 import io.fabric8.gateway.api.handlers.http.HttpMappingRule;
+import io.fabric8.gateway.api.handlers.http.HttpMappingTrie;
 import io.fabric8.gateway.api.handlers.http.IMappedServices;
 import io.fabric8.gateway.fabric.support.vertx.VertxService;
 import io.fabric8.gateway.handlers.http.HttpGatewayServer;
@@ -38,6 +43,8 @@ import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,10 +67,19 @@ public class FabricHTTPGateway implements HttpGateway {
     HTTPGatewayConfig gatewayConfig;
     private ApiManager apiManager;
     private HttpGatewayServer server;
+    private HttpClientPool httpClientPool;
+    private final HttpGatewayMetrics metrics = new HttpGatewayMetrics();
     
     //private DetectingGatewayWebSocketHandler websocketHandler = new DetectingGatewayWebSocketHandler();
     private MBeanServer mbeanServer;
     private Set<HttpMappingRule> mappingRuleConfigurations = new CopyOnWriteArraySet<HttpMappingRule>();
+    private volatile HttpMappingTrie mappingTrie = HttpMappingTrie.EMPTY;
+    private final Runnable mappingRulesChangeListener = new Runnable() {
+        @Override
+        public void run() {
+            updateMappingTrie();
+        }
+    };
 
     ShutdownTracker shutdownTracker = new ShutdownTracker();
     private FabricHTTPGatewayInfo fabricHTTPGatewayInfoMBean;
@@ -87,6 +103,15 @@ public class FabricHTTPGateway implements HttpGateway {
         Vertx vertx = getVertx();
         
         apiManager = new ApiManager();
+
+        httpClientPool = new HttpClientPool(vertx);
+        httpClientPool.setKeepAlive(gatewayConfig.isClientKeepAlive());
+        httpClientPool.setMaxConnectionsPerHost(gatewayConfig.getClientMaxConnectionsPerHost());
+        httpClientPool.setPipelining(gatewayConfig.isClientPipelining());
+        httpClientPool.setIdleTimeout(gatewayConfig.getClientIdleTimeout());
+        httpClientPool.setConnectTimeout(gatewayConfig.getClientConnectTimeout());
+        httpClientPool.start();
+        metrics.setScrapePath(gatewayConfig.getMetricsPath());
         
         Handler<HttpServerRequest> requestHandler = null;
         if (gatewayConfig.isApiManagerEnabled()) {
@@ -98,7 +123,10 @@ public class FabricHTTPGateway implements HttpGateway {
             getApiManager().getService().init(config);
             requestHandler = getApiManager().getService().createApiManagerHttpGatewayHandler();
         } else {
-            requestHandler = new HttpGatewayHandler(getVertx(), this);
+            HttpGatewayHandler httpGatewayHandler = new HttpGatewayHandler(getVertx(), this);
+            httpGatewayHandler.setRequestWriteQueueMaxSize(gatewayConfig.getRequestWriteQueueMaxSize());
+            httpGatewayHandler.setResponseWriteQueueMaxSize(gatewayConfig.getResponseWriteQueueMaxSize());
+            requestHandler = httpGatewayHandler;
         }
         
         //websocketHandler.setPathPrefix(websocketGatewayPrefix);
@@ -110,34 +138,70 @@ public class FabricHTTPGateway implements HttpGateway {
         if (server != null) {
             server.destroy();
         }
+        if (httpClientPool != null) {
+            httpClientPool.stop();
+        }
     }
     
     @Override
     public void addCallDetailRecord(CallDetailRecord cdr) {
-    	fabricHTTPGatewayInfoMBean.setLastCallDate(cdr.getCallDate().toString());
-    	fabricHTTPGatewayInfoMBean.registerCall(cdr.getCallTimeNanos());
-    	if (cdr.getError()!=null) {
-    		fabricHTTPGatewayInfoMBean.setLastError(cdr.getError());
+    	metrics.record(cdr);
+    	FabricHTTPGatewayInfo info = fabricHTTPGatewayInfoMBean;
+    	if (info != null) {
+    		info.setLastCallDate(cdr.getCallDate().toString());
+    		if (cdr.getError()!=null) {
+    			info.setLastError(cdr.getError());
+    		}
     	}
     }
 
+    @Override
+    public HttpGatewayMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public HttpClientPool getHttpClientPool() {
+        return httpClientPool;
+    }
+
     @Override
     public void addMappingRuleConfiguration(HttpMappingRule mappingRuleConfiguration) {
-        mappingRuleConfigurations.add(mappingRuleConfiguration);
+        if (mappingRuleConfigurations.add(mappingRuleConfiguration)) {
+            mappingRuleConfiguration.addChangeListener(mappingRulesChangeListener);
+        }
+        updateMappingTrie();
     }
 
     @Override
     public void removeMappingRuleConfiguration(HttpMappingRule mappingRuleConfiguration) {
-        mappingRuleConfigurations.remove(mappingRuleConfiguration);
+        if (mappingRuleConfigurations.remove(mappingRuleConfiguration)) {
+            mappingRuleConfiguration.removeChangeListener(mappingRulesChangeListener);
+        }
+        updateMappingTrie();
     }
 
     @Override
     public Map<String, IMappedServices> getMappedServices() {
+        return mappingTrie.getMappedServices();
+    }
+
+    @Override
+    public HttpMappingTrie getMappingTrie() {
+        return mappingTrie;
+    }
+
+    /**
+     * Rebuilds the mapping snapshot used by the request handlers; invoked whenever the
+     * mapping rules are added, removed or signal that their services changed
+     */
+    private synchronized void updateMappingTrie() {
         Map<String, IMappedServices> answer = new HashMap<String, IMappedServices>();
         for (HttpMappingRule mappingRuleConfiguration : mappingRuleConfigurations) {
             mappingRuleConfiguration.appendMappedServices(answer);
         }
-        return answer;
+        mappingTrie = new HttpMappingTrie(mappingTrie.getVersion() + 1, answer);
+        metrics.retainMappedServices(answer);
     }
 
     @Override
@@ -196,10 +260,42 @@ public class FabricHTTPGateway implements HttpGateway {
     private void registerHttpGatewayMBeans() {
     	fabricHTTPGatewayInfoMBean = new FabricHTTPGatewayInfo(this);
         fabricHTTPGatewayInfoMBean.registerMBeanServer(shutdownTracker, mbeanServer);
+        try {
+            ObjectName name = getHttpClientPoolObjectName();
+            if (!mbeanServer.isRegistered(name)) {
+                mbeanServer.registerMBean(new StandardMBean(httpClientPool, HttpClientPoolMBean.class), name);
+            }
+            name = getMetricsObjectName();
+            if (!mbeanServer.isRegistered(name)) {
+                mbeanServer.registerMBean(new StandardMBean(metrics, HttpGatewayMetricsMBean.class), name);
+            }
+        } catch (Exception e) {
+            LOG.warn("An error occurred during mbean server registration: " + e, e);
+        }
     }
     
     private void unregisterHttpGatewayMBeans() {
         fabricHTTPGatewayInfoMBean.unregisterMBeanServer(mbeanServer);
+        try {
+            ObjectName name = getHttpClientPoolObjectName();
+            if (mbeanServer.isRegistered(name)) {
+                mbeanServer.unregisterMBean(name);
+            }
+            name = getMetricsObjectName();
+            if (mbeanServer.isRegistered(name)) {
+                mbeanServer.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            LOG.warn("An error occurred during mbean server unregistration: " + e, e);
+        }
+    }
+
+    private ObjectName getHttpClientPoolObjectName() throws Exception {
+        return new ObjectName("io.fabric8.gateway-fabric:service=HttpClientPool");
+    }
+
+    private ObjectName getMetricsObjectName() throws Exception {
+        return new ObjectName("io.fabric8.gateway-fabric:service=HttpGatewayMetrics");
     }
 
 	@Override
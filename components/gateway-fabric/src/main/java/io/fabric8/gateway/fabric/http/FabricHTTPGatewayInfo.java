@@ -33,10 +33,8 @@ public class FabricHTTPGatewayInfo implements FabricGatewayInfoMBean {
 
     private final FabricHTTPGateway fabricHTTPGateway;
     private ObjectName objectName;
-    private long numberOfInvocations = 0l;
-    private long averageCallTimeNanos = 0l;
-    private String lastError;
-    private String lastCallDate;
+    private volatile String lastError;
+    private volatile String lastCallDate;
     
     public FabricHTTPGatewayInfo(FabricHTTPGateway fabricHTTPGateway) {
 		super();
@@ -85,13 +83,9 @@ public class FabricHTTPGatewayInfo implements FabricGatewayInfoMBean {
 
     @Override
 	public long getNumberOfInvocations() {
-		return numberOfInvocations;
+		return getFabricHTTPGateway().getMetrics().getRequestCount();
 	}
     
-    public void registerCall(long callTimeNanos) {
-    	averageCallTimeNanos = (averageCallTimeNanos * numberOfInvocations + callTimeNanos)/++numberOfInvocations;
-    }
-    
     public void setLastError(String error) {
     	lastError = error;
     }
@@ -115,13 +109,17 @@ public class FabricHTTPGatewayInfo implements FabricGatewayInfoMBean {
     
     @Override 
     public long getAvarageCallTimeNanos() {
-    	return averageCallTimeNanos;
+    	return getFabricHTTPGateway().getMetrics().getMeanRequestTimeNanos();
+    }
+
+    @Override
+    public String getCallTimePercentiles() {
+    	return getFabricHTTPGateway().getMetrics().getRequestLatencies();
     }
     
     @Override
     public void resetStatistics() {
-    	averageCallTimeNanos = 0l;
-    	numberOfInvocations = 0l;
+    	getFabricHTTPGateway().getMetrics().resetStatistics();
     	lastCallDate = null;
     	lastError = null;
     }
@@ -15,6 +15,9 @@
  */
 package io.fabric8.gateway.fabric.http;
 
+import io.fabric8.gateway.api.handlers.http.HttpClientPool;
+import io.fabric8.gateway.api.handlers.http.HttpGatewayServiceClient;
+
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
@@ -54,6 +57,22 @@ public class HTTPGatewayConfig extends HashMap<String, String> {
     public final static String REVERSE_HEADERS = "REVERSE_HEADERS";
     /** The loadbalancer to use in the gateway */
     public final static String LOAD_BALANCER = "LOAD_BALANCER";
+    /** If enabled (the default) then the connections to the back end services are kept alive and reused */
+    public final static String CLIENT_KEEP_ALIVE = "CLIENT_KEEP_ALIVE";
+    /** The maximum number of pooled connections to each back end service host and port */
+    public final static String CLIENT_MAX_CONNECTIONS_PER_HOST = "CLIENT_MAX_CONNECTIONS_PER_HOST";
+    /** If enabled then requests to the back end services are pipelined on the pooled connections */
+    public final static String CLIENT_PIPELINING = "CLIENT_PIPELINING";
+    /** The time in milliseconds after which an unused back end service client and its connections are closed */
+    public final static String CLIENT_IDLE_TIMEOUT = "CLIENT_IDLE_TIMEOUT";
+    /** The timeout in milliseconds used when connecting to a back end service */
+    public final static String CLIENT_CONNECT_TIMEOUT = "CLIENT_CONNECT_TIMEOUT";
+    /** The number of bytes of a request body which may be queued for the back end service before reading from the client is paused */
+    public final static String REQUEST_WRITE_QUEUE_MAX_SIZE = "REQUEST_WRITE_QUEUE_MAX_SIZE";
+    /** The number of bytes of a response body which may be queued for the client before reading from the back end service is paused */
+    public final static String RESPONSE_WRITE_QUEUE_MAX_SIZE = "RESPONSE_WRITE_QUEUE_MAX_SIZE";
+    /** The path on which the latency metrics of the gateway are served in the Prometheus text format, such as /_metrics; they are not served if unset */
+    public final static String METRICS_PATH = "METRICS_PATH";
     
     public int getPort() {
         return Integer.parseInt(get(HTTP_PORT));
@@ -102,6 +121,36 @@ public class HTTPGatewayConfig extends HashMap<String, String> {
     public boolean isReverseHeaders() {
         return Boolean.parseBoolean(get(REVERSE_HEADERS));
     }
+    public boolean isClientKeepAlive() {
+        String value = get(CLIENT_KEEP_ALIVE);
+        return value == null || Boolean.parseBoolean(value);
+    }
+    public int getClientMaxConnectionsPerHost() {
+        String value = get(CLIENT_MAX_CONNECTIONS_PER_HOST);
+        return value == null ? HttpClientPool.DEFAULT_MAX_CONNECTIONS_PER_HOST : Integer.parseInt(value);
+    }
+    public boolean isClientPipelining() {
+        return Boolean.parseBoolean(get(CLIENT_PIPELINING));
+    }
+    public long getClientIdleTimeout() {
+        String value = get(CLIENT_IDLE_TIMEOUT);
+        return value == null ? HttpClientPool.DEFAULT_IDLE_TIMEOUT : Long.parseLong(value);
+    }
+    public int getClientConnectTimeout() {
+        String value = get(CLIENT_CONNECT_TIMEOUT);
+        return value == null ? HttpClientPool.DEFAULT_CONNECT_TIMEOUT : Integer.parseInt(value);
+    }
+    public int getRequestWriteQueueMaxSize() {
+        String value = get(REQUEST_WRITE_QUEUE_MAX_SIZE);
+        return value == null ? HttpGatewayServiceClient.DEFAULT_WRITE_QUEUE_MAX_SIZE : Integer.parseInt(value);
+    }
+    public int getResponseWriteQueueMaxSize() {
+        String value = get(RESPONSE_WRITE_QUEUE_MAX_SIZE);
+        return value == null ? HttpGatewayServiceClient.DEFAULT_WRITE_QUEUE_MAX_SIZE : Integer.parseInt(value);
+    }
+    public String getMetricsPath() {
+        return get(METRICS_PATH);
+    }
     public static List<Map<String,String>> parseSelectorConfig(String selectorConfig) throws IOException {
     	ObjectMapper mapper = new ObjectMapper();
     	TypeReference<List<Map<String,String>>> typeRef = new TypeReference<List<Map<String,String>>>() {};
@@ -20,6 +20,9 @@ import io.fabric8.gateway.fabric.support.http.HttpMappingKubeCache;
 import io.fabric8.gateway.fabric.support.http.HttpMappingRuleBase;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
 import io.fabric8.gateway.loadbalancer.LoadBalancers;
+import io.fabric8.gateway.loadbalancer.StickyLoadBalancer;
+import io.fabric8.gateway.loadbalancer.StickyLoadBalancerMBean;
+import io.fabric8.utils.JMXUtils;
 
 import java.util.List;
 import java.util.Map;
@@ -27,6 +30,9 @@ import java.util.Map;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,6 +75,8 @@ public class HttpMappingRuleConfiguration {
      * <li>LoadBalancers.RANDOM_LOAD_BALANCER, value = "Random"),
      * <li>LoadBalancers.ROUND_ROBIN_LOAD_BALANCER, value = "Round Robin"),
      * <li>LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky")
+     * <li>LoadBalancers.LEAST_OUTSTANDING_LOAD_BALANCER, value = "Least Outstanding")
+     * <li>LoadBalancers.POWER_OF_TWO_CHOICES_LOAD_BALANCER, value = "Power of Two Choices")
      * </ul>
      */
     private String loadBalancerType;
@@ -132,6 +140,8 @@ public class HttpMappingRuleConfiguration {
         
         LoadBalancer loadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize);
 
+        registerLoadBalancerMBean(loadBalancer);
+
         LOG.info("activating http mapping selector: " + serviceSelectors + " with URI template: " + uriTemplate
                 + " enabledVersion: " + enabledVersion + " with load balancer: " + loadBalancer);
 
@@ -152,11 +162,31 @@ public class HttpMappingRuleConfiguration {
         
     }
 
+    /**
+     * Exposes the sessions of a sticky load balancer over JMX, any previous load balancer is replaced
+     */
+    private void registerLoadBalancerMBean(LoadBalancer loadBalancer) throws Exception {
+        if (loadBalancer instanceof StickyLoadBalancer) {
+            JMXUtils.registerMBean(new StandardMBean((StickyLoadBalancer) loadBalancer, StickyLoadBalancerMBean.class), getLoadBalancerObjectName());
+        } else {
+            JMXUtils.unregisterMBean(getLoadBalancerObjectName());
+        }
+    }
+
+    private ObjectName getLoadBalancerObjectName() throws MalformedObjectNameException {
+        return new ObjectName("io.fabric8.gateway-fabric:service=StickyLoadBalancer");
+    }
+
     private void deactivateInternal() {
         if (mappingTree != null) {
             mappingTree.destroy();
             mappingTree = null;
         }
+        try {
+            JMXUtils.unregisterMBean(getLoadBalancerObjectName());
+        } catch (MalformedObjectNameException e) {
+            LOG.warn("Failed to unregister the load balancer mbean: " + e, e);
+        }
     }
 
     @Override
@@ -12,7 +12,8 @@ import io.fabric8.kubernetes.api.KubernetesClient;
 import io.fabric8.kubernetes.api.KubernetesFactory;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.Service;
-import io.fabric8.kubernetes.api.model.ServiceList;
+import io.fabric8.kubernetes.api.watch.Informer;
+import io.fabric8.kubernetes.api.watch.ResourceListener;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -22,6 +23,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,7 +33,9 @@ public class HttpMappingKubeCache implements Runnable {
     private static final transient Logger LOG = LoggerFactory.getLogger(HttpMappingKubeCache.class);
 
     private final ScheduledExecutorService serviceCacheExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
     private KubernetesClient client;
+    private Informer<Service> serviceInformer;
     private final HttpMappingRule mappingRuleConfiguration;
     private final List<Map<String,String>> serviceSelectors;
     private List<String> contextPathsCache;
@@ -48,15 +52,68 @@ public class HttpMappingKubeCache implements Runnable {
         KubernetesFactory factory = new KubernetesFactory(kubernetesMaster);
         contextPathsCache = new ArrayList<String>();
         client = new KubernetesClient(factory);
-        //for now simply check in with kubernetes every 5 seconds
-        //it'd be nice if kubernetes can callback into our cache.
-        serviceCacheExecutor.scheduleWithFixedDelay(this, 0, 5, SECONDS);
+        //watch the services so we get called back whenever they change; the refresh
+        //always runs on the executor so the cache is only updated by one thread
+        serviceInformer = client.createServiceInformer(client.getNamespace());
+        serviceInformer.addListener(new ResourceListener<Service>() {
+            @Override
+            public void onAdd(Service service) {
+                scheduleRefresh();
+            }
+
+            @Override
+            public void onUpdate(Service oldService, Service newService) {
+                scheduleRefresh();
+            }
+
+            @Override
+            public void onDelete(Service service) {
+                scheduleRefresh();
+            }
+        });
+        serviceInformer.start();
+        //the refreshes triggered by the initial list are ignored until the informer has synced
+        //so lets refresh as soon as it has
+        serviceCacheExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                waitForSyncAndRefresh();
+            }
+        });
+        //services which are not yet registered in the API Manager are retried periodically
+        //which only reads the local cache of the informer rather than calling kubernetes
+        serviceCacheExecutor.scheduleWithFixedDelay(this, 30, 30, SECONDS);
     }
 
     public void destroy() {
+        if (serviceInformer != null) {
+            serviceInformer.stop();
+        }
         serviceCacheExecutor.shutdown();
     }
 
+    /**
+     * Schedules a refresh unless one is already pending, so that a burst of changes
+     * only results in a single rebuild of the mapping rules
+     */
+    protected void scheduleRefresh() {
+        if (!serviceCacheExecutor.isShutdown() && refreshPending.compareAndSet(false, true)) {
+            serviceCacheExecutor.execute(this);
+        }
+    }
+
+    protected void waitForSyncAndRefresh() {
+        try {
+            while (!serviceCacheExecutor.isShutdown() && !serviceInformer.waitForSync(1, SECONDS)) {
+                // keep waiting until the services have been listed
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        run();
+    }
+
     protected static String paramValue(String paramValue) {
         return paramValue != null ? paramValue : "";
     }
@@ -83,15 +140,20 @@ public class HttpMappingKubeCache implements Runnable {
 
     @Override
     public void run() {
+        // changes made from now on need another refresh
+        refreshPending.set(false);
         this.refreshServices();
     }
 
     public void refreshServices() {
+        if (serviceInformer == null || !serviceInformer.hasSynced()) {
+            // lets not remove any mapping rules until we know which services exist
+            return;
+        }
         List<String> currentCache = new ArrayList<String>();
         currentCache.addAll(contextPathsCache);
         try {
-            ServiceList serviceList = client.getServices();
-            for (Service service1 : serviceList.getItems()) {
+            for (Service service1 : serviceInformer.getStore().list(client.getNamespace())) {
                 Map<String, String> selector = getSelector(service1);
                 if (selectorMatch(selector)) {
                     String contextPath = KubernetesHelper.getName(service1);
@@ -29,6 +29,8 @@ import org.slf4j.LoggerFactory;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -115,6 +117,7 @@ public class HttpMappingRuleBase implements HttpMappingRule {
      */
     public void updateMappingRules(boolean remove, String path, List<String> services, Map<String, String> defaultParams, ServiceDetails serviceDetails) {
         SimplePathTemplate pathTemplate = getUriTemplate();
+        boolean changed = false;
         if (pathTemplate != null) {
             boolean versionSpecificUri = pathTemplate.getParameterNames().contains("version");
 
@@ -137,23 +140,68 @@ public class HttpMappingRuleBase implements HttpMappingRule {
                 String fullPath = pathTemplate.bindByNameNonStrict(params);
                 if (remove) {
                     MappedServices rule = mappingRules.get(fullPath);
-                    if (rule != null) {
-                        Set<String> serviceUrls = rule.getServiceUrls();
+                    if (rule != null && rule.getServiceUrls().contains(service)) {
+                        // published snapshots share the rule so it is replaced rather than changed
+                        Set<String> serviceUrls = new LinkedHashSet<String>(rule.getServiceUrls());
                         serviceUrls.remove(service);
                         if (serviceUrls.isEmpty()) {
                             mappingRules.remove(fullPath);
+                        } else {
+                            mappingRules.put(fullPath, createMappedServices(serviceUrls, rule.getServiceDetails()));
                         }
+                        changed = true;
                     }
                 } else {
-                    MappedServices mappedServices = new MappedServices(service, serviceDetails, loadBalancer, reverseHeaders);
-                    MappedServices oldRule = mappingRules.put(fullPath, mappedServices);
+                    MappedServices oldRule = mappingRules.get(fullPath);
+                    if (oldRule != null && oldRule.getServiceUrls().contains(service)
+                            && isSameServiceDetails(oldRule.getServiceDetails(), serviceDetails)) {
+                        // already mapped so lets avoid rebuilding the gateway mappings
+                        continue;
+                    }
+                    Set<String> serviceUrls = new LinkedHashSet<String>();
+                    serviceUrls.add(service);
                     if (oldRule != null) {
-                        mappedServices.getServiceUrls().addAll(oldRule.getServiceUrls());
+                        serviceUrls.addAll(oldRule.getServiceUrls());
                     }
+                    mappingRules.put(fullPath, createMappedServices(serviceUrls, serviceDetails));
+                    changed = true;
                 }
             }
         }
-        fireMappingRulesChanged();
+        if (changed) {
+            fireMappingRulesChanged();
+        }
+    }
+
+    protected MappedServices createMappedServices(Set<String> serviceUrls, ServiceDetails serviceDetails) {
+        Iterator<String> iterator = serviceUrls.iterator();
+        MappedServices answer = new MappedServices(iterator.next(), serviceDetails, loadBalancer, reverseHeaders);
+        while (iterator.hasNext()) {
+            answer.getServiceUrls().add(iterator.next());
+        }
+        return answer;
+    }
+
+    /**
+     * Compares the values of the details as the discovery caches create new details on every refresh
+     */
+    private static boolean isSameServiceDetails(ServiceDetails details1, ServiceDetails details2) {
+        if (details1 == details2) {
+            return true;
+        }
+        if (details1 == null || details2 == null) {
+            return false;
+        }
+        return equal(details1.getId(), details2.getId())
+                && equal(details1.getContainer(), details2.getContainer())
+                && equal(details1.getVersion(), details2.getVersion())
+                && equal(details1.getBundleName(), details2.getBundleName())
+                && equal(details1.getBundleVersion(), details2.getBundleVersion())
+                && equal(details1.getServices(), details2.getServices());
+    }
+
+    private static boolean equal(Object value1, Object value2) {
+        return value1 == null ? value2 == null : value1.equals(value2);
     }
 
     @Override
@@ -0,0 +1,134 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.fabric.support.http;
+
+import io.fabric8.gateway.ServiceDTO;
+import io.fabric8.gateway.api.handlers.http.IMappedServices;
+import io.fabric8.gateway.fabric.support.SimplePathTemplate;
+import io.fabric8.gateway.loadbalancer.RoundRobinLoadBalancer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class HttpMappingRuleBaseTest {
+
+    private static final String PATH = "/cheese/";
+    private static final String SERVICE1 = "http://host1:8080/cheese";
+    private static final String SERVICE2 = "http://host2:8080/cheese";
+
+    private final AtomicInteger changes = new AtomicInteger();
+    private HttpMappingRuleBase ruleBase;
+
+    @Before
+    public void setUp() throws Exception {
+        ruleBase = new HttpMappingRuleBase(new SimplePathTemplate("/api/{contextPath}"), null, null, new RoundRobinLoadBalancer(), false);
+        ruleBase.addChangeListener(new Runnable() {
+            @Override
+            public void run() {
+                changes.incrementAndGet();
+            }
+        });
+    }
+
+    @Test
+    public void testSnapshotsAreNotChangedByLaterUpdates() throws Exception {
+        ServiceDTO details = createServiceDetails("cheese-1");
+        update(false, SERVICE1, details);
+        Map<String, IMappedServices> first = snapshot();
+
+        update(false, SERVICE2, details);
+        Map<String, IMappedServices> second = snapshot();
+
+        update(true, SERVICE1, details);
+        Map<String, IMappedServices> third = snapshot();
+
+        update(true, SERVICE2, details);
+
+        assertEquals(new HashSet<String>(Arrays.asList(SERVICE1)), first.get("/api/cheese").getServiceUrls());
+        assertEquals(new HashSet<String>(Arrays.asList(SERVICE1, SERVICE2)), second.get("/api/cheese").getServiceUrls());
+        assertEquals(new HashSet<String>(Arrays.asList(SERVICE2)), third.get("/api/cheese").getServiceUrls());
+        assertNull(snapshot().get("/api/cheese"));
+        assertEquals(4, changes.get());
+    }
+
+    @Test
+    public void testChangedServiceDetailsReplaceMapping() throws Exception {
+        ServiceDTO details = createServiceDetails("cheese-1");
+        update(false, SERVICE1, details);
+        update(false, SERVICE1, details);
+        assertEquals("an unchanged service does not fire a change", 1, changes.get());
+
+        ServiceDTO updated = createServiceDetails("cheese-2");
+        update(false, SERVICE1, updated);
+
+        assertEquals(2, changes.get());
+        IMappedServices mappedServices = snapshot().get("/api/cheese");
+        assertSame(updated, mappedServices.getServiceDetails());
+        assertEquals(new HashSet<String>(Arrays.asList(SERVICE1)), mappedServices.getServiceUrls());
+    }
+
+    @Test
+    public void testIdenticalRefreshDoesNotFireChange() throws Exception {
+        update(false, SERVICE1, createServiceDetails("cheese-1"));
+        update(false, SERVICE2, createServiceDetails("cheese-1"));
+        IMappedServices mappedServices = snapshot().get("/api/cheese");
+        assertEquals(2, changes.get());
+
+        // the discovery caches build new details with the same values on every refresh
+        update(false, SERVICE1, createServiceDetails("cheese-1"));
+        update(false, SERVICE2, createServiceDetails("cheese-1"));
+
+        assertEquals("an identical refresh does not fire a change", 2, changes.get());
+        assertSame(mappedServices, snapshot().get("/api/cheese"));
+    }
+
+    @Test
+    public void testRemovingUnmappedServiceDoesNotFireChange() throws Exception {
+        ServiceDTO details = createServiceDetails("cheese-1");
+        update(false, SERVICE1, details);
+        update(true, SERVICE2, details);
+
+        assertEquals(1, changes.get());
+        assertEquals(new HashSet<String>(Arrays.asList(SERVICE1)), snapshot().get("/api/cheese").getServiceUrls());
+    }
+
+    private void update(boolean remove, String service, ServiceDTO details) {
+        ruleBase.updateMappingRules(remove, PATH, Arrays.asList(service), new HashMap<String, String>(), details);
+    }
+
+    private Map<String, IMappedServices> snapshot() {
+        Map<String, IMappedServices> answer = new HashMap<String, IMappedServices>();
+        ruleBase.appendMappedServices(answer);
+        return answer;
+    }
+
+    private static ServiceDTO createServiceDetails(String id) {
+        ServiceDTO answer = new ServiceDTO();
+        answer.setId(id);
+        answer.setContainer("root");
+        answer.setVersion("1.0");
+        return answer;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A load balancer which chooses the service with the least outstanding requests, using the
+ * moving average of the response times to break ties.
+ */
+public class LeastOutstandingLoadBalancer extends LoadAwareLoadBalancerSupport {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    protected <T> T choose(List<T> services, long now, boolean includeEjected) {
+        int size = services.size();
+        // lets start at a different service each time so ties are spread out
+        int offset = (counter.getAndIncrement() & Integer.MAX_VALUE) % size;
+        T answer = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        double bestResponseTime = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            T service = services.get((offset + i) % size);
+            ServiceLoad load = getServiceLoad(service);
+            if (includeEjected || !load.isEjected(now)) {
+                int outstanding = load.getOutstanding();
+                if (outstanding < bestOutstanding || (outstanding == bestOutstanding && load.getResponseTime() < bestResponseTime)) {
+                    answer = service;
+                    bestOutstanding = outstanding;
+                    bestResponseTime = load.getResponseTime();
+                }
+            }
+        }
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return "LeastOutstandingLoadBalancer{" +
+                "failureThreshold=" + getFailureThreshold() +
+                ", ejectionTime=" + getEjectionTime() +
+                '}';
+    }
+}
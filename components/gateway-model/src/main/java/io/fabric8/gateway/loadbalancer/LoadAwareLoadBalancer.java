@@ -0,0 +1,43 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+/**
+ * A {@link LoadBalancer} which takes the load of the services into account, so the gateway
+ * notifies it when requests (or connections) are sent to and completed by the chosen service.
+ * Both the HTTP and the TCP gateways choose between and report on services by their URL string.
+ */
+public interface LoadAwareLoadBalancer extends LoadBalancer {
+
+    /**
+     * Called when a request is sent to, or a connection is opened to, the chosen service
+     */
+    public void requestStarted(Object service);
+
+    /**
+     * Called when a request to the service has completed, or a connection to it is closed
+     *
+     * @param responseTime the response (or connect) time in nanoseconds
+     */
+    public void requestCompleted(Object service, long responseTime);
+
+    /**
+     * Called when a request to the service failed, such as when it could not be connected to,
+     * so that the service can be ejected if it keeps on failing
+     */
+    public void requestFailed(Object service);
+
+}
@@ -0,0 +1,179 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A base class for {@link LoadAwareLoadBalancer} implementations which keeps a {@link ServiceLoad}
+ * per service and temporarily ejects the services which fail a number of times in a row.
+ * The loads of services which have not been used for the idle time are dropped, so that the loads of
+ * services which went away are not kept forever.
+ */
+public abstract class LoadAwareLoadBalancerSupport implements LoadAwareLoadBalancer {
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final long DEFAULT_EJECTION_TIME = 30 * 1000;
+    public static final double DEFAULT_RESPONSE_TIME_WEIGHT = 0.3;
+    public static final long DEFAULT_IDLE_TIME = 10 * 60 * 1000;
+
+    private final ConcurrentMap<Object, ServiceLoad> serviceLoads = new ConcurrentHashMap<Object, ServiceLoad>();
+    private final AtomicLong nextPruneTime = new AtomicLong();
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private long ejectionTime = DEFAULT_EJECTION_TIME;
+    private double responseTimeWeight = DEFAULT_RESPONSE_TIME_WEIGHT;
+    private long idleTime = DEFAULT_IDLE_TIME;
+
+    @Override
+    public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
+        long now = currentTimeMillis();
+        pruneIdleServiceLoads(now);
+        int size = services.size();
+        if (size == 0) {
+            return null;
+        } else if (size == 1) {
+            return services.get(0);
+        }
+        T answer = choose(services, now, false);
+        if (answer == null) {
+            // all the services are ejected so lets try them anyway
+            answer = choose(services, now, true);
+        }
+        return answer;
+    }
+
+    /**
+     * Chooses one of at least two services
+     *
+     * @param includeEjected whether ejected services may be chosen
+     * @return the chosen service or null if all the services are ejected
+     */
+    protected abstract <T> T choose(List<T> services, long now, boolean includeEjected);
+
+    /**
+     * Returns the load of the service, creating it if it is not tracked yet
+     */
+    public ServiceLoad getServiceLoad(Object service) {
+        long now = currentTimeMillis();
+        ServiceLoad answer = serviceLoads.get(service);
+        if (answer == null) {
+            ServiceLoad newLoad = new ServiceLoad(now);
+            answer = serviceLoads.putIfAbsent(service, newLoad);
+            if (answer == null) {
+                return newLoad;
+            }
+        }
+        answer.used(now);
+        return answer;
+    }
+
+    /**
+     * Returns the services whose load is currently tracked
+     */
+    public Set<Object> getTrackedServices() {
+        return Collections.unmodifiableSet(serviceLoads.keySet());
+    }
+
+    /**
+     * Drops the loads of the services which have been idle for the idle time, at most once per idle time
+     */
+    protected void pruneIdleServiceLoads(long now) {
+        long pruneTime = nextPruneTime.get();
+        if (now < pruneTime || !nextPruneTime.compareAndSet(pruneTime, now + idleTime)) {
+            return;
+        }
+        for (Iterator<ServiceLoad> iter = serviceLoads.values().iterator(); iter.hasNext(); ) {
+            if (iter.next().isIdle(now - idleTime)) {
+                iter.remove();
+            }
+        }
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Stops tracking the load of a service, such as when it has been removed
+     */
+    public void removeServiceLoad(Object service) {
+        serviceLoads.remove(service);
+    }
+
+    @Override
+    public void requestStarted(Object service) {
+        getServiceLoad(service).started();
+    }
+
+    @Override
+    public void requestCompleted(Object service, long responseTime) {
+        getServiceLoad(service).completed(responseTime, responseTimeWeight);
+    }
+
+    @Override
+    public void requestFailed(Object service) {
+        getServiceLoad(service).failed(failureThreshold, ejectionTime);
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failures after which a service is ejected
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public long getEjectionTime() {
+        return ejectionTime;
+    }
+
+    /**
+     * Sets the number of milliseconds a failing service is ejected for
+     */
+    public void setEjectionTime(long ejectionTime) {
+        this.ejectionTime = ejectionTime;
+    }
+
+    public long getIdleTime() {
+        return idleTime;
+    }
+
+    /**
+     * Sets the number of milliseconds after which the load of a service which is not used any more is dropped
+     */
+    public void setIdleTime(long idleTime) {
+        this.idleTime = idleTime;
+    }
+
+    public double getResponseTimeWeight() {
+        return responseTimeWeight;
+    }
+
+    /**
+     * Sets the weight (between 0 and 1) of the latest response time in the moving average
+     */
+    public void setResponseTimeWeight(double responseTimeWeight) {
+        this.responseTimeWeight = responseTimeWeight;
+    }
+}
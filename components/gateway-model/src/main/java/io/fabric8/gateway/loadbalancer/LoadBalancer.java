@@ -21,7 +21,9 @@ import java.util.List;
  * Represents the load balancing algorithm to use to pick which service to use.
  *
  * Example implementations are: {@link RandomLoadBalancer},
- * {@link RoundRobinLoadBalancer} or {@link StickyLoadBalancer}
+ * {@link RoundRobinLoadBalancer} or {@link StickyLoadBalancer}. The {@link LoadAwareLoadBalancer}
+ * implementations {@link LeastOutstandingLoadBalancer} and {@link PowerOfTwoChoicesLoadBalancer}
+ * also take the load of the services into account.
  */
 public interface LoadBalancer {
     public <T> T choose(List<T> services, ClientRequestFacade requestFacade);
@@ -0,0 +1,77 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A load balancer which picks two services at random and chooses the one with the lowest cost,
+ * the cost being the moving average of its response times weighted by its outstanding requests.
+ * Unlike always choosing the least loaded service this avoids all the gateways herding onto the
+ * same service while still steering away from slow or overloaded services.
+ */
+public class PowerOfTwoChoicesLoadBalancer extends LoadAwareLoadBalancerSupport {
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Override
+    protected <T> T choose(List<T> services, long now, boolean includeEjected) {
+        int size = services.size();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int i = random.nextInt(size);
+            int j = random.nextInt(size - 1);
+            if (j >= i) {
+                j++;
+            }
+            T first = services.get(i);
+            T second = services.get(j);
+            ServiceLoad firstLoad = getServiceLoad(first);
+            ServiceLoad secondLoad = getServiceLoad(second);
+            boolean firstAvailable = includeEjected || !firstLoad.isEjected(now);
+            boolean secondAvailable = includeEjected || !secondLoad.isEjected(now);
+            if (firstAvailable && secondAvailable) {
+                return firstLoad.getCost() <= secondLoad.getCost() ? first : second;
+            } else if (firstAvailable) {
+                return first;
+            } else if (secondAvailable) {
+                return second;
+            }
+        }
+        // most of the services are ejected so lets look for the cheapest available one
+        T answer = null;
+        double bestCost = Double.MAX_VALUE;
+        for (T service : services) {
+            ServiceLoad load = getServiceLoad(service);
+            if (includeEjected || !load.isEjected(now)) {
+                double cost = load.getCost();
+                if (cost < bestCost) {
+                    answer = service;
+                    bestCost = cost;
+                }
+            }
+        }
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return "PowerOfTwoChoicesLoadBalancer{" +
+                "failureThreshold=" + getFailureThreshold() +
+                ", ejectionTime=" + getEjectionTime() +
+                '}';
+    }
+}
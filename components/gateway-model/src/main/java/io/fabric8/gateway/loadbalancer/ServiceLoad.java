@@ -0,0 +1,117 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the number of outstanding requests, the exponentially weighted moving average (EWMA)
+ * of the response times and the consecutive failures of a service for a {@link LoadAwareLoadBalancer}.
+ */
+public class ServiceLoad {
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private double responseTime;
+    private int consecutiveFailures;
+    private volatile long ejectedUntil;
+    private volatile long lastUsed;
+
+    public ServiceLoad() {
+        this(System.currentTimeMillis());
+    }
+
+    ServiceLoad(long now) {
+        this.lastUsed = now;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * Returns the EWMA of the response times in nanoseconds
+     */
+    public synchronized double getResponseTime() {
+        return responseTime;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public boolean isEjected(long now) {
+        return ejectedUntil > now;
+    }
+
+    /**
+     * Returns true if the service has not been used since the given time and has no outstanding requests
+     */
+    public boolean isIdle(long since) {
+        return lastUsed < since && outstanding.get() == 0;
+    }
+
+    /**
+     * Returns the cost of sending one more request to the service
+     */
+    public double getCost() {
+        return (getResponseTime() + 1) * (outstanding.get() + 1);
+    }
+
+    void used(long now) {
+        if (lastUsed < now) {
+            lastUsed = now;
+        }
+    }
+
+    void started() {
+        outstanding.incrementAndGet();
+    }
+
+    void completed(long time, double weight) {
+        decrementOutstanding();
+        synchronized (this) {
+            responseTime = responseTime == 0 ? time : responseTime + weight * (time - responseTime);
+            consecutiveFailures = 0;
+        }
+    }
+
+    void failed(int failureThreshold, long ejectionTime) {
+        decrementOutstanding();
+        synchronized (this) {
+            if (++consecutiveFailures >= failureThreshold) {
+                consecutiveFailures = 0;
+                ejectedUntil = System.currentTimeMillis() + ejectionTime;
+            }
+        }
+    }
+
+    private void decrementOutstanding() {
+        while (true) {
+            int current = outstanding.get();
+            if (current <= 0 || outstanding.compareAndSet(current, current - 1)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceLoad{" +
+                "outstanding=" + getOutstanding() +
+                ", responseTime=" + getResponseTime() +
+                ", ejected=" + isEjected(System.currentTimeMillis()) +
+                '}';
+    }
+}
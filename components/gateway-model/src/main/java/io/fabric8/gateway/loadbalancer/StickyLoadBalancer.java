@@ -15,19 +15,42 @@
  */
 package io.fabric8.gateway.loadbalancer;
 
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implements a sticky load balancer where a unique client ID String is requested from the
  * {@link ClientRequestFacade} and used to keep track of which
  * service was used last time and to use that if its possible and keep a cache of requests to
+ * <p/>
+ * The cache is a {@link ConcurrentHashMap} so that lookups do not lock. Its size is bounded
+ * using the CLOCK (second chance) algorithm: entries are queued in insertion order and, once
+ * the maximum size is exceeded, the oldest entry is evicted unless it has been used since it was
+ * last inspected. Entries can also expire after a time to live and are invalidated when the
+ * service they refer to is no longer one of the available services.
+ * <p/>
+ * Each entry remembers the {@link #getServiceKey(Object) key} of its service and where it was last
+ * found in the available services, so a hit is checked in constant time while the services do not move.
  */
-public class StickyLoadBalancer implements LoadBalancer {
+public class StickyLoadBalancer implements LoadBalancer, StickyLoadBalancerMBean {
     private final LoadBalancer firstRequestLoadBalancer;
     private final int maximumCacheSize;
-    private final Map<String, Object> requestCache;
+    private volatile long timeToLive;
+    private final ConcurrentHashMap<String, Entry> requestCache = new ConcurrentHashMap<String, Entry>();
+    private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<Entry>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
 
     public StickyLoadBalancer() {
         this(LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE);
@@ -38,45 +61,242 @@ public class StickyLoadBalancer implements LoadBalancer {
     }
 
     public StickyLoadBalancer(int maximumCacheSize, LoadBalancer firstRequestLoadBalancer) {
+        this(maximumCacheSize, 0, firstRequestLoadBalancer);
+    }
+
+    /**
+     * @param timeToLive the number of milliseconds a client stays bound to a service without using it
+     *                   or zero to never expire the bindings
+     */
+    public StickyLoadBalancer(int maximumCacheSize, long timeToLive, LoadBalancer firstRequestLoadBalancer) {
         this.firstRequestLoadBalancer = firstRequestLoadBalancer;
         this.maximumCacheSize = maximumCacheSize;
-        this.requestCache = new LinkedHashMap(maximumCacheSize + 1, .75F, true) {
-            // This method is called just after a new entry has been added
-            public boolean removeEldestEntry(Map.Entry eldest) {
-                return size() > StickyLoadBalancer.this.maximumCacheSize;
-            }
-        };
+        this.timeToLive = timeToLive;
     }
 
     @Override
     public String toString() {
         return "StickyLoadBalancer{" +
                 "maximumCacheSize=" + maximumCacheSize +
+                ", timeToLive=" + timeToLive +
                 '}';
     }
 
     @Override
     public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
         String clientKey = requestFacade.getClientRequestKey();
-        T answer;
-        synchronized (requestCache) {
-            answer = (T) requestCache.get(clientKey);
-            if (answer == null) {
-                answer = firstRequestLoadBalancer.choose(services, requestFacade);
-                if (answer != null) {
-                    requestCache.put(clientKey, answer);
+        if (clientKey == null) {
+            return firstRequestLoadBalancer.choose(services, requestFacade);
+        }
+        long ttl = timeToLive;
+        long now = currentTimeMillis();
+        Entry entry = requestCache.get(clientKey);
+        if (entry != null) {
+            T answer = validate(entry, services, ttl, now);
+            if (answer != null) {
+                hits.incrementAndGet();
+                return answer;
+            }
+        }
+        misses.incrementAndGet();
+        T answer = firstRequestLoadBalancer.choose(services, requestFacade);
+        if (answer != null) {
+            Entry newEntry = new Entry(clientKey, answer, getServiceKey(answer), services.indexOf(answer), now);
+            while (true) {
+                Entry existing = requestCache.putIfAbsent(clientKey, newEntry);
+                if (existing == null) {
+                    size.incrementAndGet();
+                    queued.incrementAndGet();
+                    clock.offer(newEntry);
+                    evict();
+                    break;
+                }
+                // another request for the same client got there first so lets stick to its choice
+                T existingAnswer = validate(existing, services, ttl, now);
+                if (existingAnswer != null) {
+                    return existingAnswer;
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the current instance of the service bound to the entry or null if the entry
+     * has expired or its service is no longer available, in which case it is removed.
+     */
+    private <T> T validate(Entry entry, List<T> services, long ttl, long now) {
+        if (ttl > 0 && now - entry.lastAccess > ttl) {
+            if (remove(entry)) {
+                expirations.incrementAndGet();
+            }
+            return null;
+        }
+        int idx = entry.index;
+        if (idx < 0 || idx >= services.size() || !entry.serviceKey.equals(getServiceKey(services.get(idx)))) {
+            idx = indexOf(services, entry.serviceKey);
+            if (idx < 0) {
+                if (remove(entry)) {
+                    invalidations.incrementAndGet();
                 }
+                return null;
             }
+            entry.index = idx;
+        }
+        T answer = services.get(idx);
+        // lets keep the latest version of the service
+        if (answer != entry.service) {
+            entry.service = answer;
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        if (ttl > 0) {
+            entry.lastAccess = now;
         }
         return answer;
     }
 
+    private int indexOf(List<?> services, Object serviceKey) {
+        for (int i = 0, size = services.size(); i < size; i++) {
+            if (serviceKey.equals(getServiceKey(services.get(i)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the key which identifies the given service across updates of the available services,
+     * by default the service itself such as its URL
+     */
+    protected Object getServiceKey(Object service) {
+        return service;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private boolean remove(Entry entry) {
+        if (requestCache.remove(entry.key, entry)) {
+            entry.removed = true;
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sweeps the clock until the cache fits its maximum size. Entries which were removed
+     * from the cache are also dropped from the clock so it does not grow unbounded.
+     * Only one thread sweeps at a time, the others carry on routing.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long ttl = timeToLive;
+            long now = ttl > 0 ? currentTimeMillis() : 0;
+            while (true) {
+                boolean overSize = size.get() > maximumCacheSize;
+                if (!overSize && queued.get() <= 2L * maximumCacheSize) {
+                    return;
+                }
+                Entry entry = clock.poll();
+                if (entry == null) {
+                    return;
+                }
+                queued.decrementAndGet();
+                if (entry.removed) {
+                    continue;
+                }
+                if (ttl > 0 && now - entry.lastAccess > ttl) {
+                    if (remove(entry)) {
+                        expirations.incrementAndGet();
+                    }
+                } else if (overSize && !entry.referenced) {
+                    if (remove(entry)) {
+                        evictions.incrementAndGet();
+                    }
+                } else {
+                    // give it a second chance
+                    if (overSize) {
+                        entry.referenced = false;
+                    }
+                    queued.incrementAndGet();
+                    clock.offer(entry);
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
     /**
      * Clears the cache of request client IDs to the bound service
      */
     public void flush() {
-        synchronized (requestCache) {
-            requestCache.clear();
+        for (Entry entry : requestCache.values()) {
+            remove(entry);
+        }
+    }
+
+    public int getMaximumCacheSize() {
+        return maximumCacheSize;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the number of clients currently bound to a service
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final Object serviceKey;
+        private volatile Object service;
+        private volatile int index;
+        private volatile long lastAccess;
+        private volatile boolean referenced;
+        private volatile boolean removed;
+
+        private Entry(String key, Object service, Object serviceKey, int index, long lastAccess) {
+            this.key = key;
+            this.service = service;
+            this.serviceKey = serviceKey;
+            this.index = index;
+            this.lastAccess = lastAccess;
         }
     }
 }
@@ -17,6 +17,7 @@ package io.fabric8.gateway.model;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a collection of HTTP proxy mapping rules.
@@ -25,6 +26,7 @@ import java.util.Map;
  */
 public class HttpProxyRuleBase {
     private Map<String, HttpProxyRule> mappingRules = new HashMap<String, HttpProxyRule>();
+    private final AtomicLong version = new AtomicLong();
 
     public Map<String, HttpProxyRule> getMappingRules() {
         return mappingRules;
@@ -32,6 +34,22 @@ public class HttpProxyRuleBase {
 
     public void setMappingRules(Map<String, HttpProxyRule> mappingRules) {
         this.mappingRules = mappingRules;
+        changed();
+    }
+
+    /**
+     * Returns the version of the rules which is incremented whenever a rule is added or replaced
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Marks the rules as changed; should be invoked after modifying the {@link #getMappingRules()} map directly
+     * so that any resolvers recompile their rules
+     */
+    public void changed() {
+        version.incrementAndGet();
     }
 
     /**
@@ -42,6 +60,7 @@ public class HttpProxyRuleBase {
         if (answer == null) {
             answer = new HttpProxyRule(uriTemplate);
             getMappingRules().put(uriTemplate, answer);
+            changed();
         }
         return answer;
     }
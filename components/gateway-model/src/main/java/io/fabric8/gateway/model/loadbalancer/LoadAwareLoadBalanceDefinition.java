@@ -0,0 +1,48 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.model.loadbalancer;
+
+import io.fabric8.gateway.loadbalancer.LoadAwareLoadBalancerSupport;
+
+/**
+ * A base class for the definitions of the {@link io.fabric8.gateway.loadbalancer.LoadAwareLoadBalancer}s
+ */
+public abstract class LoadAwareLoadBalanceDefinition<T extends LoadAwareLoadBalancerSupport> extends LoadBalancerDefinition<T> {
+    private int failureThreshold = LoadAwareLoadBalancerSupport.DEFAULT_FAILURE_THRESHOLD;
+    private long ejectionTime = LoadAwareLoadBalancerSupport.DEFAULT_EJECTION_TIME;
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public long getEjectionTime() {
+        return ejectionTime;
+    }
+
+    public void setEjectionTime(long ejectionTime) {
+        this.ejectionTime = ejectionTime;
+    }
+
+    protected T configure(T loadBalancer) {
+        loadBalancer.setFailureThreshold(failureThreshold);
+        loadBalancer.setEjectionTime(ejectionTime);
+        return loadBalancer;
+    }
+}
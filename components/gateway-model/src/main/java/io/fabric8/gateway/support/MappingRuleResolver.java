@@ -15,26 +15,34 @@
  */
 package io.fabric8.gateway.support;
 
-import io.fabric8.gateway.model.HttpProxyRule;
 import io.fabric8.gateway.model.HttpProxyRuleBase;
 
 /**
- * A helper class to map a request URI to a mapping rule
+ * A helper class to map a request URI to a mapping rule.
+ * <p/>
+ * The rules are compiled into a {@link MappingRuleTree} which is only recompiled when the
+ * version of the {@link HttpProxyRuleBase} changes, so concurrent lookups share the same immutable tree.
  */
 public class MappingRuleResolver {
     private HttpProxyRuleBase mappingRules = new HttpProxyRuleBase();
+    private volatile MappingRuleTree mappingRuleTree;
 
     public MappingResult findMappingRule(String requestURI) {
-        String[] paths = Paths.splitPaths(requestURI);
-        MappingResult answer = null;
-        // TODO we could build a path based tree to do more efficient matching?
-        for (HttpProxyRule mappingRule : mappingRules.getMappingRules().values()) {
-            answer = mappingRule.matches(paths);
-            if (answer != null) {
-                break;
-            }
+        return getMappingRuleTree().findMappingRule(requestURI);
+    }
+
+    /**
+     * Returns the compiled tree of the current mapping rules, recompiling it if the rules have changed
+     */
+    public MappingRuleTree getMappingRuleTree() {
+        HttpProxyRuleBase ruleBase = mappingRules;
+        long version = ruleBase.getVersion();
+        MappingRuleTree tree = mappingRuleTree;
+        if (tree == null || tree.getVersion() != version) {
+            tree = new MappingRuleTree(version, ruleBase.getMappingRules().values());
+            mappingRuleTree = tree;
         }
-        return answer;
+        return tree;
     }
 
     public HttpProxyRuleBase getMappingRules() {
@@ -43,6 +51,7 @@ public class MappingRuleResolver {
 
     public void setMappingRules(HttpProxyRuleBase mappingRules) {
         this.mappingRules = mappingRules;
+        this.mappingRuleTree = null;
     }
 
 }
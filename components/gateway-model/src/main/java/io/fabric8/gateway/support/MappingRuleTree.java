@@ -0,0 +1,192 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.support;
+
+import io.fabric8.gateway.model.HttpProxyRule;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable tree of path segments compiled from the URI templates of a set of
+ * {@link HttpProxyRule}s so that a request URI can be resolved in time proportional
+ * to its depth rather than by trying every rule in turn.
+ * <p/>
+ * Each level of the tree holds the literal segments, the single segment
+ * <code>{param}</code> wildcards and the trailing wildcards (which match the remainder
+ * of the request URI) of the templates. Literal segments are preferred over wildcards,
+ * which are preferred over trailing wildcards.
+ */
+public class MappingRuleTree {
+    private final long version;
+    private final Node root = new Node();
+    private final int maxParameters;
+
+    public MappingRuleTree(long version, Collection<HttpProxyRule> mappingRules) {
+        this.version = version;
+        int parameters = 0;
+        for (HttpProxyRule mappingRule : mappingRules) {
+            UriTemplate template = mappingRule.getUriTemplateObject();
+            if (template != null) {
+                parameters = Math.max(parameters, add(template, mappingRule));
+            }
+        }
+        this.maxParameters = parameters;
+    }
+
+    /**
+     * Returns the version of the rules this tree was compiled from
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public MappingResult findMappingRule(String requestURI) {
+        return findMappingRule(Paths.splitPaths(requestURI));
+    }
+
+    public MappingResult findMappingRule(String[] paths) {
+        String[] names = new String[maxParameters];
+        String[] values = new String[maxParameters];
+        return find(root, paths, 0, names, values, 0);
+    }
+
+    private int add(UriTemplate template, HttpProxyRule mappingRule) {
+        String[] segments = template.getPaths();
+        Node node = root;
+        int lastIndex = segments.length - 1;
+        int parameters = 0;
+        for (int i = 0; i <= lastIndex; i++) {
+            String parameterName = template.getWildcardParameterName(i);
+            if (parameterName != null) {
+                parameters++;
+                if (i == lastIndex) {
+                    if (node.trailingRule == null) {
+                        node.trailingParameterName = parameterName;
+                        node.trailingRule = mappingRule;
+                    }
+                    return parameters;
+                }
+                node = node.wildcard(parameterName);
+            } else {
+                node = node.literal(segments[i]);
+            }
+        }
+        if (node.rule == null) {
+            node.rule = mappingRule;
+        }
+        return parameters;
+    }
+
+    private MappingResult find(Node node, String[] paths, int index, String[] names, String[] values, int parameters) {
+        if (index == paths.length) {
+            return node.rule != null ? result(paths, node.rule, names, values, parameters) : null;
+        }
+        String segment = paths[index];
+        if (segment == null) {
+            return null;
+        }
+        Node child = node.literals.get(segment);
+        if (child != null) {
+            MappingResult answer = find(child, paths, index + 1, names, values, parameters);
+            if (answer != null) {
+                return answer;
+            }
+        }
+        for (int i = 0, size = node.wildcardNames.size(); i < size; i++) {
+            names[parameters] = node.wildcardNames.get(i);
+            values[parameters] = segment;
+            MappingResult answer = find(node.wildcards.get(i), paths, index + 1, names, values, parameters + 1);
+            if (answer != null) {
+                return answer;
+            }
+        }
+        if (node.trailingRule != null) {
+            names[parameters] = node.trailingParameterName;
+            values[parameters] = joinPath(index, paths);
+            return result(paths, node.trailingRule, names, values, parameters + 1);
+        }
+        return null;
+    }
+
+    private static MappingResult result(String[] paths, HttpProxyRule mappingRule, String[] names, String[] values, int parameters) {
+        Map<String, String> parameterNameValues = new HashMap<String, String>();
+        for (int i = 0; i < parameters; i++) {
+            parameterNameValues.put(names[i], values[i]);
+        }
+        return new MappingResult(parameterNameValues, paths, mappingRule);
+    }
+
+    private static String joinPath(int index, String[] paths) {
+        int lastIndex = paths.length - 1;
+        if (index == lastIndex) {
+            return paths[index];
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = index; i <= lastIndex; i++) {
+            if (i > index) {
+                builder.append("/");
+            }
+            if (paths[i] != null) {
+                builder.append(paths[i]);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * A level of the tree; nodes are only mutated while the tree is being compiled
+     */
+    private static final class Node {
+        private Map<String, Node> literals = Collections.emptyMap();
+        private List<String> wildcardNames = Collections.emptyList();
+        private List<Node> wildcards = Collections.emptyList();
+        private HttpProxyRule rule;
+        private String trailingParameterName;
+        private HttpProxyRule trailingRule;
+
+        Node literal(String segment) {
+            Node answer = literals.get(segment);
+            if (answer == null) {
+                if (literals.isEmpty()) {
+                    literals = new HashMap<String, Node>();
+                }
+                answer = new Node();
+                literals.put(segment, answer);
+            }
+            return answer;
+        }
+
+        Node wildcard(String parameterName) {
+            int idx = wildcardNames.indexOf(parameterName);
+            if (idx >= 0) {
+                return wildcards.get(idx);
+            }
+            if (wildcardNames.isEmpty()) {
+                wildcardNames = new ArrayList<String>();
+                wildcards = new ArrayList<Node>();
+            }
+            Node answer = new Node();
+            wildcardNames.add(parameterName);
+            wildcards.add(answer);
+            return answer;
+        }
+    }
+}
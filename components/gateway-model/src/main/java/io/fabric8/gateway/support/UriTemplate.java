@@ -143,6 +143,13 @@ public class UriTemplate {
     }
 
 
+    /**
+     * Returns the path segments of this template
+     */
+    protected String[] getPaths() {
+        return paths;
+    }
+
     /**
      * Returns the wildcard parameter name for the given path index if its a wildcard otherwise return null if it is not a wildcard
      */
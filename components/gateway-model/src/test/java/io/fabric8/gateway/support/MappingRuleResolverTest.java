@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  */
@@ -45,12 +46,40 @@ public class MappingRuleResolverTest extends MappingRuleTestSupport {
         assertRuleMatch("/customers/c123/address/abc", "http://another.com/addresses/abc/customerThingy/c123");
     }
 
+    @Test
+    public void testLiteralSegmentsArePreferredOverWildcards() throws Exception {
+        assertRuleMatch("/customers/special/address/abc", "http://special.com/addresses/abc");
+        assertRuleMatch("/customers/c123/address/abc?foo=bar", "http://another.com/addresses/abc/customerThingy/c123");
+    }
+
+    @Test
+    public void testTrailingWildcardMatchesRemainingPath() throws Exception {
+        assertRuleMatch("/foo/a/b/c", "http://foo.com/cheese/a/b/c");
+        assertRuleMatch("/members/10001/orders", "http://foo.com/rest/members/10001/orders");
+    }
+
+    @Test
+    public void testNoMatch() throws Exception {
+        assertNull(getResolver().findMappingRule("/"));
+        assertNull(getResolver().findMappingRule("/foo"));
+        assertNull(getResolver().findMappingRule("/customers/c123/address"));
+        assertNull(getResolver().findMappingRule("/unknown/path"));
+    }
+
+    @Test
+    public void testRulesAddedAfterLookupAreResolved() throws Exception {
+        assertNull(getResolver().findMappingRule("/orders/123"));
+        getResolver().getMappingRules().rule("/orders/{id}").to("http://orders.com/{id}");
+        assertRuleMatch("/orders/123", "http://orders.com/123");
+    }
+
     @Override
     protected void loadMappingRules(HttpProxyRuleBase ruleBase) {
         ruleBase.rule("/members").to("http://foo.com/rest/members");
         ruleBase.rule("/members/{id}").to("http://foo.com/rest/members/{id}");
         ruleBase.rule("/foo/{path}").to("http://foo.com/cheese/{path}");
         ruleBase.rule("/customers/{customerId}/address/{addressId}").to("http://another.com/addresses/{addressId}/customerThingy/{customerId}");
+        ruleBase.rule("/customers/special/address/{addressId}").to("http://special.com/addresses/{addressId}");
     }
 
     protected void assertRuleMatch(String requestUri, String expectedDestinationUrl) {
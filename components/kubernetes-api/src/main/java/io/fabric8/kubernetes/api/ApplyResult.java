@@ -0,0 +1,74 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+/**
+ * The outcome of applying a single entity of a list with the {@link Controller}
+ */
+public class ApplyResult {
+    private final String kind;
+    private final String name;
+    private final int tier;
+    private final long duration;
+    private final Throwable failure;
+
+    public ApplyResult(String kind, String name, int tier, long duration, Throwable failure) {
+        this.kind = kind;
+        this.name = name;
+        this.tier = tier;
+        this.duration = duration;
+        this.failure = failure;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + name + " took " + duration + " ms" + (failure != null ? " and failed: " + failure : "");
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the dependency tier the entity was applied in; all the entities of a tier are applied
+     * before any entity of the next tier
+     */
+    public int getTier() {
+        return tier;
+    }
+
+    /**
+     * Returns how long it took to apply the entity in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the exception thrown while applying the entity or null if it was applied
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+}
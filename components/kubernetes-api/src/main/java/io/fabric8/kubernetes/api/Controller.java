@@ -24,8 +24,10 @@ import io.fabric8.kubernetes.api.model.PodSpec;
 import io.fabric8.kubernetes.api.model.PodTemplateSpec;
 import io.fabric8.kubernetes.api.model.ReplicationController;
 import io.fabric8.kubernetes.api.model.ReplicationControllerSpec;
+import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.api.model.SecretVolumeSource;
 import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceAccount;
 import io.fabric8.kubernetes.api.model.Volume;
 import io.fabric8.openshift.api.model.BuildConfig;
 import io.fabric8.openshift.api.model.DeploymentConfig;
@@ -47,8 +49,15 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
 import static io.fabric8.kubernetes.api.KubernetesHelper.getObjectId;
@@ -66,6 +75,15 @@ import static io.fabric8.kubernetes.api.KubernetesHelper.toItemList;
 public class Controller {
     private static final transient Logger LOG = LoggerFactory.getLogger(Controller.class);
 
+    public static final int DEFAULT_APPLY_THREADS = 10;
+
+    /**
+     * The number of dependency tiers entities of a list are applied in;
+     * namespaces, then secrets and service accounts, then services and build configuration,
+     * then replication controllers, pods, routes and everything else
+     */
+    public static final int APPLY_TIERS = 4;
+
     private final KubernetesClient kubernetes;
     private Map<String, Pod> podMap;
     private Map<String, ReplicationController> replicationControllerMap;
@@ -77,6 +95,9 @@ public class Controller {
     private boolean ignoreServiceMode;
     private boolean ignoreRunningOAuthClients = true;
     private boolean processTemplatesLocally;
+    private int applyThreads = DEFAULT_APPLY_THREADS;
+    private volatile List<ApplyResult> applyResults = Collections.emptyList();
+    private final ThreadLocal<EntityFailure> entityFailure = new ThreadLocal<>();
 
     public Controller() {
         this(new KubernetesClient());
@@ -427,13 +448,156 @@ public class Controller {
         }
     }
 
-    public void applyList(KubernetesList list, String sourceName) throws Exception {
+    /**
+     * Applies the entities of the list in dependency tiers (see {@link #getApplyTier(Object)}); the entities
+     * of each tier are applied concurrently using up to {@link #getApplyThreads()} threads and all of them
+     * are applied before the next tier is started. If any entity of a tier fails the first failure is thrown
+     * once the tier has completed and the remaining tiers are not applied, unless
+     * {@link #isThrowExceptionOnError()} is false in which case all the tiers are applied.
+     * <p/>
+     * Returns the timing and outcome of each entity of the list, which is also available from
+     * {@link #getApplyResults()} afterwards unless the list is applied while applying another list.
+     */
+    public List<ApplyResult> applyList(KubernetesList list, String sourceName) throws Exception {
+        // a list applied while applying an entity of another list does not replace the results of that list
+        boolean nested = entityFailure.get() != null;
         List<HasMetadata> entities = list.getItems();
-        if (entities != null) {
-            for (Object entity : entities) {
-                applyEntity(entity, sourceName);
+        if (entities == null || entities.isEmpty()) {
+            if (!nested) {
+                applyResults = Collections.emptyList();
+            }
+            return Collections.emptyList();
+        }
+        List<List<HasMetadata>> tiers = new ArrayList<>(APPLY_TIERS);
+        for (int i = 0; i < APPLY_TIERS; i++) {
+            tiers.add(new ArrayList<HasMetadata>());
+        }
+        for (HasMetadata entity : entities) {
+            tiers.get(getApplyTier(entity)).add(entity);
+        }
+        List<ApplyResult> results = new ArrayList<>(entities.size());
+        long start = System.currentTimeMillis();
+        ExecutorService executor = null;
+        try {
+            for (int tier = 0; tier < APPLY_TIERS; tier++) {
+                List<HasMetadata> tierEntities = tiers.get(tier);
+                if (tierEntities.isEmpty()) {
+                    continue;
+                }
+                List<ApplyResult> tierResults;
+                if (applyThreads <= 1 || tierEntities.size() == 1) {
+                    tierResults = new ArrayList<>(tierEntities.size());
+                    for (HasMetadata entity : tierEntities) {
+                        tierResults.add(applyListEntity(entity, tier, sourceName));
+                    }
+                } else {
+                    if (executor == null) {
+                        executor = Executors.newFixedThreadPool(Math.min(applyThreads, entities.size()));
+                    }
+                    tierResults = applyConcurrently(executor, tierEntities, tier, sourceName);
+                }
+                results.addAll(tierResults);
+                for (ApplyResult result : tierResults) {
+                    if (result.isFailed() && throwExceptionOnError) {
+                        Throwable failure = result.getFailure();
+                        if (failure instanceof Exception) {
+                            throw (Exception) failure;
+                        }
+                        throw new ExecutionException("Failed to apply " + result.getKind() + " " + result.getName() + " from " + sourceName, failure);
+                    }
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            if (!nested) {
+                applyResults = Collections.unmodifiableList(results);
             }
+            LOG.info("Applied " + results.size() + " of " + entities.size() + " entities from " + sourceName + " in " + (System.currentTimeMillis() - start) + " ms");
+            if (LOG.isDebugEnabled()) {
+                for (ApplyResult result : results) {
+                    LOG.debug("  " + result);
+                }
+            }
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    protected List<ApplyResult> applyConcurrently(ExecutorService executor, List<HasMetadata> entities, final int tier, final String sourceName) throws InterruptedException {
+        List<Future<ApplyResult>> futures = new ArrayList<>(entities.size());
+        for (final HasMetadata entity : entities) {
+            futures.add(executor.submit(new Callable<ApplyResult>() {
+                @Override
+                public ApplyResult call() throws Exception {
+                    return applyListEntity(entity, tier, sourceName);
+                }
+            }));
+        }
+        List<ApplyResult> answer = new ArrayList<>(futures.size());
+        for (Future<ApplyResult> future : futures) {
+            try {
+                answer.add(future.get());
+            } catch (ExecutionException e) {
+                // applyListEntity catches everything so this should not happen
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return answer;
+    }
+
+    protected ApplyResult applyListEntity(HasMetadata entity, int tier, String sourceName) {
+        String kind = entity != null ? entity.getClass().getSimpleName() : null;
+        String name = entity != null ? getName(entity) : null;
+        long start = System.currentTimeMillis();
+        Throwable failure = null;
+        EntityFailure outer = entityFailure.get();
+        EntityFailure reported = new EntityFailure();
+        entityFailure.set(reported);
+        try {
+            applyEntity(entity, sourceName);
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            if (outer != null) {
+                entityFailure.set(outer);
+            } else {
+                entityFailure.remove();
+            }
+        }
+        if (failure == null) {
+            // the error was only logged as exceptions are not thrown on errors
+            failure = reported.failure;
+        }
+        if (failure != null && outer != null) {
+            outer.report(failure);
         }
+        return new ApplyResult(kind, name, tier, System.currentTimeMillis() - start, failure);
+    }
+
+    /**
+     * Returns the dependency tier of the given entity from 0 to {@link #APPLY_TIERS} - 1; entities are only
+     * applied once every entity of the lower tiers has been applied
+     */
+    protected int getApplyTier(Object entity) {
+        if (entity instanceof Namespace) {
+            return 0;
+        } else if (entity instanceof Secret || entity instanceof ServiceAccount) {
+            return 1;
+        } else if (entity instanceof Service || entity instanceof OAuthClient || entity instanceof ImageStream
+                || entity instanceof BuildConfig || entity instanceof Template) {
+            return 2;
+        } else {
+            return 3;
+        }
+    }
+
+    /**
+     * Returns the timing and outcome of each entity applied by the last call to {@link #applyList(KubernetesList, String)},
+     * not counting the lists applied while applying the entities of another list
+     */
+    public List<ApplyResult> getApplyResults() {
+        return applyResults;
     }
 
     public void applyService(Service service, String sourceName) throws Exception {
@@ -444,10 +608,7 @@ public class Controller {
             LOG.debug("Ignoring Service: " + namespace + ":" + id);
             return;
         }
-        if (serviceMap == null) {
-            serviceMap = getServiceMap(kubernetes, namespace);
-        }
-        Service old = serviceMap.get(id);
+        Service old = getCachedServiceMap(namespace).get(id);
         if (isRunning(old)) {
             if (UserConfigurationCompare.configEqual(service, old)) {
                 LOG.info("Service hasn't changed so not doing anything");
@@ -507,10 +668,7 @@ public class Controller {
             LOG.debug("Only processing Services right now so ignoring ReplicationController: " + namespace + ":" + id);
             return;
         }
-        if (replicationControllerMap == null) {
-            replicationControllerMap = getReplicationControllerMap(kubernetes, namespace);
-        }
-        ReplicationController old = replicationControllerMap.get(id);
+        ReplicationController old = getCachedReplicationControllerMap(namespace).get(id);
         if (isRunning(old)) {
             if (UserConfigurationCompare.configEqual(replicationController, old)) {
                 LOG.info("ReplicationController hasn't changed so not doing anything");
@@ -587,10 +745,7 @@ public class Controller {
             LOG.debug("Only processing Services right now so ignoring Pod: " + namespace + ":" + id);
             return;
         }
-        if (podMap == null) {
-            podMap = getPodMap(kubernetes, namespace);
-        }
-        Pod old = podMap.get(id);
+        Pod old = getCachedPodMap(namespace).get(id);
         if (isRunning(old)) {
             if (UserConfigurationCompare.configEqual(pod, old)) {
                 LOG.info("Pod hasn't changed so not doing anything");
@@ -636,6 +791,27 @@ public class Controller {
         }
     }
 
+    protected synchronized Map<String, Service> getCachedServiceMap(String namespace) {
+        if (serviceMap == null) {
+            serviceMap = getServiceMap(kubernetes, namespace);
+        }
+        return serviceMap;
+    }
+
+    protected synchronized Map<String, ReplicationController> getCachedReplicationControllerMap(String namespace) {
+        if (replicationControllerMap == null) {
+            replicationControllerMap = getReplicationControllerMap(kubernetes, namespace);
+        }
+        return replicationControllerMap;
+    }
+
+    protected synchronized Map<String, Pod> getCachedPodMap(String namespace) {
+        if (podMap == null) {
+            podMap = getPodMap(kubernetes, namespace);
+        }
+        return podMap;
+    }
+
     public String getNamespace() {
         return kubernetes.getNamespace();
     }
@@ -652,6 +828,17 @@ public class Controller {
         this.throwExceptionOnError = throwExceptionOnError;
     }
 
+    /**
+     * Returns the maximum number of entities of a list which are applied concurrently
+     */
+    public int getApplyThreads() {
+        return applyThreads;
+    }
+
+    public void setApplyThreads(int applyThreads) {
+        this.applyThreads = applyThreads;
+    }
+
     public boolean isProcessTemplatesLocally() {
         return processTemplatesLocally;
     }
@@ -669,9 +856,15 @@ public class Controller {
      * Logs an error applying some JSON to Kubernetes and optionally throws an exception
      */
     protected void onApplyError(String message, Exception e) {
+        RuntimeException failure = new RuntimeException(message, e);
+        // record the failure in the result of the entity of the list being applied, if any
+        EntityFailure reported = entityFailure.get();
+        if (reported != null) {
+            reported.report(failure);
+        }
         LOG.error(message, e);
         if (throwExceptionOnError) {
-            throw new RuntimeException(message, e);
+            throw failure;
         }
     }
 
@@ -729,4 +922,17 @@ public class Controller {
     public void setIgnoreRunningOAuthClients(boolean ignoreRunningOAuthClients) {
         this.ignoreRunningOAuthClients = ignoreRunningOAuthClients;
     }
+
+    /**
+     * The first failure reported while applying an entity of a list
+     */
+    private static class EntityFailure {
+        private Throwable failure;
+
+        void report(Throwable failure) {
+            if (this.failure == null) {
+                this.failure = failure;
+            }
+        }
+    }
 }
@@ -0,0 +1,148 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the items of a JSON list (such as a <code>PodList</code>) as they are parsed from the
+ * stream, so that only one item at a time is held in memory rather than the whole list.
+ * <p/>
+ * The iterator closes the stream once the last item has been read; callers which stop early
+ * must {@link #close()} it.
+ */
+public class ItemIterator<T> implements Iterator<T>, Closeable {
+    private final ObjectMapper objectMapper;
+    private final JsonParser parser;
+    private final Class<T> type;
+    private boolean inItems;
+    private boolean hasNext;
+    private boolean closed;
+    private String resourceVersion;
+
+    public ItemIterator(ObjectMapper objectMapper, InputStream in, Class<T> type) throws IOException {
+        this.objectMapper = objectMapper;
+        this.type = type;
+        this.parser = objectMapper.getFactory().createParser(in);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object but got " + parser.getCurrentToken());
+            }
+            this.hasNext = fetch();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext) {
+            throw new NoSuchElementException();
+        }
+        try {
+            T answer = objectMapper.readValue(parser, type);
+            hasNext = fetch();
+            return answer;
+        } catch (IOException e) {
+            close();
+            hasNext = false;
+            throw new IllegalStateException("Failed to parse " + type.getSimpleName() + ": " + e, e);
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the resource version of the list; as the list metadata may follow the items this may
+     * only be available once all the items have been read
+     */
+    public String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                parser.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Moves the parser to the start of the next item returning false at the end of the list
+     */
+    private boolean fetch() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            if (inItems) {
+                if (token == JsonToken.START_OBJECT) {
+                    return true;
+                } else if (token == JsonToken.END_ARRAY) {
+                    inItems = false;
+                } else if (token != JsonToken.VALUE_NULL) {
+                    throw new IOException("Expected a JSON object in the items but got " + token);
+                }
+            } else if (token == JsonToken.END_OBJECT) {
+                break;
+            } else {
+                String field = parser.getCurrentName();
+                token = parser.nextToken();
+                if ("items".equals(field) && token == JsonToken.START_ARRAY) {
+                    inItems = true;
+                } else if ("metadata".equals(field) && token == JsonToken.START_OBJECT) {
+                    readMetadata();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        close();
+        return false;
+    }
+
+    private void readMetadata() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("resourceVersion".equals(field)) {
+                resourceVersion = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import io.fabric8.kubernetes.api.extensions.Configs;
 import io.fabric8.kubernetes.api.model.EndpointSubset;
 import io.fabric8.kubernetes.api.model.Endpoints;
 import io.fabric8.kubernetes.api.model.EndpointsList;
+import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.Namespace;
 import io.fabric8.kubernetes.api.model.NamespaceList;
 import io.fabric8.kubernetes.api.model.Node;
@@ -29,8 +30,6 @@ import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.api.model.ReplicationController;
 import io.fabric8.kubernetes.api.model.ReplicationControllerList;
-import io.fabric8.kubernetes.api.model.ReplicationControllerSpec;
-import io.fabric8.kubernetes.api.model.ReplicationControllerStatus;
 import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.api.model.SecretList;
 import io.fabric8.kubernetes.api.model.Service;
@@ -38,6 +37,8 @@ import io.fabric8.kubernetes.api.model.ServiceList;
 import io.fabric8.kubernetes.api.model.ServiceSpec;
 import io.fabric8.kubernetes.api.model.config.Config;
 import io.fabric8.kubernetes.api.model.config.Context;
+import io.fabric8.kubernetes.api.watch.Informer;
+import io.fabric8.kubernetes.api.watch.LabelIndex;
 import io.fabric8.openshift.api.model.Build;
 import io.fabric8.openshift.api.model.BuildConfig;
 import io.fabric8.openshift.api.model.BuildConfigList;
@@ -53,8 +54,6 @@ import io.fabric8.openshift.api.model.RouteList;
 import io.fabric8.openshift.api.model.RouteSpec;
 import io.fabric8.openshift.api.model.WebHookTrigger;
 import io.fabric8.openshift.api.model.template.Template;
-import io.fabric8.utils.Filter;
-import io.fabric8.utils.Filters;
 import io.fabric8.utils.IOHelpers;
 import io.fabric8.utils.Strings;
 import io.fabric8.utils.URLUtils;
@@ -92,8 +91,8 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 
+import static io.fabric8.kubernetes.api.KubernetesHelper.defaultApiVersion;
 import static io.fabric8.kubernetes.api.KubernetesHelper.defaultOsApiVersion;
-import static io.fabric8.kubernetes.api.KubernetesHelper.filterLabels;
 import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
 import static io.fabric8.kubernetes.api.KubernetesHelper.getOrCreateMetadata;
 import static io.fabric8.kubernetes.api.KubernetesHelper.getPodMap;
@@ -111,12 +110,12 @@ public class KubernetesClient implements Kubernetes, KubernetesExtensions, Kuber
     private static final transient Logger LOG = LoggerFactory.getLogger(KubernetesClient.class);
     private static final long DEFAULT_TRIGGER_TIMEOUT = 60 * 1000;
 
-    private KubernetesFactory factoryReadOnly;
-    private KubernetesFactory factoryWriteable;
-    private Kubernetes kubernetes;
-    private Kubernetes kubernetesWriteable;
-    private KubernetesExtensions kubernetesExtensions;
-    private KubernetesGlobalExtensions kubernetesGlobalExtensions;
+    private volatile KubernetesFactory factoryReadOnly;
+    private volatile KubernetesFactory factoryWriteable;
+    private volatile Kubernetes kubernetes;
+    private volatile Kubernetes kubernetesWriteable;
+    private volatile KubernetesExtensions kubernetesExtensions;
+    private volatile KubernetesGlobalExtensions kubernetesGlobalExtensions;
     private String namespace = defaultNamespace();
 
     public static String defaultNamespace() {
@@ -174,43 +173,85 @@ public class KubernetesClient implements Kubernetes, KubernetesExtensions, Kuber
 
     public Kubernetes getKubernetes(boolean writeable) {
         if (writeable) {
-            if (kubernetesWriteable == null) {
-                kubernetesWriteable = getFactory(true).createKubernetes();
+            Kubernetes answer = kubernetesWriteable;
+            if (answer == null) {
+                synchronized (this) {
+                    answer = kubernetesWriteable;
+                    if (answer == null) {
+                        answer = getFactory(true).createKubernetes();
+                        kubernetesWriteable = answer;
+                    }
+                }
             }
-            return kubernetesWriteable;
+            return answer;
         } else {
-            if (kubernetes == null) {
-                kubernetes = getFactory(false).createKubernetes();
+            Kubernetes answer = kubernetes;
+            if (answer == null) {
+                synchronized (this) {
+                    answer = kubernetes;
+                    if (answer == null) {
+                        answer = getFactory(false).createKubernetes();
+                        kubernetes = answer;
+                    }
+                }
             }
-            return kubernetes;
+            return answer;
         }
     }
 
     public KubernetesExtensions getKubernetesExtensions() {
-        if (kubernetesExtensions == null) {
-            kubernetesExtensions = getFactory(true).createKubernetesExtensions();
+        KubernetesExtensions answer = kubernetesExtensions;
+        if (answer == null) {
+            synchronized (this) {
+                answer = kubernetesExtensions;
+                if (answer == null) {
+                    answer = getFactory(true).createKubernetesExtensions();
+                    kubernetesExtensions = answer;
+                }
+            }
         }
-        return kubernetesExtensions;
+        return answer;
     }
 
     public KubernetesGlobalExtensions getKubernetesGlobalExtensions() {
-        if (kubernetesGlobalExtensions == null) {
-            kubernetesGlobalExtensions = getFactory(true).createKubernetesGlobalExtensions();
+        KubernetesGlobalExtensions answer = kubernetesGlobalExtensions;
+        if (answer == null) {
+            synchronized (this) {
+                answer = kubernetesGlobalExtensions;
+                if (answer == null) {
+                    answer = getFactory(true).createKubernetesGlobalExtensions();
+                    kubernetesGlobalExtensions = answer;
+                }
+            }
         }
-        return kubernetesGlobalExtensions;
+        return answer;
     }
 
     public KubernetesFactory getFactory(boolean writeable) {
         if (writeable) {
-            if (factoryWriteable == null) {
-                factoryWriteable = new KubernetesFactory(true);
+            KubernetesFactory answer = factoryWriteable;
+            if (answer == null) {
+                synchronized (this) {
+                    answer = factoryWriteable;
+                    if (answer == null) {
+                        answer = new KubernetesFactory(true);
+                        factoryWriteable = answer;
+                    }
+                }
             }
-            return factoryWriteable;
+            return answer;
         } else {
-            if (factoryReadOnly == null) {
-                factoryReadOnly = new KubernetesFactory();
+            KubernetesFactory answer = factoryReadOnly;
+            if (answer == null) {
+                synchronized (this) {
+                    answer = factoryReadOnly;
+                    if (answer == null) {
+                        answer = new KubernetesFactory();
+                        factoryReadOnly = answer;
+                    }
+                }
             }
-            return factoryReadOnly;
+            return answer;
         }
     }
 
@@ -1072,6 +1113,78 @@ public class KubernetesClient implements Kubernetes, KubernetesExtensions, Kuber
         return getKubernetesExtensions().triggerBuild(name, namespace, secret, type, body);
     }
 
+    // Informers
+    //-------------------------------------------------------------------------
+
+    /**
+     * Creates an informer which watches the pods of the given namespace (or all namespaces if it is blank);
+     * call {@link Informer#start()} to start watching
+     */
+    public Informer<Pod> createPodInformer(String namespace) {
+        return createInformer("api/" + defaultApiVersion, namespace, "pods", Pod.class);
+    }
+
+    /**
+     * Creates an informer which watches the services of the given namespace (or all namespaces if it is blank);
+     * call {@link Informer#start()} to start watching
+     */
+    public Informer<Service> createServiceInformer(String namespace) {
+        return createInformer("api/" + defaultApiVersion, namespace, "services", Service.class);
+    }
+
+    /**
+     * Creates an informer which watches the replication controllers of the given namespace (or all namespaces if it is blank);
+     * call {@link Informer#start()} to start watching
+     */
+    public Informer<ReplicationController> createReplicationControllerInformer(String namespace) {
+        return createInformer("api/" + defaultApiVersion, namespace, "replicationcontrollers", ReplicationController.class);
+    }
+
+    /**
+     * Creates an informer which watches the builds of the given namespace (or all namespaces if it is blank);
+     * call {@link Informer#start()} to start watching
+     */
+    public Informer<Build> createBuildInformer(String namespace) {
+        return createInformer("osapi/" + defaultOsApiVersion, namespace, "builds", Build.class);
+    }
+
+    protected <T extends HasMetadata> Informer<T> createInformer(String apiPath, String namespace, String resources, Class<T> type) {
+        return new Informer<>(getFactory(false), resourcePath(apiPath, namespace, resources), type);
+    }
+
+    // Streaming lists
+    //-------------------------------------------------------------------------
+
+    /**
+     * Returns an iterator which parses the pods of the given namespace (or all namespaces if it is blank)
+     * one at a time as they are read rather than loading the whole {@link PodList} into memory
+     */
+    public ItemIterator<Pod> iteratePods(String namespace) throws IOException {
+        return getFactory(false).createItemIterator(resourcePath("api/" + defaultApiVersion, namespace, "pods"), Pod.class);
+    }
+
+    /**
+     * Returns an iterator which parses the services of the given namespace (or all namespaces if it is blank)
+     * one at a time as they are read rather than loading the whole {@link ServiceList} into memory
+     */
+    public ItemIterator<Service> iterateServices(String namespace) throws IOException {
+        return getFactory(false).createItemIterator(resourcePath("api/" + defaultApiVersion, namespace, "services"), Service.class);
+    }
+
+    /**
+     * Returns an iterator which parses the replication controllers of the given namespace (or all namespaces if it is blank)
+     * one at a time as they are read rather than loading the whole {@link ReplicationControllerList} into memory
+     */
+    public ItemIterator<ReplicationController> iterateReplicationControllers(String namespace) throws IOException {
+        return getFactory(false).createItemIterator(resourcePath("api/" + defaultApiVersion, namespace, "replicationcontrollers"), ReplicationController.class);
+    }
+
+    protected static String resourcePath(String apiPath, String namespace, String resources) {
+        return Strings.isNotBlank(namespace)
+                ? apiPath + "/namespaces/" + namespace + "/" + resources
+                : apiPath + "/" + resources;
+    }
+
     // Helper methods
     //-------------------------------------------------------------------------
     public void deletePod(Pod entity, String namespace) throws Exception {
@@ -1171,47 +1284,8 @@ public class KubernetesClient implements Kubernetes, KubernetesExtensions, Kuber
             Map<String, String> labels = pod.getMetadata().getLabels();
             if (labels != null && labels.size() > 0) {
                 ReplicationControllerList replicationControllers = getReplicationControllers();
-                List<ReplicationController> items = replicationControllers.getItems();
-                if (items != null) {
-                    List<ReplicationController> matched = new ArrayList<>();
-                    for (ReplicationController item : items) {
-                        if (filterLabels(labels, item.getMetadata().getLabels())) {
-                            matched.add(item);
-                        }
-                    }
-                    int matchedSize = matched.size();
-                    if (matchedSize > 1) {
-                        // lets remove all the RCs with no current replicas and hope there's only 1 left
-                        List<ReplicationController> nonZeroReplicas = Filters.filter(matched, new Filter<ReplicationController>() {
-                            @Override
-                            public boolean matches(ReplicationController replicationController) {
-                                ReplicationControllerSpec replicationControllerSpec = replicationController.getSpec();
-                                if (replicationControllerSpec != null) {
-                                    Integer desiredReplicas = replicationControllerSpec.getReplicas();
-                                    if (desiredReplicas != null && desiredReplicas.intValue() > 0) {
-                                        ReplicationControllerStatus currentStatus = replicationController.getStatus();
-                                        if (currentStatus != null) {
-                                            Integer replicas = currentStatus.getReplicas();
-                                            if (replicas != null && replicas.intValue() > 0) {
-                                                return true;
-                                            }
-                                        }
-                                    }
-                                }
-                                return false;
-                            }
-                        });
-                        int size = nonZeroReplicas.size();
-                        if (size > 0) {
-                            // lets pick the first one for now :)
-                            return nonZeroReplicas.get(0);
-                        }
-                    }
-                    if (matchedSize >= 1) {
-                        // otherwise lets pick the first one we found
-                        return matched.get(0);
-                    }
-                }
+                LabelIndex<ReplicationController> index = LabelIndex.create(replicationControllers.getItems());
+                return KubernetesHelper.getReplicationControllerForPod(pod, index);
             }
         }
         return null;
@@ -31,7 +31,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -63,6 +66,9 @@ public class KubernetesFactory {
     public static final String KUBERNETES_CLIENT_KEY_PASSWORD_ENV_VAR = "KUBERNETES_CLIENT_KEY_PASSWORD";
     public static final String KUBERNETES_MASTER_SYSTEM_PROPERTY = "kubernetes.master";
 
+    public static final long DEFAULT_CONNECT_TIMEOUT = 30 * 1000;
+    public static final long DEFAULT_RECEIVE_TIMEOUT = 60 * 1000;
+
     private String address;
     private boolean verifyAddress = true;
     private boolean trustAllCerts = false;
@@ -77,6 +83,12 @@ public class KubernetesFactory {
     private char[] clientKeyPassword = new char[]{};
     private String username;
     private String password;
+    private boolean keepAlive = true;
+    private boolean compression = true;
+    private long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private long receiveTimeout = DEFAULT_RECEIVE_TIMEOUT;
+    private ObjectMapper objectMapper;
+    private List<Object> sharedProviders;
 
     public KubernetesFactory() {
         this(null);
@@ -187,10 +199,11 @@ public class KubernetesFactory {
     }
 
     /**
-     * Creates a JAXRS web client for the given JAXRS client
+     * Creates a JAXRS web client for the given JAXRS client; the client keeps its request state per thread
+     * so it can be shared by concurrent callers
      */
     public <T> T createWebClient(Class<T> clientType) {
-        WebClient webClient = createWebClient();
+        WebClient webClient = createWebClient(address, true);
         return JAXRSClientFactory.fromClient(webClient, clientType);
     }
 
@@ -199,12 +212,17 @@ public class KubernetesFactory {
     }
 
     public WebClient createWebClient(String serviceAddress) {
+        return createWebClient(serviceAddress, false);
+    }
+
+    protected WebClient createWebClient(String serviceAddress, boolean threadSafe) {
         List<Object> providers = createProviders();
 
         AuthorizationHeaderFilter authorizationHeaderFilter = new AuthorizationHeaderFilter();
         providers.add(authorizationHeaderFilter);
 
-        WebClient webClient = WebClient.create(serviceAddress, providers);
+        WebClient webClient = WebClient.create(serviceAddress, providers, threadSafe);
+        WebClients.configureTransport(webClient, keepAlive, connectTimeout, receiveTimeout, compression);
         WebClients.configureUserAndPassword(webClient, this.username, this.password);
         boolean registeredCert = false;
         if (trustAllCerts) {
@@ -238,15 +256,52 @@ public class KubernetesFactory {
         return null;
     }
 
+    /**
+     * Returns the providers for a new client; the JSON providers are stateless so they are created once
+     * and shared by all the clients of this factory
+     */
     protected List<Object> createProviders() {
-        List<Object> providers = new ArrayList<Object>();
-        Annotations[] annotationsToUse = JacksonJaxbJsonProvider.DEFAULT_ANNOTATIONS;
-        ObjectMapper objectMapper = createObjectMapper();
-        providers.add(new JacksonJaxbJsonProvider(objectMapper, annotationsToUse));
-        providers.add(new PlainTextJacksonProvider(objectMapper, annotationsToUse));
-        providers.add(new ExceptionResponseMapper());
-        //providers.add(new JacksonIntOrStringConfig(objectMapper));
-        return providers;
+        return new ArrayList<Object>(getSharedProviders());
+    }
+
+    protected synchronized List<Object> getSharedProviders() {
+        if (sharedProviders == null) {
+            List<Object> providers = new ArrayList<Object>();
+            Annotations[] annotationsToUse = JacksonJaxbJsonProvider.DEFAULT_ANNOTATIONS;
+            ObjectMapper objectMapper = getObjectMapper();
+            providers.add(new JacksonJaxbJsonProvider(objectMapper, annotationsToUse));
+            providers.add(new PlainTextJacksonProvider(objectMapper, annotationsToUse));
+            providers.add(new ExceptionResponseMapper());
+            //providers.add(new JacksonIntOrStringConfig(objectMapper));
+            sharedProviders = providers;
+        }
+        return sharedProviders;
+    }
+
+    /**
+     * Returns the object mapper shared by the clients of this factory
+     */
+    public synchronized ObjectMapper getObjectMapper() {
+        if (objectMapper == null) {
+            objectMapper = createObjectMapper();
+        }
+        return objectMapper;
+    }
+
+    /**
+     * Performs a GET of the list at the given path relative to the address of this factory (such as
+     * <code>api/v1beta3/namespaces/default/pods</code>) returning an iterator over its items which
+     * parses each item as it is read; the iterator should be closed if it is not read to the end.
+     */
+    public <T> ItemIterator<T> createItemIterator(String path, Class<T> itemType) throws IOException {
+        WebClient webClient = createWebClient().path(path).accept(MediaType.APPLICATION_JSON);
+        Response response = webClient.get();
+        Object entity = response.getEntity();
+        if (response.getStatus() != 200 || !(entity instanceof InputStream)) {
+            response.close();
+            throw new IOException("Failed to get " + webClient.getCurrentURI() + " status: " + response.getStatus());
+        }
+        return new ItemIterator<>(getObjectMapper(), (InputStream) entity, itemType);
     }
 
 
@@ -273,6 +328,50 @@ public class KubernetesFactory {
         }
     }
 
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Whether HTTP connections are kept alive and reused by later requests to the same master
+     */
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * Whether gzip compressed responses are requested
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the connect timeout in milliseconds of new clients or 0 for no timeout
+     */
+    public void setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public long getReceiveTimeout() {
+        return receiveTimeout;
+    }
+
+    /**
+     * Sets the read timeout in milliseconds of new clients or 0 for no timeout
+     */
+    public void setReceiveTimeout(long receiveTimeout) {
+        this.receiveTimeout = receiveTimeout;
+    }
+
     public String getKubernetesMaster() {
         String answer = address;
         int idx = answer.lastIndexOf(":");
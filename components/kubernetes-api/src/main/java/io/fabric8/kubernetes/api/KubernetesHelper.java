@@ -38,12 +38,14 @@ import io.fabric8.kubernetes.api.model.PodTemplateSpec;
 import io.fabric8.kubernetes.api.model.ReplicationController;
 import io.fabric8.kubernetes.api.model.ReplicationControllerList;
 import io.fabric8.kubernetes.api.model.ReplicationControllerSpec;
+import io.fabric8.kubernetes.api.model.ReplicationControllerStatus;
 import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.api.model.Service;
 import io.fabric8.kubernetes.api.model.ServiceList;
 import io.fabric8.kubernetes.api.model.ServicePort;
 import io.fabric8.kubernetes.api.model.ServiceSpec;
 import io.fabric8.kubernetes.api.model.util.IntOrString;
+import io.fabric8.kubernetes.api.watch.LabelIndex;
 import io.fabric8.openshift.api.model.DeploymentConfig;
 import io.fabric8.openshift.api.model.DeploymentConfigSpec;
 import io.fabric8.openshift.api.model.OAuthClient;
@@ -1295,6 +1297,9 @@ public class KubernetesHelper {
 
     /**
      * Returns the pods for the given replication controller
+     * <p/>
+     * This compares the labels of every pod so when resolving many replication controllers against the
+     * same pods use {@link #getPodsForReplicationController(ReplicationController, LabelIndex)} instead
      */
     public static List<Pod> getPodsForReplicationController(ReplicationController replicationController, Iterable<Pod> pods) {
         ReplicationControllerSpec replicationControllerSpec = replicationController.getSpec();
@@ -1308,8 +1313,23 @@ public class KubernetesHelper {
         return Collections.EMPTY_LIST;
     }
 
+    /**
+     * Returns the pods for the given replication controller using an index of the pods
+     */
+    public static List<Pod> getPodsForReplicationController(ReplicationController replicationController, LabelIndex<Pod> pods) {
+        ReplicationControllerSpec replicationControllerSpec = replicationController.getSpec();
+        if (replicationControllerSpec == null) {
+            LOG.warn("Cannot instantiate replication controller: " + getName(replicationController) + " due to missing ReplicationController.Spec!");
+            return Collections.EMPTY_LIST;
+        }
+        return pods.select(replicationControllerSpec.getSelector());
+    }
+
     /**
      * Returns the pods for the given service
+     * <p/>
+     * This compares the labels of every pod so when resolving many services against the
+     * same pods use {@link #getPodsForService(Service, LabelIndex)} instead
      */
     public static List<Pod> getPodsForService(Service service, Iterable<Pod> pods) {
         Map<String, String> selector = getSelector(service);
@@ -1317,6 +1337,52 @@ public class KubernetesHelper {
         return Filters.filter(pods, podFilter);
     }
 
+    /**
+     * Returns the pods for the given service using an index of the pods
+     */
+    public static List<Pod> getPodsForService(Service service, LabelIndex<Pod> pods) {
+        return pods.select(getSelector(service));
+    }
+
+    /**
+     * Returns the replication controller whose labels include all the labels of the given pod using an index
+     * of the replication controllers; preferring the ones which have running replicas if more than one matches
+     */
+    public static ReplicationController getReplicationControllerForPod(Pod pod, LabelIndex<ReplicationController> replicationControllers) {
+        if (pod == null) {
+            return null;
+        }
+        Map<String, String> labels = pod.getMetadata().getLabels();
+        if (labels == null || labels.isEmpty()) {
+            return null;
+        }
+        List<ReplicationController> matched = replicationControllers.select(labels);
+        if (matched.size() > 1) {
+            // lets pick the first one with current replicas if there is one
+            for (ReplicationController replicationController : matched) {
+                if (hasCurrentReplicas(replicationController)) {
+                    return replicationController;
+                }
+            }
+        }
+        return matched.isEmpty() ? null : matched.get(0);
+    }
+
+    private static boolean hasCurrentReplicas(ReplicationController replicationController) {
+        ReplicationControllerSpec replicationControllerSpec = replicationController.getSpec();
+        if (replicationControllerSpec != null) {
+            Integer desiredReplicas = replicationControllerSpec.getReplicas();
+            if (desiredReplicas != null && desiredReplicas.intValue() > 0) {
+                ReplicationControllerStatus currentStatus = replicationController.getStatus();
+                if (currentStatus != null) {
+                    Integer replicas = currentStatus.getReplicas();
+                    return replicas != null && replicas.intValue() > 0;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Looks up the service in DNS.
      * If this is a headless service, this call returns the endpoint IPs from DNS.
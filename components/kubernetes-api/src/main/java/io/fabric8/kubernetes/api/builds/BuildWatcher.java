@@ -18,6 +18,8 @@
 package io.fabric8.kubernetes.api.builds;
 
 import io.fabric8.kubernetes.api.KubernetesClient;
+import io.fabric8.kubernetes.api.watch.Informer;
+import io.fabric8.kubernetes.api.watch.ResourceListener;
 import io.fabric8.openshift.api.model.Build;
 import io.fabric8.openshift.api.model.BuildList;
 import io.fabric8.utils.Strings;
@@ -40,7 +42,7 @@ public class BuildWatcher {
     private final BuildListener buildListener;
     private final String namespace;
     private final String fabric8ConsoleLink;
-    private boolean loading = true;
+    private volatile boolean loading = true;
     private Set<String> seenBuildIds = Collections.<String>synchronizedSet(new HashSet<String>());
 
     public BuildWatcher(KubernetesClient kubernetes, BuildListener buildListener, String namespace, String fabric8ConsoleLink) {
@@ -67,6 +69,33 @@ public class BuildWatcher {
         return task;
     }
 
+    /**
+     * Watches the builds rather than polling them; builds which finished before the watch
+     * started are reported as loading events. Call {@link Informer#stop()} to stop watching.
+     */
+    public Informer<Build> watch() {
+        final Informer<Build> informer = kubernetes.createBuildInformer(namespace);
+        informer.addListener(new ResourceListener<Build>() {
+            @Override
+            public void onAdd(Build build) {
+                loading = !informer.hasSynced();
+                buildPolled(build);
+            }
+
+            @Override
+            public void onUpdate(Build oldBuild, Build newBuild) {
+                loading = !informer.hasSynced();
+                buildPolled(newBuild);
+            }
+
+            @Override
+            public void onDelete(Build build) {
+            }
+        });
+        informer.start();
+        return informer;
+    }
+
     public void poll() {
         boolean foundBuild = false;
         BuildList buildList = kubernetes.getBuilds(namespace);
@@ -0,0 +1,368 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.watch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.kubernetes.api.ItemIterator;
+import io.fabric8.kubernetes.api.KubernetesFactory;
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.utils.Closeables;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a {@link ResourceStore} in sync with the resources of a Kubernetes REST collection
+ * (such as <code>api/v1beta3/namespaces/default/pods</code>) and notifies
+ * {@link ResourceListener}s of every change.
+ * <p/>
+ * The informer lists the collection once and then streams the changes made after the
+ * <code>resourceVersion</code> of that list with a <code>?watch=true</code> request. When the watch
+ * ends it is resumed from the last version seen; the collection is only listed again when the
+ * API server no longer has that version.
+ */
+public class Informer<T extends HasMetadata> {
+    private static final transient Logger LOG = LoggerFactory.getLogger(Informer.class);
+
+    public static final long DEFAULT_RECONNECT_DELAY = 1000;
+    public static final long MAX_RECONNECT_DELAY = 30 * 1000;
+    public static final int DEFAULT_WATCH_TIMEOUT_SECONDS = 5 * 60;
+    public static final long DEFAULT_WATCH_RECEIVE_TIMEOUT_MARGIN = 30 * 1000;
+
+    private static final int HTTP_GONE = 410;
+
+    private final KubernetesFactory factory;
+    private final String path;
+    private final Class<T> type;
+    private final ObjectMapper objectMapper;
+    private final ResourceStore<T> store = new ResourceStore<>();
+    private final List<ResourceListener<T>> listeners = new CopyOnWriteArrayList<>();
+    private final CountDownLatch synced = new CountDownLatch(1);
+
+    private long reconnectDelay = DEFAULT_RECONNECT_DELAY;
+    private int watchTimeoutSeconds = DEFAULT_WATCH_TIMEOUT_SECONDS;
+    private long watchReceiveTimeoutMargin = DEFAULT_WATCH_RECEIVE_TIMEOUT_MARGIN;
+    private volatile boolean running;
+    private volatile String resourceVersion;
+    private volatile InputStream watchStream;
+    private Thread thread;
+
+    public Informer(KubernetesFactory factory, String path, Class<T> type) {
+        this.factory = factory;
+        this.path = path;
+        this.type = type;
+        this.objectMapper = factory.getObjectMapper();
+    }
+
+    @Override
+    public String toString() {
+        return "Informer{" + path + '}';
+    }
+
+    public void addListener(ResourceListener<T> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ResourceListener<T> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts listing and watching the resources on a background thread
+     */
+    public synchronized void start() {
+        if (thread == null) {
+            running = true;
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runLoop();
+                }
+            }, "Informer " + path);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops watching the resources; the store keeps the resources seen so far
+     */
+    public synchronized void stop() {
+        if (thread != null) {
+            running = false;
+            Closeables.closeQuietly(watchStream);
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Returns true once the initial list of the resources has been loaded into the store
+     */
+    public boolean hasSynced() {
+        return synced.getCount() == 0;
+    }
+
+    /**
+     * Waits until the initial list of the resources has been loaded into the store
+     *
+     * @return true if the store was synced before the timeout expired
+     */
+    public boolean waitForSync(long timeout, TimeUnit unit) throws InterruptedException {
+        return synced.await(timeout, unit);
+    }
+
+    public ResourceStore<T> getStore() {
+        return store;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the last resource version seen by this informer
+     */
+    public String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    public long getReconnectDelay() {
+        return reconnectDelay;
+    }
+
+    public void setReconnectDelay(long reconnectDelay) {
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    public int getWatchTimeoutSeconds() {
+        return watchTimeoutSeconds;
+    }
+
+    /**
+     * Sets how long the API server keeps a watch open before ending it, after which the watch is resumed
+     */
+    public void setWatchTimeoutSeconds(int watchTimeoutSeconds) {
+        this.watchTimeoutSeconds = watchTimeoutSeconds;
+    }
+
+    public long getWatchReceiveTimeoutMargin() {
+        return watchReceiveTimeoutMargin;
+    }
+
+    /**
+     * Sets how much longer than the watch timeout to wait for data before the connection is considered dead
+     */
+    public void setWatchReceiveTimeoutMargin(long watchReceiveTimeoutMargin) {
+        this.watchReceiveTimeoutMargin = watchReceiveTimeoutMargin;
+    }
+
+    protected void runLoop() {
+        long delay = reconnectDelay;
+        while (running) {
+            try {
+                if (resourceVersion == null) {
+                    list();
+                }
+                watch();
+                delay = reconnectDelay;
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                LOG.warn("Failed to watch " + path + ", retrying in " + delay + " ms: " + e, e);
+                try {
+                    sleep(delay);
+                } catch (InterruptedException e1) {
+                    break;
+                }
+                delay = Math.min(delay * 2, MAX_RECONNECT_DELAY);
+            }
+        }
+    }
+
+    /**
+     * Waits before retrying a failed list or watch
+     */
+    protected void sleep(long delay) throws InterruptedException {
+        Thread.sleep(delay);
+    }
+
+    /**
+     * Lists the resources replacing the contents of the store
+     */
+    protected void list() throws IOException {
+        Set<String> removed = new HashSet<>(store.keys());
+        ItemIterator<T> items = new ItemIterator<>(objectMapper, open(createWebClient()), type);
+        try {
+            while (items.hasNext()) {
+                T resource = items.next();
+                removed.remove(ResourceStore.getKey(resource));
+                T old = store.put(resource);
+                if (old == null) {
+                    fireAdd(resource);
+                } else if (!isSameVersion(old, resource)) {
+                    fireUpdate(old, resource);
+                }
+            }
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            items.close();
+        }
+        for (String key : removed) {
+            T old = store.get(null, key);
+            if (old != null && store.remove(old) != null) {
+                fireDelete(old);
+            }
+        }
+        resourceVersion = items.getResourceVersion();
+        synced.countDown();
+        LOG.debug("Listed " + store.size() + " resources of " + path + " at version " + resourceVersion);
+    }
+
+    /**
+     * Applies the changes streamed by a watch until the watch ends
+     */
+    protected void watch() throws IOException {
+        // the API server ends the watch after the timeout, so if nothing is received for a while
+        // longer than that the connection is half open (e.g. dropped by a load balancer) and the
+        // watch must be resumed on a new connection
+        WebClient webClient = createWebClient().query("watch", "true").query("timeoutSeconds", watchTimeoutSeconds);
+        WebClient.getConfig(webClient).getHttpConduit().getClient().setReceiveTimeout(watchTimeoutSeconds * 1000L + watchReceiveTimeoutMargin);
+        if (resourceVersion != null) {
+            webClient.query("resourceVersion", resourceVersion);
+        }
+        InputStream in = open(webClient);
+        watchStream = in;
+        try {
+            MappingIterator<JsonNode> events = objectMapper.reader(JsonNode.class).readValues(in);
+            while (running && events.hasNextValue()) {
+                if (!onEvent(events.nextValue())) {
+                    break;
+                }
+            }
+        } finally {
+            watchStream = null;
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Applies a watch event to the store returning false if the watch can not be resumed
+     */
+    protected boolean onEvent(JsonNode event) throws IOException {
+        String eventType = event.path("type").textValue();
+        JsonNode object = event.path("object");
+        if ("ERROR".equals(eventType)) {
+            if (object.path("code").asInt() == HTTP_GONE) {
+                // the version we were watching from is too old so lets list again
+                LOG.debug("Resource version " + resourceVersion + " of " + path + " has expired");
+                resourceVersion = null;
+                return false;
+            }
+            throw new IOException("Failed to watch " + path + ": " + object.path("message").textValue());
+        }
+        T resource = objectMapper.treeToValue(object, type);
+        if ("ADDED".equals(eventType) || "MODIFIED".equals(eventType)) {
+            T old = store.put(resource);
+            if (old == null) {
+                fireAdd(resource);
+            } else {
+                fireUpdate(old, resource);
+            }
+        } else if ("DELETED".equals(eventType)) {
+            T old = store.remove(resource);
+            fireDelete(old != null ? old : resource);
+        } else {
+            LOG.warn("Ignoring unknown watch event " + eventType + " for " + path);
+        }
+        String version = KubernetesHelper.getResourceVersion(resource);
+        if (version != null) {
+            resourceVersion = version;
+        }
+        return true;
+    }
+
+    protected WebClient createWebClient() {
+        return factory.createWebClient().path(path).accept(MediaType.APPLICATION_JSON);
+    }
+
+    private InputStream open(WebClient webClient) throws IOException {
+        Response response = webClient.get();
+        int status = response.getStatus();
+        Object entity = response.getEntity();
+        if (status == HTTP_GONE) {
+            resourceVersion = null;
+        }
+        if (status != 200 || !(entity instanceof InputStream)) {
+            if (entity instanceof InputStream) {
+                Closeables.closeQuietly((InputStream) entity);
+            }
+            throw new IOException("Failed to get " + webClient.getCurrentURI() + " status: " + status);
+        }
+        return (InputStream) entity;
+    }
+
+    private static boolean isSameVersion(HasMetadata old, HasMetadata resource) {
+        String version = KubernetesHelper.getResourceVersion(resource);
+        return version != null && version.equals(KubernetesHelper.getResourceVersion(old));
+    }
+
+    private void fireAdd(T resource) {
+        for (ResourceListener<T> listener : listeners) {
+            try {
+                listener.onAdd(resource);
+            } catch (Exception e) {
+                LOG.warn("Listener " + listener + " failed to process added resource " + KubernetesHelper.getName(resource) + ": " + e, e);
+            }
+        }
+    }
+
+    private void fireUpdate(T old, T resource) {
+        for (ResourceListener<T> listener : listeners) {
+            try {
+                listener.onUpdate(old, resource);
+            } catch (Exception e) {
+                LOG.warn("Listener " + listener + " failed to process updated resource " + KubernetesHelper.getName(resource) + ": " + e, e);
+            }
+        }
+    }
+
+    private void fireDelete(T resource) {
+        for (ResourceListener<T> listener : listeners) {
+            try {
+                listener.onDelete(resource);
+            } catch (Exception e) {
+                LOG.warn("Listener " + listener + " failed to process deleted resource " + KubernetesHelper.getName(resource) + ": " + e, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.watch;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inverted index from each <code>key=value</code> label to a bitmap of the resources which have
+ * that label, so that an equality based selector is answered by intersecting one bitmap per label
+ * of the selector rather than by comparing the labels of every resource.
+ * <p/>
+ * An index can be built once from a list of resources with {@link #create(Iterable)} or kept up to
+ * date by registering it as a listener of an {@link Informer}.
+ */
+public class LabelIndex<T extends HasMetadata> implements ResourceListener<T> {
+    private static final Comparator<BitSet> CARDINALITY = new Comparator<BitSet>() {
+        @Override
+        public int compare(BitSet o1, BitSet o2) {
+            return Integer.compare(o1.cardinality(), o2.cardinality());
+        }
+    };
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Map<String, BitSet> labels = new HashMap<>();
+    private final List<T> resources = new ArrayList<>();
+    private final BitSet used = new BitSet();
+
+    /**
+     * Creates an index of the given resources
+     */
+    public static <T extends HasMetadata> LabelIndex<T> create(Iterable<T> resources) {
+        LabelIndex<T> answer = new LabelIndex<>();
+        if (resources != null) {
+            for (T resource : resources) {
+                answer.put(resource);
+            }
+        }
+        return answer;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the resources which have all the labels of the given selector;
+     * an empty selector selects all the resources
+     */
+    public List<T> select(Map<String, String> selector) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = match(selector);
+            List<T> answer = new ArrayList<>(matches.cardinality());
+            for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+                answer.add(resources.get(id));
+            }
+            return answer;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of resources which have all the labels of the given selector
+     */
+    public int count(Map<String, String> selector) {
+        lock.readLock().lock();
+        try {
+            return match(selector).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces the given resource
+     */
+    public void put(T resource) {
+        String key = ResourceStore.getKey(resource);
+        lock.writeLock().lock();
+        try {
+            Integer id = ids.get(key);
+            if (id != null) {
+                unindex(id, resources.get(id));
+            } else {
+                // reuse the ids of removed resources to keep the bitmaps dense
+                id = used.nextClearBit(0);
+                ids.put(key, id);
+                used.set(id);
+            }
+            if (id < resources.size()) {
+                resources.set(id, resource);
+            } else {
+                resources.add(resource);
+            }
+            for (Map.Entry<String, String> entry : KubernetesHelper.getLabels(resource).entrySet()) {
+                String label = labelKey(entry.getKey(), entry.getValue());
+                BitSet bitmap = labels.get(label);
+                if (bitmap == null) {
+                    bitmap = new BitSet();
+                    labels.put(label, bitmap);
+                }
+                bitmap.set(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the given resource returning true if it was indexed
+     */
+    public boolean remove(T resource) {
+        String key = ResourceStore.getKey(resource);
+        lock.writeLock().lock();
+        try {
+            Integer id = ids.remove(key);
+            if (id == null) {
+                return false;
+            }
+            unindex(id, resources.get(id));
+            resources.set(id, null);
+            used.clear(id);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            labels.clear();
+            resources.clear();
+            used.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onAdd(T resource) {
+        put(resource);
+    }
+
+    @Override
+    public void onUpdate(T oldResource, T newResource) {
+        put(newResource);
+    }
+
+    @Override
+    public void onDelete(T resource) {
+        remove(resource);
+    }
+
+    /**
+     * Intersects the bitmaps of the labels of the selector starting from the smallest one
+     */
+    private BitSet match(Map<String, String> selector) {
+        if (selector == null || selector.isEmpty()) {
+            return (BitSet) used.clone();
+        }
+        List<BitSet> bitmaps = new ArrayList<>(selector.size());
+        for (Map.Entry<String, String> entry : selector.entrySet()) {
+            BitSet bitmap = labels.get(labelKey(entry.getKey(), entry.getValue()));
+            if (bitmap == null) {
+                return new BitSet();
+            }
+            bitmaps.add(bitmap);
+        }
+        BitSet smallest = Collections.min(bitmaps, CARDINALITY);
+        BitSet answer = (BitSet) smallest.clone();
+        for (BitSet bitmap : bitmaps) {
+            if (bitmap != smallest) {
+                answer.and(bitmap);
+                if (answer.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        return answer;
+    }
+
+    private void unindex(int id, T resource) {
+        for (Map.Entry<String, String> entry : KubernetesHelper.getLabels(resource).entrySet()) {
+            String label = labelKey(entry.getKey(), entry.getValue());
+            BitSet bitmap = labels.get(label);
+            if (bitmap != null) {
+                bitmap.clear(id);
+                if (bitmap.isEmpty()) {
+                    labels.remove(label);
+                }
+            }
+        }
+    }
+
+    private static String labelKey(String key, String value) {
+        return key + "=" + value;
+    }
+}
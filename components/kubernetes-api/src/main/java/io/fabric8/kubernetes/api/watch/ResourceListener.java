@@ -0,0 +1,37 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.watch;
+
+/**
+ * Receives the changes an {@link Informer} observes on the resources it watches.
+ */
+public interface ResourceListener<T> {
+
+    /**
+     * A resource was created, or was found by the initial list of the informer
+     */
+    void onAdd(T resource);
+
+    /**
+     * A resource was modified
+     */
+    void onUpdate(T oldResource, T newResource);
+
+    /**
+     * A resource was deleted
+     */
+    void onDelete(T resource);
+}
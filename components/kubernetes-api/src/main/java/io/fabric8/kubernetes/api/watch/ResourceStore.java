@@ -0,0 +1,180 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.watch;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.utils.Strings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An in memory copy of a set of resources indexed by namespace, name and labels.
+ * <p/>
+ * The store is kept up to date by a single {@link Informer} while any number of threads
+ * query it. Lookups by name and namespace do not lock; selector queries are answered by a
+ * {@link LabelIndex} and only wait for a change which is being applied.
+ */
+public class ResourceStore<T extends HasMetadata> {
+
+    private final ConcurrentMap<String, T> resources = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> namespaceIndex = new ConcurrentHashMap<>();
+    private final LabelIndex<T> labelIndex = new LabelIndex<>();
+
+    /**
+     * Returns the key the resource is stored with
+     */
+    public static String getKey(HasMetadata resource) {
+        return getKey(KubernetesHelper.getNamespace(resource), KubernetesHelper.getName(resource));
+    }
+
+    public static String getKey(String namespace, String name) {
+        return Strings.isNullOrBlank(namespace) ? name : namespace + "/" + name;
+    }
+
+    public T get(String namespace, String name) {
+        return resources.get(getKey(namespace, name));
+    }
+
+    public int size() {
+        return resources.size();
+    }
+
+    /**
+     * Returns all the resources
+     */
+    public List<T> list() {
+        return new ArrayList<>(resources.values());
+    }
+
+    /**
+     * Returns the resources of the given namespace or all the resources if the namespace is blank
+     */
+    public List<T> list(String namespace) {
+        if (Strings.isNullOrBlank(namespace)) {
+            return list();
+        }
+        return toResources(namespaceIndex.get(namespace));
+    }
+
+    /**
+     * Returns the resources of the given namespace (or of all namespaces if it is blank) which
+     * have all the labels of the given selector
+     */
+    public List<T> list(String namespace, Map<String, String> selector) {
+        if (selector == null || selector.isEmpty()) {
+            return list(namespace);
+        }
+        List<T> answer = labelIndex.select(selector);
+        if (Strings.isNotBlank(namespace)) {
+            for (Iterator<T> iter = answer.iterator(); iter.hasNext(); ) {
+                if (!namespace.equals(KubernetesHelper.getNamespace(iter.next()))) {
+                    iter.remove();
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Adds or replaces the given resource returning the resource it replaced
+     */
+    public synchronized T put(T resource) {
+        String key = getKey(resource);
+        T old = resources.put(key, resource);
+        if (old != null) {
+            unindex(key, old);
+        }
+        index(key, resource);
+        return old;
+    }
+
+    /**
+     * Removes the given resource returning the resource which was stored
+     */
+    public synchronized T remove(T resource) {
+        String key = getKey(resource);
+        T old = resources.remove(key);
+        if (old != null) {
+            unindex(key, old);
+        }
+        return old;
+    }
+
+    /**
+     * Returns the keys of the stored resources
+     */
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(resources.keySet());
+    }
+
+    private List<T> toResources(Collection<String> keys) {
+        if (keys == null) {
+            return Collections.emptyList();
+        }
+        List<T> answer = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            T resource = resources.get(key);
+            if (resource != null) {
+                answer.add(resource);
+            }
+        }
+        return answer;
+    }
+
+    private void index(String key, T resource) {
+        String namespace = KubernetesHelper.getNamespace(resource);
+        if (namespace != null) {
+            add(namespaceIndex, namespace, key);
+        }
+        labelIndex.put(resource);
+    }
+
+    private void unindex(String key, T resource) {
+        String namespace = KubernetesHelper.getNamespace(resource);
+        if (namespace != null) {
+            remove(namespaceIndex, namespace, key);
+        }
+        labelIndex.remove(resource);
+    }
+
+    private static void add(ConcurrentMap<String, Set<String>> index, String indexKey, String key) {
+        Set<String> keys = index.get(indexKey);
+        if (keys == null) {
+            keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            index.put(indexKey, keys);
+        }
+        keys.add(key);
+    }
+
+    private static void remove(ConcurrentMap<String, Set<String>> index, String indexKey, String key) {
+        Set<String> keys = index.get(indexKey);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                index.remove(indexKey, keys);
+            }
+        }
+    }
+}
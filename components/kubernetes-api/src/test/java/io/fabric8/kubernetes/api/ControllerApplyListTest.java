@@ -0,0 +1,301 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceAccount;
+import io.fabric8.openshift.api.model.BuildConfig;
+import io.fabric8.openshift.api.model.DeploymentConfig;
+import io.fabric8.openshift.api.model.ImageStream;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
+import static io.fabric8.kubernetes.api.KubernetesHelper.getOrCreateMetadata;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests applying a list in dependency tiers against a stubbed client
+ */
+public class ControllerApplyListTest {
+
+    private StubKubernetesClient client;
+    private Controller controller;
+
+    @Before
+    public void setUp() throws Exception {
+        client = new StubKubernetesClient();
+        client.setNamespace("default");
+        controller = new Controller(client);
+        controller.setApplyThreads(4);
+    }
+
+    @Test
+    public void testGetApplyTier() throws Exception {
+        assertThat(controller.getApplyTier(new Namespace())).isEqualTo(0);
+        assertThat(controller.getApplyTier(new Secret())).isEqualTo(1);
+        assertThat(controller.getApplyTier(new ServiceAccount())).isEqualTo(1);
+        assertThat(controller.getApplyTier(new Service())).isEqualTo(2);
+        assertThat(controller.getApplyTier(new BuildConfig())).isEqualTo(2);
+        assertThat(controller.getApplyTier(new ImageStream())).isEqualTo(2);
+        assertThat(controller.getApplyTier(new DeploymentConfig())).isEqualTo(3);
+    }
+
+    @Test
+    public void testAppliesTiersInOrder() throws Exception {
+        KubernetesList list = createList(
+                named(new DeploymentConfig(), "dc1"),
+                named(new ImageStream(), "is1"),
+                named(new DeploymentConfig(), "dc2"),
+                named(new BuildConfig(), "bc1"),
+                named(new Namespace(), "ns1"));
+
+        controller.applyList(list, "test");
+
+        List<String> created = client.getCreated();
+        assertThat(created).hasSize(5);
+        assertThat(created.get(0)).isEqualTo("Namespace ns1");
+        assertThat(new HashSet<>(created.subList(1, 3))).containsOnly("ImageStream is1", "BuildConfig bc1");
+        assertThat(new HashSet<>(created.subList(3, 5))).containsOnly("DeploymentConfig dc1", "DeploymentConfig dc2");
+
+        List<ApplyResult> results = controller.getApplyResults();
+        assertThat(results).hasSize(5);
+        for (ApplyResult result : results) {
+            assertThat(result.isFailed()).describedAs(result.toString()).isFalse();
+            assertThat(result.getTier()).describedAs(result.toString()).isEqualTo(getExpectedTier(result.getKind()));
+        }
+    }
+
+    @Test
+    public void testFailureCompletesTierAndStopsLaterTiers() throws Exception {
+        client.failOn("bc1");
+        KubernetesList list = createList(
+                named(new ImageStream(), "is1"),
+                named(new BuildConfig(), "bc1"),
+                named(new ImageStream(), "is2"),
+                named(new DeploymentConfig(), "dc1"));
+
+        try {
+            controller.applyList(list, "test");
+            fail("Expected the failure of bc1 to be thrown");
+        } catch (RuntimeException e) {
+            assertThat(e.getMessage()).contains("Failed to create BuildConfig");
+        }
+
+        // the other entities of the failed tier are still applied but the next tier is not
+        assertThat(client.getCreated()).containsOnly("ImageStream is1", "ImageStream is2");
+
+        List<ApplyResult> results = controller.getApplyResults();
+        assertThat(results).hasSize(3);
+        List<String> failed = new ArrayList<>();
+        for (ApplyResult result : results) {
+            assertThat(result.getTier()).isEqualTo(2);
+            if (result.isFailed()) {
+                failed.add(result.getKind() + " " + result.getName());
+            }
+        }
+        assertThat(failed).containsOnly("BuildConfig bc1");
+    }
+
+    @Test
+    public void testFailureIsRecordedWhenNotThrowingExceptions() throws Exception {
+        controller.setThrowExceptionOnError(false);
+        client.failOn("bc1");
+        KubernetesList list = createList(
+                named(new ImageStream(), "is1"),
+                named(new BuildConfig(), "bc1"),
+                named(new DeploymentConfig(), "dc1"));
+
+        List<ApplyResult> results = controller.applyList(list, "test");
+
+        // the error is only logged so the later tiers are still applied
+        assertThat(client.getCreated()).containsOnly("ImageStream is1", "DeploymentConfig dc1");
+        assertThat(results).isEqualTo(controller.getApplyResults());
+        assertThat(results).hasSize(3);
+        assertThat(getFailed(results)).containsOnly("BuildConfig bc1");
+        for (ApplyResult result : results) {
+            if (result.isFailed()) {
+                assertThat(result.getFailure().getMessage()).contains("Failed to create BuildConfig");
+            }
+        }
+    }
+
+    @Test
+    public void testNestedListDoesNotReplaceResults() throws Exception {
+        final List<List<ApplyResult>> nestedResults = Collections.synchronizedList(new ArrayList<List<ApplyResult>>());
+        controller = createNestingController(nestedResults);
+        KubernetesList list = createList(
+                named(new BuildConfig(), "bc1"),
+                named(new DeploymentConfig(), "dc1"),
+                named(new DeploymentConfig(), "dc2"));
+
+        List<ApplyResult> results = controller.applyList(list, "test");
+
+        assertThat(client.getCreated()).hasSize(5);
+        assertThat(controller.getApplyResults()).isEqualTo(results);
+        assertThat(results).hasSize(3);
+        assertThat(nestedResults).hasSize(2);
+        for (List<ApplyResult> nested : nestedResults) {
+            assertThat(nested).hasSize(1);
+            assertThat(nested.get(0).getKind()).isEqualTo("ImageStream");
+        }
+    }
+
+    @Test
+    public void testNestedFailureIsRecordedInOuterResult() throws Exception {
+        final List<List<ApplyResult>> nestedResults = Collections.synchronizedList(new ArrayList<List<ApplyResult>>());
+        controller = createNestingController(nestedResults);
+        controller.setThrowExceptionOnError(false);
+        client.failOn("nested-dc1");
+        KubernetesList list = createList(
+                named(new DeploymentConfig(), "dc1"),
+                named(new DeploymentConfig(), "dc2"));
+
+        List<ApplyResult> results = controller.applyList(list, "test");
+
+        assertThat(getFailed(results)).containsOnly("DeploymentConfig dc1");
+        assertThat(nestedResults).hasSize(2);
+        for (ApplyResult result : results) {
+            if (result.isFailed()) {
+                assertThat(result.getFailure().getMessage()).contains("nested-dc1");
+            }
+        }
+    }
+
+    @Test
+    public void testAppliesSequentiallyWithOneThread() throws Exception {
+        controller.setApplyThreads(1);
+        KubernetesList list = createList(
+                named(new DeploymentConfig(), "dc1"),
+                named(new BuildConfig(), "bc1"));
+
+        controller.applyList(list, "test");
+
+        assertThat(client.getCreated()).containsExactly("BuildConfig bc1", "DeploymentConfig dc1");
+    }
+
+    /**
+     * Creates a controller which applies a nested list with an image stream for each deployment config it applies
+     */
+    private Controller createNestingController(final List<List<ApplyResult>> nestedResults) {
+        Controller answer = new Controller(client) {
+            @Override
+            public void applyDeploymentConfig(DeploymentConfig entity, String sourceName) {
+                super.applyDeploymentConfig(entity, sourceName);
+                try {
+                    nestedResults.add(applyList(createList(named(new ImageStream(), "nested-" + getName(entity))), "nested"));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        answer.setApplyThreads(4);
+        return answer;
+    }
+
+    private static List<String> getFailed(List<ApplyResult> results) {
+        List<String> failed = new ArrayList<>();
+        for (ApplyResult result : results) {
+            if (result.isFailed()) {
+                failed.add(result.getKind() + " " + result.getName());
+            }
+        }
+        return failed;
+    }
+
+    private static int getExpectedTier(String kind) {
+        switch (kind) {
+            case "Namespace":
+                return 0;
+            case "DeploymentConfig":
+                return 3;
+            default:
+                return 2;
+        }
+    }
+
+    private static KubernetesList createList(HasMetadata... entities) {
+        KubernetesList list = new KubernetesList();
+        list.setItems(new ArrayList<>(Arrays.asList(entities)));
+        return list;
+    }
+
+    private static <T extends HasMetadata> T named(T entity, String name) {
+        getOrCreateMetadata(entity).setName(name);
+        return entity;
+    }
+
+    /**
+     * Records the entities created instead of calling the REST API
+     */
+    private static class StubKubernetesClient extends KubernetesClient {
+        private final List<String> created = Collections.synchronizedList(new ArrayList<String>());
+        private final Set<String> failing = new HashSet<>();
+
+        public void failOn(String name) {
+            failing.add(name);
+        }
+
+        public List<String> getCreated() {
+            synchronized (created) {
+                return new ArrayList<>(created);
+            }
+        }
+
+        @Override
+        public String createNamespace(Namespace entity) throws Exception {
+            return create("Namespace", entity);
+        }
+
+        @Override
+        public String createBuildConfig(BuildConfig entity, String namespace) throws Exception {
+            return create("BuildConfig", entity);
+        }
+
+        @Override
+        public String createImageStream(ImageStream entity, String namespace) throws Exception {
+            // slow enough that a later tier starting early would be recorded first
+            Thread.sleep(50);
+            return create("ImageStream", entity);
+        }
+
+        @Override
+        public String createDeploymentConfig(DeploymentConfig entity, String namespace) throws Exception {
+            return create("DeploymentConfig", entity);
+        }
+
+        private String create(String kind, HasMetadata entity) throws Exception {
+            String name = getName(entity);
+            if (failing.contains(name)) {
+                throw new Exception("Failed to create " + kind + " " + name);
+            }
+            created.add(kind + " " + name);
+            return name;
+        }
+    }
+}
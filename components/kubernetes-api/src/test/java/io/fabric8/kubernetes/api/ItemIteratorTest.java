@@ -0,0 +1,144 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ItemIteratorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testMetadataBeforeItems() throws Exception {
+        TrackingInputStream in = stream("{\"kind\":\"PodList\",\"metadata\":{\"selfLink\":\"/pods\",\"resourceVersion\":\"42\"},"
+                + "\"items\":[{\"name\":\"a\",\"labels\":{\"x\":\"y\"}},{\"name\":\"b\"}]}");
+        ItemIterator<Item> items = new ItemIterator<>(objectMapper, in, Item.class);
+        assertEquals("42", items.getResourceVersion());
+        assertEquals(names("a", "b"), readNames(items));
+        assertTrue("stream should be closed after the last item", in.closed);
+    }
+
+    @Test
+    public void testMetadataAfterItems() throws Exception {
+        ItemIterator<Item> items = new ItemIterator<>(objectMapper,
+                stream("{\"items\":[{\"name\":\"a\"},null,{\"name\":\"b\"}],\"metadata\":{\"resourceVersion\":\"7\"}}"), Item.class);
+        assertNull(items.getResourceVersion());
+        assertEquals(names("a", "b"), readNames(items));
+        assertEquals("7", items.getResourceVersion());
+    }
+
+    @Test
+    public void testEmptyAndMissingItems() throws Exception {
+        ItemIterator<Item> items = new ItemIterator<>(objectMapper, stream("{\"items\":[],\"metadata\":{\"resourceVersion\":\"1\"}}"), Item.class);
+        assertFalse(items.hasNext());
+        assertEquals("1", items.getResourceVersion());
+
+        items = new ItemIterator<>(objectMapper, stream("{\"kind\":\"PodList\",\"items\":null}"), Item.class);
+        assertFalse(items.hasNext());
+    }
+
+    @Test
+    public void testCloseBeforeTheEnd() throws Exception {
+        TrackingInputStream in = stream("{\"items\":[{\"name\":\"a\"},{\"name\":\"b\"}]}");
+        ItemIterator<Item> items = new ItemIterator<>(objectMapper, in, Item.class);
+        assertEquals("a", items.next().name);
+        assertFalse(in.closed);
+        items.close();
+        assertTrue(in.closed);
+    }
+
+    @Test
+    public void testInvalidJson() throws Exception {
+        TrackingInputStream in = stream("[{\"name\":\"a\"}]");
+        try {
+            new ItemIterator<>(objectMapper, in, Item.class);
+            fail("Expected an IOException for a JSON array");
+        } catch (IOException e) {
+            assertTrue(in.closed);
+        }
+
+        in = stream("{\"items\":[\"a\"]}");
+        try {
+            new ItemIterator<>(objectMapper, in, Item.class);
+            fail("Expected an IOException for an item which is not an object");
+        } catch (IOException e) {
+            assertTrue(in.closed);
+        }
+
+        in = stream("{\"items\":[{\"name\":\"a\"},{\"name\":[1]}]}");
+        ItemIterator<Item> items = new ItemIterator<>(objectMapper, in, Item.class);
+        assertEquals("a", items.next().name);
+        try {
+            items.next();
+            fail("Expected an IllegalStateException for an item which can not be parsed");
+        } catch (IllegalStateException e) {
+            assertFalse(items.hasNext());
+            assertTrue(in.closed);
+        }
+    }
+
+    protected static List<String> readNames(ItemIterator<Item> items) {
+        List<String> answer = new ArrayList<>();
+        while (items.hasNext()) {
+            answer.add(items.next().name);
+        }
+        return answer;
+    }
+
+    protected static List<String> names(String... names) {
+        List<String> answer = new ArrayList<>();
+        for (String name : names) {
+            answer.add(name);
+        }
+        return answer;
+    }
+
+    protected static TrackingInputStream stream(String json) {
+        return new TrackingInputStream(json.getBytes());
+    }
+
+    public static class Item {
+        public String name;
+        public Map<String, String> labels;
+    }
+
+    protected static class TrackingInputStream extends ByteArrayInputStream {
+        boolean closed;
+
+        TrackingInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.watch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.fabric8.kubernetes.api.KubernetesFactory;
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.Pod;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs an {@link Informer} against a stubbed API server which answers the list and watch requests
+ * with scripted responses.
+ */
+public class InformerTest {
+
+    static final String PATH = "api/v1beta3/namespaces/default/pods";
+
+    private final BlockingQueue<StubResponse> responses = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> requests = new LinkedBlockingQueue<>();
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Long> delays = Collections.synchronizedList(new ArrayList<Long>());
+    private ExecutorService executor;
+    private HttpServer server;
+    private Informer<Pod> informer;
+
+    @Before
+    public void startServer() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.add(exchange.getRequestURI().toString());
+                try {
+                    StubResponse response = responses.poll(10, TimeUnit.SECONDS);
+                    if (response == null) {
+                        // nothing scripted, so keep the request open like an idle watch
+                        response = hold(200, "");
+                    }
+                    exchange.sendResponseHeaders(response.status, 0);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(response.body.getBytes("UTF-8"));
+                    out.flush();
+                    if (response.hold) {
+                        released.await();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+
+        KubernetesFactory factory = new KubernetesFactory("http://localhost:" + server.getAddress().getPort(), false, false);
+        informer = new Informer<Pod>(factory, PATH, Pod.class) {
+            @Override
+            protected void sleep(long delay) throws InterruptedException {
+                delays.add(delay);
+            }
+        };
+        informer.addListener(new ResourceListener<Pod>() {
+            @Override
+            public void onAdd(Pod resource) {
+                events.add("add " + KubernetesHelper.getName(resource));
+            }
+
+            @Override
+            public void onUpdate(Pod oldResource, Pod newResource) {
+                events.add("update " + KubernetesHelper.getName(newResource));
+            }
+
+            @Override
+            public void onDelete(Pod resource) {
+                events.add("delete " + KubernetesHelper.getName(resource));
+            }
+        });
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        informer.stop();
+        released.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testWatchResumesFromTheLastResourceVersion() throws Exception {
+        responses.add(respond(200, podList("10", pod("pod1", "5", "app", "cheese"), pod("pod2", "6", "app", "beer"))));
+        responses.add(respond(200,
+                event("MODIFIED", pod("pod1", "11", "app", "cheese")) +
+                event("DELETED", pod("pod2", "12", "app", "beer")) +
+                event("ADDED", pod("pod3", "13", "app", "wine"))));
+        responses.add(hold(200, ""));
+        informer.start();
+
+        assertTrue(informer.waitForSync(10, TimeUnit.SECONDS));
+        assertList(takeRequest());
+        assertWatch(takeRequest(), "10");
+        // the watch ended so it is resumed after the last event without listing again
+        assertWatch(takeRequest(), "13");
+
+        assertEquals("13", informer.getResourceVersion());
+        assertEquals(Arrays.asList("add pod1", "add pod2", "update pod1", "delete pod2", "add pod3"), events);
+        ResourceStore<Pod> store = informer.getStore();
+        assertEquals(2, store.size());
+        assertEquals("11", KubernetesHelper.getResourceVersion(store.get("default", "pod1")));
+        assertNull(store.get("default", "pod2"));
+        assertNotNull(store.get("default", "pod3"));
+        assertTrue(delays.isEmpty());
+    }
+
+    @Test
+    public void testGoneEventRelists() throws Exception {
+        responses.add(respond(200, podList("10", pod("pod1", "5", "app", "cheese"), pod("pod2", "6", "app", "beer"))));
+        responses.add(respond(200, "{\"type\":\"ERROR\",\"object\":{\"kind\":\"Status\",\"code\":410,\"message\":\"too old resource version\"}}\n"));
+        responses.add(respond(200, podList("20", pod("pod1", "15", "app", "cheese"), pod("pod3", "16", "app", "wine"))));
+        responses.add(hold(200, ""));
+        informer.start();
+
+        assertList(takeRequest());
+        assertWatch(takeRequest(), "10");
+        assertList(takeRequest());
+        assertWatch(takeRequest(), "20");
+
+        // the relist replaces the store, deleting what is gone and updating what changed
+        assertEquals(Arrays.asList("add pod1", "add pod2", "update pod1", "add pod3", "delete pod2"), events);
+        assertEquals(2, informer.getStore().size());
+        assertNull(informer.getStore().get("default", "pod2"));
+    }
+
+    @Test
+    public void testGoneResponseRelists() throws Exception {
+        responses.add(respond(200, podList("10", pod("pod1", "5", "app", "cheese"))));
+        responses.add(respond(410, ""));
+        responses.add(respond(200, podList("20", pod("pod1", "5", "app", "cheese"))));
+        responses.add(hold(200, ""));
+        informer.start();
+
+        assertList(takeRequest());
+        assertWatch(takeRequest(), "10");
+        assertList(takeRequest());
+        assertWatch(takeRequest(), "20");
+        // an unchanged resource is not reported again
+        assertEquals(Arrays.asList("add pod1"), events);
+    }
+
+    @Test
+    public void testFailuresBackOffUntilMaximumDelay() throws Exception {
+        informer.setReconnectDelay(Informer.MAX_RECONNECT_DELAY / 4);
+        for (int i = 0; i < 4; i++) {
+            responses.add(respond(500, ""));
+        }
+        responses.add(respond(200, podList("10", pod("pod1", "5", "app", "cheese"))));
+        responses.add(respond(500, ""));
+        responses.add(hold(200, ""));
+        informer.start();
+
+        for (int i = 0; i < 5; i++) {
+            assertList(takeRequest());
+        }
+        assertWatch(takeRequest(), "10");
+        assertWatch(takeRequest(), "10");
+        long delay = Informer.MAX_RECONNECT_DELAY / 4;
+        // the delay doubles up to the maximum and is only reset by a watch which ended normally
+        assertEquals(Arrays.asList(delay, delay * 2, Informer.MAX_RECONNECT_DELAY, Informer.MAX_RECONNECT_DELAY, Informer.MAX_RECONNECT_DELAY), delays);
+    }
+
+    @Test
+    public void testReceiveTimeoutResumesTheWatch() throws Exception {
+        informer.setWatchTimeoutSeconds(1);
+        informer.setWatchReceiveTimeoutMargin(0);
+        responses.add(respond(200, podList("10", pod("pod1", "5", "app", "cheese"))));
+        responses.add(hold(200, event("MODIFIED", pod("pod1", "11", "app", "cheese"))));
+        responses.add(hold(200, ""));
+        informer.start();
+
+        assertList(takeRequest());
+        String watch = takeRequest();
+        assertWatch(watch, "10");
+        assertTrue(watch, watch.contains("timeoutSeconds=1"));
+        // nothing more is received on the half open watch so it is resumed on a new connection
+        assertWatch(takeRequest(), "11");
+        assertEquals(1, delays.size());
+        assertEquals(Arrays.asList("add pod1", "update pod1"), events);
+    }
+
+    protected String takeRequest() throws InterruptedException {
+        String request = requests.poll(10, TimeUnit.SECONDS);
+        assertNotNull("Expected a request", request);
+        return request;
+    }
+
+    protected static void assertList(String request) {
+        assertTrue(request, request.startsWith("/" + PATH));
+        assertFalse("Expected a list but got " + request, request.contains("watch=true"));
+    }
+
+    protected static void assertWatch(String request, String resourceVersion) {
+        assertTrue(request, request.startsWith("/" + PATH));
+        assertTrue("Expected a watch but got " + request, request.contains("watch=true"));
+        assertTrue("Expected resourceVersion " + resourceVersion + " in " + request, request.contains("resourceVersion=" + resourceVersion));
+    }
+
+    protected static String pod(String name, String resourceVersion, String... labels) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"kind\":\"Pod\",\"metadata\":{\"name\":\"").append(name)
+                .append("\",\"namespace\":\"default\",\"resourceVersion\":\"").append(resourceVersion)
+                .append("\",\"labels\":{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append('"').append(labels[i]).append("\":\"").append(labels[i + 1]).append('"');
+        }
+        return builder.append("}}}").toString();
+    }
+
+    protected static String podList(String resourceVersion, String... pods) {
+        StringBuilder builder = new StringBuilder("{\"kind\":\"PodList\",\"items\":[");
+        for (int i = 0; i < pods.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(pods[i]);
+        }
+        return builder.append("],\"metadata\":{\"resourceVersion\":\"").append(resourceVersion).append("\"}}").toString();
+    }
+
+    protected static String event(String type, String object) {
+        return "{\"type\":\"" + type + "\",\"object\":" + object + "}\n";
+    }
+
+    protected static StubResponse respond(int status, String body) {
+        return new StubResponse(status, body, false);
+    }
+
+    protected static StubResponse hold(int status, String body) {
+        return new StubResponse(status, body, true);
+    }
+
+    static class StubResponse {
+        final int status;
+        final String body;
+        // keeps the connection open after the body until the test ends
+        final boolean hold;
+
+        StubResponse(int status, String body, boolean hold) {
+            this.status = status;
+            this.body = body;
+            this.hold = hold;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.watch;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.model.Pod;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LabelIndexTest {
+
+    @Test
+    public void testSelectMatchesFilterLabels() throws Exception {
+        List<Pod> pods = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            pods.add(createPod("pod" + i, "app", "app" + (i % 10), "version", "" + (i % 3)));
+        }
+        LabelIndex<Pod> index = LabelIndex.create(pods);
+        assertEquals(500, index.size());
+
+        assertSelects(pods, index, selector("app", "app4"));
+        assertSelects(pods, index, selector("app", "app4", "version", "2"));
+        assertSelects(pods, index, selector("version", "1"));
+        assertEquals(0, index.select(selector("app", "app4", "version", "7")).size());
+        assertEquals(500, index.select(new HashMap<String, String>()).size());
+    }
+
+    @Test
+    public void testUpdateAndRemove() throws Exception {
+        Pod pod1 = createPod("pod1", "app", "cheese");
+        Pod pod2 = createPod("pod2", "app", "cheese");
+        LabelIndex<Pod> index = new LabelIndex<>();
+        index.onAdd(pod1);
+        index.onAdd(pod2);
+        assertEquals(2, index.count(selector("app", "cheese")));
+
+        Pod updated = createPod("pod1", "app", "beer");
+        index.onUpdate(pod1, updated);
+        assertEquals(1, index.count(selector("app", "cheese")));
+        assertEquals(updated, index.select(selector("app", "beer")).get(0));
+
+        index.onDelete(pod2);
+        assertEquals(0, index.count(selector("app", "cheese")));
+        assertEquals(1, index.size());
+
+        // ids of removed pods are reused
+        index.onAdd(createPod("pod3", "app", "cheese"));
+        assertEquals(1, index.count(selector("app", "cheese")));
+        assertEquals(2, index.size());
+    }
+
+    protected void assertSelects(List<Pod> pods, LabelIndex<Pod> index, Map<String, String> selector) {
+        HashSet<Pod> expected = new HashSet<>();
+        for (Pod pod : pods) {
+            if (KubernetesHelper.filterLabels(selector, pod.getMetadata().getLabels())) {
+                expected.add(pod);
+            }
+        }
+        List<Pod> actual = index.select(selector);
+        assertEquals("pods for " + selector, expected.size(), actual.size());
+        assertTrue("pods for " + selector, expected.containsAll(actual));
+    }
+
+    protected static Pod createPod(String name, String... labels) {
+        Pod pod = new Pod();
+        pod.setMetadata(new ObjectMeta());
+        pod.getMetadata().setName(name);
+        pod.getMetadata().setNamespace("default");
+        pod.getMetadata().setLabels(selector(labels));
+        return pod;
+    }
+
+    protected static Map<String, String> selector(String... keyValues) {
+        Map<String, String> answer = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            answer.put(keyValues[i], keyValues[i + 1]);
+        }
+        return answer;
+    }
+}
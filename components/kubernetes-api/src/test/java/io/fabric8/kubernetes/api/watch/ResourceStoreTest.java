@@ -0,0 +1,120 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.watch;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.model.Pod;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static io.fabric8.kubernetes.api.watch.LabelIndexTest.selector;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceStoreTest {
+
+    private final ResourceStore<Pod> store = new ResourceStore<>();
+
+    @Test
+    public void testNamespaceIndex() throws Exception {
+        store.put(createPod("a", "pod1", "app", "cheese"));
+        store.put(createPod("a", "pod2", "app", "beer"));
+        store.put(createPod("b", "pod1", "app", "cheese"));
+
+        assertEquals(3, store.size());
+        assertNames(store.list("a"), "a/pod1", "a/pod2");
+        assertNames(store.list("b"), "b/pod1");
+        assertNames(store.list(""), "a/pod1", "a/pod2", "b/pod1");
+        assertTrue(store.list("c").isEmpty());
+        assertEquals("b", KubernetesHelper.getNamespace(store.get("b", "pod1")));
+    }
+
+    @Test
+    public void testLabelIndexWithNamespace() throws Exception {
+        store.put(createPod("a", "pod1", "app", "cheese", "version", "1"));
+        store.put(createPod("a", "pod2", "app", "cheese", "version", "2"));
+        store.put(createPod("b", "pod3", "app", "cheese", "version", "1"));
+
+        assertNames(store.list(null, selector("app", "cheese")), "a/pod1", "a/pod2", "b/pod3");
+        assertNames(store.list("a", selector("app", "cheese")), "a/pod1", "a/pod2");
+        assertNames(store.list("a", selector("app", "cheese", "version", "1")), "a/pod1");
+        assertNames(store.list("b", selector("version", "2")));
+        // an empty selector lists the namespace
+        assertNames(store.list("b", selector()), "b/pod3");
+    }
+
+    @Test
+    public void testUpdateReindexes() throws Exception {
+        Pod pod = createPod("a", "pod1", "app", "cheese");
+        store.put(pod);
+        Pod updated = createPod("a", "pod1", "app", "beer");
+
+        assertSame(pod, store.put(updated));
+        assertEquals(1, store.size());
+        assertNames(store.list("a", selector("app", "cheese")));
+        assertNames(store.list("a", selector("app", "beer")), "a/pod1");
+        assertSame(updated, store.get("a", "pod1"));
+    }
+
+    @Test
+    public void testDeleteRemovesFromEveryIndex() throws Exception {
+        store.put(createPod("a", "pod1", "app", "cheese"));
+        store.put(createPod("a", "pod2", "app", "cheese"));
+        store.put(createPod("b", "pod3", "app", "cheese"));
+
+        // the deleted resource of a watch event is a different instance than the stored one
+        Pod deleted = createPod("a", "pod1", "app", "cheese");
+        assertEquals("a/pod1", ResourceStore.getKey(store.remove(deleted)));
+
+        assertNull(store.get("a", "pod1"));
+        assertEquals(new HashSet<>(Arrays.asList("a/pod2", "b/pod3")), store.keys());
+        assertNames(store.list(), "a/pod2", "b/pod3");
+        assertNames(store.list("a"), "a/pod2");
+        assertNames(store.list("a", selector("app", "cheese")), "a/pod2");
+        assertNames(store.list(null, selector("app", "cheese")), "a/pod2", "b/pod3");
+
+        store.remove(createPod("b", "pod3", "app", "cheese"));
+        assertTrue(store.list("b").isEmpty());
+        assertNames(store.list(null, selector("app", "cheese")), "a/pod2");
+
+        assertNull("removing a missing resource", store.remove(createPod("b", "pod3", "app", "cheese")));
+    }
+
+    protected static void assertNames(List<Pod> pods, String... expected) {
+        Set<String> actual = new HashSet<>();
+        for (Pod pod : pods) {
+            actual.add(ResourceStore.getKey(pod));
+        }
+        assertEquals(new HashSet<>(Arrays.asList(expected)), actual);
+        assertEquals("duplicates in " + actual, expected.length, pods.size());
+    }
+
+    protected static Pod createPod(String namespace, String name, String... labels) {
+        Pod pod = new Pod();
+        pod.setMetadata(new ObjectMeta());
+        pod.getMetadata().setName(name);
+        pod.getMetadata().setNamespace(namespace);
+        pod.getMetadata().setLabels(selector(labels));
+        return pod;
+    }
+}
@@ -21,6 +21,7 @@ import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.ReplicationController;
 import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.watch.LabelIndex;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -36,6 +37,7 @@ public class AppViewSnapshot {
     private final Map<String, Service> servicesMap;
     private final Map<String, ReplicationController> controllerMap;
     private final Map<String, Pod> podMap;
+    private LabelIndex<Pod> podIndex;
 
     public AppViewSnapshot(Map<String, Service> servicesMap, Map<String, ReplicationController> controllerMap, Map<String, Pod> podMap) {
         this.servicesMap = servicesMap;
@@ -82,6 +84,9 @@ public class AppViewSnapshot {
     }
 
     public List<Pod> podsForReplicationController(ReplicationController controller) {
-        return KubernetesHelper.getPodsForReplicationController(controller, podMap.values());
+        if (podIndex == null) {
+            podIndex = LabelIndex.create(podMap.values());
+        }
+        return KubernetesHelper.getPodsForReplicationController(controller, podIndex);
     }
 }
\ No newline at end of file
@@ -16,9 +16,11 @@
 package io.fabric8.mq.camel;
 
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.Service;
 import org.apache.activemq.camel.component.ActiveMQComponent;
 import org.apache.camel.CamelContext;
 import org.apache.camel.component.jms.JmsConfiguration;
+import org.springframework.jms.connection.SingleConnectionFactory;
 
 /**
  * A Camel component for A-MQ which uses the Fabric MQ {@link ActiveMQConnectionFactory} service
@@ -33,6 +35,20 @@ public class AMQComponent extends ActiveMQComponent {
         super(camelContext);
     }
 
+    /**
+     * Registers a single connection factory created by the {@link AMQConfiguration} so it is destroyed when this component stops
+     */
+    void registerSingleConnectionFactory(SingleConnectionFactory singleConnectionFactory) {
+        addSingleConnectionFactory(singleConnectionFactory);
+    }
+
+    /**
+     * Registers a pooled connection factory created by the {@link AMQConfiguration} so it is stopped when this component stops
+     */
+    void registerPooledConnectionFactory(Service pooledConnectionFactory) {
+        addPooledConnectionFactoryService(pooledConnectionFactory);
+    }
+
     public String getServiceName() {
         return getConfiguration().getServiceName();
     }
@@ -15,12 +15,19 @@
  */
 package io.fabric8.mq.camel;
 
+import io.fabric8.mq.core.MQConnectionFactory;
 import io.fabric8.mq.core.MQs;
 import io.fabric8.utils.Strings;
 import io.fabric8.utils.Systems;
+import org.apache.activemq.Service;
+import org.apache.activemq.camel.component.ActiveMQComponent;
 import org.apache.activemq.camel.component.ActiveMQConfiguration;
+import org.apache.activemq.pool.PooledConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jms.connection.SingleConnectionFactory;
+
+import javax.jms.ConnectionFactory;
 
 /**
  * A configuration object for the {@link AMQComponent} which uses Kubernetes service wiring
@@ -31,12 +38,22 @@ public class AMQConfiguration extends ActiveMQConfiguration {
 
     private String serviceName;
     private String failoverUrlParameters;
+    private int poolMaxConnections = 8;
+    private int poolMaxSessionsPerConnection = 500;
+    private int poolIdleTimeout = 30 * 1000;
+    private AMQComponent component;
 
     public AMQConfiguration() {
     }
 
     public AMQConfiguration(AMQComponent component) {
-        super.setActiveMQComponent(component);
+        setActiveMQComponent(component);
+    }
+
+    @Override
+    public void setActiveMQComponent(ActiveMQComponent activeMQComponent) {
+        super.setActiveMQComponent(activeMQComponent);
+        this.component = activeMQComponent instanceof AMQComponent ? (AMQComponent) activeMQComponent : null;
     }
 
     @Override
@@ -49,6 +66,48 @@ public class AMQConfiguration extends ActiveMQConfiguration {
         throw new UnsupportedOperationException("brokerURL property cannot be modified for this component. Please modify the serviceName instead!");
     }
 
+    /**
+     * Creates a {@link MQConnectionFactory} which balances the connections across all the brokers of the service.
+     * As in {@link ActiveMQConfiguration} the single or pooled connection factory wrapping it is registered with
+     * the component, which stops it (closing the broker connections) when the component stops.
+     */
+    @Override
+    protected ConnectionFactory createConnectionFactory() {
+        MQConnectionFactory answer = new MQConnectionFactory();
+        if (answer.getBeanName() == null) {
+            answer.setBeanName("Camel");
+        }
+        if (getUserName() != null) {
+            answer.setUserName(getUserName());
+        }
+        if (getPassword() != null) {
+            answer.setPassword(getPassword());
+        }
+        answer.setServiceName(getServiceName());
+        answer.setFailoverUrlParameters(getFailoverUrlParameters());
+        answer.setPoolMaxConnections(poolMaxConnections);
+        answer.setPoolMaxSessionsPerConnection(poolMaxSessionsPerConnection);
+        answer.setPoolIdleTimeout(poolIdleTimeout);
+        if (isUseSingleConnection()) {
+            SingleConnectionFactory single = new SingleConnectionFactory(answer);
+            if (component != null) {
+                component.registerSingleConnectionFactory(single);
+            }
+            return single;
+        } else if (isUsePooledConnection()) {
+            ConnectionFactory pooled = createPooledConnectionFactory(answer);
+            if (pooled instanceof PooledConnectionFactory) {
+                answer.configurePool((PooledConnectionFactory) pooled);
+            }
+            if (component != null && pooled instanceof Service) {
+                component.registerPooledConnectionFactory((Service) pooled);
+            }
+            return pooled;
+        } else {
+            return answer;
+        }
+    }
+
     public String getServiceName() {
         return serviceName;
     }
@@ -72,8 +131,36 @@ public class AMQConfiguration extends ActiveMQConfiguration {
         this.failoverUrlParameters = failoverUrlParameters;
     }
 
+    public int getPoolMaxConnections() {
+        return poolMaxConnections;
+    }
 
-    // TODO if ever ActiveMQConfiguration provides a template method
-    // to create a vanilla ActiveMQConnectionFactory before its wrapped in pooling
-    // we could override that here!
+    /**
+     * Sets the maximum number of pooled connections
+     */
+    public void setPoolMaxConnections(int poolMaxConnections) {
+        this.poolMaxConnections = poolMaxConnections;
+    }
+
+    public int getPoolMaxSessionsPerConnection() {
+        return poolMaxSessionsPerConnection;
+    }
+
+    /**
+     * Sets the maximum number of active sessions per pooled connection
+     */
+    public void setPoolMaxSessionsPerConnection(int poolMaxSessionsPerConnection) {
+        this.poolMaxSessionsPerConnection = poolMaxSessionsPerConnection;
+    }
+
+    public int getPoolIdleTimeout() {
+        return poolIdleTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds after which an idle pooled connection is closed
+     */
+    public void setPoolIdleTimeout(int poolIdleTimeout) {
+        this.poolIdleTimeout = poolIdleTimeout;
+    }
 }
@@ -18,17 +18,54 @@
 package io.fabric8.mq.core;
 
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.pool.PooledConnectionFactory;
+import org.apache.activemq.transport.Transport;
+import org.apache.activemq.transport.TransportFactory;
+import org.apache.activemq.util.JMSExceptionSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A replacement for the {@link ActiveMQConnectionFactory} which is configured with the
  * Kubernetes service name {@link #setServiceName(String)} to connect to different broker groups
  * and it then discovers the broker to connect to via Kubernetes services.
+ * <p/>
+ * All the broker endpoints of the service are discovered (see {@link MQs#getBrokerEndpoints(String)})
+ * and refreshed periodically, and new connections are balanced across them in turn. Use
+ * {@link #createPooledConnectionFactory()} to pool the connections, sessions and producers.
+ * <p/>
+ * Note that the service name only resolves to the individual brokers for a headless service;
+ * for a regular service it resolves to the single virtual IP of the service so all the
+ * connections go through the service proxy and are balanced by Kubernetes instead.
  */
 public class MQConnectionFactory extends ActiveMQConnectionFactory {
+    private static final transient Logger LOG = LoggerFactory.getLogger(MQConnectionFactory.class);
+
+    public static final long DEFAULT_ENDPOINT_REFRESH_PERIOD = 30 * 1000;
+
+    private final boolean constructed;
     private String serviceName;
     private String failoverUrlParameters;
+    private long endpointRefreshPeriod = DEFAULT_ENDPOINT_REFRESH_PERIOD;
+    private int poolMaxConnections = 8;
+    private int poolMaxSessionsPerConnection = 500;
+    private int poolIdleTimeout = 30 * 1000;
+    private long poolExpirationCheckPeriod = 10 * 1000;
+    private volatile List<String> endpoints;
+    private volatile long endpointsRefreshTime;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicInteger nextEndpoint = new AtomicInteger();
 
     public MQConnectionFactory() {
+        // the super constructor sets the default broker URL before this point
+        constructed = true;
     }
 
     public MQConnectionFactory(String userName, String password) {
@@ -40,12 +77,112 @@ public class MQConnectionFactory extends ActiveMQConnectionFactory {
 
     @Override
     public String getBrokerURL() {
-        return MQs.getBrokerURL(getServiceName(), getFailoverUrlParameters());
+        return createBrokerURL(getEndpoints(), 0);
     }
 
     @Override
     public void setBrokerURL(String brokerURL) {
-        throw new UnsupportedOperationException("brokerURL property cannot be modified for this component. Please modify the serviceName instead!");
+        if (constructed) {
+            throw new UnsupportedOperationException("brokerURL property cannot be modified for this component. Please modify the serviceName instead!");
+        }
+        super.setBrokerURL(brokerURL);
+    }
+
+    /**
+     * Creates the transport of a new connection with a failover URL of all the broker endpoints, starting
+     * with the next endpoint in turn so that the connections are balanced across the brokers
+     */
+    @Override
+    protected Transport createTransport() throws JMSException {
+        String url = createBrokerURL(getEndpoints(), nextEndpoint.getAndIncrement() & Integer.MAX_VALUE);
+        try {
+            return TransportFactory.connect(new URI(url));
+        } catch (Exception e) {
+            throw JMSExceptionSupport.create("Could not create Transport. Reason: " + e, e);
+        }
+    }
+
+    /**
+     * Creates a connection factory which pools the connections, sessions and producers of this factory
+     * using the configured pool sizes and idle timeout
+     */
+    public PooledConnectionFactory createPooledConnectionFactory() {
+        PooledConnectionFactory answer = new PooledConnectionFactory(this);
+        configurePool(answer);
+        return answer;
+    }
+
+    /**
+     * Applies the configured pool sizes and idle timeout to the given pooled connection factory
+     */
+    public void configurePool(PooledConnectionFactory pooledConnectionFactory) {
+        pooledConnectionFactory.setMaxConnections(poolMaxConnections);
+        pooledConnectionFactory.setMaximumActiveSessionPerConnection(poolMaxSessionsPerConnection);
+        pooledConnectionFactory.setIdleTimeout(poolIdleTimeout);
+        pooledConnectionFactory.setTimeBetweenExpirationCheckMillis(poolExpirationCheckPeriod);
+        // each pooled session caches a single anonymous producer
+        pooledConnectionFactory.setUseAnonymousProducers(true);
+    }
+
+    /**
+     * Returns the <code>host:port</code> endpoints of the brokers, refreshing them if the refresh period has elapsed
+     */
+    public List<String> getEndpoints() {
+        List<String> answer = endpoints;
+        long now = System.currentTimeMillis();
+        if (answer == null) {
+            synchronized (this) {
+                answer = endpoints;
+                if (answer == null) {
+                    answer = refreshEndpoints(now);
+                }
+            }
+        } else if (now - endpointsRefreshTime > endpointRefreshPeriod && refreshing.compareAndSet(false, true)) {
+            // only one thread refreshes, the others carry on with the current endpoints
+            try {
+                answer = refreshEndpoints(now);
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        return answer;
+    }
+
+    private List<String> refreshEndpoints(long now) {
+        List<String> answer = resolveEndpoints();
+        if (answer.isEmpty() && endpoints != null) {
+            answer = endpoints;
+        } else if (!answer.equals(endpoints)) {
+            LOG.info("Broker endpoints of service " + serviceName + " are " + answer);
+        }
+        endpoints = answer;
+        endpointsRefreshTime = now;
+        return answer;
+    }
+
+    /**
+     * Resolves the current <code>host:port</code> endpoints of the brokers of the service
+     */
+    protected List<String> resolveEndpoints() {
+        return new ArrayList<>(MQs.getBrokerEndpoints(getServiceName()));
+    }
+
+    protected String createBrokerURL(List<String> endpoints, int offset) {
+        StringBuilder builder = new StringBuilder("failover:(");
+        int size = endpoints.size();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(",");
+            }
+            builder.append("tcp://").append(endpoints.get((offset + i) % size));
+        }
+        builder.append(")");
+        String parameters = failoverUrlParameters != null ? failoverUrlParameters : "";
+        if (size > 1 && !parameters.contains("randomize=")) {
+            // keep the order of the endpoints so the first one is the endpoint chosen for this connection
+            parameters = parameters.isEmpty() ? "?randomize=false" : parameters + "&randomize=false";
+        }
+        return builder.append(parameters).toString();
     }
 
     public String getServiceName() {
@@ -58,6 +195,7 @@ public class MQConnectionFactory extends ActiveMQConnectionFactory {
      */
     public void setServiceName(String serviceName) {
         this.serviceName = serviceName;
+        this.endpoints = null;
     }
 
     public String getFailoverUrlParameters() {
@@ -70,4 +208,59 @@ public class MQConnectionFactory extends ActiveMQConnectionFactory {
     public void setFailoverUrlParameters(String failoverUrlParameters) {
         this.failoverUrlParameters = failoverUrlParameters;
     }
+
+    public long getEndpointRefreshPeriod() {
+        return endpointRefreshPeriod;
+    }
+
+    /**
+     * Sets how often in milliseconds the broker endpoints of the service are resolved again
+     */
+    public void setEndpointRefreshPeriod(long endpointRefreshPeriod) {
+        this.endpointRefreshPeriod = endpointRefreshPeriod;
+    }
+
+    public int getPoolMaxConnections() {
+        return poolMaxConnections;
+    }
+
+    /**
+     * Sets the maximum number of connections of the pooled connection factory
+     */
+    public void setPoolMaxConnections(int poolMaxConnections) {
+        this.poolMaxConnections = poolMaxConnections;
+    }
+
+    public int getPoolMaxSessionsPerConnection() {
+        return poolMaxSessionsPerConnection;
+    }
+
+    /**
+     * Sets the maximum number of active sessions per connection of the pooled connection factory
+     */
+    public void setPoolMaxSessionsPerConnection(int poolMaxSessionsPerConnection) {
+        this.poolMaxSessionsPerConnection = poolMaxSessionsPerConnection;
+    }
+
+    public int getPoolIdleTimeout() {
+        return poolIdleTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds after which an idle pooled connection is closed
+     */
+    public void setPoolIdleTimeout(int poolIdleTimeout) {
+        this.poolIdleTimeout = poolIdleTimeout;
+    }
+
+    public long getPoolExpirationCheckPeriod() {
+        return poolExpirationCheckPeriod;
+    }
+
+    /**
+     * Sets how often in milliseconds the pooled connection factory evicts idle connections
+     */
+    public void setPoolExpirationCheckPeriod(long poolExpirationCheckPeriod) {
+        this.poolExpirationCheckPeriod = poolExpirationCheckPeriod;
+    }
 }
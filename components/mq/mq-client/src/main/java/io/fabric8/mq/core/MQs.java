@@ -22,6 +22,11 @@ import io.fabric8.utils.Systems;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A helper class for working with Fabric8 MQ and Apache ActiveMQ inside Kubernetes
  */
@@ -58,6 +63,39 @@ public class MQs {
         return answer;
     }
 
+    /**
+     * Returns the <code>host:port</code> endpoints of the brokers of the given Kubernetes service name.
+     * <p/>
+     * The brokers are found by resolving all the addresses of the service name in DNS, which for a headless
+     * service are the addresses of the broker pods; if the name cannot be resolved the
+     * <code>$serviceName_SERVICE_HOST</code> environment variable is used.
+     */
+    public static List<String> getBrokerEndpoints(String serviceName) {
+        if (Strings.isNullOrBlank(serviceName)) {
+            serviceName = Systems.getEnvVarOrSystemProperty(MQs.SERVICE_NAME_ENV_VAR, MQs.SERVICE_NAME_ENV_VAR, MQs.DEFAULT_SERVICE_NAME);
+        }
+        String serviceEnvVarPrefix = getServiceEnvVarPrefix(serviceName);
+        String hostEnvVar = serviceEnvVarPrefix + "_HOST";
+        String portEnvVar = serviceEnvVarPrefix + "_PORT";
+        String port = Systems.getEnvVarOrSystemProperty(portEnvVar, portEnvVar, DEFAULT_PORT);
+
+        List<String> answer = new ArrayList<>();
+        try {
+            for (InetAddress address : InetAddress.getAllByName(serviceName.toLowerCase())) {
+                String endpoint = address.getHostAddress() + ":" + port;
+                if (!answer.contains(endpoint)) {
+                    answer.add(endpoint);
+                }
+            }
+        } catch (UnknownHostException e) {
+            LOG.debug("Could not resolve the broker endpoints of service " + serviceName + " in DNS: " + e);
+        }
+        if (answer.isEmpty()) {
+            answer.add(Systems.getEnvVarOrSystemProperty(hostEnvVar, hostEnvVar, DEFAULT_HOST) + ":" + port);
+        }
+        return answer;
+    }
+
     protected static String getServiceEnvVarPrefix(String serviceName) {
         return serviceName.toUpperCase() + "_SERVICE";
     }
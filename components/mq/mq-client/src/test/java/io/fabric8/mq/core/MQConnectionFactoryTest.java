@@ -0,0 +1,114 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fabric8.mq.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MQConnectionFactoryTest {
+
+    @Test
+    public void testBrokerURLRotatesEndpoints() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        List<String> endpoints = Arrays.asList("a:61616", "b:61616", "c:61616");
+
+        assertEquals("failover:(tcp://a:61616,tcp://b:61616,tcp://c:61616)?randomize=false", factory.createBrokerURL(endpoints, 0));
+        assertEquals("failover:(tcp://b:61616,tcp://c:61616,tcp://a:61616)?randomize=false", factory.createBrokerURL(endpoints, 1));
+        assertEquals("failover:(tcp://c:61616,tcp://a:61616,tcp://b:61616)?randomize=false", factory.createBrokerURL(endpoints, 5));
+    }
+
+    @Test
+    public void testBrokerURLParameters() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        assertEquals("failover:(tcp://a:61616)", factory.createBrokerURL(Collections.singletonList("a:61616"), 3));
+
+        factory.setFailoverUrlParameters("?timeout=1000");
+        assertEquals("failover:(tcp://a:61616)?timeout=1000", factory.createBrokerURL(Collections.singletonList("a:61616"), 0));
+        assertEquals("failover:(tcp://b:1,tcp://a:1)?timeout=1000&randomize=false", factory.createBrokerURL(Arrays.asList("a:1", "b:1"), 1));
+
+        // an explicit randomize parameter is kept
+        factory.setFailoverUrlParameters("?randomize=true");
+        assertEquals("failover:(tcp://a:1,tcp://b:1)?randomize=true", factory.createBrokerURL(Arrays.asList("a:1", "b:1"), 0));
+    }
+
+    @Test
+    public void testEndpointsAreRefreshedAfterThePeriod() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        factory.setEndpointRefreshPeriod(Long.MAX_VALUE);
+        factory.resolved.add(Arrays.asList("a:1"));
+        factory.resolved.add(Arrays.asList("a:1", "b:1"));
+
+        List<String> endpoints = factory.getEndpoints();
+        assertEquals(Arrays.asList("a:1"), endpoints);
+        // the endpoints are cached until the refresh period elapses
+        assertSame(endpoints, factory.getEndpoints());
+        assertEquals(1, factory.resolveCount);
+
+        factory.setEndpointRefreshPeriod(-1);
+        assertEquals(Arrays.asList("a:1", "b:1"), factory.getEndpoints());
+        assertEquals(2, factory.resolveCount);
+        assertEquals("failover:(tcp://a:1,tcp://b:1)?randomize=false", factory.getBrokerURL());
+    }
+
+    @Test
+    public void testEndpointsAreKeptWhenNoneResolve() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        factory.setEndpointRefreshPeriod(-1);
+        factory.resolved.add(Arrays.asList("a:1", "b:1"));
+        factory.resolved.add(Collections.<String>emptyList());
+
+        assertEquals(Arrays.asList("a:1", "b:1"), factory.getEndpoints());
+        // the brokers could not be resolved so lets carry on with the last known ones
+        assertEquals(Arrays.asList("a:1", "b:1"), factory.getEndpoints());
+        assertEquals(2, factory.resolveCount);
+    }
+
+    @Test
+    public void testChangingTheServiceResolvesAgain() throws Exception {
+        StubConnectionFactory factory = new StubConnectionFactory();
+        factory.setEndpointRefreshPeriod(Long.MAX_VALUE);
+        factory.resolved.add(Arrays.asList("a:1"));
+        factory.resolved.add(Arrays.asList("b:1"));
+
+        assertEquals(Arrays.asList("a:1"), factory.getEndpoints());
+        factory.setServiceName("other");
+        assertEquals(Arrays.asList("b:1"), factory.getEndpoints());
+    }
+
+    /**
+     * Resolves the endpoints from a list instead of DNS, repeating the last one
+     */
+    static class StubConnectionFactory extends MQConnectionFactory {
+        final List<List<String>> resolved = new ArrayList<>();
+        int resolveCount;
+
+        @Override
+        protected List<String> resolveEndpoints() {
+            List<String> answer = resolved.get(Math.min(resolveCount, resolved.size() - 1));
+            resolveCount++;
+            return new ArrayList<>(answer);
+        }
+    }
+}
@@ -48,6 +48,7 @@ import java.util.regex.Pattern;
 
 import aQute.bnd.osgi.Macro;
 import aQute.bnd.osgi.Processor;
+import io.fabric8.agent.download.DownloadFuture;
 import io.fabric8.agent.download.DownloadManager;
 import io.fabric8.agent.mvn.DictionaryPropertyResolver;
 import io.fabric8.agent.mvn.MavenConfigurationImpl;
@@ -438,6 +439,13 @@ public class DeploymentAgent implements ManagedService {
         Set<String> etcsToRemove = new HashSet<String>(managedEtcs.keySet());
         Properties configProps = new Properties(new File(KARAF_BASE + File.separator + "etc" + File.separator + "config.properties"));
         Properties systemProps = new Properties(new File(KARAF_BASE + File.separator + "etc" + File.separator + "system.properties"));
+        // Start all the lib, endorsed, extension and etc downloads at once
+        Map<String, DownloadFuture> downloads = new HashMap<String, DownloadFuture>();
+        for (String key : properties.keySet()) {
+            if (key.startsWith("lib.") || key.startsWith("endorsed.") || key.startsWith("extension.") || key.startsWith("etc.")) {
+                downloads.put(key, manager.download(properties.get(key)));
+            }
+        }
         for (String key : properties.keySet()) {
             if (key.equals("framework")) {
                 String url = properties.get(key);
@@ -461,8 +469,7 @@ public class DeploymentAgent implements ManagedService {
                     restart = true;
                 }
             } else if (key.startsWith("lib.")) {
-                String value = properties.get(key);
-                File libFile = manager.download(value).await().getFile();
+                File libFile = downloads.get(key).await().getFile();
                 String libName = libFile.getName();
                 Long checksum = ChecksumUtils.checksum(new FileInputStream(libFile));
                 managedLibs.put(libName, "true");
@@ -472,8 +479,7 @@ public class DeploymentAgent implements ManagedService {
                     restart = true;
                 }
             } else if (key.startsWith("endorsed.")) {
-                String value = properties.get(key);
-                File libFile = manager.download(value).await().getFile();
+                File libFile = downloads.get(key).await().getFile();
                 String libName = libFile.getName();
                 Long checksum = ChecksumUtils.checksum(new FileInputStream(libFile));
                 managedEndorsedLibs.put(libName, "true");
@@ -483,8 +489,7 @@ public class DeploymentAgent implements ManagedService {
                     restart = true;
                 }
             } else if (key.startsWith("extension.")) {
-                String value = properties.get(key);
-                File libFile = manager.download(value).await().getFile();
+                File libFile = downloads.get(key).await().getFile();
                 String libName = libFile.getName();
                 Long checksum = ChecksumUtils.checksum(new FileInputStream(libFile));
                 managedExtensionLibs.put(libName, "true");
@@ -494,8 +499,7 @@ public class DeploymentAgent implements ManagedService {
                     restart = true;
                 }
             } else if (key.startsWith("etc.")) {
-                String value = properties.get(key);
-                File etcFile = manager.download(value).await().getFile();
+                File etcFile = downloads.get(key).await().getFile();
                 String etcName = etcFile.getName();
                 Long checksum = ChecksumUtils.checksum(new FileInputStream(etcFile));
                 managedEtcs.put(etcName, "true");
@@ -21,13 +21,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeoutException;
 import java.util.jar.Attributes;
 import java.util.jar.ContainerManifest;
@@ -108,12 +108,13 @@ public class DeploymentBuilder {
 
     AgentUtils.FileDownloader downloader;
     ResourceImpl requirements;
-    Map<String, Resource> resources;
-    Map<String, StreamProvider> providers;
+    ConcurrentMap<String, Resource> resources;
+    ConcurrentMap<String, StreamProvider> providers;
     long urlHandlersTimeout;
     Map<Resource, List<Wire>> wiring;
 
-    Set<Feature> featuresToRegister = new HashSet<Feature>();
+    // resources are built by the download threads as soon as each artifact is available
+    Set<Feature> featuresToRegister = Collections.newSetFromMap(new ConcurrentHashMap<Feature, Boolean>());
 
     Map<String, Map<VersionRange, Map<String, String>>> metadata;
 
@@ -518,7 +519,10 @@ public class DeploymentBuilder {
         Resource resource = resources.get(location);
         if (resource == null) {
             resource = createResource(location, attributes);
-            resources.put(location, resource);
+            Resource existing = resources.putIfAbsent(location, resource);
+            if (existing != null) {
+                return existing;
+            }
             providers.put(location, provider);
         }
         return resource;
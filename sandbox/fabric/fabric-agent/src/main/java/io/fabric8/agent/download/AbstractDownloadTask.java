@@ -32,6 +32,7 @@ public abstract class AbstractDownloadTask extends DefaultFuture<DownloadFuture>
     protected final ExecutorService executor;
     private long scheduleDelay = 250;
     private int scheduleNbRun = 0;
+    private final long submitted = System.currentTimeMillis();
 
     public AbstractDownloadTask(String url, ExecutorService executor) {
         super(null);
@@ -70,12 +71,17 @@ public abstract class AbstractDownloadTask extends DefaultFuture<DownloadFuture>
 
     public final void run() {
         boolean done = false;
+        long started = System.currentTimeMillis();
         try {
             while (!done) {
                 try {
                     File file = download();
                     setFile(file);
                     done = true;
+                    if (LOGGER.isDebugEnabled()) {
+                        long now = System.currentTimeMillis();
+                        LOGGER.debug("Downloaded {} in {} ms (queued for {} ms)", url, now - started, started - submitted);
+                    }
                     return;
                 } catch (IOException e) {
                     if (++scheduleNbRun < 5) {
@@ -18,17 +18,24 @@ package io.fabric8.agent.download;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 
 import io.fabric8.agent.mvn.MavenConfiguration;
 import io.fabric8.agent.mvn.MavenRepositoryURL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import static io.fabric8.agent.download.DownloadManagerHelper.getDownloadKey;
 import static io.fabric8.agent.download.DownloadManagerHelper.removeInlinedMavenRepositoryUrl;
 import static io.fabric8.agent.download.DownloadManagerHelper.stripInlinedMavenRepositoryUrl;
 import static io.fabric8.agent.download.DownloadManagerHelper.stripUrl;
 
 public class DownloadManager {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadManager.class);
+
     /**
      * Thread pool for downloads
      */
@@ -43,6 +50,12 @@ public class DownloadManager {
     private boolean downloadFilesFromProfile = true;
     private File tmpPath;
 
+    /**
+     * Downloads in progress indexed by {@link DownloadManagerHelper#getDownloadKey(String)}, so that
+     * an artifact requested several times (e.g. by different features or profiles) is only fetched once
+     */
+    private final ConcurrentMap<String, AbstractDownloadTask> pendingDownloads = new ConcurrentHashMap<String, AbstractDownloadTask>();
+
     public DownloadManager(MavenConfiguration configuration) throws MalformedURLException {
         this(configuration, null);
     }
@@ -74,7 +87,7 @@ public class DownloadManager {
     }
 
     public DownloadFuture download(final String url) throws MalformedURLException {
-        String mvnUrl = stripUrl(url);
+        final String mvnUrl = stripUrl(url);
 
         if (mvnUrl.startsWith("mvn:")) {
             MavenRepositoryURL inlined = null;
@@ -85,23 +98,21 @@ public class DownloadManager {
 //                mvnUrl = removeInlinedMavenRepositoryUrl(mvnUrl);
 //            }
 
-            MavenDownloadTask task = new MavenDownloadTask(mvnUrl, cache, system, inlined, configuration, executor);
-            executor.submit(task);
+            DownloadFuture task = submit(new MavenDownloadTask(mvnUrl, cache, system, inlined, configuration, executor));
             if (!mvnUrl.equals(url)) {
                 final DummyDownloadTask download = new DummyDownloadTask(url, executor);
                 task.addListener(new FutureListener<DownloadFuture>() {
                     @Override
                     public void operationComplete(DownloadFuture future) {
                         try {
-                            final String mvn = future.getUrl();
+                            // the download may be shared with an equivalent url so lets replace our own
                             String file = future.getFile().toURI().toURL().toString();
-                            String real = url.replace(mvn, file);
+                            String real = url.replace(mvnUrl, file);
                             // if we used an inlined maven repo, then we need to strip that off the real url
 //                            if (inlinedMavenRepoUrl != null) {
 //                                real = removeInlinedMavenRepositoryUrl(real);
 //                            }
-                            SimpleDownloadTask task = new SimpleDownloadTask(real, executor, tmpPath);
-                            executor.submit(task);
+                            DownloadFuture task = submit(new SimpleDownloadTask(real, executor, tmpPath));
                             task.addListener(new FutureListener<DownloadFuture>() {
                                 @Override
                                 public void operationComplete(DownloadFuture future) {
@@ -130,9 +141,28 @@ public class DownloadManager {
         }
 
         // fallback to download the url as-is
-        final SimpleDownloadTask download = new SimpleDownloadTask(url, executor, tmpPath);
-        executor.submit(download);
-        return download;
+        return submit(new SimpleDownloadTask(url, executor, tmpPath));
+    }
+
+    /**
+     * Submits the given task unless a download of the same artifact is already in progress,
+     * in which case the pending download is returned instead
+     */
+    protected DownloadFuture submit(final AbstractDownloadTask task) {
+        final String key = getDownloadKey(task.getUrl());
+        AbstractDownloadTask pending = pendingDownloads.putIfAbsent(key, task);
+        if (pending != null) {
+            LOGGER.debug("Download of {} already in progress as {}", task.getUrl(), pending.getUrl());
+            return pending;
+        }
+        task.addListener(new FutureListener<DownloadFuture>() {
+            @Override
+            public void operationComplete(DownloadFuture future) {
+                pendingDownloads.remove(key, task);
+            }
+        });
+        executor.submit(task);
+        return task;
     }
 
 
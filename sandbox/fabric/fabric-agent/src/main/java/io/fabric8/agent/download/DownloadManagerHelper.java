@@ -15,6 +15,9 @@
  */
 package io.fabric8.agent.download;
 
+import io.fabric8.agent.mvn.Parser;
+
+import java.net.MalformedURLException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -63,4 +66,31 @@ public final class DownloadManagerHelper {
         }
         return url;
     }
+
+    /**
+     * Returns the key pending downloads are shared by in the {@link DownloadManager}. Maven urls are keyed
+     * by their parsed coordinate with the defaults filled in, so that e.g. <code>mvn:g/a/1.0</code> and
+     * <code>mvn:g/a/1.0/jar</code> share a download; other urls are keyed as-is.
+     */
+    public static String getDownloadKey(String url) {
+        if (!url.startsWith("mvn:")) {
+            return url;
+        }
+        try {
+            Parser parser = Parser.parsePathWithSchemePrefix(url);
+            StringBuilder sb = new StringBuilder("mvn:");
+            if (parser.getRepositoryURL() != null) {
+                sb.append(parser.getRepositoryURL().getURL()).append("!");
+            }
+            sb.append(parser.getGroup()).append("/").append(parser.getArtifact())
+                    .append("/").append(parser.getVersion()).append("/").append(parser.getType());
+            if (parser.getClassifier() != null) {
+                sb.append("/").append(parser.getClassifier());
+            }
+            return sb.toString();
+        } catch (MalformedURLException e) {
+            // the download will fail anyway
+            return url;
+        }
+    }
 }
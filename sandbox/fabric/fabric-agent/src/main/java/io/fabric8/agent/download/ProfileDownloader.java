@@ -87,7 +87,10 @@ public class ProfileDownloader {
     }
 
     /**
-     * Downloads the bundles, features and FABs for all the profiles in this version
+     * Downloads the bundles, features and FABs for all the profiles in this version.
+     * <p/>
+     * The artifacts of all the profiles are requested up front through a single download manager,
+     * so that downloads overlap and artifacts shared by several profiles are only fetched once.
      */
     public void downloadVersion(Version version) throws Exception {
         List<Profile> profiles = version.getProfiles();
@@ -95,20 +98,20 @@ public class ProfileDownloader {
         if (listener != null) {
             listener.beforeDownloadProfiles(prfarray);
         }
+        DownloadManager downloadManager = createDownloadManager();
+        List<ProfileDownload> downloads = new ArrayList<ProfileDownload>();
         for (Profile profile : profiles) {
             try {
-                downloadProfile(profile);
+                downloads.add(startDownload(downloadManager, profile));
             } catch (Exception e) {
-                if (listener != null) {
-                    listener.onError(profile, e);
-                }
-                if (!stopOnFailure) {
-                    String id = profile.getId();
-                    errors.put(id, e);
-                    LOG.error("Failed to download profile " + id + " due " + e.getMessage(), e);
-                } else {
-                    throw e;
-                }
+                onError(profile, e);
+            }
+        }
+        for (ProfileDownload download : downloads) {
+            try {
+                copyFiles(download);
+            } catch (Exception e) {
+                onError(download.profile, e);
             }
         }
         if (listener != null) {
@@ -120,26 +123,46 @@ public class ProfileDownloader {
      * Downloads the bundles, features and FABs for this profile.
      */
     public void downloadProfile(Profile profile) throws Exception {
+        copyFiles(startDownload(createDownloadManager(), profile));
+    }
+
+    protected DownloadManager createDownloadManager() throws Exception {
+        DownloadManager downloadManager = DownloadManagers.createDownloadManager(fabricService, executorService);
+        downloadManager.setDownloadFilesFromProfile(isDownloadFilesFromProfile());
+        return downloadManager;
+    }
+
+    /**
+     * Resolves the features of the profile and starts downloading its artifacts without waiting for them
+     */
+    protected ProfileDownload startDownload(DownloadManager downloadManager, Profile profile) throws Exception {
         if (listener != null) {
             listener.beforeDownloadProfile(profile);
         }
 
-        ProfileService profileService = fabricService.adapt(ProfileService.class);
+        Profile overlay = profile;
         if (!profile.isOverlay()) {
-            profile = profileService.getOverlayProfile(profile);
+            ProfileService profileService = fabricService.adapt(ProfileService.class);
+            overlay = profileService.getOverlayProfile(profile);
         }
 
-        DownloadManager downloadManager = DownloadManagers.createDownloadManager(fabricService, executorService);
-        downloadManager.setDownloadFilesFromProfile(isDownloadFilesFromProfile());
-
         Set<String> bundles = new LinkedHashSet<String>();
         Set<Feature> features = new LinkedHashSet<Feature>();
-        addMavenBundles(fabricService, profile, bundles, profile.getBundles());
-        addMavenBundles(fabricService, profile, bundles, profile.getFabs());
-        AgentUtils.addFeatures(features, fabricService, downloadManager, profile);
+        addMavenBundles(fabricService, overlay, bundles, overlay.getBundles());
+        addMavenBundles(fabricService, overlay, bundles, overlay.getFabs());
+        AgentUtils.addFeatures(features, fabricService, downloadManager, overlay);
+
+        AgentUtils.FileDownloader downloader = new AgentUtils.FileDownloader(downloadManager);
+        downloader.download(AgentUtils.getBundleLocations(features, bundles, Collections.<String>emptySet()));
+        return new ProfileDownload(profile, overlay, downloader);
+    }
 
-        Map<String, File> files = AgentUtils.downloadBundles(downloadManager, features, bundles,
-                Collections.<String>emptySet());
+    /**
+     * Waits for the artifacts of the profile and copies them to the target directory
+     */
+    protected void copyFiles(ProfileDownload download) throws Exception {
+        Profile profile = download.overlay;
+        Map<String, File> files = download.downloader.await();
         Set<Map.Entry<String, File>> entries = files.entrySet();
         for (Map.Entry<String, File> entry : entries) {
             String name = entry.getKey();
@@ -169,6 +192,18 @@ public class ProfileDownloader {
         }
     }
 
+    private void onError(Profile profile, Exception e) throws Exception {
+        if (listener != null) {
+            listener.onError(profile, e);
+        }
+        if (!stopOnFailure) {
+            String id = profile.getId();
+            errors.put(id, e);
+            LOG.error("Failed to download profile " + id + " due " + e.getMessage(), e);
+        } else {
+            throw e;
+        }
+    }
 
     /**
      * Returns the mvn coordinates URL from the URI string, stripping any prefix like "wrap:" or "war: " or whatnot; or return null if there is no maven URL inside the URI
@@ -213,4 +248,19 @@ public class ProfileDownloader {
             }
         }
     }
+
+    /**
+     * The pending download of the artifacts of a profile
+     */
+    protected static final class ProfileDownload {
+        private final Profile profile;
+        private final Profile overlay;
+        private final AgentUtils.FileDownloader downloader;
+
+        private ProfileDownload(Profile profile, Profile overlay, AgentUtils.FileDownloader downloader) {
+            this.profile = profile;
+            this.overlay = overlay;
+            this.downloader = downloader;
+        }
+    }
 }
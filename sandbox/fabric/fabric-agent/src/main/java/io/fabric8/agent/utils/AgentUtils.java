@@ -253,6 +253,13 @@ public class AgentUtils {
     }
 
     public static Map<String, File> downloadBundles(DownloadManager manager, Iterable<Feature> features, Iterable<String> bundles, Set<String> overrides) throws Exception {
+        return downloadLocations(manager, getBundleLocations(features, bundles, overrides));
+    }
+
+    /**
+     * Returns the distinct locations of the given bundles, overrides and bundles of the given features
+     */
+    public static Set<String> getBundleLocations(Iterable<Feature> features, Iterable<String> bundles, Set<String> overrides) {
         Set<String> locations = new HashSet<String>();
         for (Feature feature : features) {
             for (BundleInfo bundle : feature.getBundles()) {
@@ -265,7 +272,7 @@ public class AgentUtils {
         for (String override : overrides) {
             locations.add(extractUrl(override));
         }
-        return downloadLocations(manager, locations);
+        return locations;
     }
 
     public static Map<String, File> downloadLocations(DownloadManager manager, Collection<String> locations) throws MalformedURLException, InterruptedException, MultiException {
@@ -321,7 +328,7 @@ public class AgentUtils {
             this.manager = manager;
         }
 
-        public void download(String uri, final DownloadCallback callback) throws MalformedURLException {
+        public void download(final String uri, final DownloadCallback callback) throws MalformedURLException {
             synchronized (lock) {
                 DownloadFuture future = futures.get(uri);
                 if (future == null) {
@@ -330,7 +337,7 @@ public class AgentUtils {
                     future.addListener(new FutureListener<DownloadFuture>() {
                         @Override
                         public void operationComplete(DownloadFuture future) {
-                            onDownloaded(future, callback);
+                            onDownloaded(uri, future, callback);
                         }
                     });
                     futures.put(uri, future);
@@ -338,7 +345,7 @@ public class AgentUtils {
             }
         }
 
-        public DownloadFuture download(String uri) throws MalformedURLException {
+        public DownloadFuture download(final String uri) throws MalformedURLException {
             synchronized (lock) {
                 DownloadFuture future = futures.get(uri);
                 if (future == null) {
@@ -347,7 +354,7 @@ public class AgentUtils {
                     future.addListener(new FutureListener<DownloadFuture>() {
                         @Override
                         public void operationComplete(DownloadFuture future) {
-                            onDownloaded(future, null);
+                            onDownloaded(uri, future, null);
                         }
                     });
                     futures.put(uri, future);
@@ -356,21 +363,28 @@ public class AgentUtils {
             }
         }
 
-        protected void onDownloaded(DownloadFuture future, DownloadCallback callback) {
-            synchronized (lock) {
-                try {
-                    String url = future.getUrl();
-                    File file = future.getFile();
-                    if (file != null) {
-                        T t = getArtifact(url, file);
-                        artifacts.put(url, t);
-                        if (callback != null) {
-                            callback.downloaded(file, pendings.get());
-                        }
+        /**
+         * Builds the artifact and invokes the callback on the thread which completed the download,
+         * outside of the lock, so that processing overlaps with the other pending downloads.
+         * The artifact is kept under the requested url, as the download may be shared with an
+         * equivalent url.
+         */
+        protected void onDownloaded(String url, DownloadFuture future, DownloadCallback callback) {
+            try {
+                File file = future.getFile();
+                if (file != null) {
+                    long start = System.currentTimeMillis();
+                    T t = getArtifact(url, file);
+                    artifacts.put(url, t);
+                    if (callback != null) {
+                        callback.downloaded(file, pendings.get());
                     }
-                } catch (Throwable t) {
-                    errors.add(t);
-                } finally {
+                    LOGGER.debug("Processed {} in {} ms", url, System.currentTimeMillis() - start);
+                }
+            } catch (Throwable t) {
+                errors.add(t);
+            } finally {
+                synchronized (lock) {
                     pendings.decrementAndGet();
                     lock.notifyAll();
                 }
@@ -47,6 +47,7 @@ import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 public class DownloadManagerTest {
 
@@ -189,6 +190,52 @@ public class DownloadManagerTest {
         LOG.info("Downloaded URL={}, FILE={}", df.getUrl(), df.getFile());
     }
 
+    @Test
+    public void testPendingDownloadIsShared() throws Exception {
+        final CountDownLatch requested = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Server server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+                requested.countDown();
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                response.setStatus(HttpServletResponse.SC_OK);
+                baseRequest.setHandled(true);
+                response.getOutputStream().write(new byte[] { 0x42 });
+                response.getOutputStream().close();
+            }
+        });
+        server.start();
+
+        Properties custom = new Properties();
+        custom.setProperty("org.ops4j.pax.url.mvn.proxySupport", "true");
+        String settings = createMavenSettingsWithProxy(server.getConnectors()[0].getLocalPort());
+        DownloadManager dm = createDownloadManager("http://relevant.not/maven2@id=central", settings, custom);
+
+        try {
+            DownloadFuture df1 = dm.download("mvn:x.y/z/1.0");
+            requested.await(30, TimeUnit.SECONDS);
+            DownloadFuture df2 = dm.download("mvn:x.y/z/1.0");
+            assertSame(df1, df2);
+            // the same artifact with the default type spelled out
+            DownloadFuture df3 = dm.download("mvn:x.y/z/1.0/jar");
+            assertSame(df1, df3);
+
+            release.countDown();
+            df1.await();
+            assertNotNull(df1.getFile());
+            assertEquals("z-1.0.jar", df1.getFile().getName());
+        } finally {
+            release.countDown();
+            server.stop();
+        }
+    }
+
     /**
      * Prepares DownloadManager to test
      *
@@ -17,6 +17,7 @@ package io.fabric8.agent.download;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 public class DownloadManagerHelperTest {
 
@@ -35,4 +36,23 @@ public class DownloadManagerHelperTest {
         assertEquals(artifact, DownloadManagerHelper.stripUrl("spring:"+artifact));
         assertEquals(artifact, DownloadManagerHelper.stripUrl("blueprint:"+artifact));
     }
+
+    @Test
+    public void testGetDownloadKey() {
+        String key = DownloadManagerHelper.getDownloadKey("mvn:my/artifact/1.0/jar");
+        assertEquals(key, DownloadManagerHelper.getDownloadKey("mvn:my/artifact/1.0"));
+        assertEquals(key, DownloadManagerHelper.getDownloadKey("mvn:my/artifact/1.0/"));
+        assertEquals(DownloadManagerHelper.getDownloadKey("mvn:my/artifact/LATEST/jar"), DownloadManagerHelper.getDownloadKey("mvn:my/artifact"));
+        assertEquals(DownloadManagerHelper.getDownloadKey("mvn:my/artifact/1.0/xml/features"), DownloadManagerHelper.getDownloadKey("mvn:my/artifact/1.0/xml/features"));
+
+        assertFalse(key.equals(DownloadManagerHelper.getDownloadKey("mvn:my/artifact/1.1")));
+        assertFalse(key.equals(DownloadManagerHelper.getDownloadKey("mvn:my/artifact/1.0/war")));
+        assertFalse(key.equals(DownloadManagerHelper.getDownloadKey("mvn:my/artifact/1.0/jar/sources")));
+        assertFalse(key.equals(DownloadManagerHelper.getDownloadKey("mvn:http://repo.example.com/maven2!my/artifact/1.0")));
+        assertEquals(DownloadManagerHelper.getDownloadKey("mvn:http://repo.example.com/maven2!my/artifact/1.0/jar"),
+                DownloadManagerHelper.getDownloadKey("mvn:http://repo.example.com/maven2!my/artifact/1.0"));
+
+        assertEquals("file:/tmp/artifact-1.0.jar", DownloadManagerHelper.getDownloadKey("file:/tmp/artifact-1.0.jar"));
+        assertEquals("mvn:", DownloadManagerHelper.getDownloadKey("mvn:"));
+    }
 }
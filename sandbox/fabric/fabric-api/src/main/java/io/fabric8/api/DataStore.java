@@ -34,6 +34,12 @@ public interface DataStore {
     //
 
     void fireChangeNotifications();
+
+    /**
+     * Notifies the tracked callbacks of a profile change whose details are known.
+     * Callbacks which implement {@link ProfileChangeListener} receive the event, the others are run.
+     */
+    void fireChangeNotifications(ProfileChangeEvent event);
     
     void trackConfiguration(Runnable callback);
     void untrackConfiguration(Runnable callback);
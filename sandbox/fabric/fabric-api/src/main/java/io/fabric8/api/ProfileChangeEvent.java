@@ -0,0 +1,92 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.api;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The versions, profiles and profile files changed by a pull of the profile repository,
+ * so that listeners only have to reload what actually changed.
+ */
+public final class ProfileChangeEvent {
+
+    private final Set<String> addedVersions;
+    private final Set<String> removedVersions;
+    private final Map<String, Map<String, Set<String>>> changedFiles;
+
+    /**
+     * @param changedFiles the changed files keyed by version and profile, a version without changed profiles
+     *                     only had its attributes or files outside of the profiles changed
+     */
+    public ProfileChangeEvent(Set<String> addedVersions, Set<String> removedVersions, Map<String, Map<String, Set<String>>> changedFiles) {
+        this.addedVersions = Collections.unmodifiableSet(new TreeSet<>(addedVersions));
+        this.removedVersions = Collections.unmodifiableSet(new TreeSet<>(removedVersions));
+        Map<String, Map<String, Set<String>>> versions = new TreeMap<>();
+        for (Map.Entry<String, Map<String, Set<String>>> versionEntry : changedFiles.entrySet()) {
+            Map<String, Set<String>> profiles = new TreeMap<>();
+            for (Map.Entry<String, Set<String>> profileEntry : versionEntry.getValue().entrySet()) {
+                profiles.put(profileEntry.getKey(), Collections.unmodifiableSet(new TreeSet<>(profileEntry.getValue())));
+            }
+            versions.put(versionEntry.getKey(), Collections.unmodifiableMap(profiles));
+        }
+        this.changedFiles = Collections.unmodifiableMap(versions);
+    }
+
+    public Set<String> getAddedVersions() {
+        return addedVersions;
+    }
+
+    public Set<String> getRemovedVersions() {
+        return removedVersions;
+    }
+
+    /**
+     * Returns the existing versions which have been updated
+     */
+    public Set<String> getChangedVersions() {
+        return changedFiles.keySet();
+    }
+
+    /**
+     * Returns the changed, added or removed profiles of the given version
+     */
+    public Set<String> getChangedProfiles(String versionId) {
+        Map<String, Set<String>> profiles = changedFiles.get(versionId);
+        return profiles != null ? profiles.keySet() : Collections.<String>emptySet();
+    }
+
+    /**
+     * Returns the changed, added or removed files of the given profile relative to the profile directory
+     */
+    public Set<String> getChangedFiles(String versionId, String profileId) {
+        Map<String, Set<String>> profiles = changedFiles.get(versionId);
+        Set<String> files = profiles != null ? profiles.get(profileId) : null;
+        return files != null ? files : Collections.<String>emptySet();
+    }
+
+    public boolean isEmpty() {
+        return addedVersions.isEmpty() && removedVersions.isEmpty() && changedFiles.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ProfileChangeEvent[added=" + addedVersions + ",removed=" + removedVersions + ",changed=" + changedFiles + "]";
+    }
+}
@@ -17,6 +17,8 @@ package io.fabric8.api;
 
 import io.fabric8.api.permit.PermitKey;
 
+import java.util.Map;
+
 
 /**
  * The internal profile service.
@@ -29,4 +31,9 @@ public interface ProfileService extends ProfileManager {
     PermitKey<ProfileService> PERMIT = new PermitKey<ProfileService>(ProfileService.class);
     
     void deleteProfile(FabricService fabricService, String versionId, String profileId, boolean force);
+
+    /**
+     * Returns the size, hit/miss counts and build times of the overlay profile cache
+     */
+    Map<String, Long> getOverlayCacheStatistics();
 }
@@ -194,6 +194,11 @@ public interface FabricManagerMBean {
      */
     Map<String, String> getOverlayProfileProperties(String versionId, String profileId, String pid);
 
+    /**
+     * Returns the size, hit/miss counts and build times of the overlay profile cache
+     */
+    Map<String, Long> getOverlayCacheStatistics();
+
     /**
      * Sets the profile properties for the given PID
      */
@@ -19,7 +19,10 @@ import io.fabric8.api.Constants;
 import io.fabric8.api.Container;
 import io.fabric8.api.FabricService;
 import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileChangeEvent;
+import io.fabric8.api.ProfileChangeListener;
 import io.fabric8.api.Profiles;
+import io.fabric8.api.Version;
 import io.fabric8.api.jcip.ThreadSafe;
 import io.fabric8.api.scr.AbstractComponent;
 import io.fabric8.api.scr.ValidatingReference;
@@ -28,9 +31,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -49,7 +55,7 @@ import org.slf4j.LoggerFactory;
 
 @ThreadSafe
 @Component(name = "io.fabric8.configadmin.bridge", label = "Fabric8 Config Admin Bridge", metatype = false)
-public final class FabricConfigAdminBridge extends AbstractComponent implements Runnable {
+public final class FabricConfigAdminBridge extends AbstractComponent implements Runnable, ProfileChangeListener {
 
     public static final String FABRIC_ZOOKEEPER_PID = "fabric.zookeeper.pid";
     /**
@@ -97,6 +103,53 @@ public final class FabricConfigAdminBridge extends AbstractComponent implements
         submitUpdateJob();
     }
 
+    @Override
+    public void onProfilesChanged(ProfileChangeEvent event) {
+        if (isAffectedBy(event)) {
+            submitUpdateJob();
+        } else {
+            LOGGER.debug("Ignoring profile changes which do not affect the current container: {}", event);
+        }
+    }
+
+    /**
+     * Returns true if the changes touch the version of the current container, one of its profiles or their parents
+     */
+    private boolean isAffectedBy(ProfileChangeEvent event) {
+        Container currentContainer = fabricService.get().getCurrentContainer();
+        if (currentContainer == null) {
+            return true;
+        }
+        String versionId = currentContainer.getVersionId();
+        if (event.getAddedVersions().contains(versionId) || event.getRemovedVersions().contains(versionId)) {
+            return true;
+        }
+        if (!event.getChangedVersions().contains(versionId)) {
+            return false;
+        }
+        Set<String> changedProfiles = event.getChangedProfiles(versionId);
+        if (changedProfiles.isEmpty()) {
+            // only the version attributes changed
+            return true;
+        }
+        Version version = currentContainer.getVersion();
+        Set<String> visited = new HashSet<String>();
+        LinkedList<String> profileIds = new LinkedList<String>(currentContainer.getProfileIds());
+        while (!profileIds.isEmpty()) {
+            String profileId = profileIds.removeFirst();
+            if (visited.add(profileId)) {
+                if (changedProfiles.contains(profileId)) {
+                    return true;
+                }
+                Profile profile = version != null ? version.getProfile(profileId) : null;
+                if (profile != null) {
+                    profileIds.addAll(profile.getParentIds());
+                }
+            }
+        }
+        return false;
+    }
+
     private void submitUpdateJob() {
         executor.submit(new Runnable() {
             @Override
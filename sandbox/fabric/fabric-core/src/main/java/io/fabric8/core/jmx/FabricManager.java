@@ -480,6 +480,11 @@ public final class FabricManager implements FabricManagerMBean {
         return answer;
     }
 
+    @Override
+    public Map<String, Long> getOverlayCacheStatistics() {
+        return profileService.getOverlayCacheStatistics();
+    }
+
     @Override
     public boolean setProfileProperties(String versionId, String profileId, String pid, Map<String, String> properties) {
         boolean answer = false;
@@ -16,12 +16,15 @@
 package io.fabric8.internal;
 
 import io.fabric8.api.Container;
+import io.fabric8.api.DataStore;
 import io.fabric8.api.FabricException;
 import io.fabric8.api.FabricRequirements;
 import io.fabric8.api.FabricService;
 import io.fabric8.api.OptionsProvider;
 import io.fabric8.api.Profile;
 import io.fabric8.api.ProfileBuilder;
+import io.fabric8.api.ProfileChangeEvent;
+import io.fabric8.api.ProfileChangeListener;
 import io.fabric8.api.ProfileRegistry;
 import io.fabric8.api.ProfileService;
 import io.fabric8.api.Profiles;
@@ -34,11 +37,20 @@ import io.fabric8.api.scr.ValidatingReference;
 import io.fabric8.utils.DataStoreUtils;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -57,18 +69,31 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ProfileServiceImpl.class);
 
+    private static final int MAX_OVERLAY_CACHE_SIZE = 1000;
+
     @Reference(referenceInterface = ProfileRegistry.class)
     private final ValidatingReference<ProfileRegistry> profileRegistry = new ValidatingReference<>();
     @Reference(referenceInterface = RuntimeProperties.class)
     private final ValidatingReference<RuntimeProperties> runtimeProperties = new ValidatingReference<>();
+    @Reference(referenceInterface = DataStore.class)
+    private final ValidatingReference<DataStore> dataStore = new ValidatingReference<>();
 
     static class OverlayAudit {
         Map<String, Profile> overlayProfiles = new HashMap<String, Profile>();
     }
 
+    // Overlay profiles are rebuilt only when the profile or one of its ancestors changed
+    private final ConcurrentMap<OverlayCacheKey, OverlayCacheEntry> overlayCache = new ConcurrentHashMap<>();
+    private final AtomicLong overlayCacheHits = new AtomicLong();
+    private final AtomicLong overlayCacheMisses = new AtomicLong();
+    private final AtomicLong overlayBuildTime = new AtomicLong();
+    private final AtomicLong overlayBuildTimeMax = new AtomicLong();
+    private final OverlayCacheInvalidator overlayCacheInvalidator = new OverlayCacheInvalidator();
+
     @Activate
     void activate() throws Exception {
         getOverlayAudit();
+        dataStore.get().trackConfiguration(overlayCacheInvalidator);
         activateComponent(PERMIT, this);
     }
 
@@ -86,6 +111,7 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
     @Deactivate
     void deactivate() {
         deactivateComponent(PERMIT);
+        dataStore.get().untrackConfiguration(overlayCacheInvalidator);
     }
 
     @Override
@@ -167,41 +193,79 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         assertValid();
         LOGGER.info("deleteVersion: {}", versionId);
         profileRegistry.get().deleteVersion(versionId);
+        evictOverlayProfiles(versionId, null);
+    }
+
+    /**
+     * Removes the cached overlays of the given version, or only those of the given profile if there is one
+     */
+    private void evictOverlayProfiles(String versionId, String profileId) {
+        for (OverlayCacheKey key : overlayCache.keySet()) {
+            if (key.versionId.equals(versionId) && (profileId == null || key.profileId.equals(profileId))) {
+                overlayCache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes the cached overlays of the given version which were built from one of the given profiles
+     */
+    private void evictDependentOverlayProfiles(String versionId, Set<String> profileIds) {
+        for (Map.Entry<OverlayCacheKey, OverlayCacheEntry> entry : overlayCache.entrySet()) {
+            if (entry.getKey().versionId.equals(versionId) && entry.getValue().dependsOn(profileIds)) {
+                overlayCache.remove(entry.getKey());
+            }
+        }
     }
 
     @Override
     public Profile getOverlayProfile(Profile profile) {
         assertValid();
+        if (profile.isOverlay()) {
+            LOGGER.debug("getOverlayProfile, given profile is already an overlay: " + profile);
+            return profile;
+        }
+        String profileId = profile.getId();
+        String environment = runtimeProperties.get().getProperty(SystemProperties.FABRIC_ENVIRONMENT);
+        if (environment == null) {
+            // lets default to the environment from the current active
+            // set of profiles (e.g. docker or openshift)
+            environment = System.getProperty(SystemProperties.FABRIC_PROFILE_ENVIRONMENT);
+        }
+        Version version = getRequiredVersion(profile.getVersion());
+        OverlayCacheKey key = new OverlayCacheKey(profile.getVersion(), profileId, environment);
+        OverlayCacheEntry entry = overlayCache.get(key);
+        if (entry != null && entry.isValid(version, profile)) {
+            overlayCacheHits.incrementAndGet();
+            return entry.overlayProfile;
+        }
         Profile overlayProfile;
         synchronized (this) {
-            if (profile.isOverlay()) {
-                LOGGER.debug("getOverlayProfile, given profile is already an overlay: " + profile);
-                overlayProfile = profile;
-            } else {
-                String profileId = profile.getId();
-                String environment = runtimeProperties.get().getProperty(SystemProperties.FABRIC_ENVIRONMENT);
-                if (environment == null) {
-                    // lets default to the environment from the current active
-                    // set of profiles (e.g. docker or openshift)
-                    environment = System.getProperty(SystemProperties.FABRIC_PROFILE_ENVIRONMENT);
-                }
-                Version version = getRequiredVersion(profile.getVersion());
-                ProfileBuilder builder = ProfileBuilder.Factory.create(profile.getVersion(), profileId);
-                builder.addOptions(new OverlayOptionsProvider(version, profile, environment));
-                overlayProfile = builder.getProfile();
-
-                // Log the overlay profile difference
-                if (LOGGER.isInfoEnabled()) {
-                    OverlayAudit audit = getOverlayAudit();
-                    synchronized (audit) {
-                        Profile lastOverlay = audit.overlayProfiles.get(profileId);
-                        if (lastOverlay == null) {
-                            LOGGER.info("Overlay" + Profiles.getProfileInfo(overlayProfile));
-                            audit.overlayProfiles.put(profileId, overlayProfile);
-                        } else if (!lastOverlay.equals(overlayProfile)) {
-                            LOGGER.info("Overlay" + Profiles.getProfileDifference(lastOverlay, overlayProfile));
-                            audit.overlayProfiles.put(profileId, overlayProfile);
-                        }
+            entry = overlayCache.get(key);
+            if (entry != null && entry.isValid(version, profile)) {
+                overlayCacheHits.incrementAndGet();
+                return entry.overlayProfile;
+            }
+            overlayCacheMisses.incrementAndGet();
+            long start = System.nanoTime();
+            OverlayOptionsProvider optionsProvider = new OverlayOptionsProvider(version, profile, environment);
+            ProfileBuilder builder = ProfileBuilder.Factory.create(profile.getVersion(), profileId);
+            builder.addOptions(optionsProvider);
+            overlayProfile = builder.getProfile();
+            recordOverlayBuildTime(System.nanoTime() - start);
+            putOverlayCacheEntry(key, new OverlayCacheEntry(version, profile, optionsProvider.getInheritedProfiles(), overlayProfile));
+
+            // Log the overlay profile difference
+            if (LOGGER.isInfoEnabled()) {
+                OverlayAudit audit = getOverlayAudit();
+                synchronized (audit) {
+                    Profile lastOverlay = audit.overlayProfiles.get(profileId);
+                    if (lastOverlay == null) {
+                        LOGGER.info("Overlay" + Profiles.getProfileInfo(overlayProfile));
+                        audit.overlayProfiles.put(profileId, overlayProfile);
+                    } else if (!lastOverlay.equals(overlayProfile)) {
+                        LOGGER.info("Overlay" + Profiles.getProfileDifference(lastOverlay, overlayProfile));
+                        audit.overlayProfiles.put(profileId, overlayProfile);
                     }
                 }
             }
@@ -209,6 +273,44 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         return overlayProfile;
     }
 
+    /**
+     * Caches the given overlay, making room first by dropping the overlays of versions which are gone
+     * and then any others
+     */
+    private void putOverlayCacheEntry(OverlayCacheKey key, OverlayCacheEntry entry) {
+        if (overlayCache.size() >= MAX_OVERLAY_CACHE_SIZE) {
+            for (Iterator<OverlayCacheEntry> it = overlayCache.values().iterator(); it.hasNext();) {
+                if (it.next().isStale()) {
+                    it.remove();
+                }
+            }
+            for (Iterator<OverlayCacheKey> it = overlayCache.keySet().iterator(); it.hasNext() && overlayCache.size() >= MAX_OVERLAY_CACHE_SIZE;) {
+                it.next();
+                it.remove();
+            }
+        }
+        overlayCache.put(key, entry);
+    }
+
+    private void recordOverlayBuildTime(long nanos) {
+        overlayBuildTime.addAndGet(nanos);
+        long max = overlayBuildTimeMax.get();
+        while (nanos > max && !overlayBuildTimeMax.compareAndSet(max, nanos)) {
+            max = overlayBuildTimeMax.get();
+        }
+    }
+
+    @Override
+    public Map<String, Long> getOverlayCacheStatistics() {
+        Map<String, Long> answer = new LinkedHashMap<>();
+        answer.put("size", (long) overlayCache.size());
+        answer.put("hits", overlayCacheHits.get());
+        answer.put("misses", overlayCacheMisses.get());
+        answer.put("buildTimeTotalMicros", TimeUnit.NANOSECONDS.toMicros(overlayBuildTime.get()));
+        answer.put("buildTimeMaxMicros", TimeUnit.NANOSECONDS.toMicros(overlayBuildTimeMax.get()));
+        return answer;
+    }
+
     @Override
     public void deleteProfile(String versionId, String profileId, boolean force) {
         deleteProfile(null, versionId, profileId, force);
@@ -225,11 +327,13 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         Container[] containers = fabricService != null ? fabricService.getAssociatedContainers(versionId, profileId) : new Container[0];
         if (containers.length == 0) {
             profileRegistry.get().deleteProfile(versionId, profileId);
+            evictOverlayProfiles(versionId, profileId);
         } else if (force) {
             for (Container container : containers) {
                 container.removeProfiles(profileId);
             }
             profileRegistry.get().deleteProfile(versionId, profileId);
+            evictOverlayProfiles(versionId, profileId);
         } else {
             StringBuilder sb = new StringBuilder();
             sb.append("Cannot delete profile:").append(profileId).append(".");
@@ -257,6 +361,7 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         private final Version version;
         private final Profile self;
         private final String environment;
+        private List<Profile> inheritedProfiles;
 
         private static class SupplementControl {
             byte[] data;
@@ -271,21 +376,39 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
 
         @Override
         public ProfileBuilder addOptions(ProfileBuilder builder) {
+            // merge the hierarchy once for both the file configurations and the configurations
+            Map<String, SupplementControl> aggregate = getAggregate();
             builder.setAttributes(self.getAttributes());
-            builder.setFileConfigurations(getFileConfigurations());
-            builder.setConfigurations(getConfigurations());
+            builder.setFileConfigurations(getFileConfigurations(aggregate));
+            builder.setConfigurations(getConfigurations(aggregate));
             builder.setLastModified(getLastModified());
             builder.setOverlay(true);
             return builder;
         }
 
-        private Map<String, byte[]> getFileConfigurations() {
+        /**
+         * Returns the ancestors followed by the profile itself in the order they were merged,
+         * or null if the options have not been added yet
+         */
+        List<Profile> getInheritedProfiles() {
+            return inheritedProfiles;
+        }
+
+        private Map<String, SupplementControl> getAggregate() {
             try {
+                inheritedProfiles = getInheritedProfiles(version, self);
                 Map<String, SupplementControl> aggregate = new HashMap<String, SupplementControl>();
-                for (Profile profile : getInheritedProfiles()) {
+                for (Profile profile : inheritedProfiles) {
                     supplement(profile, aggregate);
                 }
+                return aggregate;
+            } catch (Exception e) {
+                throw FabricException.launderThrowable(e);
+            }
+        }
 
+        private Map<String, byte[]> getFileConfigurations(Map<String, SupplementControl> aggregate) {
+            try {
                 Map<String, byte[]> rc = new HashMap<String, byte[]>();
                 for (Map.Entry<String, SupplementControl> entry : aggregate.entrySet()) {
                     SupplementControl ctrl = entry.getValue();
@@ -300,13 +423,8 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
             }
         }
 
-        private Map<String, Map<String, String>> getConfigurations() {
+        private Map<String, Map<String, String>> getConfigurations(Map<String, SupplementControl> aggregate) {
             try {
-                Map<String, SupplementControl> aggregate = new HashMap<String, SupplementControl>();
-                for (Profile profile : getInheritedProfiles()) {
-                    supplement(profile, aggregate);
-                }
-
                 Map<String, Map<String, String>> rc = new HashMap<String, Map<String, String>>();
                 for (Map.Entry<String, SupplementControl> entry : aggregate.entrySet()) {
                     SupplementControl ctrl = entry.getValue();
@@ -320,17 +438,20 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
             }
         }
 
-        private List<Profile> getInheritedProfiles() {
+        /**
+         * Returns the ancestors of the given profile followed by the profile itself, parents before children
+         */
+        static List<Profile> getInheritedProfiles(Version version, Profile self) {
             List<Profile> profiles = new ArrayList<>();
-            fillParentProfiles(self, profiles);
+            fillParentProfiles(version, self, profiles, new HashSet<String>());
             return profiles;
         }
 
-        private void fillParentProfiles(Profile profile, List<Profile> profiles) {
-            if (!profiles.contains(profile)) {
+        private static void fillParentProfiles(Version version, Profile profile, List<Profile> profiles, Set<String> visited) {
+            if (visited.add(profile.getId())) {
                 for (String parentId : profile.getParentIds()) {
                     Profile parent = version.getRequiredProfile(parentId);
-                    fillParentProfiles(parent, profiles);
+                    fillParentProfiles(version, parent, profiles, visited);
                 }
                 profiles.add(profile);
             }
@@ -395,6 +516,121 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         }
     }
 
+    static final class OverlayCacheKey {
+        private final String versionId;
+        private final String profileId;
+        private final String environment;
+
+        OverlayCacheKey(String versionId, String profileId, String environment) {
+            this.versionId = versionId;
+            this.profileId = profileId;
+            this.environment = environment;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof OverlayCacheKey)) return false;
+            OverlayCacheKey other = (OverlayCacheKey) obj;
+            return versionId.equals(other.versionId) && profileId.equals(other.profileId)
+                    && (environment != null ? environment.equals(other.environment) : other.environment == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = versionId.hashCode();
+            result = 31 * result + profileId.hashCode();
+            result = 31 * result + (environment != null ? environment.hashCode() : 0);
+            return result;
+        }
+    }
+
+    /**
+     * An overlay profile together with the profiles it was merged from. Profiles are immutable and the
+     * registry hands out the same instances until they change, so the overlay is still valid as long
+     * as the profile and every ancestor resolved from the current version are the same instances.
+     * The version is only weakly referenced, so that the entry does not keep old versions alive.
+     */
+    static final class OverlayCacheEntry {
+        private final Profile profile;
+        private final List<Profile> inheritedProfiles;
+        private final Profile overlayProfile;
+        private volatile WeakReference<Version> version;
+
+        OverlayCacheEntry(Version version, Profile profile, List<Profile> inheritedProfiles, Profile overlayProfile) {
+            this.version = new WeakReference<>(version);
+            this.profile = profile;
+            this.inheritedProfiles = inheritedProfiles;
+            this.overlayProfile = overlayProfile;
+        }
+
+        boolean isValid(Version currentVersion, Profile currentProfile) {
+            if (profile != currentProfile) {
+                return false;
+            }
+            if (version.get() == currentVersion) {
+                return true;
+            }
+            List<Profile> currentProfiles = OverlayOptionsProvider.getInheritedProfiles(currentVersion, currentProfile);
+            if (currentProfiles.size() != inheritedProfiles.size()) {
+                return false;
+            }
+            for (int i = 0; i < currentProfiles.size(); i++) {
+                if (currentProfiles.get(i) != inheritedProfiles.get(i)) {
+                    return false;
+                }
+            }
+            // none of the ancestors changed in the new version
+            version = new WeakReference<>(currentVersion);
+            return true;
+        }
+
+        boolean isStale() {
+            return version.get() == null;
+        }
+
+        /**
+         * Returns true if the overlay was built from one of the given profiles
+         */
+        boolean dependsOn(Set<String> profileIds) {
+            if (profileIds.contains(profile.getId())) {
+                return true;
+            }
+            for (Profile inheritedProfile : inheritedProfiles) {
+                if (profileIds.contains(inheritedProfile.getId())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Drops the overlays of the profiles changed by a pull right away, instead of keeping them until they
+     * are found to be invalid. Other changes are picked up by {@link OverlayCacheEntry#isValid} anyway.
+     */
+    final class OverlayCacheInvalidator implements Runnable, ProfileChangeListener {
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public void onProfilesChanged(ProfileChangeEvent event) {
+            for (String versionId : event.getRemovedVersions()) {
+                evictOverlayProfiles(versionId, null);
+            }
+            for (String versionId : event.getChangedVersions()) {
+                evictDependentOverlayProfiles(versionId, event.getChangedProfiles(versionId));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "OverlayCacheInvalidator";
+        }
+    }
+
     void bindProfileRegistry(ProfileRegistry service) {
         this.profileRegistry.bind(service);
     }
@@ -403,6 +639,14 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         this.profileRegistry.unbind(service);
     }
 
+    void bindDataStore(DataStore service) {
+        this.dataStore.bind(service);
+    }
+
+    void unbindDataStore(DataStore service) {
+        this.dataStore.unbind(service);
+    }
+
     void bindRuntimeProperties(RuntimeProperties service) {
         this.runtimeProperties.bind(service);
     }
@@ -30,6 +30,8 @@ import io.fabric8.api.DataStore;
 import io.fabric8.api.FabricException;
 import io.fabric8.api.FabricRequirements;
 import io.fabric8.api.FabricService;
+import io.fabric8.api.ProfileChangeEvent;
+import io.fabric8.api.ProfileChangeListener;
 import io.fabric8.api.ProfileService;
 import io.fabric8.api.RuntimeProperties;
 import io.fabric8.api.ZkDefs;
@@ -188,26 +190,38 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
     
     @Override
     public void fireChangeNotifications() {
-        runCallbacks();
+        runCallbacks(null);
+    }
+
+    @Override
+    public void fireChangeNotifications(ProfileChangeEvent event) {
+        runCallbacks(event);
     }
     
-    private void runCallbacks() {
+    private void runCallbacks(final ProfileChangeEvent event) {
         callbacksExecutor.submit(new Runnable() {
             @Override
             public void run() {
-                doRunCallbacks();
+                doRunCallbacks(event);
             }
         });
     }
     
-    private void doRunCallbacks() {
+    private void doRunCallbacks(ProfileChangeEvent event) {
         assertValid();
         for (Runnable callback : callbacks) {
             try {
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Running callback " + callback);
+                if (event != null && callback instanceof ProfileChangeListener) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Notifying callback " + callback + " of " + event);
+                    }
+                    ((ProfileChangeListener) callback).onProfilesChanged(event);
+                } else {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Running callback " + callback);
+                    }
+                    callback.run();
                 }
-                callback.run();
             } catch (Throwable e) {
                 LOGGER.warn("Caught: " + e, e);
             }
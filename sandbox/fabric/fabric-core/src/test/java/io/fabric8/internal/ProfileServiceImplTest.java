@@ -0,0 +1,218 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.internal;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.fabric8.api.DataStore;
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileBuilder;
+import io.fabric8.api.ProfileChangeEvent;
+import io.fabric8.api.ProfileChangeListener;
+import io.fabric8.api.ProfileRegistry;
+import io.fabric8.api.Version;
+import io.fabric8.api.VersionBuilder;
+import io.fabric8.api.permit.DefaultPermitManager;
+import io.fabric8.api.permit.PermitManager;
+import io.fabric8.api.scr.AbstractProtectedComponent;
+import io.fabric8.api.scr.AbstractRuntimeProperties;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.easymock.Capture;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the cache of overlay profiles against a stubbed profile registry
+ */
+public class ProfileServiceImplTest {
+
+    private static final String VERSION = "1.0";
+
+    private Version version;
+    private ProfileServiceImpl profileService;
+    private Capture<Runnable> dataStoreCallback = new Capture<Runnable>();
+
+    @Before
+    public void setUp() throws Exception {
+        version = createVersion(
+                profile("base", null, "base-value"),
+                profile("child", "base", "child-value"),
+                profile("other", null, "other-value"));
+
+        ProfileRegistry profileRegistry = createMock(ProfileRegistry.class);
+        expect(profileRegistry.getRequiredVersion(VERSION)).andAnswer(new IAnswer<Version>() {
+            @Override
+            public Version answer() throws Throwable {
+                return version;
+            }
+        }).anyTimes();
+        expect(profileRegistry.getRequiredProfile(eq(VERSION), (String) anyObject())).andAnswer(new IAnswer<Profile>() {
+            @Override
+            public Profile answer() throws Throwable {
+                return version.getRequiredProfile((String) getCurrentArguments()[1]);
+            }
+        }).anyTimes();
+        profileRegistry.deleteProfile(eq(VERSION), (String) anyObject());
+        expectLastCall().anyTimes();
+        profileRegistry.deleteVersion(VERSION);
+        expectLastCall().anyTimes();
+
+        DataStore dataStore = createMock(DataStore.class);
+        dataStore.trackConfiguration(capture(dataStoreCallback));
+        dataStore.untrackConfiguration((Runnable) anyObject());
+        replay(profileRegistry, dataStore);
+
+        profileService = new ProfileServiceImpl();
+        profileService.bindProfileRegistry(profileRegistry);
+        profileService.bindDataStore(dataStore);
+        profileService.bindRuntimeProperties(new AbstractRuntimeProperties() {
+            @Override
+            protected String getPropertyInternal(String key, String defaultValue) {
+                return defaultValue;
+            }
+        });
+        Method bindPermitManager = AbstractProtectedComponent.class.getDeclaredMethod("bindPermitManager", PermitManager.class);
+        bindPermitManager.setAccessible(true);
+        bindPermitManager.invoke(profileService, new DefaultPermitManager());
+        profileService.activate();
+    }
+
+    @After
+    public void tearDown() {
+        profileService.deactivate();
+    }
+
+    @Test
+    public void testCacheHitReturnsSameOverlay() throws Exception {
+        Profile overlay = getOverlayProfile("child");
+        assertEquals("child-value", overlay.getConfiguration("child").get("key"));
+        assertEquals("base-value", overlay.getConfiguration("base").get("key"));
+
+        assertSame(overlay, getOverlayProfile("child"));
+        assertStatistics(1, 1, 1);
+
+        // a new version in which neither the profile nor its parent changed
+        version = VersionBuilder.Factory.create(VERSION).addProfiles(version.getProfiles()).getVersion();
+        assertSame(overlay, getOverlayProfile("child"));
+        assertStatistics(1, 2, 1);
+    }
+
+    @Test
+    public void testChangedParentRebuildsDependentOverlays() throws Exception {
+        Profile childOverlay = getOverlayProfile("child");
+        Profile baseOverlay = getOverlayProfile("base");
+        Profile otherOverlay = getOverlayProfile("other");
+        assertStatistics(3, 0, 3);
+
+        updateProfile(profile("base", null, "new-base-value"));
+
+        Profile newChildOverlay = getOverlayProfile("child");
+        assertNotSame(childOverlay, newChildOverlay);
+        assertEquals("new-base-value", newChildOverlay.getConfiguration("base").get("key"));
+        assertNotSame(baseOverlay, getOverlayProfile("base"));
+        assertSame("Should keep the overlay which does not depend on the changed profile", otherOverlay, getOverlayProfile("other"));
+        assertStatistics(3, 1, 5);
+    }
+
+    @Test
+    public void testProfileChangeEventEvictsDependentOverlays() throws Exception {
+        getOverlayProfile("child");
+        getOverlayProfile("base");
+        Profile otherOverlay = getOverlayProfile("other");
+        assertStatistics(3, 0, 3);
+
+        Map<String, Set<String>> changedProfiles = new HashMap<>();
+        changedProfiles.put("base", Collections.singleton("io.fabric8.agent.properties"));
+        Map<String, Map<String, Set<String>>> changedFiles = new HashMap<>();
+        changedFiles.put(VERSION, changedProfiles);
+        Runnable callback = dataStoreCallback.getValue();
+        assertTrue(callback instanceof ProfileChangeListener);
+        ((ProfileChangeListener) callback).onProfilesChanged(new ProfileChangeEvent(Collections.<String>emptySet(), Collections.<String>emptySet(), changedFiles));
+
+        assertStatistics(1, 0, 3);
+        assertSame(otherOverlay, getOverlayProfile("other"));
+    }
+
+    @Test
+    public void testDeleteProfileEvictsOverlay() throws Exception {
+        Profile overlay = getOverlayProfile("child");
+        getOverlayProfile("other");
+
+        profileService.deleteProfile(VERSION, "child", false);
+        assertStatistics(1, 0, 2);
+
+        assertNotSame(overlay, getOverlayProfile("child"));
+    }
+
+    @Test
+    public void testDeleteVersionEvictsOverlays() throws Exception {
+        getOverlayProfile("child");
+        getOverlayProfile("other");
+
+        profileService.deleteVersion(VERSION);
+        assertStatistics(0, 0, 2);
+    }
+
+    private Profile getOverlayProfile(String profileId) {
+        return profileService.getOverlayProfile(version.getRequiredProfile(profileId));
+    }
+
+    /**
+     * Replaces the given profile in a new version keeping the instances of the other profiles,
+     * like the registry does after a change
+     */
+    private void updateProfile(Profile profile) {
+        version = VersionBuilder.Factory.create(VERSION).addProfiles(version.getProfiles()).removeProfile(profile.getId()).addProfile(profile).getVersion();
+    }
+
+    private void assertStatistics(long size, long hits, long misses) {
+        Map<String, Long> statistics = profileService.getOverlayCacheStatistics();
+        assertEquals("size", Long.valueOf(size), statistics.get("size"));
+        assertEquals("hits", Long.valueOf(hits), statistics.get("hits"));
+        assertEquals("misses", Long.valueOf(misses), statistics.get("misses"));
+    }
+
+    private static Version createVersion(Profile... profiles) {
+        return VersionBuilder.Factory.create(VERSION).addProfiles(Arrays.asList(profiles)).getVersion();
+    }
+
+    private static Profile profile(String profileId, String parentId, String value) {
+        ProfileBuilder builder = ProfileBuilder.Factory.create(VERSION, profileId).addConfiguration(profileId, "key", value);
+        if (parentId != null) {
+            builder.addParent(parentId);
+        }
+        return builder.getProfile();
+    }
+}
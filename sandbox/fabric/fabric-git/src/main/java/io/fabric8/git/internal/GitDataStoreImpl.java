@@ -24,11 +24,11 @@ import io.fabric8.api.LockHandle;
 import io.fabric8.api.Profile;
 import io.fabric8.api.ProfileBuilder;
 import io.fabric8.api.ProfileBuilders;
+import io.fabric8.api.ProfileChangeEvent;
 import io.fabric8.api.ProfileRegistry;
 import io.fabric8.api.Profiles;
 import io.fabric8.api.RuntimeProperties;
 import io.fabric8.api.Version;
-import io.fabric8.api.VersionBuilder;
 import io.fabric8.api.VersionSequence;
 import io.fabric8.api.jcip.ThreadSafe;
 import io.fabric8.api.scr.AbstractComponent;
@@ -75,6 +75,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -98,11 +101,11 @@ import org.apache.felix.scr.annotations.Service;
 import org.apache.zookeeper.KeeperException;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
-import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.PushResult;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
@@ -133,7 +136,6 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
 
     private static final String GIT_REMOTE_USER = "gitRemoteUser";
     private static final String GIT_REMOTE_PASSWORD = "gitRemotePassword";
-    private static final int GIT_COMMIT_SHORT_LENGTH = 7;
     private static final int MAX_COMMITS_WITHOUT_GC = 40;
     private static final long AQUIRE_LOCK_TIMEOUT = 25 * 1000L;
 
@@ -165,6 +167,8 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     private ProxySelector defaultProxySelector;
     private PullPushPolicy pullPushPolicy;
     private boolean notificationRequired;
+    // the changes of the pull which required the pending notification, null if they are not known
+    private ProfileChangeEvent profileChangeEvent;
     private SharedCount counter;
     private String remoteUrl;
 
@@ -177,7 +181,12 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     @Property(name = "gitRemotePollInterval", label = "Remote poll Interval", description = "The interval between remote repo polling operations")
     private long gitRemotePollInterval = 60 * 1000L;
 
-    private final LoadingCache<String, Version> versionCache = CacheBuilder.newBuilder().build(new VersionCacheLoader());
+    private final VersionCacheLoader versionCacheLoader = new VersionCacheLoader();
+    // Versions are immutable snapshots keyed by the commits they were loaded from, so they can be read
+    // concurrently without the profile lock. The current key of every version is only ever swapped from
+    // the key a reader saw, and the swapped out snapshot is dropped.
+    private final LoadingCache<VersionCacheKey, Version> versionCache = CacheBuilder.newBuilder().build(versionCacheLoader);
+    private final ConcurrentMap<String, VersionCacheKey> versionCacheKeys = new ConcurrentHashMap<>();
     private final Set<String> versions = new HashSet<String>();
 
     @Activate
@@ -383,9 +392,14 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
             public void unlock() {
                 if (notificationRequired && readWriteLock.getWriteHoldCount() == 1) {
                     try {
-                        dataStore.get().fireChangeNotifications();
+                        if (profileChangeEvent != null) {
+                            dataStore.get().fireChangeNotifications(profileChangeEvent);
+                        } else {
+                            dataStore.get().fireChangeNotifications();
+                        }
                     } finally {
                         notificationRequired = false;
+                        profileChangeEvent = null;
                     }
                 }
                 writeLock.unlock();
@@ -444,25 +458,55 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         return Collections.unmodifiableMap(dataStoreProperties);
     }
 
-    private Version getVersionFromCache(String versionId, String profileId) {
-        LockHandle writeLock = aquireWriteLock();
+    /**
+     * Returns the snapshot of the version at the current heads of its branch and the master branch.
+     * No lock is required as the snapshot is read from the object database and never from the working tree.
+     */
+    private Version getVersionFromCache(String versionId) {
+        assertValid();
         try {
-            assertValid();
-            String branch = GitHelpers.getProfileBranch(versionId, profileId);
-            if (GitHelpers.localBranchExists(getGit(), branch)) {
-                return versionCache.get(versionId);
-            } else {
+            // ensemble profiles live in the master branch, all others in the version branch
+            Repository repository = getGit().getRepository();
+            Ref versionRef = repository.getRef("refs/heads/" + versionId);
+            Ref masterRef = repository.getRef("refs/heads/" + GitHelpers.MASTER_BRANCH);
+            if (versionRef == null || masterRef == null) {
                 return null;
             }
+            final VersionCacheKey key = new VersionCacheKey(versionId, versionRef.getObjectId(), masterRef.getObjectId());
+            final VersionCacheKey previous = versionCacheKeys.get(versionId);
+            if (key.equals(previous)) {
+                return versionCache.get(key);
+            }
+            Version version;
+            final Version previousVersion = previous != null ? versionCache.getIfPresent(previous) : null;
+            if (previousVersion != null) {
+                // only reload the profiles which changed since the previous snapshot
+                version = versionCache.get(key, new Callable<Version>() {
+                    @Override
+                    public Version call() throws Exception {
+                        return versionCacheLoader.load(previousVersion, previous, key);
+                    }
+                });
+            } else {
+                version = versionCache.get(key);
+            }
+            // only move the version on from the key read above, a concurrent reader may have moved it already
+            boolean replaced = previous != null ? versionCacheKeys.replace(versionId, previous, key) : versionCacheKeys.putIfAbsent(versionId, key) == null;
+            if (replaced) {
+                if (previous != null) {
+                    versionCache.invalidate(previous);
+                }
+            } else if (!key.equals(versionCacheKeys.get(versionId))) {
+                versionCache.invalidate(key);
+            }
+            return version;
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
-        } finally {
-            writeLock.unlock();
         }
     }
 
     private Profile getProfileFromCache(String versionId, String profileId) {
-        Version version = getVersionFromCache(versionId, profileId);
+        Version version = getVersionFromCache(versionId);
         return version != null ? version.getProfile(profileId) : null;
     }
 
@@ -581,13 +625,13 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     @Override
     public Version getVersion(String versionId) {
         IllegalStateAssertion.assertNotNull(versionId, "versionId");
-        return getVersionFromCache(versionId, null);
+        return getVersionFromCache(versionId);
     }
 
     @Override
     public Version getRequiredVersion(final String versionId) {
         IllegalStateAssertion.assertNotNull(versionId, "versionId");
-        Version version = getVersionFromCache(versionId, null);
+        Version version = getVersionFromCache(versionId);
         IllegalStateAssertion.assertNotNull(version, "Version does not exist: " + versionId);
         return version;
     }
@@ -706,7 +750,7 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     public List<String> getProfiles(final String versionId) {
         IllegalStateAssertion.assertNotNull(versionId, "versionId");
         assertValid();
-        Version version = getVersionFromCache(versionId, null);
+        Version version = getVersionFromCache(versionId);
         List<String> profiles = version != null ? version.getProfileIds() : Collections.<String>emptyList();
         return Collections.unmodifiableList(profiles);
     }
@@ -960,8 +1004,8 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
 
             if (context.isRequireCommit()) {
                 doCommit(git, context);
-                versionCache.invalidateAll();
                 notificationRequired = true;
+                profileChangeEvent = null;
             }
 
             if (context.isRequirePush()) {
@@ -1029,17 +1073,27 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     }
     
     private PullPolicyResult doPullInternal(GitContext context, CredentialsProvider credentialsProvider, boolean allowVersionDelete) {
+        Map<String, ObjectId> previousHeads = getBranchHeads();
         PullPolicyResult pullResult = pullPushPolicy.doPull(context, getCredentialsProvider(), allowVersionDelete);
         if (pullResult.getLastException() == null) {
             if (pullResult.localUpdateRequired()) {
-                versionCache.invalidateAll();
+                Map<String, ObjectId> currentHeads = getBranchHeads();
+                ProfileChangeEvent event = null;
+                if (previousHeads != null && currentHeads != null) {
+                    refreshCachedVersions(currentHeads);
+                    event = new GitVersionLoader(getGit().getRepository()).createProfileChangeEvent(previousHeads, currentHeads);
+                }
+                // the event only describes the pending notification if nothing else changed before the pull
+                profileChangeEvent = notificationRequired ? null : event;
                 notificationRequired = true;
             }
             Set<String> pullVersions = pullResult.getVersions();
             if (!pullVersions.isEmpty() && !pullVersions.equals(versions)) {
                 versions.clear();
                 versions.addAll(pullVersions);
-                versionCache.invalidateAll();
+                if (!pullResult.localUpdateRequired()) {
+                    profileChangeEvent = null;
+                }
                 notificationRequired = true;
             }
             if (pullResult.remoteUpdateRequired()) {
@@ -1049,6 +1103,39 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         return pullResult;
     }
 
+    /**
+     * Returns the heads of the local branches, or null if they cannot be read
+     */
+    private Map<String, ObjectId> getBranchHeads() {
+        try {
+            Map<String, ObjectId> heads = new HashMap<>();
+            for (Map.Entry<String, Ref> entry : getGit().getRepository().getRefDatabase().getRefs("refs/heads/").entrySet()) {
+                heads.put(entry.getKey(), entry.getValue().getObjectId());
+            }
+            return heads;
+        } catch (IOException ex) {
+            LOGGER.warn("Cannot read the branch heads due " + ex.getMessage() + ". This exception is ignored.");
+            return null;
+        }
+    }
+
+    /**
+     * Moves the cached version snapshots to the new branch heads, only reloading the profiles which changed
+     */
+    private void refreshCachedVersions(Map<String, ObjectId> currentHeads) {
+        for (String versionId : new ArrayList<>(versionCacheKeys.keySet())) {
+            try {
+                if (currentHeads.containsKey(versionId)) {
+                    getVersionFromCache(versionId);
+                } else {
+                    removeVersionFromCaches(versionId);
+                }
+            } catch (Exception ex) {
+                LOGGER.warn("Cannot refresh version " + versionId + " due " + ex.getMessage() + ". This exception is ignored.");
+            }
+        }
+    }
+
     private PushPolicyResult doPushInternal(GitContext context, CredentialsProvider credentialsProvider) {
         return pullPushPolicy.doPush(context, credentialsProvider);
     }
@@ -1096,15 +1183,6 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         return relativePath.replace(File.separatorChar, '/');
     }
     
-    private Map<String, String> getVersionAttributes(Git git, GitContext context, String versionId) throws IOException {
-        File rootDirectory = GitHelpers.getRootGitDirectory(git);
-        File file = new File(rootDirectory, GitHelpers.VERSION_ATTRIBUTES);
-        if (!file.exists()) {
-            return Collections.emptyMap();
-        }
-        return DataStoreUtils.toMap(Files.readBytes(file));
-    }
-
     private void setVersionAttributes(Git git, GitContext context, String versionId, Map<String, String> attributes) throws IOException, GitAPIException {
         File rootDirectory = GitHelpers.getRootGitDirectory(git);
         File file = new File(rootDirectory, GitHelpers.VERSION_ATTRIBUTES);
@@ -1178,7 +1256,10 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     }
 
     private void removeVersionFromCaches(String versionId) {
-        versionCache.invalidate(versionId);
+        VersionCacheKey key = versionCacheKeys.remove(versionId);
+        if (key != null) {
+            versionCache.invalidate(key);
+        }
         versions.remove(versionId);
     }
     
@@ -1252,7 +1333,7 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         @Override
         public void onReceivePack() {
             assertValid();
-            versionCache.invalidateAll();
+            // the received commits move the branch heads, so the next read picks up a new version snapshot
         }
         
         private void runRemoteUrlChanged(final String updateUrl) {
@@ -1673,112 +1754,81 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         }
     }
     
-    class VersionCacheLoader extends CacheLoader<String, Version> {
-        
-        @Override
-        public Version load(final String versionId) {
-            assertWriteLock();
-            GitOperation<Version> gitop = new GitOperation<Version>() {
-                public Version call(Git git, GitContext context) throws Exception {
-                    String revision = git.getRepository().getRefDatabase().getRef(versionId).getObjectId().getName();
-                    return loadVersion(git, context, versionId, revision);
-                }
-            };
-            GitContext context = new GitContext();
-            return executeInternal(context, null, gitop);
+    /**
+     * Identifies a version snapshot by the heads of the version branch and the master branch
+     * which holds the ensemble profiles.
+     */
+    static final class VersionCacheKey {
+        private final String versionId;
+        private final ObjectId versionCommitId;
+        private final ObjectId masterCommitId;
+
+        VersionCacheKey(String versionId, ObjectId versionCommitId, ObjectId masterCommitId) {
+            this.versionId = versionId;
+            this.versionCommitId = versionCommitId.copy();
+            this.masterCommitId = masterCommitId.copy();
         }
-        
-        private Version loadVersion(Git git, GitContext context, String versionId, String revision) throws Exception {
-            VersionBuilder vbuilder = VersionBuilder.Factory.create(versionId).setRevision(revision);
-            vbuilder.setAttributes(getVersionAttributes(git, context, versionId));
-            populateVersionBuilder(git, context, vbuilder, "master", versionId);
-            populateVersionBuilder(git, context, vbuilder, versionId, versionId);
-            return vbuilder.getVersion();
-        }
-
-        private void populateVersionBuilder(Git git, GitContext context, VersionBuilder builder, String branch, String versionId) throws GitAPIException, IOException {
-            checkoutRequiredProfileBranch(git, context, branch, null);
-            File profilesDir = GitHelpers.getProfilesDirectory(git);
-            if (profilesDir.exists()) {
-                String[] files = profilesDir.list();
-                if (files != null) {
-                    for (String childName : files) {
-                        Path childPath = profilesDir.toPath().resolve(childName);
-                        if (childPath.toFile().isDirectory()) {
-                            RevCommit lastCommit = GitHelpers.getProfileLastCommit(git, branch, childName);
-                            if (lastCommit != null) {
-                                populateProfile(git, builder, branch, versionId, childPath.toFile(), "");
-                            }
-                        }
-                    }
-                }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
             }
+            if (!(obj instanceof VersionCacheKey)) {
+                return false;
+            }
+            VersionCacheKey other = (VersionCacheKey) obj;
+            return versionId.equals(other.versionId) && versionCommitId.equals(other.versionCommitId) && masterCommitId.equals(other.masterCommitId);
         }
 
-        private void populateProfile(Git git, VersionBuilder versionBuilder, String branch, String versionId, File profileFile, String prefix) throws IOException {
-            String profileName = profileFile.getName();
-            String profileId = profileName;
-            if (profileId.endsWith(Profiles.PROFILE_FOLDER_SUFFIX)) {
-                profileId = prefix + profileId.substring(0, profileId.length() - Profiles.PROFILE_FOLDER_SUFFIX.length());
-            } else {
-                // lets recurse all children
-                File[] files = profileFile.listFiles();
-                if (files != null) {
-                    for (File childFile : files) {
-                        if (childFile.isDirectory()) {
-                            populateProfile(git, versionBuilder, branch, versionId, childFile, prefix + profileFile.getName() + "-");
-                        }
-                    }
-                }
-                return;
-            }
+        @Override
+        public int hashCode() {
+            return 31 * (31 * versionId.hashCode() + versionCommitId.hashCode()) + masterCommitId.hashCode();
+        }
 
-            RevCommit lastCommit = GitHelpers.getProfileLastCommit(git, branch, profileName);
-            String lastModified = lastCommit != null ? lastCommit.getId().abbreviate(GIT_COMMIT_SHORT_LENGTH).name() : "";
-            Map<String, byte[]> fileConfigurations = doGetFileConfigurations(git, profileId);
-            
-            ProfileBuilder profileBuilder = ProfileBuilder.Factory.create(versionId, profileId);
-            profileBuilder.setFileConfigurations(fileConfigurations).setLastModified(lastModified);
-            versionBuilder.addProfile(profileBuilder.getProfile());
-        }
-
-        private Map<String, byte[]> doGetFileConfigurations(Git git, String profileId) throws IOException {
-            Map<String, byte[]> configurations = new HashMap<String, byte[]>();
-            File profileDirectory = GitHelpers.getProfileDirectory(git, profileId);
-            populateFileConfigurations(configurations, profileDirectory, profileDirectory);
-            return configurations;
-        }
-
-        private void populateFileConfigurations(Map<String, byte[]> configurations, File profileDirectory, File directory) throws IOException {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isFile()) {
-                        String relativePath = getFilePattern(profileDirectory, file);
-                        configurations.put(relativePath, loadFileConfiguration(file));
-                    } else if (file.isDirectory()) {
-                        populateFileConfigurations(configurations, profileDirectory, file);
-                    }
-                }
-            }
+        String getVersionId() {
+            return versionId;
         }
 
-        private byte[] loadFileConfiguration(File file) throws IOException {
-            if (file.isDirectory()) {
-                // Not sure why we do this, but for directory pids, lets recurse...
-                StringBuilder buf = new StringBuilder();
-                File[] files = file.listFiles();
-                if (files != null) {
-                    for (File child : files) {
-                        String value = Files.toString(child);
-                        buf.append(String.format("%s = %s\n", child.getName(), value));
-                    }
+        ObjectId getVersionCommitId() {
+            return versionCommitId;
+        }
+
+        ObjectId getMasterCommitId() {
+            return masterCommitId;
+        }
+
+        @Override
+        public String toString() {
+            return versionId + "@" + versionCommitId.getName();
+        }
+    }
+
+    class VersionCacheLoader extends CacheLoader<VersionCacheKey, Version> {
+        
+        @Override
+        public Version load(VersionCacheKey key) {
+            return load(null, null, key);
+        }
+
+        /**
+         * Loads the snapshot for the given key, from the previous snapshot of the version if there is one
+         */
+        Version load(Version previousVersion, VersionCacheKey previousKey, VersionCacheKey key) {
+            // [FABRIC-887] jgit loads resources through the TCCL, see executeInternal
+            ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+            try {
+                Thread.currentThread().setContextClassLoader(GitDataStoreImpl.class.getClassLoader());
+                GitVersionLoader loader = new GitVersionLoader(getGit().getRepository());
+                if (previousVersion != null) {
+                    return loader.updateVersion(previousVersion, previousKey, key);
                 }
-                return buf.toString().getBytes();
-            } else if (file.exists() && file.isFile()) {
-                return Files.readBytes(file);
+                return loader.loadVersion(key);
+            } catch (Exception e) {
+                throw FabricException.launderThrowable(e);
+            } finally {
+                Thread.currentThread().setContextClassLoader(tccl);
             }
-            return null;
         }
     }
 }
@@ -0,0 +1,276 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.git.internal;
+
+import io.fabric8.api.Profiles;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Reads the profiles of a branch straight from the tree of its head commit in the object database,
+ * so that loading a version neither checks out the branch into the working tree nor walks the
+ * history once per profile: the last commit of every profile is found in a single pass over the
+ * history which only descends into the subtrees a commit actually changed.
+ */
+final class GitProfileReader {
+
+    static final String PROFILES_PATH = GitHelpers.CONFIGS + "/profiles";
+
+    private final Repository repository;
+
+    GitProfileReader(Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * The content of a profile directory in a commit
+     */
+    static final class ProfileData {
+        private final String profileId;
+        private final String path;
+        private final Map<String, byte[]> fileConfigurations = new HashMap<String, byte[]>();
+        private ObjectId lastCommitId;
+
+        private ProfileData(String profileId, String path) {
+            this.profileId = profileId;
+            this.path = path;
+        }
+
+        String getProfileId() {
+            return profileId;
+        }
+
+        /**
+         * Returns the path of the profile directory relative to the root of the repository
+         */
+        String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the files of the profile keyed by their path relative to the profile directory
+         */
+        Map<String, byte[]> getFileConfigurations() {
+            return fileConfigurations;
+        }
+
+        /**
+         * Returns the last commit which changed the profile, or null if it could not be found
+         */
+        ObjectId getLastCommitId() {
+            return lastCommitId;
+        }
+    }
+
+    /**
+     * Returns the profiles of the given commit keyed by profile id
+     */
+    Map<String, ProfileData> readProfiles(AnyObjectId commitId) throws IOException {
+        return readProfiles(commitId, null);
+    }
+
+    /**
+     * Returns the profiles at the given profile directory paths of the given commit keyed by profile id,
+     * or all profiles if no paths are given. Paths which do not exist in the commit are ignored.
+     */
+    Map<String, ProfileData> readProfiles(AnyObjectId commitId, Collection<String> profilePaths) throws IOException {
+        if (profilePaths != null && profilePaths.isEmpty()) {
+            return new LinkedHashMap<String, ProfileData>();
+        }
+        TreeFilter filter = profilePaths != null ? PathFilterGroup.createFromStrings(profilePaths) : PathFilter.create(PROFILES_PATH);
+        ObjectReader reader = repository.newObjectReader();
+        RevWalk walk = new RevWalk(reader);
+        try {
+            RevCommit head = walk.parseCommit(commitId);
+            Map<String, ProfileData> profiles = readProfileTree(reader, head, filter);
+            resolveLastCommits(reader, walk, head, profiles);
+            Map<String, ProfileData> answer = new LinkedHashMap<String, ProfileData>();
+            for (ProfileData profile : profiles.values()) {
+                answer.put(profile.getProfileId(), profile);
+            }
+            return answer;
+        } finally {
+            walk.release();
+            reader.release();
+        }
+    }
+
+    /**
+     * Returns the files which differ between the profiles of the given commits relative to their profile directory,
+     * keyed by the path of the profile directory. Only the subtrees which differ between the commits are walked.
+     */
+    Map<String, Set<String>> diffProfiles(AnyObjectId oldCommitId, AnyObjectId newCommitId) throws IOException {
+        Map<String, Set<String>> answer = new LinkedHashMap<String, Set<String>>();
+        ObjectReader reader = repository.newObjectReader();
+        RevWalk walk = new RevWalk(reader);
+        try {
+            TreeWalk treeWalk = new TreeWalk(reader);
+            treeWalk.addTree(walk.parseCommit(oldCommitId).getTree());
+            treeWalk.addTree(walk.parseCommit(newCommitId).getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(AndTreeFilter.create(PathFilter.create(PROFILES_PATH), TreeFilter.ANY_DIFF));
+            String suffix = Profiles.PROFILE_FOLDER_SUFFIX + "/";
+            while (treeWalk.next()) {
+                String path = treeWalk.getPathString();
+                int index = path.indexOf(suffix, PROFILES_PATH.length());
+                if (index > 0) {
+                    String profilePath = path.substring(0, index + Profiles.PROFILE_FOLDER_SUFFIX.length());
+                    Set<String> files = answer.get(profilePath);
+                    if (files == null) {
+                        files = new TreeSet<String>();
+                        answer.put(profilePath, files);
+                    }
+                    files.add(path.substring(profilePath.length() + 1));
+                }
+            }
+            return answer;
+        } finally {
+            walk.release();
+            reader.release();
+        }
+    }
+
+    /**
+     * Returns the content of the file at the given path of the given commit, or null if there is no such file
+     */
+    byte[] readFile(AnyObjectId commitId, String path) throws IOException {
+        ObjectReader reader = repository.newObjectReader();
+        RevWalk walk = new RevWalk(reader);
+        try {
+            RevCommit commit = walk.parseCommit(commitId);
+            TreeWalk treeWalk = TreeWalk.forPath(reader, path, commit.getTree());
+            if (treeWalk == null || treeWalk.getFileMode(0).getObjectType() != Constants.OBJ_BLOB) {
+                return null;
+            }
+            return reader.open(treeWalk.getObjectId(0), Constants.OBJ_BLOB).getBytes();
+        } finally {
+            walk.release();
+            reader.release();
+        }
+    }
+
+    /**
+     * Collects the profile directories and their files keyed by the path of the profile directory
+     */
+    private Map<String, ProfileData> readProfileTree(ObjectReader reader, RevCommit commit, TreeFilter filter) throws IOException {
+        Map<String, ProfileData> profiles = new LinkedHashMap<String, ProfileData>();
+        TreeWalk treeWalk = new TreeWalk(reader);
+        treeWalk.addTree(commit.getTree());
+        treeWalk.setRecursive(false);
+        treeWalk.setFilter(filter);
+        ProfileData current = null;
+        while (treeWalk.next()) {
+            String path = treeWalk.getPathString();
+            if (current != null && !path.startsWith(current.path + "/")) {
+                current = null;
+            }
+            if (treeWalk.isSubtree()) {
+                // files of nested folders belong to the enclosing profile
+                if (current == null && isProfileDirectory(path)) {
+                    current = new ProfileData(getProfileId(path), path);
+                    profiles.put(path, current);
+                }
+                treeWalk.enterSubtree();
+            } else if (current != null && treeWalk.getFileMode(0).getObjectType() == Constants.OBJ_BLOB) {
+                String relativePath = path.substring(current.path.length() + 1);
+                byte[] content = reader.open(treeWalk.getObjectId(0), Constants.OBJ_BLOB).getBytes();
+                current.fileConfigurations.put(relativePath, content);
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Walks the history of the given head once, comparing each commit with its parents, and records the
+     * most recent commit which changed each of the given profile directories. Subtrees which are identical
+     * to the parents are skipped, so the cost of each step is proportional to the size of the change.
+     */
+    private void resolveLastCommits(ObjectReader reader, RevWalk walk, RevCommit head, Map<String, ProfileData> profiles) throws IOException {
+        Set<String> pending = new HashSet<String>(profiles.keySet());
+        if (pending.isEmpty()) {
+            return;
+        }
+        walk.markStart(head);
+        TreeWalk treeWalk = new TreeWalk(reader);
+        treeWalk.setRecursive(false);
+        treeWalk.setFilter(AndTreeFilter.create(PathFilter.create(PROFILES_PATH), TreeFilter.ANY_DIFF));
+        RevCommit commit;
+        while (!pending.isEmpty() && (commit = walk.next()) != null) {
+            RevCommit[] parents = commit.getParents();
+            treeWalk.reset();
+            treeWalk.addTree(commit.getTree());
+            for (RevCommit parent : parents) {
+                walk.parseHeaders(parent);
+                treeWalk.addTree(parent.getTree());
+            }
+            while (treeWalk.next()) {
+                String path = treeWalk.getPathString();
+                if (pending.contains(path)) {
+                    if (treeWalk.getRawMode(0) != 0 && differsFromAllParents(treeWalk)) {
+                        profiles.get(path).lastCommitId = commit.copy();
+                        pending.remove(path);
+                    }
+                } else if (treeWalk.isSubtree() && !isProfileDirectory(path)) {
+                    treeWalk.enterSubtree();
+                }
+            }
+        }
+    }
+
+    /**
+     * Like git log, a merge only counts as a change to a path if the path differs from every parent
+     */
+    private static boolean differsFromAllParents(TreeWalk treeWalk) {
+        for (int i = 1; i < treeWalk.getTreeCount(); i++) {
+            if (treeWalk.idEqual(0, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isProfileDirectory(String path) {
+        return path.length() > PROFILES_PATH.length() && path.endsWith(Profiles.PROFILE_FOLDER_SUFFIX);
+    }
+
+    /**
+     * Converts a profile directory such as "fabric/profiles/foo/bar.profile" into the profile id "foo-bar"
+     */
+    static String getProfileId(String path) {
+        String relativePath = path.substring(PROFILES_PATH.length() + 1, path.length() - Profiles.PROFILE_FOLDER_SUFFIX.length());
+        return relativePath.replace('/', '-');
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.git.internal;
+
+import io.fabric8.api.ProfileBuilder;
+import io.fabric8.api.ProfileChangeEvent;
+import io.fabric8.api.Version;
+import io.fabric8.api.VersionBuilder;
+import io.fabric8.git.internal.GitDataStoreImpl.VersionCacheKey;
+import io.fabric8.utils.DataStoreUtils;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the version snapshots of the data store from the object database. A snapshot is either loaded
+ * in full from the heads of the version branch and the master branch, or updated from the snapshot of
+ * previous heads by only reloading the profiles which differ between the old and new heads. The changes
+ * between the old and new heads are also described by a {@link ProfileChangeEvent}.
+ */
+final class GitVersionLoader {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(GitVersionLoader.class);
+
+    private static final int GIT_COMMIT_SHORT_LENGTH = 7;
+
+    private final GitProfileReader reader;
+
+    GitVersionLoader(Repository repository) {
+        this.reader = new GitProfileReader(repository);
+    }
+
+    /**
+     * Loads the version without touching the working tree
+     */
+    Version loadVersion(VersionCacheKey key) throws IOException {
+        LOGGER.debug("Loading version snapshot: {}", key);
+        VersionBuilder vbuilder = createVersionBuilder(key);
+        populateVersionBuilder(vbuilder, key.getMasterCommitId(), key.getVersionId(), null);
+        populateVersionBuilder(vbuilder, key.getVersionCommitId(), key.getVersionId(), null);
+        return vbuilder.getVersion();
+    }
+
+    /**
+     * Creates the snapshot for the given key from the previous snapshot of the version, only reloading
+     * the profiles which differ between the commits of both keys
+     */
+    Version updateVersion(Version previousVersion, VersionCacheKey previousKey, VersionCacheKey key) throws IOException {
+        Set<String> profilePaths = new HashSet<>();
+        if (!previousKey.getVersionCommitId().equals(key.getVersionCommitId())) {
+            profilePaths.addAll(reader.diffProfiles(previousKey.getVersionCommitId(), key.getVersionCommitId()).keySet());
+        }
+        if (!previousKey.getMasterCommitId().equals(key.getMasterCommitId())) {
+            profilePaths.addAll(reader.diffProfiles(previousKey.getMasterCommitId(), key.getMasterCommitId()).keySet());
+        }
+        LOGGER.debug("Updating version snapshot {} => {} with changed profiles: {}", previousKey, key, profilePaths);
+        VersionBuilder vbuilder = createVersionBuilder(key);
+        vbuilder.addProfiles(previousVersion.getProfiles());
+        if (!profilePaths.isEmpty()) {
+            // profiles of the version branch override those of the master branch
+            for (String profilePath : profilePaths) {
+                vbuilder.removeProfile(GitProfileReader.getProfileId(profilePath));
+            }
+            populateVersionBuilder(vbuilder, key.getMasterCommitId(), key.getVersionId(), profilePaths);
+            populateVersionBuilder(vbuilder, key.getVersionCommitId(), key.getVersionId(), profilePaths);
+        }
+        return vbuilder.getVersion();
+    }
+
+    /**
+     * Diffs the profiles of the old and new branch heads. Profiles changed in the master branch
+     * are ensemble profiles which are part of every version.
+     */
+    ProfileChangeEvent createProfileChangeEvent(Map<String, ObjectId> previousHeads, Map<String, ObjectId> currentHeads) {
+        Set<String> addedVersions = new HashSet<>();
+        Set<String> removedVersions = new HashSet<>();
+        Map<String, Map<String, Set<String>>> changedFiles = new HashMap<>();
+        Map<String, Set<String>> masterChanges = Collections.emptyMap();
+        for (String branch : previousHeads.keySet()) {
+            if (!currentHeads.containsKey(branch) && !GitHelpers.MASTER_BRANCH.equals(branch)) {
+                removedVersions.add(branch);
+            }
+        }
+        for (Map.Entry<String, ObjectId> entry : currentHeads.entrySet()) {
+            String branch = entry.getKey();
+            ObjectId previousHead = previousHeads.get(branch);
+            if (previousHead == null) {
+                if (!GitHelpers.MASTER_BRANCH.equals(branch)) {
+                    addedVersions.add(branch);
+                }
+            } else if (!previousHead.equals(entry.getValue())) {
+                Map<String, Set<String>> profiles = new HashMap<>();
+                try {
+                    for (Map.Entry<String, Set<String>> diff : reader.diffProfiles(previousHead, entry.getValue()).entrySet()) {
+                        profiles.put(GitProfileReader.getProfileId(diff.getKey()), diff.getValue());
+                    }
+                } catch (IOException ex) {
+                    LOGGER.warn("Cannot diff branch " + branch + " due " + ex.getMessage() + ". This exception is ignored.");
+                }
+                if (GitHelpers.MASTER_BRANCH.equals(branch)) {
+                    masterChanges = profiles;
+                } else {
+                    changedFiles.put(branch, profiles);
+                }
+            }
+        }
+        if (!masterChanges.isEmpty()) {
+            for (String branch : currentHeads.keySet()) {
+                if (!GitHelpers.MASTER_BRANCH.equals(branch) && !addedVersions.contains(branch)) {
+                    Map<String, Set<String>> profiles = changedFiles.get(branch);
+                    if (profiles == null) {
+                        profiles = new HashMap<>();
+                        changedFiles.put(branch, profiles);
+                    }
+                    for (Map.Entry<String, Set<String>> masterEntry : masterChanges.entrySet()) {
+                        if (!profiles.containsKey(masterEntry.getKey())) {
+                            profiles.put(masterEntry.getKey(), masterEntry.getValue());
+                        }
+                    }
+                }
+            }
+        }
+        return new ProfileChangeEvent(addedVersions, removedVersions, changedFiles);
+    }
+
+    private VersionBuilder createVersionBuilder(VersionCacheKey key) throws IOException {
+        VersionBuilder vbuilder = VersionBuilder.Factory.create(key.getVersionId()).setRevision(key.getVersionCommitId().getName());
+        vbuilder.setAttributes(getVersionAttributes(key.getVersionCommitId()));
+        return vbuilder;
+    }
+
+    private Map<String, String> getVersionAttributes(ObjectId revision) throws IOException {
+        byte[] bytes = reader.readFile(revision, GitHelpers.VERSION_ATTRIBUTES);
+        if (bytes == null) {
+            return Collections.emptyMap();
+        }
+        return DataStoreUtils.toMap(bytes);
+    }
+
+    private void populateVersionBuilder(VersionBuilder builder, ObjectId commitId, String versionId, Set<String> profilePaths) throws IOException {
+        for (GitProfileReader.ProfileData profileData : reader.readProfiles(commitId, profilePaths).values()) {
+            ObjectId lastCommitId = profileData.getLastCommitId();
+            String lastModified = lastCommitId != null ? lastCommitId.abbreviate(GIT_COMMIT_SHORT_LENGTH).name() : "";
+            ProfileBuilder profileBuilder = ProfileBuilder.Factory.create(versionId, profileData.getProfileId());
+            profileBuilder.setFileConfigurations(profileData.getFileConfigurations()).setLastModified(lastModified);
+            builder.addProfile(profileBuilder.getProfile());
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.git.internal;
+
+import io.fabric8.git.internal.GitProfileReader.ProfileData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GitProfileReaderTest {
+
+    static final String PROFILES = GitProfileReader.PROFILES_PATH + "/";
+
+    protected File basedir;
+    protected Git git;
+    protected GitProfileReader reader;
+    private long time = 1400000000000L;
+
+    @Before
+    public void setUp() throws Exception {
+        basedir = new File("target/git-profile-reader/" + getClass().getSimpleName() + "-" + System.nanoTime());
+        FileUtils.deleteDirectory(basedir);
+        basedir.mkdirs();
+        git = Git.init().setDirectory(basedir).call();
+        reader = new GitProfileReader(git.getRepository());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        git.getRepository().close();
+        FileUtils.deleteDirectory(basedir);
+    }
+
+    @Test
+    public void testProfileId() {
+        assertEquals("default", GitProfileReader.getProfileId(PROFILES + "default.profile"));
+        assertEquals("mq-base", GitProfileReader.getProfileId(PROFILES + "mq/base.profile"));
+    }
+
+    @Test
+    public void testReadProfilesOfRootCommit() throws Exception {
+        writeFile(PROFILES + "default.profile/io.fabric8.agent.properties", "a=1");
+        writeFile(PROFILES + "mq/base.profile/io.fabric8.mq.properties", "b=2");
+        writeFile(PROFILES + "foo.profile/foo.properties", "c=3");
+        writeFile(PROFILES + "foo.profile/sub/dir/foo.txt", "nested");
+        writeFile("README.md", "not a profile");
+        RevCommit root = commit("initial");
+
+        Map<String, ProfileData> profiles = reader.readProfiles(root);
+        assertEquals(new HashSet<String>(Arrays.asList("default", "mq-base", "foo")), profiles.keySet());
+
+        ProfileData foo = profiles.get("foo");
+        assertEquals(PROFILES + "foo.profile", foo.getPath());
+        assertEquals(new HashSet<String>(Arrays.asList("foo.properties", "sub/dir/foo.txt")), foo.getFileConfigurations().keySet());
+        assertArrayEquals("nested".getBytes(), foo.getFileConfigurations().get("sub/dir/foo.txt"));
+        assertArrayEquals("b=2".getBytes(), profiles.get("mq-base").getFileConfigurations().get("io.fabric8.mq.properties"));
+
+        // the root commit has no parent to compare with so it changed every profile
+        for (ProfileData profile : profiles.values()) {
+            assertEquals(root, profile.getLastCommitId());
+        }
+        assertLastCommits(root, profiles);
+    }
+
+    @Test
+    public void testLastCommitsOfMasterAndVersionBranch() throws Exception {
+        writeFile(PROFILES + "default.profile/io.fabric8.agent.properties", "a=1");
+        writeFile(PROFILES + "mq/base.profile/io.fabric8.mq.properties", "b=2");
+        writeFile(PROFILES + "foo.profile/foo.properties", "c=3");
+        writeFile(PROFILES + "foo.profile/sub/foo.txt", "nested");
+        RevCommit c1 = commit("initial");
+        writeFile(PROFILES + "default.profile/io.fabric8.agent.properties", "a=2");
+        RevCommit c2 = commit("changed default");
+
+        git.branchCreate().setName("1.0").call();
+        git.checkout().setName("1.0").call();
+        writeFile(GitHelpers.VERSION_ATTRIBUTES, "description=first version");
+        writeFile(PROFILES + "foo.profile/sub/foo.txt", "changed nested");
+        RevCommit c3 = commit("changed nested file of foo");
+
+        git.checkout().setName("master").call();
+        writeFile(PROFILES + "mq/base.profile/io.fabric8.mq.properties", "b=3");
+        RevCommit c4 = commit("changed mq-base on master");
+
+        Map<String, ProfileData> master = reader.readProfiles(c4);
+        assertEquals(c2, master.get("default").getLastCommitId());
+        assertEquals(c4, master.get("mq-base").getLastCommitId());
+        assertEquals(c1, master.get("foo").getLastCommitId());
+        assertLastCommits(c4, master);
+
+        Map<String, ProfileData> version = reader.readProfiles(c3);
+        assertEquals(c2, version.get("default").getLastCommitId());
+        assertEquals(c1, version.get("mq-base").getLastCommitId());
+        assertEquals(c3, version.get("foo").getLastCommitId());
+        assertArrayEquals("changed nested".getBytes(), version.get("foo").getFileConfigurations().get("sub/foo.txt"));
+        assertLastCommits(c3, version);
+
+        assertArrayEquals("description=first version".getBytes(), reader.readFile(c3, GitHelpers.VERSION_ATTRIBUTES));
+        assertNull(reader.readFile(c4, GitHelpers.VERSION_ATTRIBUTES));
+        // directories are not files
+        assertNull(reader.readFile(c3, PROFILES + "foo.profile"));
+    }
+
+    @Test
+    public void testLastCommitsAcrossMerge() throws Exception {
+        writeFile(PROFILES + "default.profile/io.fabric8.agent.properties", "a=1");
+        writeFile(PROFILES + "mq/base.profile/io.fabric8.mq.properties", "b=1");
+        writeFile(PROFILES + "foo.profile/foo.properties", "c=1");
+        RevCommit c1 = commit("initial");
+
+        git.branchCreate().setName("1.0").call();
+        git.branchCreate().setName("feature").call();
+
+        git.checkout().setName("feature").call();
+        writeFile(PROFILES + "mq/base.profile/io.fabric8.mq.properties", "b=2");
+        RevCommit feature = commit("changed mq-base on feature");
+
+        git.checkout().setName("1.0").call();
+        writeFile(PROFILES + "default.profile/io.fabric8.agent.properties", "a=2");
+        RevCommit version = commit("changed default on 1.0");
+
+        MergeResult result = git.merge().include(feature).setCommit(true).call();
+        assertTrue("merge should succeed: " + result, result.getMergeStatus().isSuccessful());
+        RevCommit merge = git.log().setMaxCount(1).call().iterator().next();
+        assertEquals(2, merge.getParentCount());
+
+        Map<String, ProfileData> profiles = reader.readProfiles(merge);
+        // the merge is identical to one of its parents for every profile so it changed none of them
+        assertEquals(feature, profiles.get("mq-base").getLastCommitId());
+        assertEquals(version, profiles.get("default").getLastCommitId());
+        assertEquals(c1, profiles.get("foo").getLastCommitId());
+        assertLastCommits(merge, profiles);
+        assertArrayEquals("b=2".getBytes(), profiles.get("mq-base").getFileConfigurations().get("io.fabric8.mq.properties"));
+        assertArrayEquals("a=2".getBytes(), profiles.get("default").getFileConfigurations().get("io.fabric8.agent.properties"));
+    }
+
+    @Test
+    public void testReadSelectedProfilesAndDiff() throws Exception {
+        writeFile(PROFILES + "default.profile/io.fabric8.agent.properties", "a=1");
+        writeFile(PROFILES + "mq/base.profile/io.fabric8.mq.properties", "b=1");
+        writeFile(PROFILES + "foo.profile/sub/foo.txt", "c=1");
+        RevCommit c1 = commit("initial");
+        writeFile(PROFILES + "foo.profile/sub/foo.txt", "c=2");
+        writeFile(PROFILES + "bar.profile/bar.properties", "d=1");
+        deleteFile(PROFILES + "mq/base.profile/io.fabric8.mq.properties");
+        writeFile(GitHelpers.VERSION_ATTRIBUTES, "x=y");
+        RevCommit c2 = commit("changed profiles");
+
+        Map<String, Set<String>> diff = reader.diffProfiles(c1, c2);
+        assertEquals(new HashSet<String>(Arrays.asList(PROFILES + "foo.profile", PROFILES + "bar.profile", PROFILES + "mq/base.profile")), diff.keySet());
+        assertEquals(Collections.singleton("sub/foo.txt"), diff.get(PROFILES + "foo.profile"));
+        assertEquals(Collections.singleton("bar.properties"), diff.get(PROFILES + "bar.profile"));
+        assertEquals(Collections.singleton("io.fabric8.mq.properties"), diff.get(PROFILES + "mq/base.profile"));
+
+        Map<String, ProfileData> profiles = reader.readProfiles(c2, diff.keySet());
+        // the deleted profile no longer exists so it is ignored
+        assertEquals(new HashSet<String>(Arrays.asList("foo", "bar")), profiles.keySet());
+        assertEquals(c2, profiles.get("foo").getLastCommitId());
+        assertEquals(c2, profiles.get("bar").getLastCommitId());
+        assertTrue(reader.readProfiles(c2, Collections.<String>emptySet()).isEmpty());
+    }
+
+    /**
+     * Asserts the last commit of every profile is the one reported by <code>git log -1 -- path</code>
+     */
+    protected void assertLastCommits(ObjectId head, Map<String, ProfileData> profiles) throws Exception {
+        for (ProfileData profile : profiles.values()) {
+            Iterable<RevCommit> log = git.log().add(head).addPath(profile.getPath()).setMaxCount(1).call();
+            assertEquals("Last commit of " + profile.getProfileId(), log.iterator().next(), profile.getLastCommitId());
+        }
+    }
+
+    protected void writeFile(String path, String content) throws IOException {
+        FileUtils.writeStringToFile(new File(basedir, path), content);
+    }
+
+    protected void deleteFile(String path) throws IOException {
+        FileUtils.forceDelete(new File(basedir, path));
+    }
+
+    /**
+     * Commits all the changes of the working tree, each commit one second after the previous one
+     */
+    protected RevCommit commit(String message) throws Exception {
+        git.add().addFilepattern(".").call();
+        git.add().addFilepattern(".").setUpdate(true).call();
+        time += 1000;
+        PersonIdent ident = new PersonIdent("fabric8", "fabric8@example.com", new Date(time), TimeZone.getTimeZone("UTC"));
+        return git.commit().setMessage(message).setAuthor(ident).setCommitter(ident).call();
+    }
+}
@@ -0,0 +1,364 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.git.internal;
+
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileChangeEvent;
+import io.fabric8.api.Version;
+import io.fabric8.git.internal.GitDataStoreImpl.VersionCacheKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a snapshot updated from the snapshot of previous heads is the same as a snapshot loaded
+ * in full from the new heads, and that the profile change events describe what changed between heads.
+ */
+public class GitVersionLoaderTest {
+
+    static final String PROFILES = GitProfileReader.PROFILES_PATH + "/";
+    static final String VERSION = "1.0";
+
+    private File basedir;
+    private Git git;
+    private GitVersionLoader loader;
+    private long time = 1400000000000L;
+
+    @Before
+    public void setUp() throws Exception {
+        basedir = new File("target/git-version-loader/" + getClass().getSimpleName() + "-" + System.nanoTime());
+        FileUtils.deleteDirectory(basedir);
+        basedir.mkdirs();
+        git = Git.init().setDirectory(basedir).call();
+        loader = new GitVersionLoader(git.getRepository());
+
+        // ensemble profiles in the master branch, which are overridden by the version branch
+        writeFile(PROFILES + "default.profile/io.fabric8.agent.properties", "master=1");
+        writeFile(PROFILES + "fabric/ensemble.profile/io.fabric8.ensemble.properties", "ensemble=1");
+        commit("master profiles");
+        git.branchCreate().setName(VERSION).call();
+        git.checkout().setName(VERSION).call();
+        writeFile(PROFILES + "default.profile/io.fabric8.agent.properties", "version=1");
+        writeFile(PROFILES + "foo.profile/io.fabric8.agent.properties", "foo=1");
+        writeFile(PROFILES + "mq/base.profile/io.fabric8.mq.properties", "mq=1");
+        writeFile(PROFILES + "mq/base.profile/sub/broker.xml", "<broker/>");
+        writeFile(GitHelpers.VERSION_ATTRIBUTES, "description=first");
+        commit("version profiles");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        git.getRepository().close();
+        FileUtils.deleteDirectory(basedir);
+    }
+
+    @Test
+    public void testLoadVersion() throws Exception {
+        Version version = loader.loadVersion(currentKey());
+        assertEquals(VERSION, version.getId());
+        assertEquals(head(VERSION).getName(), version.getRevision());
+        assertEquals("first", version.getAttributes().get("description"));
+        assertEquals(new HashSet<String>(Arrays.asList("default", "fabric-ensemble", "foo", "mq-base")), new HashSet<String>(version.getProfileIds()));
+        // the version branch overrides the master branch
+        assertArrayEquals("version=1".getBytes(), version.getProfile("default").getFileConfigurations().get("io.fabric8.agent.properties"));
+        assertArrayEquals("<broker/>".getBytes(), version.getProfile("mq-base").getFileConfigurations().get("sub/broker.xml"));
+    }
+
+    @Test
+    public void testUnchangedHeads() throws Exception {
+        VersionCacheKey key = currentKey();
+        Version version = loader.loadVersion(key);
+        Version updated = loader.updateVersion(version, key, key);
+        assertSameVersion(version, updated);
+        for (Profile profile : version.getProfiles()) {
+            assertSame(profile, updated.getProfile(profile.getId()));
+        }
+    }
+
+    @Test
+    public void testChangedVersionProfile() throws Exception {
+        VersionCacheKey previousKey = currentKey();
+        Version previous = loader.loadVersion(previousKey);
+        writeFile(PROFILES + "foo.profile/io.fabric8.agent.properties", "foo=2");
+        commit("changed foo");
+
+        Version updated = assertIncrementalUpdate(previous, previousKey);
+        assertArrayEquals("foo=2".getBytes(), updated.getProfile("foo").getFileConfigurations().get("io.fabric8.agent.properties"));
+        // unchanged profiles are carried over from the previous snapshot
+        assertSame(previous.getProfile("mq-base"), updated.getProfile("mq-base"));
+        assertSame(previous.getProfile("default"), updated.getProfile("default"));
+    }
+
+    @Test
+    public void testChangedNestedProfileFile() throws Exception {
+        VersionCacheKey previousKey = currentKey();
+        Version previous = loader.loadVersion(previousKey);
+        writeFile(PROFILES + "mq/base.profile/sub/broker.xml", "<broker name='amq'/>");
+        commit("changed broker");
+
+        Version updated = assertIncrementalUpdate(previous, previousKey);
+        assertArrayEquals("<broker name='amq'/>".getBytes(), updated.getProfile("mq-base").getFileConfigurations().get("sub/broker.xml"));
+    }
+
+    @Test
+    public void testChangedMasterProfile() throws Exception {
+        VersionCacheKey previousKey = currentKey();
+        Version previous = loader.loadVersion(previousKey);
+        git.checkout().setName(GitHelpers.MASTER_BRANCH).call();
+        writeFile(PROFILES + "fabric/ensemble.profile/io.fabric8.ensemble.properties", "ensemble=2");
+        commit("changed ensemble");
+
+        Version updated = assertIncrementalUpdate(previous, previousKey);
+        assertArrayEquals("ensemble=2".getBytes(), updated.getProfile("fabric-ensemble").getFileConfigurations().get("io.fabric8.ensemble.properties"));
+    }
+
+    @Test
+    public void testChangedMasterProfileKeepsVersionOverride() throws Exception {
+        VersionCacheKey previousKey = currentKey();
+        Version previous = loader.loadVersion(previousKey);
+        git.checkout().setName(GitHelpers.MASTER_BRANCH).call();
+        writeFile(PROFILES + "default.profile/io.fabric8.agent.properties", "master=2");
+        commit("changed default in master");
+
+        Version updated = assertIncrementalUpdate(previous, previousKey);
+        assertArrayEquals("version=1".getBytes(), updated.getProfile("default").getFileConfigurations().get("io.fabric8.agent.properties"));
+    }
+
+    @Test
+    public void testRemovedVersionOverride() throws Exception {
+        VersionCacheKey previousKey = currentKey();
+        Version previous = loader.loadVersion(previousKey);
+        deleteFile(PROFILES + "default.profile");
+        commit("removed default override");
+
+        // the profile of the master branch shows through again
+        Version updated = assertIncrementalUpdate(previous, previousKey);
+        assertArrayEquals("master=1".getBytes(), updated.getProfile("default").getFileConfigurations().get("io.fabric8.agent.properties"));
+    }
+
+    @Test
+    public void testDeletedAndAddedProfiles() throws Exception {
+        VersionCacheKey previousKey = currentKey();
+        Version previous = loader.loadVersion(previousKey);
+        deleteFile(PROFILES + "foo.profile");
+        writeFile(PROFILES + "bar.profile/io.fabric8.agent.properties", "bar=1");
+        commit("replaced foo with bar");
+
+        Version updated = assertIncrementalUpdate(previous, previousKey);
+        assertNull(updated.getProfile("foo"));
+        assertNotNull(updated.getProfile("bar"));
+    }
+
+    @Test
+    public void testChangedAttributesOnly() throws Exception {
+        VersionCacheKey previousKey = currentKey();
+        Version previous = loader.loadVersion(previousKey);
+        writeFile(GitHelpers.VERSION_ATTRIBUTES, "description=second");
+        commit("changed attributes");
+
+        Version updated = assertIncrementalUpdate(previous, previousKey);
+        assertEquals("second", updated.getAttributes().get("description"));
+        for (Profile profile : previous.getProfiles()) {
+            assertSame(profile, updated.getProfile(profile.getId()));
+        }
+    }
+
+    @Test
+    public void testMergeIntoVersionBranch() throws Exception {
+        VersionCacheKey previousKey = currentKey();
+        Version previous = loader.loadVersion(previousKey);
+        git.branchCreate().setName("feature").call();
+        git.checkout().setName("feature").call();
+        writeFile(PROFILES + "mq/base.profile/io.fabric8.mq.properties", "mq=2");
+        RevCommit feature = commit("changed mq on feature");
+        git.checkout().setName(VERSION).call();
+        writeFile(PROFILES + "foo.profile/io.fabric8.agent.properties", "foo=2");
+        commit("changed foo on version");
+        MergeResult result = git.merge().include(feature).setCommit(true).call();
+        assertTrue("merge should succeed: " + result, result.getMergeStatus().isSuccessful());
+
+        Version updated = assertIncrementalUpdate(previous, previousKey);
+        assertEquals(feature.abbreviate(7).name(), updated.getProfile("mq-base").getProfileHash().substring(0, 7));
+    }
+
+    @Test
+    public void testSuccessiveUpdates() throws Exception {
+        VersionCacheKey previousKey = currentKey();
+        Version version = loader.loadVersion(previousKey);
+        for (int i = 2; i < 5; i++) {
+            writeFile(PROFILES + "foo.profile/io.fabric8.agent.properties", "foo=" + i);
+            commit("changed foo " + i);
+            git.checkout().setName(GitHelpers.MASTER_BRANCH).call();
+            writeFile(PROFILES + "fabric/ensemble.profile/io.fabric8.ensemble.properties", "ensemble=" + i);
+            commit("changed ensemble " + i);
+            git.checkout().setName(VERSION).call();
+            VersionCacheKey key = currentKey();
+            version = loader.updateVersion(version, previousKey, key);
+            previousKey = key;
+        }
+        assertSameVersion(loader.loadVersion(previousKey), version);
+    }
+
+    @Test
+    public void testProfileChangeEventForChangedProfiles() throws Exception {
+        Map<String, ObjectId> previousHeads = heads();
+        writeFile(PROFILES + "foo.profile/io.fabric8.agent.properties", "foo=2");
+        writeFile(PROFILES + "mq/base.profile/sub/broker.xml", "<broker name='amq'/>");
+        deleteFile(PROFILES + "default.profile");
+        commit("changed foo, mq and default");
+
+        ProfileChangeEvent event = loader.createProfileChangeEvent(previousHeads, heads());
+        assertFalse(event.isEmpty());
+        assertEquals(Collections.singleton(VERSION), event.getChangedVersions());
+        assertEquals(new HashSet<String>(Arrays.asList("default", "foo", "mq-base")), event.getChangedProfiles(VERSION));
+        assertEquals(Collections.singleton("io.fabric8.agent.properties"), event.getChangedFiles(VERSION, "foo"));
+        assertEquals(Collections.singleton("sub/broker.xml"), event.getChangedFiles(VERSION, "mq-base"));
+        assertEquals(Collections.singleton("io.fabric8.agent.properties"), event.getChangedFiles(VERSION, "default"));
+        assertTrue(event.getAddedVersions().isEmpty());
+        assertTrue(event.getRemovedVersions().isEmpty());
+    }
+
+    @Test
+    public void testProfileChangeEventReportsMasterChangesForEveryVersion() throws Exception {
+        git.branchCreate().setName("1.1").call();
+        Map<String, ObjectId> previousHeads = heads();
+        git.checkout().setName(GitHelpers.MASTER_BRANCH).call();
+        writeFile(PROFILES + "fabric/ensemble.profile/io.fabric8.ensemble.properties", "ensemble=2");
+        commit("changed ensemble");
+
+        ProfileChangeEvent event = loader.createProfileChangeEvent(previousHeads, heads());
+        assertEquals(new HashSet<String>(Arrays.asList(VERSION, "1.1")), event.getChangedVersions());
+        for (String versionId : Arrays.asList(VERSION, "1.1")) {
+            assertEquals(Collections.singleton("fabric-ensemble"), event.getChangedProfiles(versionId));
+            assertEquals(Collections.singleton("io.fabric8.ensemble.properties"), event.getChangedFiles(versionId, "fabric-ensemble"));
+        }
+        assertFalse("master is not a version", event.getChangedVersions().contains(GitHelpers.MASTER_BRANCH));
+    }
+
+    @Test
+    public void testProfileChangeEventForAddedAndRemovedVersions() throws Exception {
+        git.branchCreate().setName("1.1").call();
+        Map<String, ObjectId> previousHeads = heads();
+        git.branchDelete().setBranchNames("1.1").setForce(true).call();
+        git.branchCreate().setName("1.2").call();
+
+        ProfileChangeEvent event = loader.createProfileChangeEvent(previousHeads, heads());
+        assertEquals(Collections.singleton("1.2"), event.getAddedVersions());
+        assertEquals(Collections.singleton("1.1"), event.getRemovedVersions());
+        assertTrue(event.getChangedVersions().isEmpty());
+    }
+
+    @Test
+    public void testProfileChangeEventForChangedAttributesOnly() throws Exception {
+        Map<String, ObjectId> previousHeads = heads();
+        writeFile(GitHelpers.VERSION_ATTRIBUTES, "description=second");
+        commit("changed attributes");
+
+        ProfileChangeEvent event = loader.createProfileChangeEvent(previousHeads, heads());
+        assertEquals(Collections.singleton(VERSION), event.getChangedVersions());
+        assertTrue(event.getChangedProfiles(VERSION).isEmpty());
+    }
+
+    @Test
+    public void testProfileChangeEventForUnchangedHeads() throws Exception {
+        Map<String, ObjectId> currentHeads = heads();
+        assertTrue(loader.createProfileChangeEvent(currentHeads, currentHeads).isEmpty());
+    }
+
+    /**
+     * Asserts that updating the previous snapshot to the current heads gives the same snapshot as a full load
+     */
+    private Version assertIncrementalUpdate(Version previous, VersionCacheKey previousKey) throws Exception {
+        VersionCacheKey key = currentKey();
+        assertFalse("heads should have moved", previousKey.equals(key));
+        Version updated = loader.updateVersion(previous, previousKey, key);
+        assertSameVersion(loader.loadVersion(key), updated);
+        return updated;
+    }
+
+    private void assertSameVersion(Version expected, Version actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getRevision(), actual.getRevision());
+        assertEquals(expected.getAttributes(), actual.getAttributes());
+        assertEquals(new HashSet<String>(expected.getProfileIds()), new HashSet<String>(actual.getProfileIds()));
+        for (Profile profile : expected.getProfiles()) {
+            Profile other = actual.getProfile(profile.getId());
+            assertEquals(profile, other);
+            assertEquals("Hash of " + profile.getId(), profile.getProfileHash(), other.getProfileHash());
+            for (Map.Entry<String, byte[]> entry : profile.getFileConfigurations().entrySet()) {
+                assertArrayEquals(profile.getId() + "/" + entry.getKey(), entry.getValue(), other.getFileConfigurations().get(entry.getKey()));
+            }
+        }
+    }
+
+    private VersionCacheKey currentKey() throws IOException {
+        return new VersionCacheKey(VERSION, head(VERSION), head(GitHelpers.MASTER_BRANCH));
+    }
+
+    private Map<String, ObjectId> heads() throws IOException {
+        Map<String, ObjectId> heads = new HashMap<String, ObjectId>();
+        for (Map.Entry<String, Ref> entry : git.getRepository().getRefDatabase().getRefs("refs/heads/").entrySet()) {
+            heads.put(entry.getKey(), entry.getValue().getObjectId());
+        }
+        return heads;
+    }
+
+    private ObjectId head(String branch) throws IOException {
+        return git.getRepository().getRef("refs/heads/" + branch).getObjectId();
+    }
+
+    private void writeFile(String path, String content) throws IOException {
+        FileUtils.writeStringToFile(new File(basedir, path), content);
+    }
+
+    private void deleteFile(String path) throws IOException {
+        FileUtils.forceDelete(new File(basedir, path));
+    }
+
+    private RevCommit commit(String message) throws Exception {
+        git.add().addFilepattern(".").call();
+        git.add().addFilepattern(".").setUpdate(true).call();
+        time += 1000;
+        PersonIdent ident = new PersonIdent("fabric8", "fabric8@example.com", new Date(time), TimeZone.getTimeZone("UTC"));
+        return git.commit().setMessage(message).setAuthor(ident).setCommitter(ident).call();
+    }
+}